@@ -0,0 +1,185 @@
+package com.rich.richsynapsehub.benchmark;
+
+import com.rich.richsynapsehub.config.RedisConfig;
+import com.rich.richsynapsehub.enumeration.ChatMemoryStorageMode;
+import com.rich.richsynapsehub.utils.ai.chatMeory.FileChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.RedisChatMemory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 对话记忆存储基准测试：不同历史长度、消息大小下 add / get 的吞吐与每次操作的内存分配
+ * <p>
+ * 运行：mvn -P jmh verify -DskipTests，结果以 JSON 输出到 target/jmh-result.json（-prof gc 的 gc.alloc.rate.norm 即每次操作分配字节数）。
+ * Redis 使用进程内 embedded-redis，无需外部服务。
+ * add 基准每次迭代前把会话重置为 historySize 条消息，迭代内连续追加 ADD_BATCH 轮（单次计时），
+ * 既不在每次调用前执行重置（避免 Level.Invocation 的计时开销淹没微秒级操作），历史长度也只在 historySize 附近有限增长。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/14
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatMemoryBenchmark {
+
+    private static final String CONVERSATION_ID = "bench";
+
+    private static final int REDIS_PORT = 16379;
+
+    /**
+     * add 基准每次迭代连续追加的轮数（每轮 2 条消息）
+     */
+    private static final int ADD_BATCH = 20;
+
+    /**
+     * 存储实现：file / redis-blob / redis-list
+     */
+    @Param({"file", "redis-blob", "redis-list"})
+    public String store;
+
+    /**
+     * 会话中已有的消息条数
+     */
+    @Param({"10", "100", "1000"})
+    public int historySize;
+
+    /**
+     * 单条消息的字符数
+     */
+    @Param({"64", "1024", "8192"})
+    public int messageChars;
+
+    private RedisServer redisServer;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private Path fileDir;
+
+    private ChatMemory chatMemory;
+
+    private List<Message> history;
+
+    private List<Message> turn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        switch (store) {
+            case "file" -> {
+                fileDir = Files.createTempDirectory("chat-memory-bench");
+                chatMemory = new FileChatMemory(fileDir.toString());
+            }
+            case "redis-blob", "redis-list" -> {
+                redisServer = new RedisServer(REDIS_PORT);
+                redisServer.start();
+                connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", REDIS_PORT));
+                connectionFactory.afterPropertiesSet();
+                connectionFactory.start();
+                RedisTemplate<String, byte[]> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+                ChatMemoryStorageMode mode = "redis-list".equals(store) ? ChatMemoryStorageMode.LIST : ChatMemoryStorageMode.BLOB;
+                // 不限制条数，保证历史长度与参数一致
+                chatMemory = new RedisChatMemory(redisTemplate, mode, 0);
+            }
+            default -> throw new IllegalArgumentException("未知的存储实现：" + store);
+        }
+        history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            history.add(i % 2 == 0 ? new UserMessage(text(i)) : new AssistantMessage(text(i)));
+        }
+        turn = List.of(new UserMessage(text(historySize)), new AssistantMessage(text(historySize + 1)));
+        resetConversation();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        chatMemory.clear(CONVERSATION_ID);
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+        if (fileDir != null) {
+            try (Stream<Path> paths = Files.walk(fileDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * add 基准：每次迭代前恢复到 historySize 条消息（不计入耗时）
+     */
+    @State(Scope.Benchmark)
+    public static class AddState {
+
+        @Setup(Level.Iteration)
+        public void reset(ChatMemoryBenchmark benchmark) {
+            benchmark.resetConversation();
+        }
+    }
+
+    /**
+     * 追加一轮对话（用户消息 + 助手消息），得分为一次迭代内追加 ADD_BATCH 轮的总耗时
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = ADD_BATCH)
+    @Measurement(iterations = 20, batchSize = ADD_BATCH)
+    public void addTurn(AddState addState) {
+        chatMemory.add(CONVERSATION_ID, turn);
+    }
+
+    /**
+     * 读取最近 10 条（对话时的默认取法）
+     */
+    @Benchmark
+    public void getLast10(Blackhole blackhole) {
+        blackhole.consume(chatMemory.get(CONVERSATION_ID, 10));
+    }
+
+    /**
+     * 读取全部历史
+     */
+    @Benchmark
+    public void getAll(Blackhole blackhole) {
+        blackhole.consume(chatMemory.get(CONVERSATION_ID, historySize));
+    }
+
+    private void resetConversation() {
+        chatMemory.clear(CONVERSATION_ID);
+        chatMemory.add(CONVERSATION_ID, history);
+    }
+
+    /**
+     * 生成中英文混合的消息文本
+     */
+    private String text(int seed) {
+        String unit = "第" + seed + "条消息 The quick brown fox 跳过了懒狗。";
+        StringBuilder builder = new StringBuilder(messageChars);
+        while (builder.length() < messageChars) {
+            builder.append(unit);
+        }
+        builder.setLength(messageChars);
+        return builder.toString();
+    }
+}
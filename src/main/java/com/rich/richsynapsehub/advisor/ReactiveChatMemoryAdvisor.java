@@ -0,0 +1,135 @@
+package com.rich.richsynapsehub.advisor;
+
+import com.rich.richsynapsehub.utils.ai.chatMeory.ReactiveChatMemory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.rich.richsynapsehub.advisor.TokenBudgetChatMemoryAdvisor.CHAT_MEMORY_TOKEN_BUDGET_KEY;
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY;
+
+/**
+ * 非阻塞的对话记忆 Advisor，只用于流式对话，请求参数与 {@link TokenBudgetChatMemoryAdvisor} 一致
+ * <p>
+ * 历史消息通过 {@link ReactiveChatMemory} 读取、本轮用户消息写入完成后再发起模型调用，不切换到 boundedElastic；
+ * AI 回复在流结束后追加，写入串联在返回的流中（流在写入完成后才结束；失败只记录日志，不影响已返回给用户的回复）。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/27
+ **/
+@Slf4j
+public class ReactiveChatMemoryAdvisor implements StreamAroundAdvisor {
+
+    private static final String DEFAULT_CONVERSATION_ID = "default";
+
+    private static final int DEFAULT_RETRIEVE_SIZE = 100;
+
+    private final ReactiveChatMemory chatMemory;
+
+    public ReactiveChatMemoryAdvisor(ReactiveChatMemory chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        Map<String, Object> context = advisedRequest.adviseContext();
+        String conversationId = conversationId(context);
+        UserMessage userMessage = new UserMessage(advisedRequest.userText(), advisedRequest.media());
+        Flux<AdvisedResponse> advisedResponses = loadHistory(conversationId, context)
+                // 先读历史再写入本轮用户消息，历史中不包含本轮消息
+                .flatMap(history -> chatMemory.add(conversationId, List.of(userMessage)).thenReturn(history))
+                .map(history -> {
+                    List<Message> advisedMessages = new ArrayList<>(advisedRequest.messages());
+                    advisedMessages.addAll(history);
+                    return AdvisedRequest.from(advisedRequest).messages(advisedMessages).build();
+                })
+                .flatMapMany(chain::nextAroundStream);
+        AtomicReference<AdvisedResponse> aggregated = new AtomicReference<>();
+        return new MessageAggregator().aggregateAdvisedResponse(advisedResponses, aggregated::set)
+                .concatWith(Mono.defer(() -> after(conversationId, aggregated.get())));
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    /**
+     * 与 TokenBudgetChatMemoryAdvisor 顺序一致，先于日志与 RAG advisor 执行
+     *
+     * @return int
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1000;
+    }
+
+    /**
+     * 读取历史消息：带 token 预算时按预算读取，否则固定取最近 N 条
+     *
+     * @param conversationId
+     * @param context
+     * @return reactor.core.publisher.Mono<java.util.List<org.springframework.ai.chat.messages.Message>>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    private Mono<List<Message>> loadHistory(String conversationId, Map<String, Object> context) {
+        int retrieveSize = intParam(context, CHAT_MEMORY_RETRIEVE_SIZE_KEY, DEFAULT_RETRIEVE_SIZE);
+        int tokenBudget = intParam(context, CHAT_MEMORY_TOKEN_BUDGET_KEY, 0);
+        return tokenBudget > 0
+                ? chatMemory.getWithinTokenBudget(conversationId, tokenBudget, retrieveSize)
+                : chatMemory.get(conversationId, retrieveSize);
+    }
+
+    /**
+     * 后置逻辑：追加本轮 AI 回复，不向下游发出元素
+     *
+     * @param conversationId
+     * @param advisedResponse 聚合后的回复，流为空时为 null
+     * @return reactor.core.publisher.Mono<org.springframework.ai.chat.client.advisor.api.AdvisedResponse>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    private Mono<AdvisedResponse> after(String conversationId, AdvisedResponse advisedResponse) {
+        if (advisedResponse == null || advisedResponse.response() == null) {
+            return Mono.empty();
+        }
+        List<Message> messages = new ArrayList<>();
+        advisedResponse.response().getResults().forEach(generation -> messages.add(generation.getOutput()));
+        return chatMemory.add(conversationId, messages)
+                .onErrorResume(e -> {
+                    log.error("对话记忆写入失败，会话 ID：{}，{}", conversationId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then(Mono.empty());
+    }
+
+    private static String conversationId(Map<String, Object> context) {
+        Object value = context.get(CHAT_MEMORY_CONVERSATION_ID_KEY);
+        return value == null ? DEFAULT_CONVERSATION_ID : value.toString();
+    }
+
+    private static int intParam(Map<String, Object> context, String key, int defaultValue) {
+        Object value = context.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number number ? number.intValue() : Integer.parseInt(value.toString());
+    }
+}
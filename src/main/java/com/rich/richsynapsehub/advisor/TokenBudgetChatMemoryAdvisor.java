@@ -0,0 +1,139 @@
+package com.rich.richsynapsehub.advisor;
+
+import com.rich.richsynapsehub.utils.ai.chatMeory.TokenBudgetChatMemory;
+import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY;
+
+/**
+ * 按 token 预算注入历史消息的对话记忆 Advisor，用于替代 MessageChatMemoryAdvisor
+ * <p>
+ * 请求参数中带有 {@link #CHAT_MEMORY_TOKEN_BUDGET_KEY} 且存储支持 {@link TokenBudgetChatMemory} 时，
+ * 注入总 token 数不超过预算的最近消息（最多 CHAT_MEMORY_RETRIEVE_SIZE_KEY 条）；否则与 MessageChatMemoryAdvisor 一致，固定取最近 N 条。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/11
+ **/
+public class TokenBudgetChatMemoryAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    /**
+     * 历史消息 token 预算的请求参数 key，小于等于 0 表示不启用
+     */
+    public static final String CHAT_MEMORY_TOKEN_BUDGET_KEY = "chat_memory_token_budget";
+
+    private static final String DEFAULT_CONVERSATION_ID = "default";
+
+    private static final int DEFAULT_RETRIEVE_SIZE = 100;
+
+    private final ChatMemory chatMemory;
+
+    public TokenBudgetChatMemoryAdvisor(ChatMemory chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        AdvisedResponse advisedResponse = chain.nextAroundCall(this.before(advisedRequest));
+        this.after(advisedResponse);
+        return advisedResponse;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        // 读写对话记忆是阻塞操作，切换到 boundedElastic 执行，避免阻塞响应式线程
+        Flux<AdvisedResponse> advisedResponses = Mono.just(advisedRequest)
+                .publishOn(Schedulers.boundedElastic())
+                .map(this::before)
+                .flatMapMany(chain::nextAroundStream);
+        return new MessageAggregator().aggregateAdvisedResponse(advisedResponses, this::after);
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    /**
+     * 与 MessageChatMemoryAdvisor 的默认顺序一致，先于日志与 RAG advisor 执行
+     *
+     * @return int
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1000;
+    }
+
+    /**
+     * 前置逻辑：读取历史消息拼接到请求中，并保存本轮用户消息
+     *
+     * @param request
+     * @return org.springframework.ai.chat.client.advisor.api.AdvisedRequest
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    private AdvisedRequest before(AdvisedRequest request) {
+        Map<String, Object> context = request.adviseContext();
+        String conversationId = conversationId(context);
+        int retrieveSize = intParam(context, CHAT_MEMORY_RETRIEVE_SIZE_KEY, DEFAULT_RETRIEVE_SIZE);
+        int tokenBudget = intParam(context, CHAT_MEMORY_TOKEN_BUDGET_KEY, 0);
+
+        List<Message> history;
+        if (tokenBudget > 0 && chatMemory instanceof TokenBudgetChatMemory tokenBudgetChatMemory) {
+            history = tokenBudgetChatMemory.getWithinTokenBudget(conversationId, tokenBudget, retrieveSize);
+        } else {
+            history = chatMemory.get(conversationId, retrieveSize);
+        }
+        List<Message> advisedMessages = new ArrayList<>(request.messages());
+        advisedMessages.addAll(history);
+        AdvisedRequest advisedRequest = AdvisedRequest.from(request).messages(advisedMessages).build();
+
+        chatMemory.add(conversationId, new UserMessage(request.userText(), request.media()));
+        return advisedRequest;
+    }
+
+    /**
+     * 后置逻辑：保存 AI 回复
+     *
+     * @param advisedResponse
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    private void after(AdvisedResponse advisedResponse) {
+        if (advisedResponse.response() == null) {
+            return;
+        }
+        List<Message> assistantMessages = advisedResponse.response().getResults().stream()
+                .map(generation -> (Message) generation.getOutput())
+                .toList();
+        chatMemory.add(conversationId(advisedResponse.adviseContext()), assistantMessages);
+    }
+
+    private static String conversationId(Map<String, Object> context) {
+        Object value = context.get(CHAT_MEMORY_CONVERSATION_ID_KEY);
+        return value == null ? DEFAULT_CONVERSATION_ID : value.toString();
+    }
+
+    private static int intParam(Map<String, Object> context, String key, int defaultValue) {
+        Object value = context.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number number ? number.intValue() : Integer.parseInt(value.toString());
+    }
+}
@@ -3,12 +3,31 @@ package com.rich.richsynapsehub.advisor.rag;
 import com.alibaba.cloud.ai.dashscope.api.DashScopeApi;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeDocumentRetriever;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeDocumentRetrieverOptions;
+import com.rich.richsynapsehub.enumeration.RagRetrieverType;
+import com.rich.richsynapsehub.utils.ai.rag.CachingDocumentRetriever;
+import com.rich.richsynapsehub.utils.ai.rag.ContextCompressingDocumentJoiner;
+import com.rich.richsynapsehub.utils.ai.rag.FusionDocumentRetriever;
+import com.rich.richsynapsehub.utils.ai.rag.GatedQueryAugmenter;
+import com.rich.richsynapsehub.utils.ai.rag.LocalKnowledgeBase;
+import com.rich.richsynapsehub.utils.ai.rag.RagGate;
+import com.rich.richsynapsehub.utils.ai.rag.RetrievalCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
 import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 配置集成文档检索(Document Retriever) 的 advisor
@@ -23,6 +42,108 @@ public class CloudRagAdvisorConfig {
     @Value("${spring.ai.dashscope.api-key}")
     private String dashScopeApiKey;
 
+    /**
+     * 检索器类型：cloud（百炼知识库）/ local（进程内 HNSW 检索本地 RagDocs）
+     */
+    @Value("${rich.rag.retriever:cloud}")
+    private String retriever;
+
+    /**
+     * 是否启用检索结果缓存
+     */
+    @Value("${rich.rag.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    /**
+     * 检索结果缓存最多条目数
+     */
+    @Value("${rich.rag.cache.max-entries:2000}")
+    private int cacheMaxEntries;
+
+    /**
+     * 检索结果缓存存活时间（秒）
+     */
+    @Value("${rich.rag.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    /**
+     * 多知识库融合检索时单个知识库的检索超时（毫秒）
+     */
+    @Value("${rich.rag.fusion.timeout-millis:3000}")
+    private long fusionTimeoutMillis;
+
+    /**
+     * 多知识库融合后返回的文档数
+     */
+    @Value("${rich.rag.fusion.top-k:6}")
+    private int fusionTopK;
+
+    /**
+     * RRF 常数
+     */
+    @Value("${rich.rag.fusion.rrf-k:60}")
+    private int fusionRrfK;
+
+    /**
+     * 是否压缩检索结果（去重、相对得分截断、句子裁剪、token 预算）后再拼入提示词
+     */
+    @Value("${rich.rag.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    /**
+     * 相对得分下限：得分低于最高分 × 该值的片段丢弃
+     */
+    @Value("${rich.rag.compression.relative-score-cutoff:0.5}")
+    private double compressionRelativeScoreCutoff;
+
+    /**
+     * 近似重复判定阈值（分词集合的 Jaccard 相似度）
+     */
+    @Value("${rich.rag.compression.duplicate-similarity:0.8}")
+    private double compressionDuplicateSimilarity;
+
+    /**
+     * 每个片段最多保留的句子数
+     */
+    @Value("${rich.rag.compression.max-sentences:4}")
+    private int compressionMaxSentences;
+
+    /**
+     * 检索上下文的 token 预算
+     */
+    @Value("${rich.rag.compression.token-budget:1500}")
+    private int compressionTokenBudget;
+
+    /**
+     * 是否启用检索前分类（寒暄、续写指令等跳过知识库检索）
+     */
+    @Value("${rich.rag.gate.enabled:true}")
+    private boolean gateEnabled;
+
+    /**
+     * 检索前分类的最低得分
+     */
+    @Value("${rich.rag.gate.min-score:3}")
+    private int gateMinScore;
+
+    /**
+     * 注入上下文的片段得分下限（与检索器得分同一量纲），0 表示只在无检索结果时不注入
+     */
+    @Value("${rich.rag.gate.min-context-score:0}")
+    private double gateMinContextScore;
+
+    @Resource
+    private LocalRagConfig localRagConfig;
+
+    /**
+     * 本地知识库，只在 rich.rag.retriever=local 时存在
+     */
+    @Resource
+    private ObjectProvider<LocalKnowledgeBase> localKnowledgeBaseProvider;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
     /**
      * 知识库索引工厂方法，根据索引名称创建对应的知识库检索增强器
      *
@@ -32,21 +153,162 @@ public class CloudRagAdvisorConfig {
      * @create 2025/7/24
      **/
     public Advisor createRagAdvisor(String knowledgeIndex) {
+        DocumentRetriever documentRetriever = createCachedDocumentRetriever(knowledgeIndex);
+
+        // 创建 RAG Advisor ，将文档检索功能集成到 AI 对话流程
+        return buildRagAdvisor(documentRetriever);
+    }
+
+    /**
+     * 多知识库检索增强器：并发检索各知识库并按倒数排名融合，超时的知识库不等待
+     *
+     * @param knowledgeIndexes
+     * @return org.springframework.ai.chat.client.advisor.api.Advisor
+     * @author DuRuiChi
+     * @create 2025/8/18
+     **/
+    public Advisor createFusionRagAdvisor(List<String> knowledgeIndexes) {
+        Map<String, DocumentRetriever> retrievers = new LinkedHashMap<>();
+        for (String knowledgeIndex : knowledgeIndexes) {
+            retrievers.put(knowledgeIndex, createCachedDocumentRetriever(knowledgeIndex));
+        }
+        DocumentRetriever documentRetriever = new FusionDocumentRetriever(retrievers, ragRetrievalExecutor(),
+                Duration.ofMillis(fusionTimeoutMillis), fusionTopK, fusionRrfK);
+        return buildRagAdvisor(documentRetriever);
+    }
+
+    /**
+     * 组装检索增强器：启用压缩时用压缩合并器替换默认的直接拼接，上下文为空或得分过低时不注入
+     * 检索（流式请求的前置逻辑与多查询并行检索）在 ragRetrievalExecutor 的虚拟线程上执行，
+     * 阻塞的检索调用不再占用 boundedElastic 线程，流式并发数不受其线程上限约束
+     *
+     * @param documentRetriever
+     * @return org.springframework.ai.chat.client.advisor.api.Advisor
+     * @author DuRuiChi
+     * @create 2025/8/23
+     **/
+    private Advisor buildRagAdvisor(DocumentRetriever documentRetriever) {
+        RetrievalAugmentationAdvisor.Builder builder = RetrievalAugmentationAdvisor.builder()
+                // 注入文档检索器
+                .documentRetriever(documentRetriever)
+                // 无可用片段时不注入上下文，也不改写问题
+                .queryAugmenter(new GatedQueryAugmenter(gateMinContextScore, meterRegistry))
+                .taskExecutor(ragRetrievalExecutor()::execute)
+                .scheduler(Schedulers.fromExecutorService(ragRetrievalExecutor(), "rag-retrieval"));
+        if (compressionEnabled) {
+            builder.documentJoiner(contextCompressingDocumentJoiner());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 检索前分类器，由调用方决定是否挂载检索增强器
+     *
+     * @return com.rich.richsynapsehub.utils.ai.rag.RagGate
+     * @author DuRuiChi
+     * @create 2025/8/24
+     **/
+    @Bean
+    public RagGate ragGate() {
+        return new RagGate(gateEnabled, gateMinScore, meterRegistry);
+    }
+
+    /**
+     * 检索结果压缩合并器
+     *
+     * @return com.rich.richsynapsehub.utils.ai.rag.ContextCompressingDocumentJoiner
+     * @author DuRuiChi
+     * @create 2025/8/23
+     **/
+    @Bean
+    public ContextCompressingDocumentJoiner contextCompressingDocumentJoiner() {
+        return new ContextCompressingDocumentJoiner(compressionRelativeScoreCutoff, compressionDuplicateSimilarity,
+                compressionMaxSentences, compressionTokenBudget, meterRegistry);
+    }
+
+    /**
+     * 知识库检索线程池：检索以网络 IO 为主，每个任务一个虚拟线程
+     *
+     * @return java.util.concurrent.ExecutorService
+     * @author DuRuiChi
+     * @create 2025/8/18
+     **/
+    @Bean
+    public ExecutorService ragRetrievalExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rag-retrieval-", 0).factory());
+    }
+
+    /**
+     * 创建知识库检索器，启用缓存时包装检索结果缓存
+     *
+     * @param knowledgeIndex
+     * @return org.springframework.ai.rag.retrieval.search.DocumentRetriever
+     * @author DuRuiChi
+     * @create 2025/8/18
+     **/
+    private DocumentRetriever createCachedDocumentRetriever(String knowledgeIndex) {
+        DocumentRetriever documentRetriever = createDocumentRetriever(knowledgeIndex);
+        if (cacheEnabled) {
+            documentRetriever = new CachingDocumentRetriever(documentRetriever, knowledgeIndex, retrievalCache());
+        }
+        return documentRetriever;
+    }
+
+    /**
+     * 检索结果缓存，本地知识库重新构建后自动清除对应条目
+     *
+     * @return com.rich.richsynapsehub.utils.ai.rag.RetrievalCache
+     * @author DuRuiChi
+     * @create 2025/8/16
+     **/
+    @Bean
+    public RetrievalCache retrievalCache() {
+        RetrievalCache retrievalCache = new RetrievalCache(cacheMaxEntries, cacheTtlSeconds * 1000, meterRegistry);
+        localKnowledgeBaseProvider.ifAvailable(localKnowledgeBase -> localKnowledgeBase.addReloadListener(retrievalCache::invalidate));
+        return retrievalCache;
+    }
+
+    /**
+     * 根据配置的检索器类型创建知识库检索器
+     *
+     * @param knowledgeIndex
+     * @return org.springframework.ai.rag.retrieval.search.DocumentRetriever
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public DocumentRetriever createDocumentRetriever(String knowledgeIndex) {
+        RagRetrieverType retrieverType = RagRetrieverType.getEnumByValue(retriever);
+        if (retrieverType == null) {
+            throw new IllegalArgumentException("未知的知识库检索器类型：" + retriever);
+        }
+        if (retrieverType == RagRetrieverType.LOCAL) {
+            return localRagConfig.createDocumentRetriever(localKnowledgeBaseProvider.getObject(), knowledgeIndex);
+        }
         // 创建 DashScope API 客户端实例（使用配置的 API Key）
         DashScopeApi dashScopeApi = new DashScopeApi(dashScopeApiKey);
 
         // 构建文档检索器，绑定指定的知识库索引
-        DocumentRetriever documentRetriever = new DashScopeDocumentRetriever(dashScopeApi,
+        return new DashScopeDocumentRetriever(dashScopeApi,
                 DashScopeDocumentRetrieverOptions.builder()
                         // 设置知识库索引名称
                         .withIndexName(knowledgeIndex)
                         .build());
+    }
 
-        // 创建 RAG Advisor ，将文档检索功能集成到 AI 对话流程
-        return RetrievalAugmentationAdvisor.builder()
-                // 注入文档检索器
-                .documentRetriever(documentRetriever)
-                .build();
+    /**
+     * 知识库重新导入后刷新：本地知识库重新构建（构建完成后自动清除缓存），云端知识库只清除检索缓存
+     *
+     * @param knowledgeIndex
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/16
+     **/
+    public void reload(String knowledgeIndex) {
+        if (RagRetrieverType.getEnumByValue(retriever) == RagRetrieverType.LOCAL) {
+            localKnowledgeBaseProvider.getObject().reload(knowledgeIndex);
+        } else {
+            retrievalCache().invalidate(knowledgeIndex);
+        }
     }
 
     /**
@@ -0,0 +1,241 @@
+package com.rich.richsynapsehub.advisor.rag;
+
+import com.rich.richsynapsehub.enumeration.LocalRetrievalMode;
+import com.rich.richsynapsehub.enumeration.VectorEncoding;
+import com.rich.richsynapsehub.utils.ai.rag.HashingEmbeddingModel;
+import com.rich.richsynapsehub.utils.ai.rag.LocalDocumentRetriever;
+import com.rich.richsynapsehub.utils.ai.rag.LocalKnowledgeBase;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+import static com.rich.richsynapsehub.constant.FilePathConstant.RAG_DOCS_DIR;
+import static com.rich.richsynapsehub.constant.FilePathConstant.RAG_INDEX_DIR;
+
+/**
+ * 本地知识库配置（rich.rag.retriever=local 时由 {@link CloudRagAdvisorConfig} 使用）
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+@Configuration
+public class LocalRagConfig {
+
+    /**
+     * 文档根目录，留空使用 RagDocs
+     */
+    @Value("${rich.rag.local.docs-dir:}")
+    private String docsDir;
+
+    /**
+     * 是否把索引持久化为内存映射文件，重启后直接加载
+     */
+    @Value("${rich.rag.local.persist:true}")
+    private boolean persist;
+
+    /**
+     * 索引文件目录，留空使用 sysFiles/ragIndex
+     */
+    @Value("${rich.rag.local.index-dir:}")
+    private String indexDir;
+
+    /**
+     * 索引文件中检索用向量的编码：float32 / int8（标量量化，候选集用 float32 重排）
+     */
+    @Value("${rich.rag.local.vector-encoding:int8}")
+    private String vectorEncoding;
+
+    /**
+     * 向量模型：hashing（本地特征哈希，离线可用）/ dashscope（容器中唯一的 EmbeddingModel）
+     */
+    @Value("${rich.rag.local.embedding-model:hashing}")
+    private String embeddingModel;
+
+    /**
+     * hashing 向量模型的维度
+     */
+    @Value("${rich.rag.local.hashing-dimensions:512}")
+    private int hashingDimensions;
+
+    /**
+     * 向量模型标识，写入索引文件，变化后重新构建索引；留空时按向量模型名称与参数生成
+     */
+    @Value("${rich.rag.local.model-id:}")
+    private String modelId;
+
+    /**
+     * dashscope 向量模型名称（与 DashScope starter 的配置一致），用于生成向量模型标识
+     */
+    @Value("${spring.ai.dashscope.embedding.options.model:}")
+    private String dashscopeEmbeddingModel;
+
+    /**
+     * 每次检索返回的片段数
+     */
+    @Value("${rich.rag.local.top-k:4}")
+    private int topK;
+
+    /**
+     * 相似度下限
+     */
+    @Value("${rich.rag.local.similarity-threshold:0.2}")
+    private double similarityThreshold;
+
+    /**
+     * 检索方式：vector（向量）/ bm25（关键词）/ hybrid（两者倒数排名融合）
+     */
+    @Value("${rich.rag.local.mode:hybrid}")
+    private String mode;
+
+    /**
+     * 混合检索的 RRF 常数
+     */
+    @Value("${rich.rag.local.rrf-k:60}")
+    private int rrfK;
+
+    /**
+     * 片段最大字符数
+     */
+    @Value("${rich.rag.local.chunk-chars:500}")
+    private int chunkChars;
+
+    /**
+     * HNSW 每层邻居数
+     */
+    @Value("${rich.rag.local.hnsw.m:16}")
+    private int hnswM;
+
+    /**
+     * HNSW 构建时的候选集大小
+     */
+    @Value("${rich.rag.local.hnsw.ef-construction:100}")
+    private int hnswEfConstruction;
+
+    /**
+     * HNSW 查询时的候选集大小
+     */
+    @Value("${rich.rag.local.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    /**
+     * 导入时向量化请求的最大并发数
+     */
+    @Value("${rich.rag.local.embed-parallelism:4}")
+    private int embedParallelism;
+
+    /**
+     * 是否在启动后于后台加载全部知识库（否则在首次检索时加载）
+     */
+    @Value("${rich.rag.local.preload:true}")
+    private boolean preload;
+
+    /**
+     * 是否监听文档目录，变化后自动增量导入
+     */
+    @Value("${rich.rag.local.watch:false}")
+    private boolean watch;
+
+    /**
+     * 目录监听的合并间隔（毫秒），该时间内的连续变化只触发一次导入
+     */
+    @Value("${rich.rag.local.watch-debounce-millis:2000}")
+    private long watchDebounceMillis;
+
+    /**
+     * 本地知识库，只在 rich.rag.retriever=local 时创建（启动后在后台构建，未开启预加载时在首次检索时构建，之后增量导入）
+     *
+     * @param embeddingModelProvider
+     * @return com.rich.richsynapsehub.utils.ai.rag.LocalKnowledgeBase
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    @Bean
+    @ConditionalOnProperty(name = "rich.rag.retriever", havingValue = "local")
+    public LocalKnowledgeBase localKnowledgeBase(ObjectProvider<EmbeddingModel> embeddingModelProvider) throws IOException {
+        EmbeddingModel model = resolveEmbeddingModel(embeddingModel, hashingDimensions, embeddingModelProvider);
+        String dir = docsDir == null || docsDir.isBlank() ? RAG_DOCS_DIR : docsDir;
+        String index = !persist ? null : indexDir == null || indexDir.isBlank() ? RAG_INDEX_DIR : indexDir;
+        VectorEncoding encoding = VectorEncoding.getEnumByValue(vectorEncoding);
+        if (encoding == null) {
+            throw new IllegalArgumentException("未知的向量编码：" + vectorEncoding);
+        }
+        LocalKnowledgeBase localKnowledgeBase = new LocalKnowledgeBase(dir, index, encoding, model, resolveModelId(),
+                chunkChars, hnswM, hnswEfConstruction, hnswEfSearch, embedParallelism);
+        if (watch) {
+            localKnowledgeBase.startWatching(watchDebounceMillis);
+        }
+        if (preload) {
+            // 不阻塞应用启动，构建期间到达的检索请求等待对应知识库构建完成
+            Thread preloader = new Thread(localKnowledgeBase::preload, "rag-preload");
+            preloader.setDaemon(true);
+            preloader.start();
+        }
+        return localKnowledgeBase;
+    }
+
+    /**
+     * 向量模型标识：优先使用配置值，否则由向量模型名称与参数组成（切换模型或参数后已持久化的索引失效）
+     *
+     * @return java.lang.String
+     * @author DuRuiChi
+     * @create 2025/8/28
+     **/
+    private String resolveModelId() {
+        if (modelId != null && !modelId.isBlank()) {
+            return modelId;
+        }
+        return switch (embeddingModel) {
+            case "hashing" -> "hashing:" + hashingDimensions;
+            case "dashscope" -> "dashscope:" + dashscopeEmbeddingModel;
+            default -> embeddingModel;
+        };
+    }
+
+    /**
+     * 按名称选择向量模型：hashing（本地特征哈希）/ dashscope（容器中唯一的 EmbeddingModel）
+     *
+     * @param name
+     * @param hashingDimensions
+     * @param embeddingModelProvider
+     * @return org.springframework.ai.embedding.EmbeddingModel
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    public static EmbeddingModel resolveEmbeddingModel(String name, int hashingDimensions,
+                                                       ObjectProvider<EmbeddingModel> embeddingModelProvider) {
+        return switch (name) {
+            case "hashing" -> new HashingEmbeddingModel(hashingDimensions);
+            case "dashscope" -> {
+                EmbeddingModel unique = embeddingModelProvider.getIfUnique();
+                if (unique == null) {
+                    throw new IllegalStateException("未找到唯一的 EmbeddingModel，无法使用 dashscope 向量模型");
+                }
+                yield unique;
+            }
+            default -> throw new IllegalArgumentException("未知的向量模型：" + name);
+        };
+    }
+
+    /**
+     * 创建本地知识库检索器
+     *
+     * @param localKnowledgeBase
+     * @param knowledgeIndex
+     * @return org.springframework.ai.rag.retrieval.search.DocumentRetriever
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public DocumentRetriever createDocumentRetriever(LocalKnowledgeBase localKnowledgeBase, String knowledgeIndex) {
+        LocalRetrievalMode retrievalMode = LocalRetrievalMode.getEnumByValue(mode);
+        if (retrievalMode == null) {
+            throw new IllegalArgumentException("未知的本地检索方式：" + mode);
+        }
+        return new LocalDocumentRetriever(localKnowledgeBase, knowledgeIndex, topK, similarityThreshold, retrievalMode, rrfK);
+    }
+}
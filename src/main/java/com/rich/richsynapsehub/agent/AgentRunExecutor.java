@@ -0,0 +1,202 @@
+package com.rich.richsynapsehub.agent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 智能体执行器：多步 agent 循环（阻塞的模型调用与工具 I/O）专用，不占用 JVM 公共的 ForkJoinPool
+ * <p>
+ * 默认每个任务一个虚拟线程，关闭虚拟线程时退回按需创建的平台线程（守护线程），线程名均为 agent-run-N。
+ * 同时运行的任务数由信号量限制，超出时在有界队列中等待（不占用线程），任务结束归还许可后按提交顺序启动；
+ * 队列已满时抛出 RejectedExecutionException。关闭时不再接收新任务，在 shutdownTimeoutMillis 内等待运行中与排队中的任务结束，
+ * 超时后中断运行中的任务并丢弃排队任务，被丢弃的任务通过提交时登记的回调得到通知（如向客户端返回错误）。
+ * 指标：agent.executor.active / agent.executor.queued（当前值）、agent.executor.queue.wait（排队耗时）、agent.executor.rejected（拒绝数）。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/28
+ **/
+@Slf4j
+public class AgentRunExecutor implements Executor, DisposableBean {
+
+    private final ExecutorService threads;
+
+    private final int maxConcurrentRuns;
+
+    private final Semaphore permits;
+
+    private final BlockingQueue<PendingRun> pending;
+
+    private final long shutdownTimeoutMillis;
+
+    private volatile boolean accepting = true;
+
+    private final Timer queueWaitTimer;
+
+    private final Counter rejectedCounter;
+
+    /**
+     * 排队中的任务
+     *
+     * @param task       任务
+     * @param onDropped  关闭时未启动即被丢弃的回调
+     * @param enqueuedAt 入队时间（纳秒）
+     */
+    private record PendingRun(Runnable task, Consumer<RejectedExecutionException> onDropped, long enqueuedAt) {
+    }
+
+    /**
+     * @param virtualThreads        是否使用虚拟线程，否则使用平台线程
+     * @param maxConcurrentRuns     同时运行的任务数上限
+     * @param maxQueuedRuns         排队任务数上限
+     * @param shutdownTimeoutMillis 关闭时等待任务结束的时限（毫秒）
+     */
+    public AgentRunExecutor(boolean virtualThreads, int maxConcurrentRuns, int maxQueuedRuns, long shutdownTimeoutMillis,
+                            MeterRegistry meterRegistry) {
+        this.threads = Executors.newThreadPerTaskExecutor(virtualThreads
+                ? Thread.ofVirtual().name("agent-run-", 0).factory()
+                : Thread.ofPlatform().name("agent-run-", 0).daemon(true).factory());
+        this.maxConcurrentRuns = Math.max(1, maxConcurrentRuns);
+        this.permits = new Semaphore(this.maxConcurrentRuns);
+        this.pending = new LinkedBlockingQueue<>(Math.max(1, maxQueuedRuns));
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        Gauge.builder("agent.executor.active", this, AgentRunExecutor::activeCount)
+                .description("运行中的智能体任务数").register(meterRegistry);
+        Gauge.builder("agent.executor.queued", this, AgentRunExecutor::queuedCount)
+                .description("排队中的智能体任务数").register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("agent.executor.queue.wait").description("智能体任务的排队耗时").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("agent.executor.rejected").description("排队已满或关闭时拒绝的智能体任务数")
+                .register(meterRegistry);
+        log.info("智能体执行器已创建：{}线程，并发上限 {}，排队上限 {}", virtualThreads ? "虚拟" : "平台", this.maxConcurrentRuns, maxQueuedRuns);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(task, e -> {
+        });
+    }
+
+    /**
+     * 提交任务，并登记排队期间执行器关闭、任务未启动即被丢弃时的回调
+     *
+     * @param task      任务
+     * @param onDropped 丢弃回调（在关闭线程上执行）
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/28
+     **/
+    public void execute(Runnable task, Consumer<RejectedExecutionException> onDropped) {
+        if (!accepting) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("智能体执行器已关闭");
+        }
+        if (permits.tryAcquire()) {
+            launch(task, System.nanoTime());
+            return;
+        }
+        if (!pending.offer(new PendingRun(task, onDropped, System.nanoTime()))) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("智能体任务排队已满，请稍后重试");
+        }
+        // 入队期间可能已有任务结束归还许可
+        drain();
+    }
+
+    /**
+     * 运行中的任务数
+     */
+    public int activeCount() {
+        return maxConcurrentRuns - permits.availablePermits();
+    }
+
+    /**
+     * 排队中的任务数
+     */
+    public int queuedCount() {
+        return pending.size();
+    }
+
+    private void launch(Runnable task, long enqueuedAt) {
+        queueWaitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+        try {
+            threads.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                    drain();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 有空闲许可时按提交顺序启动排队任务
+     */
+    private void drain() {
+        while (!pending.isEmpty() && permits.tryAcquire()) {
+            PendingRun next = pending.poll();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            try {
+                launch(next.task(), next.enqueuedAt());
+            } catch (RejectedExecutionException e) {
+                // 已强制关闭，排队任务不再执行
+                log.warn("智能体执行器已关闭，丢弃排队任务");
+                drop(next);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        accepting = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        // 等待排队任务全部启动、运行中的任务全部结束
+        while ((activeCount() > 0 || !pending.isEmpty()) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        int interrupted = activeCount();
+        List<PendingRun> dropped = new ArrayList<>();
+        pending.drainTo(dropped);
+        threads.shutdownNow();
+        threads.awaitTermination(5, TimeUnit.SECONDS);
+        for (PendingRun run : dropped) {
+            drop(run);
+        }
+        log.info("智能体执行器已关闭，中断运行中任务 {} 个，丢弃排队任务 {} 个", interrupted, dropped.size());
+    }
+
+    /**
+     * 通知排队任务已被丢弃
+     */
+    private void drop(PendingRun run) {
+        rejectedCounter.increment();
+        try {
+            run.onDropped().accept(new RejectedExecutionException("智能体执行器已关闭，排队任务未执行"));
+        } catch (RuntimeException e) {
+            log.warn("通知被丢弃的智能体任务失败", e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.rich.richsynapsehub.agent;
 import com.itextpdf.styledxmlparser.jsoup.internal.StringUtil;
 import com.rich.richsynapsehub.constant.AgentParam;
 import com.rich.richsynapsehub.enumeration.AgentExecutionState;
+import com.rich.richsynapsehub.utils.ai.admission.ChatCallerContext;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -14,7 +15,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * agent 基础抽象类，包含基本属性通用方法
@@ -48,6 +53,9 @@ public abstract class BaseAgent {
     // 维护 Agent 会话列表
     private List<Message> messageList = new ArrayList<>();
 
+    // 异步执行 agent 循环的执行器（见 AgentRunExecutor），未设置时使用公共 ForkJoinPool
+    private Executor executor;
+
     /**
      * 执行 agent 流程，循环执行 step 方法，直到达到最大步数或状态变为 FINISHED (同步输出)
      *
@@ -123,7 +131,8 @@ public abstract class BaseAgent {
             log.info("SSE connection completed");
         });
 
-        CompletableFuture.runAsync(() -> {
+        // 沿用请求线程上的模型调用方标识（准入控制按调用方排队）
+        Runnable task = ChatCallerContext.wrap(() -> {
             try {
                 // 参数校验（保持不变）
                 if (userPrompt == null || userPrompt.isEmpty()) {
@@ -180,6 +189,28 @@ public abstract class BaseAgent {
                 log.info("Agent 执行结束");
             }
         });
+        // 提交被拒绝，或排队期间执行器关闭被丢弃时，以错误结束 SSE 连接
+        Consumer<RejectedExecutionException> onRejected = e -> {
+            this.state = AgentExecutionState.ERROR;
+            log.warn("Agent 任务被拒绝：{}", e.getMessage());
+            if (isActive.get()) {
+                try {
+                    emitter.send("执行错误: " + e.getMessage());
+                    emitter.completeWithError(e);
+                } catch (IOException | IllegalStateException ex) {
+                    log.warn("无法发送错误：连接已关闭");
+                }
+            }
+        };
+        try {
+            if (executor instanceof AgentRunExecutor agentRunExecutor) {
+                agentRunExecutor.execute(task, onRejected);
+            } else {
+                CompletableFuture.runAsync(task, executor != null ? executor : ForkJoinPool.commonPool());
+            }
+        } catch (RejectedExecutionException e) {
+            onRejected.accept(e);
+        }
 
         return emitter;
     }
@@ -0,0 +1,54 @@
+package com.rich.richsynapsehub.config;
+
+import com.rich.richsynapsehub.agent.AgentRunExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 智能体执行器配置
+ *
+ * @author DuRuiChi
+ * @create 2025/8/28
+ **/
+@Configuration
+public class AgentExecutorConfig {
+
+    /**
+     * 是否使用虚拟线程执行 agent 循环，否则使用平台线程
+     */
+    @Value("${rich.agent.executor.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    /**
+     * 同时运行的 agent 任务数上限
+     */
+    @Value("${rich.agent.executor.max-concurrent-runs:16}")
+    private int maxConcurrentRuns;
+
+    /**
+     * 排队的 agent 任务数上限
+     */
+    @Value("${rich.agent.executor.max-queued-runs:64}")
+    private int maxQueuedRuns;
+
+    /**
+     * 关闭时等待 agent 任务结束的时限（秒）
+     */
+    @Value("${rich.agent.executor.shutdown-timeout-seconds:30}")
+    private long shutdownTimeoutSeconds;
+
+    /**
+     * 智能体执行器（容器关闭时优雅停止）
+     *
+     * @param meterRegistry
+     * @return com.rich.richsynapsehub.agent.AgentRunExecutor
+     * @author DuRuiChi
+     * @create 2025/8/28
+     **/
+    @Bean
+    public AgentRunExecutor agentRunExecutor(MeterRegistry meterRegistry) {
+        return new AgentRunExecutor(virtualThreads, maxConcurrentRuns, maxQueuedRuns, shutdownTimeoutSeconds * 1000, meterRegistry);
+    }
+}
@@ -0,0 +1,93 @@
+package com.rich.richsynapsehub.config;
+
+import com.rich.richsynapsehub.utils.ai.admission.AdmissionControlledChatModel;
+import com.rich.richsynapsehub.utils.ai.admission.ChatAdmissionController;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 模型调用准入控制配置：用经过准入控制的 ChatModel 包装百炼 ChatModel，并设为默认注入
+ *
+ * @author DuRuiChi
+ * @create 2025/8/26
+ **/
+@Configuration
+public class ChatAdmissionConfig {
+
+    /**
+     * 是否启用准入控制
+     */
+    @Value("${rich.chat.admission.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 同时进行的模型调用上限
+     */
+    @Value("${rich.chat.admission.max-concurrency:8}")
+    private int maxConcurrency;
+
+    /**
+     * 排队请求总数上限
+     */
+    @Value("${rich.chat.admission.max-queue-size:64}")
+    private int maxQueueSize;
+
+    /**
+     * 单个用户的排队请求上限
+     */
+    @Value("${rich.chat.admission.max-queued-per-user:2}")
+    private int maxQueuedPerUser;
+
+    /**
+     * 排队时限（秒）
+     */
+    @Value("${rich.chat.admission.max-wait-seconds:30}")
+    private long maxWaitSeconds;
+
+    /**
+     * 会员与普通用户同时排队时，每放行 1 个普通请求前最多连续放行的会员请求数
+     */
+    @Value("${rich.chat.admission.vip-weight:3}")
+    private int vipWeight;
+
+    /**
+     * 普通用户请求排队超过该时长后优先放行（秒）
+     */
+    @Value("${rich.chat.admission.aging-seconds:10}")
+    private long agingSeconds;
+
+    /**
+     * 模型调用准入控制器
+     *
+     * @param meterRegistry
+     * @return com.rich.richsynapsehub.utils.ai.admission.ChatAdmissionController
+     * @author DuRuiChi
+     * @create 2025/8/26
+     **/
+    @Bean
+    public ChatAdmissionController chatAdmissionController(MeterRegistry meterRegistry) {
+        return new ChatAdmissionController(maxConcurrency, maxQueueSize, maxQueuedPerUser, maxWaitSeconds * 1000,
+                vipWeight, agingSeconds * 1000, meterRegistry);
+    }
+
+    /**
+     * 默认注入的 ChatModel，未启用准入控制时直接返回百炼 ChatModel
+     *
+     * @param dashscopeChatModel
+     * @param chatAdmissionController
+     * @return org.springframework.ai.chat.model.ChatModel
+     * @author DuRuiChi
+     * @create 2025/8/26
+     **/
+    @Bean
+    @Primary
+    public ChatModel admissionControlledChatModel(@Qualifier("dashscopeChatModel") ChatModel dashscopeChatModel,
+                                                  ChatAdmissionController chatAdmissionController) {
+        return enabled ? new AdmissionControlledChatModel(dashscopeChatModel, chatAdmissionController) : dashscopeChatModel;
+    }
+}
@@ -0,0 +1,269 @@
+package com.rich.richsynapsehub.config;
+
+import com.rich.richsynapsehub.enumeration.ChatMemoryStorageMode;
+import com.rich.richsynapsehub.enumeration.ChatMemoryStoreType;
+import com.rich.richsynapsehub.enumeration.FileSyncPolicy;
+import com.rich.richsynapsehub.service.ChatConversationService;
+import com.rich.richsynapsehub.utils.ai.chatMeory.FileChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.IndexedChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.NearCacheChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.OffHeapChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.OffloadingReactiveChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.ReactiveChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.ReactiveRedisChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.RedisChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.WriteBehindChatMemory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static com.rich.richsynapsehub.constant.FilePathConstant.CHAT_FILE_SAVE_DIR;
+
+/**
+ * 对话记忆配置，组装对话使用的 ChatMemory（远端存储 + 装饰层）
+ *
+ * @author DuRuiChi
+ * @create 2025/8/7
+ **/
+@Configuration
+public class ChatMemoryConfig {
+
+    /**
+     * 存储后端：redis / file / off-heap
+     */
+    @Value("${rich.chat-memory.store:redis}")
+    private String store;
+
+    /**
+     * Redis 存储模式：blob（整体存储）/ list（列表存储），与 RedisConfig 保持一致
+     */
+    @Value("${rich.chat-memory.redis.storage-mode:blob}")
+    private String redisStorageMode;
+
+    /**
+     * 列表存储模式下单个会话最多保留的消息条数，与 RedisConfig 保持一致
+     */
+    @Value("${rich.chat-memory.redis.max-messages:200}")
+    private int redisMaxMessages;
+
+    /**
+     * 文件存储目录
+     */
+    @Value("${rich.chat-memory.file.dir:}")
+    private String fileDir;
+
+    /**
+     * 文件存储刷盘策略：none / always / interval
+     */
+    @Value("${rich.chat-memory.file.sync-policy:none}")
+    private String fileSyncPolicy;
+
+    /**
+     * interval 刷盘策略下的刷盘间隔（毫秒）
+     */
+    @Value("${rich.chat-memory.file.sync-interval-millis:1000}")
+    private long fileSyncIntervalMillis;
+
+    /**
+     * 单个段最大字节数
+     */
+    @Value("${rich.chat-memory.file.max-segment-bytes:4194304}")
+    private long fileMaxSegmentBytes;
+
+    /**
+     * 段数超过该值时触发压缩
+     */
+    @Value("${rich.chat-memory.file.compact-segment-threshold:8}")
+    private int fileCompactSegmentThreshold;
+
+    /**
+     * 压缩时保留的最近消息条数，0 表示全部保留
+     */
+    @Value("${rich.chat-memory.file.retain-messages:0}")
+    private int fileRetainMessages;
+
+    /**
+     * 堆外存储槽位数（同时驻留在堆外内存中的会话数）
+     */
+    @Value("${rich.chat-memory.off-heap.slot-count:4096}")
+    private int offHeapSlotCount;
+
+    /**
+     * 堆外存储单个槽位字节数
+     */
+    @Value("${rich.chat-memory.off-heap.slot-bytes:16384}")
+    private int offHeapSlotBytes;
+
+    /**
+     * 是否启用进程内近端缓存
+     */
+    @Value("${rich.chat-memory.near-cache.enabled:true}")
+    private boolean nearCacheEnabled;
+
+    /**
+     * 近端缓存最多缓存的会话数
+     */
+    @Value("${rich.chat-memory.near-cache.max-entries:10000}")
+    private int nearCacheMaxEntries;
+
+    /**
+     * 近端缓存条目存活时间（秒）
+     */
+    @Value("${rich.chat-memory.near-cache.ttl-seconds:300}")
+    private long nearCacheTtlSeconds;
+
+    /**
+     * 近端缓存单个会话最多缓存的消息条数
+     */
+    @Value("${rich.chat-memory.near-cache.max-window:50}")
+    private int nearCacheMaxWindow;
+
+    /**
+     * 是否启用异步写回
+     */
+    @Value("${rich.chat-memory.write-behind.enabled:true}")
+    private boolean writeBehindEnabled;
+
+    /**
+     * 消息在写回缓冲区中的最长停留时间（毫秒）
+     */
+    @Value("${rich.chat-memory.write-behind.max-delay-millis:5000}")
+    private long writeBehindMaxDelayMillis;
+
+    /**
+     * 单个会话积压条数达到该值时立即写回
+     */
+    @Value("${rich.chat-memory.write-behind.max-batch:32}")
+    private int writeBehindMaxBatch;
+
+    /**
+     * 写回线程数
+     */
+    @Value("${rich.chat-memory.write-behind.flush-threads:2}")
+    private int writeBehindFlushThreads;
+
+    /**
+     * 文件存储（file 模式的存储，或 off-heap 模式的溢写目标）
+     *
+     * @return com.rich.richsynapsehub.utils.ai.chatMeory.FileChatMemory
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    private FileChatMemory fileChatMemory() {
+        FileSyncPolicy syncPolicy = FileSyncPolicy.getEnumByValue(fileSyncPolicy);
+        if (syncPolicy == null) {
+            throw new IllegalArgumentException("未知的对话记忆刷盘策略：" + fileSyncPolicy);
+        }
+        String dir = fileDir == null || fileDir.isBlank() ? CHAT_FILE_SAVE_DIR : fileDir;
+        return new FileChatMemory(dir, syncPolicy, fileSyncIntervalMillis, fileMaxSegmentBytes,
+                fileCompactSegmentThreshold, fileRetainMessages);
+    }
+
+    /**
+     * 近端缓存层（未启用时直接返回 Redis 存储），并订阅失效广播
+     *
+     * @param redisChatMemory
+     * @param redisTemplate
+     * @param listenerContainer
+     * @param meterRegistry
+     * @return org.springframework.ai.chat.memory.ChatMemory
+     * @author DuRuiChi
+     * @create 2025/8/7
+     **/
+    private ChatMemory cachedChatMemory(RedisChatMemory redisChatMemory, RedisTemplate<String, byte[]> redisTemplate,
+                                        RedisMessageListenerContainer listenerContainer, MeterRegistry meterRegistry) {
+        if (!nearCacheEnabled) {
+            return redisChatMemory;
+        }
+        NearCacheChatMemory nearCacheChatMemory = new NearCacheChatMemory(redisChatMemory, redisTemplate,
+                nearCacheMaxEntries, nearCacheTtlSeconds * 1000, nearCacheMaxWindow, meterRegistry);
+        listenerContainer.addMessageListener((message, pattern) -> nearCacheChatMemory.onInvalidationMessage(message.getBody()),
+                new ChannelTopic(NearCacheChatMemory.INVALIDATION_CHANNEL));
+        return nearCacheChatMemory;
+    }
+
+    /**
+     * 对话使用的 ChatMemory
+     * redis：异步写回 -> 会话索引 -> 近端缓存 -> Redis
+     * file：异步写回 -> 会话索引 -> 文件
+     * off-heap：会话索引 -> 堆外内存（溢写到文件），写入本身只是内存拷贝，不再叠加异步写回
+     *
+     * @param redisChatMemory
+     * @param redisTemplate
+     * @param chatMemoryListenerContainer
+     * @param meterRegistry
+     * @param chatConversationService
+     * @return org.springframework.ai.chat.memory.ChatMemory
+     * @author DuRuiChi
+     * @create 2025/8/7
+     **/
+    @Bean
+    @Primary
+    public ChatMemory chatMemory(RedisChatMemory redisChatMemory, RedisTemplate<String, byte[]> redisTemplate,
+                                 RedisMessageListenerContainer chatMemoryListenerContainer, MeterRegistry meterRegistry,
+                                 ChatConversationService chatConversationService) {
+        ChatMemoryStoreType storeType = ChatMemoryStoreType.getEnumByValue(store);
+        if (storeType == null) {
+            throw new IllegalArgumentException("未知的对话记忆存储后端：" + store);
+        }
+        ChatMemory chatMemory = switch (storeType) {
+            case FILE -> fileChatMemory();
+            case OFF_HEAP -> new OffHeapChatMemory(fileChatMemory(), offHeapSlotCount, offHeapSlotBytes, meterRegistry);
+            default -> cachedChatMemory(redisChatMemory, redisTemplate, chatMemoryListenerContainer, meterRegistry);
+        };
+        chatMemory = new IndexedChatMemory(chatMemory, chatConversationService);
+        if (!writeBehindEnabled || storeType == ChatMemoryStoreType.OFF_HEAP) {
+            return chatMemory;
+        }
+        return new WriteBehindChatMemory(chatMemory, writeBehindMaxDelayMillis, writeBehindMaxBatch, writeBehindFlushThreads);
+    }
+
+    /**
+     * 非阻塞流式对话链路使用的对话记忆
+     * redis + list：响应式 Redis 客户端直接读写列表，与 chatMemory 共享同一份数据，并通过失效广播刷新近端缓存
+     * （读写前先写回 chatMemory 异步写回层中该会话的待写消息）
+     * 其他存储：把 chatMemory 的读写切换到 boundedElastic 执行
+     *
+     * @param chatMemory
+     * @param redisChatMemory
+     * @param reactiveRedisTemplate
+     * @param chatConversationService
+     * @return com.rich.richsynapsehub.utils.ai.chatMeory.ReactiveChatMemory
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    @Bean
+    public ReactiveChatMemory reactiveChatMemory(ChatMemory chatMemory, RedisChatMemory redisChatMemory,
+                                                 ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate,
+                                                 ChatConversationService chatConversationService) {
+        if (ChatMemoryStoreType.getEnumByValue(store) == ChatMemoryStoreType.REDIS
+                && ChatMemoryStorageMode.getEnumByValue(redisStorageMode) == ChatMemoryStorageMode.LIST) {
+            return new ReactiveRedisChatMemory(reactiveRedisTemplate, redisChatMemory, redisMaxMessages, chatConversationService,
+                    chatMemory instanceof WriteBehindChatMemory writeBehindChatMemory ? writeBehindChatMemory : null);
+        }
+        return new OffloadingReactiveChatMemory(chatMemory);
+    }
+
+    /**
+     * 对话记忆使用的 Redis Pub/Sub 监听容器（近端缓存失效广播）
+     *
+     * @param connectionFactory
+     * @return org.springframework.data.redis.listener.RedisMessageListenerContainer
+     * @author DuRuiChi
+     * @create 2025/8/7
+     **/
+    @Bean
+    public RedisMessageListenerContainer chatMemoryListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
@@ -0,0 +1,36 @@
+package com.rich.richsynapsehub.config;
+
+import com.rich.richsynapsehub.utils.ai.doChat.ChatRequestCoalescer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 相同对话请求合并配置
+ *
+ * @author DuRuiChi
+ * @create 2025/8/25
+ **/
+@Configuration
+public class ChatRequestCoalescerConfig {
+
+    /**
+     * 是否合并并发到达的相同请求
+     */
+    @Value("${rich.chat.coalescing.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 相同对话请求合并器
+     *
+     * @param meterRegistry
+     * @return com.rich.richsynapsehub.utils.ai.doChat.ChatRequestCoalescer
+     * @author DuRuiChi
+     * @create 2025/8/25
+     **/
+    @Bean
+    public ChatRequestCoalescer chatRequestCoalescer(MeterRegistry meterRegistry) {
+        return new ChatRequestCoalescer(enabled, meterRegistry);
+    }
+}
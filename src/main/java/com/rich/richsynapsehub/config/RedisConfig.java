@@ -1,18 +1,56 @@
 package com.rich.richsynapsehub.config;
 
+import com.rich.richsynapsehub.enumeration.ChatMemoryStorageMode;
 import com.rich.richsynapsehub.utils.ai.chatMeory.RedisChatMemory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+/**
+ * Redis 配置，包括字节数组 RedisTemplate（阻塞 / 响应式）与基于 Redis 的对话记忆
+ *
+ * @author DuRuiChi
+ * @create 2025/7/25
+ **/
 @Configuration
 public class RedisConfig {
+
+    /**
+     * 对话记忆存储模式：blob（整体存储）/ list（列表存储）
+     */
+    @Value("${rich.chat-memory.redis.storage-mode:blob}")
+    private String storageMode;
+
+    /**
+     * 列表存储模式下单个会话最多保留的消息条数
+     */
+    @Value("${rich.chat-memory.redis.max-messages:200}")
+    private int maxMessages;
+
+    /**
+     * 启动时是否将旧的整体存储会话批量迁移为列表存储
+     */
+    @Value("${rich.chat-memory.redis.migrate-on-startup:false}")
+    private boolean migrateOnStartup;
+
     @Bean
     public RedisChatMemory redisChatMemory(RedisTemplate<String, byte[]> redisTemplate) {
-        return new RedisChatMemory(redisTemplate);
+        ChatMemoryStorageMode mode = ChatMemoryStorageMode.getEnumByValue(storageMode);
+        if (mode == null) {
+            throw new IllegalArgumentException("未知的对话记忆存储模式：" + storageMode);
+        }
+        RedisChatMemory redisChatMemory = new RedisChatMemory(redisTemplate, mode, maxMessages);
+        if (migrateOnStartup) {
+            redisChatMemory.migrateAllLegacy();
+        }
+        return redisChatMemory;
     }
 
     @Bean
@@ -34,4 +72,21 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * 字节数组 ReactiveRedisTemplate，与 redisTemplate 共用 Lettuce 连接，供非阻塞的流式对话链路读写对话记忆
+     *
+     * @param connectionFactory
+     * @return org.springframework.data.redis.core.ReactiveRedisTemplate<java.lang.String, byte[]>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        RedisSerializationContext<String, byte[]> serializationContext = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(new StringRedisSerializer())
+                .value(RedisSerializer.byteArray())
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
+}
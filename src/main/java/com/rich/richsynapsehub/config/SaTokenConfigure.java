@@ -20,6 +20,6 @@ public class SaTokenConfigure implements WebMvcConfigurer {
         // SaInterceptor 拦截器添加到 Spring MVC 拦截器链中，设定拦截所有请求
         registry.addInterceptor(new SaInterceptor())
                 .addPathPatterns("/**")
-                .excludePathPatterns("/doChat/stream", "/doChat/manus/stream");
+                .excludePathPatterns("/doChat/stream", "/doChat/reactive/stream", "/doChat/manus/stream");
     }
 }
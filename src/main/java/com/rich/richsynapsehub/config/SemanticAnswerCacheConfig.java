@@ -0,0 +1,74 @@
+package com.rich.richsynapsehub.config;
+
+import com.rich.richsynapsehub.advisor.rag.LocalRagConfig;
+import com.rich.richsynapsehub.utils.ai.doChat.SemanticAnswerCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 语义答案缓存配置
+ *
+ * @author DuRuiChi
+ * @create 2025/8/17
+ **/
+@Configuration
+public class SemanticAnswerCacheConfig {
+
+    /**
+     * 是否启用语义答案缓存
+     */
+    @Value("${rich.chat.semantic-cache.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 向量模型：hashing / dashscope
+     */
+    @Value("${rich.chat.semantic-cache.embedding-model:dashscope}")
+    private String embeddingModel;
+
+    /**
+     * hashing 向量模型的维度
+     */
+    @Value("${rich.chat.semantic-cache.hashing-dimensions:512}")
+    private int hashingDimensions;
+
+    /**
+     * 复用回答的相似度下限
+     */
+    @Value("${rich.chat.semantic-cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    /**
+     * 每个作用域最多缓存的问答数
+     */
+    @Value("${rich.chat.semantic-cache.max-entries-per-scope:500}")
+    private int maxEntriesPerScope;
+
+    /**
+     * 缓存存活时间（秒）
+     */
+    @Value("${rich.chat.semantic-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    /**
+     * 语义答案缓存（未启用时不解析向量模型）
+     *
+     * @param embeddingModelProvider
+     * @param meterRegistry
+     * @return com.rich.richsynapsehub.utils.ai.doChat.SemanticAnswerCache
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    @Bean
+    public SemanticAnswerCache semanticAnswerCache(ObjectProvider<EmbeddingModel> embeddingModelProvider,
+                                                   MeterRegistry meterRegistry) {
+        EmbeddingModel model = enabled
+                ? LocalRagConfig.resolveEmbeddingModel(embeddingModel, hashingDimensions, embeddingModelProvider)
+                : null;
+        return new SemanticAnswerCache(enabled, model, similarityThreshold, maxEntriesPerScope, ttlSeconds * 1000, meterRegistry);
+    }
+}
@@ -14,6 +14,16 @@ public interface FilePathConstant {
      */
     String CHAT_FILE_SAVE_DIR = System.getProperty("user.dir") + "/sysFiles/chatMemory";
 
+    /**
+     * RAG 知识库文档根目录（每个子目录对应一个知识库）
+     */
+    String RAG_DOCS_DIR = System.getProperty("user.dir") + "/RagDocs";
+
+    /**
+     * RAG 本地向量索引文件保存路径
+     */
+    String RAG_INDEX_DIR = System.getProperty("user.dir") + "/sysFiles/ragIndex";
+
     /**
      * AI 调用工具生成文件保存路径
      */
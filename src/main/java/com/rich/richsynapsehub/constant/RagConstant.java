@@ -0,0 +1,62 @@
+package com.rich.richsynapsehub.constant;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RAG 知识库常量
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+public interface RagConstant {
+
+    /**
+     * 知识库索引名称 -> RagDocs 下的文档目录，未登记的索引名称直接作为目录名
+     */
+    Map<String, String> KNOWLEDGE_INDEX_DIRS = Map.of(
+            "面试专家知识库", "interview",
+            "购物大师知识库", "shop");
+
+    /**
+     * 对话接口使用的知识库类型 -> 知识库索引名称，未登记的类型直接作为索引名称
+     */
+    Map<String, String> KNOWLEDGE_INDEX_NAMES = Map.of(
+            "interview", "面试专家知识库",
+            "shop", "购物大师知识库");
+
+    /**
+     * 对话接口中多个知识库类型的分隔符，如 interview,shop
+     */
+    String KNOWLEDGE_INDEX_SEPARATOR = ",";
+
+    /**
+     * 检索结果元数据：来源文件
+     */
+    String METADATA_SOURCE = "source";
+
+    /**
+     * 检索结果元数据：所属知识库
+     */
+    String METADATA_KNOWLEDGE_INDEX = "knowledgeIndex";
+
+    /**
+     * 检索结果元数据：score 为倒数排名融合得分（只反映排名，不同片段间不能按比例比较）
+     */
+    String METADATA_FUSED_SCORE = "fusedScore";
+
+    /**
+     * 无需检索知识库的寒暄、致谢、确认与续写指令（按 RetrievalCache.normalizeQuery 归一化后整句匹配）
+     */
+    Set<String> RAG_SKIP_PHRASES = Set.of(
+            "你好", "您好", "hi", "hello", "hey", "在吗", "早上好", "晚上好", "谢谢", "多谢", "感谢", "thanks", "thank you",
+            "好的", "好", "ok", "okay", "嗯", "嗯嗯", "收到", "明白了", "知道了", "懂了", "再见", "拜拜", "bye",
+            "继续", "接着说", "继续说", "go on", "continue", "然后呢", "还有吗", "再来一个", "展开说说");
+
+    /**
+     * 提问特征词，出现时提高知识库检索的倾向
+     */
+    List<String> RAG_QUESTION_CUES = List.of(
+            "什么", "怎么", "如何", "为什么", "为何", "哪些", "哪个", "区别", "原理", "介绍", "解释", "推荐", "对比", "?", "？");
+}
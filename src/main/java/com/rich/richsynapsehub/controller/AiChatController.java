@@ -1,9 +1,20 @@
 package com.rich.richsynapsehub.controller;
 
 import cn.hutool.core.util.RandomUtil;
+import com.rich.richsynapsehub.agent.AgentRunExecutor;
 import com.rich.richsynapsehub.agent.RichSynapseHubManus;
+import com.rich.richsynapsehub.common.ErrorCode;
+import com.rich.richsynapsehub.enumeration.ChatPriorityTier;
+import com.rich.richsynapsehub.exception.BusinessException;
+import com.rich.richsynapsehub.model.entity.User;
+import com.rich.richsynapsehub.service.ChatConversationService;
+import com.rich.richsynapsehub.service.UserService;
+import com.rich.richsynapsehub.utils.NetUtils;
+import com.rich.richsynapsehub.utils.ai.admission.ChatCaller;
+import com.rich.richsynapsehub.utils.ai.admission.ChatCallerContext;
 import com.rich.richsynapsehub.utils.ai.doChat.SpringAiChat;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.tool.ToolCallback;
@@ -13,6 +24,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @RestController
 @RequestMapping("/doChat")
@@ -24,8 +37,71 @@ public class AiChatController {
     @Resource
     private ToolCallback[] aiUseTools;
 
+    /**
+     * 经过准入控制的 ChatModel（见 ChatAdmissionConfig）
+     */
+    @Resource(name = "admissionControlledChatModel")
+    private ChatModel chatModel;
+
+    @Resource
+    private AgentRunExecutor agentRunExecutor;
+
+    @Resource
+    private UserService userService;
+
     @Resource
-    private ChatModel dashscopeChatModel;
+    private ChatConversationService chatConversationService;
+
+    /**
+     * 已登录时将会话绑定到当前用户（用于“我的会话”列表）；会话属于其他用户，或未登录访问已归属用户的会话时拒绝访问
+     *
+     * @param chatId
+     * @param request
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/12
+     **/
+    private void bindConversationOwner(String chatId, HttpServletRequest request) {
+        bindConversationOwner(chatId, userService.getLoginUserPermitNull(request));
+    }
+
+    /**
+     * 会话归属校验（访问 Redis），登录用户已在请求线程上解析
+     *
+     * @param chatId
+     * @param loginUser 当前登录用户，未登录为 null
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    private void bindConversationOwner(String chatId, User loginUser) {
+        boolean permitted = loginUser == null
+                // 流式接口不经过登录拦截，未登录的调用方同样不能访问已归属用户的会话
+                ? chatConversationService.ownerOf(chatId) == null
+                : chatConversationService.bindOwner(chatId, loginUser.getId());
+        if (!permitted) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权访问该会话");
+        }
+    }
+
+    /**
+     * 模型调用方（准入控制按此公平排队）：已登录时为用户 ID 与会员等级，否则为客户端 IP
+     *
+     * @param request
+     * @return com.rich.richsynapsehub.utils.ai.admission.ChatCaller
+     * @author DuRuiChi
+     * @create 2025/8/26
+     **/
+    private ChatCaller resolveCaller(HttpServletRequest request) {
+        return resolveCaller(userService.getLoginUserPermitNull(request), request);
+    }
+
+    private ChatCaller resolveCaller(User loginUser, HttpServletRequest request) {
+        if (loginUser == null) {
+            return new ChatCaller("ip:" + NetUtils.getIpAddress(request), ChatPriorityTier.FREE);
+        }
+        return new ChatCaller("user:" + loginUser.getId(), ChatPriorityTier.of(loginUser));
+    }
 
     /**
      * 普通 AI 对话 （响应式接口）
@@ -38,12 +114,14 @@ public class AiChatController {
      * @create 2025/7/7
      **/
     @GetMapping("/sync")
-    public String doChatBySync(String message, String chatId, String knowledgeIndex) {
+    public String doChatBySync(String message, String chatId, String knowledgeIndex, HttpServletRequest request) {
         if (chatId == null) {
             // 随机生成 chatId
             chatId = RandomUtil.randomString(5);
         }
-        return springAiChat.chat(message, chatId,knowledgeIndex);
+        bindConversationOwner(chatId, request);
+        String finalChatId = chatId;
+        return ChatCallerContext.callAs(resolveCaller(request), () -> springAiChat.chat(message, finalChatId, knowledgeIndex));
     }
 
     /**
@@ -60,7 +138,42 @@ public class AiChatController {
     public Flux<String> doChatByStream(
             @RequestParam() String message,
             @RequestParam()  String knowledgeIndex,
-            @RequestParam(required = false) String chatId) {
+            @RequestParam(required = false) String chatId,
+            HttpServletRequest request) {
+        if (StringUtils.isBlank(message)) {
+            return Flux.error(new IllegalArgumentException("消息内容不能为空"));
+        }
+        if (chatId == null) {
+            // 随机生成 chatId
+            chatId = RandomUtil.randomString(5);
+        }
+        try {
+            bindConversationOwner(chatId, request);
+        } catch (BusinessException e) {
+            return Flux.error(e);
+        }
+        return springAiChat.doChatByStream(message, chatId,knowledgeIndex)
+                .contextWrite(ChatCallerContext.of(resolveCaller(request)));
+    }
+
+    /**
+     * 普通 AI 对话 （非阻塞 Flux 流式接口）
+     * 与 /stream 参数一致；请求线程只解析登录用户（Sa-Token 上下文绑定在请求线程上，读取的是本地会话），
+     * 需要访问 Redis 的会话归属校验在订阅后于弹性线程池执行，对话记忆与知识库检索均不阻塞平台线程
+     *
+     * @param message   消息
+     * @param chatId    会话 ID
+     * @param knowledgeIndex    RAG 知识库类型
+     * @return reactor.core.publisher.Flux<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    @GetMapping(value = "/reactive/stream")
+    public Flux<String> doChatByReactiveStream(
+            @RequestParam() String message,
+            @RequestParam()  String knowledgeIndex,
+            @RequestParam(required = false) String chatId,
+            HttpServletRequest request) {
         if (StringUtils.isBlank(message)) {
             return Flux.error(new IllegalArgumentException("消息内容不能为空"));
         }
@@ -68,7 +181,13 @@ public class AiChatController {
             // 随机生成 chatId
             chatId = RandomUtil.randomString(5);
         }
-        return springAiChat.doChatByStream(message, chatId,knowledgeIndex);
+        User loginUser = userService.getLoginUserPermitNull(request);
+        ChatCaller caller = resolveCaller(loginUser, request);
+        String finalChatId = chatId;
+        return Mono.fromRunnable(() -> bindConversationOwner(finalChatId, loginUser))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenMany(Flux.defer(() -> springAiChat.doChatByReactiveStream(message, finalChatId, knowledgeIndex)))
+                .contextWrite(ChatCallerContext.of(caller));
     }
 
     /**
@@ -80,8 +199,9 @@ public class AiChatController {
      * @create 2025/7/7
      **/
     @GetMapping("/manus/stream")
-    public SseEmitter doChatWithManus(@RequestParam() String message) {
-        RichSynapseHubManus richSynapseHubManus = new RichSynapseHubManus(aiUseTools, dashscopeChatModel);
-        return richSynapseHubManus.runStream(message);
+    public SseEmitter doChatWithManus(@RequestParam() String message, HttpServletRequest request) {
+        RichSynapseHubManus richSynapseHubManus = new RichSynapseHubManus(aiUseTools, chatModel);
+        richSynapseHubManus.setExecutor(agentRunExecutor);
+        return ChatCallerContext.callAs(resolveCaller(request), () -> richSynapseHubManus.runStream(message));
     }
 }
@@ -0,0 +1,63 @@
+package com.rich.richsynapsehub.controller;
+
+import cn.dev33.satoken.annotation.SaCheckRole;
+import cn.dev33.satoken.annotation.SaMode;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.rich.richsynapsehub.common.BaseResponse;
+import com.rich.richsynapsehub.common.ErrorCode;
+import com.rich.richsynapsehub.constant.UserConstant;
+import com.rich.richsynapsehub.exception.BusinessException;
+import com.rich.richsynapsehub.exception.ThrowUtils;
+import com.rich.richsynapsehub.model.dto.chat.ChatConversationQueryRequest;
+import com.rich.richsynapsehub.model.entity.User;
+import com.rich.richsynapsehub.model.vo.ChatConversationVO;
+import com.rich.richsynapsehub.service.ChatConversationService;
+import com.rich.richsynapsehub.service.UserService;
+import com.rich.richsynapsehub.utils.ResultUtils;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 会话接口
+ *
+ * @author DuRuiChi
+ * @create 2025/8/12
+ **/
+@RestController
+@RequestMapping("/chat/conversation")
+public class ChatConversationController {
+
+    @Resource
+    private ChatConversationService chatConversationService;
+
+    @Resource
+    private UserService userService;
+
+    /**
+     * 分页获取当前登录用户的会话列表（按最近活跃时间倒序）
+     *
+     * @param chatConversationQueryRequest
+     * @param request
+     * @return com.rich.richsynapsehub.common.BaseResponse<com.baomidou.mybatisplus.extension.plugins.pagination.Page<com.rich.richsynapsehub.model.vo.ChatConversationVO>>
+     * @author DuRuiChi
+     * @create 2025/8/12
+     **/
+    @PostMapping("/list/page/my/vo")
+    @SaCheckRole(value = {UserConstant.ADMIN_ROLE, UserConstant.DEFAULT_ROLE}, mode = SaMode.OR)
+    public BaseResponse<Page<ChatConversationVO>> listMyConversationVOByPage(@RequestBody ChatConversationQueryRequest chatConversationQueryRequest,
+                                                                             HttpServletRequest request) {
+        if (chatConversationQueryRequest == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        long current = chatConversationQueryRequest.getCurrent();
+        long size = chatConversationQueryRequest.getPageSize();
+        // 限制爬虫
+        ThrowUtils.throwIf(current < 1 || size < 1 || size > 20, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(chatConversationService.listConversationVOByPage(loginUser.getId(), current, size));
+    }
+}
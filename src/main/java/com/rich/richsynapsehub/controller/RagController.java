@@ -0,0 +1,47 @@
+package com.rich.richsynapsehub.controller;
+
+import cn.dev33.satoken.annotation.SaCheckRole;
+import com.rich.richsynapsehub.advisor.rag.CloudRagAdvisorConfig;
+import com.rich.richsynapsehub.common.BaseResponse;
+import com.rich.richsynapsehub.common.ErrorCode;
+import com.rich.richsynapsehub.constant.UserConstant;
+import com.rich.richsynapsehub.exception.ThrowUtils;
+import com.rich.richsynapsehub.model.dto.rag.RagReloadRequest;
+import com.rich.richsynapsehub.utils.ResultUtils;
+import jakarta.annotation.Resource;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 知识库接口
+ *
+ * @author DuRuiChi
+ * @create 2025/8/16
+ **/
+@RestController
+@RequestMapping("/rag")
+public class RagController {
+
+    @Resource
+    private CloudRagAdvisorConfig cloudRagAdvisorConfig;
+
+    /**
+     * 知识库重新导入后刷新检索（仅管理员）
+     *
+     * @param ragReloadRequest
+     * @return com.rich.richsynapsehub.common.BaseResponse<java.lang.Boolean>
+     * @author DuRuiChi
+     * @create 2025/8/16
+     **/
+    @PostMapping("/reload")
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> reload(@RequestBody RagReloadRequest ragReloadRequest) {
+        ThrowUtils.throwIf(ragReloadRequest == null || StringUtils.isBlank(ragReloadRequest.getKnowledgeIndex()),
+                ErrorCode.PARAMS_ERROR);
+        cloudRagAdvisorConfig.reload(ragReloadRequest.getKnowledgeIndex());
+        return ResultUtils.success(true);
+    }
+}
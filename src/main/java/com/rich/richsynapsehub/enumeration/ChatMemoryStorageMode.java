@@ -0,0 +1,59 @@
+package com.rich.richsynapsehub.enumeration;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * Redis 对话记忆存储模式
+ *
+ * @author DuRuiChi
+ * @create 2025/8/4
+ **/
+public enum ChatMemoryStorageMode {
+
+    /**
+     * 整体存储：整个会话序列化为一个 String 值，每次读写都需要完整反序列化/序列化
+     */
+    BLOB("整体存储", "blob"),
+
+    /**
+     * 列表存储：每条消息独立序列化为 Redis List 中的一个元素，追加写、按尾部范围读
+     */
+    LIST("列表存储", "list");
+
+    private final String text;
+
+    private final String value;
+
+    ChatMemoryStorageMode(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return com.rich.richsynapsehub.enumeration.ChatMemoryStorageMode
+     * @author DuRuiChi
+     * @create 2025/8/4
+     **/
+    public static ChatMemoryStorageMode getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (ChatMemoryStorageMode anEnum : ChatMemoryStorageMode.values()) {
+            if (anEnum.value.equalsIgnoreCase(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,64 @@
+package com.rich.richsynapsehub.enumeration;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 对话记忆的存储后端
+ *
+ * @author DuRuiChi
+ * @create 2025/8/13
+ **/
+public enum ChatMemoryStoreType {
+
+    /**
+     * Redis 存储（多节点共享，支持近端缓存与会话索引）
+     */
+    REDIS("Redis 存储", "redis"),
+
+    /**
+     * 本地文件分段日志存储（无 Redis 的单节点部署）
+     */
+    FILE("文件存储", "file"),
+
+    /**
+     * 堆外内存环形缓冲区 + 文件溢写（无 Redis 的单节点高并发部署）
+     */
+    OFF_HEAP("堆外内存存储", "off-heap");
+
+    private final String text;
+
+    private final String value;
+
+    ChatMemoryStoreType(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return com.rich.richsynapsehub.enumeration.ChatMemoryStoreType
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    public static ChatMemoryStoreType getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (ChatMemoryStoreType anEnum : ChatMemoryStoreType.values()) {
+            if (anEnum.value.equalsIgnoreCase(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
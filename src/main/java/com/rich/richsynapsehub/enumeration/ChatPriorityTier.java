@@ -0,0 +1,77 @@
+package com.rich.richsynapsehub.enumeration;
+
+import com.rich.richsynapsehub.model.entity.User;
+import org.apache.commons.lang3.ObjectUtils;
+
+import java.util.Date;
+
+/**
+ * 模型调用的排队优先级
+ *
+ * @author DuRuiChi
+ * @create 2025/8/27
+ **/
+public enum ChatPriorityTier {
+
+    /**
+     * 会员（vipExpireTime 晚于当前时间），按权重优先获得调用许可
+     */
+    VIP("会员", "vip"),
+
+    /**
+     * 普通用户与未登录用户
+     */
+    FREE("普通用户", "free");
+
+    private final String text;
+
+    private final String value;
+
+    ChatPriorityTier(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据用户的会员有效期判断优先级，未登录时为 FREE
+     *
+     * @param user
+     * @return com.rich.richsynapsehub.enumeration.ChatPriorityTier
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    public static ChatPriorityTier of(User user) {
+        if (user == null || user.getVipExpireTime() == null) {
+            return FREE;
+        }
+        return user.getVipExpireTime().after(new Date()) ? VIP : FREE;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return com.rich.richsynapsehub.enumeration.ChatPriorityTier
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    public static ChatPriorityTier getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (ChatPriorityTier anEnum : ChatPriorityTier.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
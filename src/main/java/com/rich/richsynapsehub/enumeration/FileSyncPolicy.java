@@ -0,0 +1,64 @@
+package com.rich.richsynapsehub.enumeration;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 文件对话记忆的刷盘（fsync）策略
+ *
+ * @author DuRuiChi
+ * @create 2025/8/5
+ **/
+public enum FileSyncPolicy {
+
+    /**
+     * 不主动刷盘，由操作系统决定写回时机（吞吐最高，宕机可能丢失最近写入）
+     */
+    NONE("不主动刷盘", "none"),
+
+    /**
+     * 每次追加后立即刷盘（最安全，延迟最高）
+     */
+    ALWAYS("每次刷盘", "always"),
+
+    /**
+     * 距上次刷盘超过指定间隔时在本次追加后刷盘，间隔内未刷盘的写入由后台线程按间隔刷盘（宕机最多丢失一个间隔内的写入）
+     */
+    INTERVAL("定时刷盘", "interval");
+
+    private final String text;
+
+    private final String value;
+
+    FileSyncPolicy(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return com.rich.richsynapsehub.enumeration.FileSyncPolicy
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    public static FileSyncPolicy getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (FileSyncPolicy anEnum : FileSyncPolicy.values()) {
+            if (anEnum.value.equalsIgnoreCase(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
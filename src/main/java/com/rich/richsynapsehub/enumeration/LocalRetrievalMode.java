@@ -0,0 +1,64 @@
+package com.rich.richsynapsehub.enumeration;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 本地知识库检索方式
+ *
+ * @author DuRuiChi
+ * @create 2025/8/21
+ **/
+public enum LocalRetrievalMode {
+
+    /**
+     * HNSW 向量检索（语义相近）
+     */
+    VECTOR("向量检索", "vector"),
+
+    /**
+     * BM25 关键词检索（术语精确命中）
+     */
+    BM25("关键词检索", "bm25"),
+
+    /**
+     * 向量检索与关键词检索按倒数排名融合
+     */
+    HYBRID("混合检索", "hybrid");
+
+    private final String text;
+
+    private final String value;
+
+    LocalRetrievalMode(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return com.rich.richsynapsehub.enumeration.LocalRetrievalMode
+     * @author DuRuiChi
+     * @create 2025/8/21
+     **/
+    public static LocalRetrievalMode getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (LocalRetrievalMode anEnum : LocalRetrievalMode.values()) {
+            if (anEnum.value.equalsIgnoreCase(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
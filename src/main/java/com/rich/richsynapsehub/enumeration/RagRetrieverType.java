@@ -0,0 +1,59 @@
+package com.rich.richsynapsehub.enumeration;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 知识库检索器类型
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+public enum RagRetrieverType {
+
+    /**
+     * 阿里云百炼知识库（DashScopeDocumentRetriever）
+     */
+    CLOUD("云端知识库", "cloud"),
+
+    /**
+     * 进程内 HNSW 向量 / BM25 关键词检索（读取本地 RagDocs）
+     */
+    LOCAL("本地知识库", "local");
+
+    private final String text;
+
+    private final String value;
+
+    RagRetrieverType(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return com.rich.richsynapsehub.enumeration.RagRetrieverType
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public static RagRetrieverType getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (RagRetrieverType anEnum : RagRetrieverType.values()) {
+            if (anEnum.value.equalsIgnoreCase(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,59 @@
+package com.rich.richsynapsehub.enumeration;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 向量索引文件中检索用向量的编码
+ *
+ * @author DuRuiChi
+ * @create 2025/8/22
+ **/
+public enum VectorEncoding {
+
+    /**
+     * 原始 float32 向量
+     */
+    FLOAT32("float32 原始向量", "float32"),
+
+    /**
+     * int8 标量量化（每个向量一个缩放系数），图遍历只读量化向量，候选集再用 float32 重排
+     */
+    INT8("int8 标量量化", "int8");
+
+    private final String text;
+
+    private final String value;
+
+    VectorEncoding(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return com.rich.richsynapsehub.enumeration.VectorEncoding
+     * @author DuRuiChi
+     * @create 2025/8/22
+     **/
+    public static VectorEncoding getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (VectorEncoding anEnum : VectorEncoding.values()) {
+            if (anEnum.value.equalsIgnoreCase(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,18 @@
+package com.rich.richsynapsehub.model.dto.chat;
+
+import com.rich.richsynapsehub.common.PageRequest;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+
+/**
+ * 会话列表查询请求（按最近活跃时间倒序）
+ *
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class ChatConversationQueryRequest extends PageRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+}
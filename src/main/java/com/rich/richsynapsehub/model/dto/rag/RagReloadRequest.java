@@ -0,0 +1,20 @@
+package com.rich.richsynapsehub.model.dto.rag;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 知识库重新导入请求
+ *
+ */
+@Data
+public class RagReloadRequest implements Serializable {
+
+    /**
+     * 知识库名称，如：面试专家知识库
+     */
+    private String knowledgeIndex;
+
+    private static final long serialVersionUID = 1L;
+}
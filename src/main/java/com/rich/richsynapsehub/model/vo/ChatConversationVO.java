@@ -0,0 +1,41 @@
+package com.rich.richsynapsehub.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 会话列表视图
+ *
+ */
+@Data
+public class ChatConversationVO implements Serializable {
+
+    /**
+     * 会话 ID
+     */
+    private String chatId;
+
+    /**
+     * 标题（首条用户消息摘要）
+     */
+    private String title;
+
+    /**
+     * 预览（最近一条消息摘要）
+     */
+    private String preview;
+
+    /**
+     * 消息条数
+     */
+    private Long messageCount;
+
+    /**
+     * 最近活跃时间
+     */
+    private Date updateTime;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,55 @@
+package com.rich.richsynapsehub.service;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.rich.richsynapsehub.model.vo.ChatConversationVO;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 会话索引服务（按用户维护按最近活跃时间排序的会话列表）
+ */
+public interface ChatConversationService {
+
+    /**
+     * 绑定会话所属用户，会话已属于其他用户时返回 false
+     *
+     * @param chatId 会话 ID
+     * @param userId 用户 id
+     * @return 是否绑定成功（或已属于该用户）
+     */
+    boolean bindOwner(String chatId, Long userId);
+
+    /**
+     * 获取会话所属用户
+     *
+     * @param chatId 会话 ID
+     * @return 所属用户 id，会话未绑定用户（或未启用索引）时返回 null
+     */
+    Long ownerOf(String chatId);
+
+    /**
+     * 写入消息后更新会话索引：活跃时间、消息条数、标题与预览
+     *
+     * @param chatId   会话 ID
+     * @param messages 本次写入的消息
+     */
+    void touch(String chatId, List<Message> messages);
+
+    /**
+     * 从索引中移除会话
+     *
+     * @param chatId 会话 ID
+     */
+    void remove(String chatId);
+
+    /**
+     * 分页获取用户的会话列表（按最近活跃时间倒序）
+     *
+     * @param userId   用户 id
+     * @param current  当前页号
+     * @param pageSize 页面大小
+     * @return
+     */
+    Page<ChatConversationVO> listConversationVOByPage(Long userId, long current, long pageSize);
+}
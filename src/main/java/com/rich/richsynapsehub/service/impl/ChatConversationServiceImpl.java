@@ -0,0 +1,249 @@
+package com.rich.richsynapsehub.service.impl;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.rich.richsynapsehub.model.vo.ChatConversationVO;
+import com.rich.richsynapsehub.service.ChatConversationService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话索引服务实现类
+ * <p>
+ * 每个用户一个 ZSET（chat:conv:user:&lt;userId&gt;，score 为最近活跃时间戳），每个会话一个 HASH
+ * （chat:conv:meta:&lt;chatId&gt;，包含 userId/title/preview/count/updatedAt）。
+ * 写入消息时先读出所属用户，再通过 Lua 脚本原子更新两者（涉及的 key 均由 KEYS 声明，兼容 Redis 集群）；分页列表为 ZREVRANGE + 管道 HGETALL，耗时只与页大小有关，不扫描键空间。
+ * 索引过期时间与对话记忆保持一致（7 天），超期的会话在下次更新时从 ZSET 中清理。
+ * 无 Redis 的部署可通过 rich.chat-memory.conversation-index.enabled 关闭索引，此时各方法均为空操作。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/12
+ **/
+@Service
+@Slf4j
+public class ChatConversationServiceImpl implements ChatConversationService {
+
+    private static final String USER_KEY_PREFIX = "chat:conv:user:";
+
+    private static final String META_KEY_PREFIX = "chat:conv:meta:";
+
+    /**
+     * 索引过期时间（天），与对话记忆一致
+     */
+    private static final long EXPIRE_DAYS = 7;
+
+    private static final int TITLE_MAX_LENGTH = 30;
+
+    private static final int PREVIEW_MAX_LENGTH = 60;
+
+    /**
+     * 更新会话索引
+     * KEYS[1] 会话元数据 key；KEYS[2] 所属用户的 ZSET key（无所属用户时不传）
+     * ARGV[1] 当前时间戳；ARGV[2] 新增消息条数；ARGV[3] 标题（仅首次写入）；ARGV[4] 预览；
+     * ARGV[5] 过期秒数；ARGV[6] 会话 ID；ARGV[7] 过期清理的时间戳下界；ARGV[8] 调用方读到的所属用户 id（无则为空串）
+     * 所属用户与 ARGV[8] 不一致（读取后被并发绑定）时不做任何写入并返回 0，由调用方按新的所属用户重试
+     */
+    private static final RedisScript<Long> TOUCH_SCRIPT = new DefaultRedisScript<>("""
+            local owner = redis.call('HGET', KEYS[1], 'userId') or ''
+            if owner ~= ARGV[8] then return 0 end
+            redis.call('HINCRBY', KEYS[1], 'count', ARGV[2])
+            redis.call('HSET', KEYS[1], 'updatedAt', ARGV[1])
+            if ARGV[3] ~= '' then
+                redis.call('HSETNX', KEYS[1], 'title', ARGV[3])
+            end
+            if ARGV[4] ~= '' then
+                redis.call('HSET', KEYS[1], 'preview', ARGV[4])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[5])
+            if KEYS[2] then
+                redis.call('ZADD', KEYS[2], ARGV[1], ARGV[6])
+                redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', '(' .. ARGV[7])
+                redis.call('EXPIRE', KEYS[2], ARGV[5])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 绑定会话所属用户，已有会话数据时同时加入用户索引
+     * KEYS[1] 会话元数据 key；KEYS[2] 用户 ZSET key；ARGV[1] 用户 id；ARGV[2] 会话 ID；ARGV[3] 过期秒数
+     */
+    private static final RedisScript<Long> BIND_SCRIPT = new DefaultRedisScript<>("""
+            local owner = redis.call('HGET', KEYS[1], 'userId')
+            if owner then
+                if owner == ARGV[1] then return 1 end
+                return 0
+            end
+            redis.call('HSET', KEYS[1], 'userId', ARGV[1])
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            local updatedAt = redis.call('HGET', KEYS[1], 'updatedAt')
+            if updatedAt then
+                redis.call('ZADD', KEYS[2], updatedAt, ARGV[2])
+                redis.call('EXPIRE', KEYS[2], ARGV[3])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 移除会话索引
+     * KEYS[1] 会话元数据 key；KEYS[2] 所属用户的 ZSET key（无所属用户时不传）
+     * ARGV[1] 会话 ID；ARGV[2] 调用方读到的所属用户 id（无则为空串），不一致时返回 0 由调用方重试
+     */
+    private static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>("""
+            local owner = redis.call('HGET', KEYS[1], 'userId') or ''
+            if owner ~= ARGV[2] then return 0 end
+            redis.call('DEL', KEYS[1])
+            if KEYS[2] then
+                redis.call('ZREM', KEYS[2], ARGV[1])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 所属用户只会从无到有绑定一次，脚本因并发绑定返回 0 后最多再重试一次
+     */
+    private static final int MAX_SCRIPT_ATTEMPTS = 2;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 是否启用会话索引
+     */
+    @Value("${rich.chat-memory.conversation-index.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public boolean bindOwner(String chatId, Long userId) {
+        if (!enabled || StringUtils.isBlank(chatId) || userId == null) {
+            return true;
+        }
+        Long result = stringRedisTemplate.execute(BIND_SCRIPT,
+                List.of(META_KEY_PREFIX + chatId, USER_KEY_PREFIX + userId),
+                String.valueOf(userId), chatId, String.valueOf(TimeUnit.DAYS.toSeconds(EXPIRE_DAYS)));
+        return result != null && result == 1;
+    }
+
+    @Override
+    public Long ownerOf(String chatId) {
+        if (!enabled || StringUtils.isBlank(chatId)) {
+            return null;
+        }
+        Object owner = stringRedisTemplate.opsForHash().get(META_KEY_PREFIX + chatId, "userId");
+        return owner == null ? null : Long.valueOf(owner.toString());
+    }
+
+    @Override
+    public void touch(String chatId, List<Message> messages) {
+        if (!enabled || messages == null || messages.isEmpty()) {
+            return;
+        }
+        String title = "";
+        String preview = "";
+        for (Message message : messages) {
+            if (StringUtils.isBlank(message.getText())) {
+                continue;
+            }
+            if (title.isEmpty() && message.getMessageType() == MessageType.USER) {
+                title = StringUtils.abbreviate(message.getText().strip(), TITLE_MAX_LENGTH);
+            }
+            preview = StringUtils.abbreviate(message.getText().strip(), PREVIEW_MAX_LENGTH);
+        }
+        long now = System.currentTimeMillis();
+        String expireSeconds = String.valueOf(TimeUnit.DAYS.toSeconds(EXPIRE_DAYS));
+        String trimBefore = String.valueOf(now - TimeUnit.DAYS.toMillis(EXPIRE_DAYS));
+        for (int attempt = 0; attempt < MAX_SCRIPT_ATTEMPTS; attempt++) {
+            // 先读出所属用户，用户 ZSET key 作为 KEYS 显式传入脚本（集群下按 key 路由）
+            Long owner = ownerOf(chatId);
+            Long result = stringRedisTemplate.execute(TOUCH_SCRIPT, indexKeys(chatId, owner),
+                    String.valueOf(now), String.valueOf(messages.size()), title, preview,
+                    expireSeconds, chatId, trimBefore, owner == null ? "" : String.valueOf(owner));
+            if (result == null || result != 0) {
+                return;
+            }
+        }
+        log.warn("会话索引更新失败，所属用户在更新期间发生变化，chatId：{}", chatId);
+    }
+
+    @Override
+    public void remove(String chatId) {
+        if (!enabled) {
+            return;
+        }
+        for (int attempt = 0; attempt < MAX_SCRIPT_ATTEMPTS; attempt++) {
+            Long owner = ownerOf(chatId);
+            Long result = stringRedisTemplate.execute(REMOVE_SCRIPT, indexKeys(chatId, owner),
+                    chatId, owner == null ? "" : String.valueOf(owner));
+            if (result == null || result != 0) {
+                return;
+            }
+        }
+        log.warn("会话索引移除失败，所属用户在移除期间发生变化，chatId：{}", chatId);
+    }
+
+    /** 会话元数据 key，有所属用户时追加该用户的 ZSET key */
+    private static List<String> indexKeys(String chatId, Long owner) {
+        return owner == null
+                ? List.of(META_KEY_PREFIX + chatId)
+                : List.of(META_KEY_PREFIX + chatId, USER_KEY_PREFIX + owner);
+    }
+
+    @Override
+    public Page<ChatConversationVO> listConversationVOByPage(Long userId, long current, long pageSize) {
+        if (!enabled) {
+            return new Page<>(current, pageSize, 0);
+        }
+        String userKey = USER_KEY_PREFIX + userId;
+        ZSetOperations<String, String> ops = stringRedisTemplate.opsForZSet();
+        Long total = ops.zCard(userKey);
+        Page<ChatConversationVO> conversationVOPage = new Page<>(current, pageSize, total == null ? 0 : total);
+        long start = (current - 1) * pageSize;
+        Set<ZSetOperations.TypedTuple<String>> tuples = ops.reverseRangeWithScores(userKey, start, start + pageSize - 1);
+        if (tuples == null || tuples.isEmpty()) {
+            conversationVOPage.setRecords(new ArrayList<>());
+            return conversationVOPage;
+        }
+        List<ZSetOperations.TypedTuple<String>> entries = new ArrayList<>(tuples);
+        // 管道批量读取本页会话的元数据，一次往返
+        List<Object> metas = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ZSetOperations.TypedTuple<String> entry : entries) {
+                connection.hashCommands().hGetAll((META_KEY_PREFIX + entry.getValue()).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<ChatConversationVO> records = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ZSetOperations.TypedTuple<String> entry = entries.get(i);
+            ChatConversationVO conversationVO = new ChatConversationVO();
+            conversationVO.setChatId(entry.getValue());
+            if (entry.getScore() != null) {
+                conversationVO.setUpdateTime(new Date(entry.getScore().longValue()));
+            }
+            if (metas.get(i) instanceof Map<?, ?> meta && !meta.isEmpty()) {
+                conversationVO.setTitle((String) meta.get("title"));
+                conversationVO.setPreview((String) meta.get("preview"));
+                Object count = meta.get("count");
+                conversationVO.setMessageCount(count == null ? 0L : Long.parseLong(count.toString()));
+            }
+            records.add(conversationVO);
+        }
+        conversationVOPage.setRecords(records);
+        return conversationVOPage;
+    }
+}
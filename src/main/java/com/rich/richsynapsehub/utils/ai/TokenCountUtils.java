@@ -0,0 +1,117 @@
+package com.rich.richsynapsehub.utils.ai;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Token 数估算工具
+ * <p>
+ * 不依赖具体模型的分词器，按经验规则快速估算：中日韩等非 ASCII 字符每字约 1 个 token，
+ * 连续的 ASCII 字母数字每 4 个字符约 1 个 token，标点符号各计 1 个 token，空白不计。
+ * 估算结果偏保守（通常略高于通义千问分词器的实际值），适合用于预算控制。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/11
+ **/
+public class TokenCountUtils {
+
+    /**
+     * 消息元数据中缓存 token 数的 key（写入时计算一次，随消息一起存储）
+     */
+    public static final String TOKEN_COUNT_KEY = "tokenCount";
+
+    /**
+     * 每条消息的固定开销（角色标记等）
+     */
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    /**
+     * 估算文本的 token 数
+     *
+     * @param text
+     * @return int
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int asciiRun = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                asciiRun++;
+                continue;
+            }
+            if (asciiRun > 0) {
+                tokens += (asciiRun + 3) / 4;
+                asciiRun = 0;
+            }
+            if (Character.isWhitespace(c) || Character.isLowSurrogate(c)) {
+                continue;
+            }
+            tokens++;
+        }
+        if (asciiRun > 0) {
+            tokens += (asciiRun + 3) / 4;
+        }
+        return tokens;
+    }
+
+    /**
+     * 获取消息的 token 数，优先读取写入时缓存在元数据中的值
+     *
+     * @param message
+     * @return int
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    public static int tokensOf(Message message) {
+        Object cached = message.getMetadata().get(TOKEN_COUNT_KEY);
+        if (cached instanceof Number number) {
+            return number.intValue();
+        }
+        int tokens = MESSAGE_OVERHEAD + estimate(message.getText());
+        if (message instanceof AssistantMessage assistantMessage) {
+            for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                tokens += estimate(toolCall.name()) + estimate(toolCall.arguments());
+            }
+        } else if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                tokens += estimate(response.name()) + estimate(response.responseData());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 从消息列表尾部开始，截取总 token 数不超过预算的最近消息（保持原有顺序）
+     *
+     * @param messages
+     * @param tokenBudget
+     * @return java.util.List<org.springframework.ai.chat.messages.Message>
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    public static List<Message> tailWithinBudget(List<Message> messages, int tokenBudget) {
+        List<Message> selected = new ArrayList<>();
+        int used = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            int tokens = tokensOf(messages.get(i));
+            if (used + tokens > tokenBudget) {
+                break;
+            }
+            used += tokens;
+            selected.add(messages.get(i));
+        }
+        Collections.reverse(selected);
+        return selected;
+    }
+}
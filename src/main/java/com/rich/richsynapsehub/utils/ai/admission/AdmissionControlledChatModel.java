@@ -0,0 +1,51 @@
+package com.rich.richsynapsehub.utils.ai.admission;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 经过准入控制的 ChatModel：每次模型调用先向 {@link ChatAdmissionController} 申请许可，调用结束（完成、出错或取消）后归还
+ * <p>
+ * 同步调用在当前线程排队；流式调用在订阅时非阻塞排队，调用方优先取 Reactor Context，其次取创建流时线程上的调用方。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/26
+ **/
+public class AdmissionControlledChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+
+    private final ChatAdmissionController admissionController;
+
+    public AdmissionControlledChatModel(ChatModel delegate, ChatAdmissionController admissionController) {
+        this.delegate = delegate;
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        try (ChatAdmissionController.Permit permit = admissionController.acquireBlocking(ChatCallerContext.current())) {
+            return delegate.call(prompt);
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        ChatCaller threadCaller = ChatCallerContext.current();
+        return Flux.deferContextual(context -> {
+            ChatCaller caller = context.getOrDefault(ChatCallerContext.CONTEXT_KEY, threadCaller);
+            return Flux.usingWhen(admissionController.acquireAsync(caller),
+                    permit -> delegate.stream(prompt),
+                    permit -> Mono.fromRunnable(permit::close));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
@@ -0,0 +1,410 @@
+package com.rich.richsynapsehub.utils.ai.admission;
+
+import com.rich.richsynapsehub.common.ErrorCode;
+import com.rich.richsynapsehub.enumeration.ChatPriorityTier;
+import com.rich.richsynapsehub.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 模型调用的准入控制：全局并发上限 + 会员优先的加权排队 + 按调用方公平排队 + 有界等待队列与排队时限
+ * <p>
+ * 并发未满且无人排队时直接放行；否则按优先级（{@link ChatPriorityTier}）进入各自的队列，每个优先级内部再按调用方分成 FIFO 队列。
+ * 许可释放时：普通用户的队首请求排队超过 agingMillis 时优先放行（防止会员持续占满时普通用户饿死）；
+ * 否则两个优先级都有人排队时，每连续放行 vipWeight 个会员请求放行 1 个普通请求；同一优先级内在各调用方之间轮转
+ * （每次取队首调用方的一个请求，再把该调用方移到末尾），单个用户的突发请求不会挤占其他用户。
+ * 总排队数超过 maxQueueSize、单个调用方排队数超过 maxQueuedPerCaller、或排队超过 maxWaitMillis 时
+ * 以 {@link ErrorCode#SERVICE_BUSY} 拒绝，而不是把所有请求都压到上游导致整体限流、延迟一起恶化。
+ * 调用方标识为 null 时每个请求单独排队（不参与按用户合并）。
+ * 指标：chat.admission.active、chat.admission.queued{tier}（当前值）、chat.admission.wait{tier}（排队耗时）、
+ * chat.admission.latency{tier}（排队 + 模型调用耗时）、chat.admission.rejected（按 reason：queue-full / caller-limit / timeout 计数）。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/26
+ **/
+public class ChatAdmissionController {
+
+    /**
+     * 排队超时定时器，请求放行、被拒绝或取消时取消对应定时任务并立即从队列移除，不在定时器中滞留到 maxWaitMillis
+     */
+    private static final ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER = createTimeoutScheduler();
+
+    private final int maxConcurrency;
+
+    private final int maxQueueSize;
+
+    private final int maxQueuedPerCaller;
+
+    private final long maxWaitMillis;
+
+    private final int vipWeight;
+
+    private final long agingNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 优先级 -> 调用方 -> 排队中的请求，调用方的迭代顺序即轮转顺序
+     */
+    private final Map<ChatPriorityTier, Map<String, ArrayDeque<Waiter>>> waiting = new EnumMap<>(ChatPriorityTier.class);
+
+    private final Map<ChatPriorityTier, Integer> queuedByTier = new EnumMap<>(ChatPriorityTier.class);
+
+    private final AtomicLong anonymousSequence = new AtomicLong();
+
+    private int active;
+
+    private int queued;
+
+    /**
+     * 两个优先级都有人排队时已连续放行的会员请求数
+     */
+    private int vipStreak;
+
+    private final Map<ChatPriorityTier, Timer> waitTimers = new EnumMap<>(ChatPriorityTier.class);
+
+    private final Map<ChatPriorityTier, Timer> latencyTimers = new EnumMap<>(ChatPriorityTier.class);
+
+    private final Counter queueFullCounter;
+
+    private final Counter callerLimitCounter;
+
+    private final Counter timeoutCounter;
+
+    public ChatAdmissionController(int maxConcurrency, int maxQueueSize, int maxQueuedPerCaller, long maxWaitMillis,
+                                   MeterRegistry meterRegistry) {
+        this(maxConcurrency, maxQueueSize, maxQueuedPerCaller, maxWaitMillis, 1, maxWaitMillis, meterRegistry);
+    }
+
+    /**
+     * @param maxConcurrency     同时进行的模型调用上限
+     * @param maxQueueSize       排队请求总数上限
+     * @param maxQueuedPerCaller 单个调用方的排队请求上限
+     * @param maxWaitMillis      排队时限（毫秒）
+     * @param vipWeight          两个优先级都有人排队时，每放行 1 个普通请求前最多连续放行的会员请求数
+     * @param agingMillis        普通请求排队超过该时长后优先放行（毫秒）
+     */
+    public ChatAdmissionController(int maxConcurrency, int maxQueueSize, int maxQueuedPerCaller, long maxWaitMillis,
+                                   int vipWeight, long agingMillis, MeterRegistry meterRegistry) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueuedPerCaller = maxQueuedPerCaller;
+        this.maxWaitMillis = maxWaitMillis;
+        this.vipWeight = Math.max(1, vipWeight);
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        Gauge.builder("chat.admission.active", this, ChatAdmissionController::active)
+                .description("进行中的模型调用数").register(meterRegistry);
+        for (ChatPriorityTier tier : ChatPriorityTier.values()) {
+            waiting.put(tier, new LinkedHashMap<>());
+            queuedByTier.put(tier, 0);
+            Gauge.builder("chat.admission.queued", this, controller -> controller.queued(tier))
+                    .tag("tier", tier.getValue()).description("排队等待的模型调用数").register(meterRegistry);
+            waitTimers.put(tier, Timer.builder("chat.admission.wait").tag("tier", tier.getValue())
+                    .description("模型调用的排队耗时").register(meterRegistry));
+            latencyTimers.put(tier, Timer.builder("chat.admission.latency").tag("tier", tier.getValue())
+                    .description("模型调用的排队与执行总耗时").register(meterRegistry));
+        }
+        this.queueFullCounter = rejectedCounter("queue-full", meterRegistry);
+        this.callerLimitCounter = rejectedCounter("caller-limit", meterRegistry);
+        this.timeoutCounter = rejectedCounter("timeout", meterRegistry);
+    }
+
+    /**
+     * 申请调用许可，放行或排到许可时完成，被拒绝时以 BusinessException（SERVICE_BUSY）异常完成
+     * <p>
+     * 取消返回的 future 即放弃排队。
+     *
+     * @param caller 调用方，为 null 时按 {@link ChatCaller#ANONYMOUS} 处理
+     * @return java.util.concurrent.CompletableFuture<com.rich.richsynapsehub.utils.ai.admission.ChatAdmissionController.Permit>
+     * @author DuRuiChi
+     * @create 2025/8/26
+     **/
+    public CompletableFuture<Permit> acquire(ChatCaller caller) {
+        ChatCaller resolved = caller == null ? ChatCaller.ANONYMOUS : caller;
+        ChatPriorityTier tier = resolved.tier();
+        String key = resolved.id() == null ? "anonymous-" + anonymousSequence.incrementAndGet() : resolved.id();
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (active < maxConcurrency && queued == 0) {
+                active++;
+                waitTimers.get(tier).record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(new Permit(tier, System.nanoTime()));
+            }
+            if (queued >= maxQueueSize) {
+                queueFullCounter.increment();
+                return CompletableFuture.failedFuture(busy("当前请求较多，请稍后重试"));
+            }
+            Map<String, ArrayDeque<Waiter>> callers = waiting.get(tier);
+            ArrayDeque<Waiter> queue = callers.get(key);
+            if (queue != null && queue.size() >= maxQueuedPerCaller || queue == null && maxQueuedPerCaller <= 0) {
+                callerLimitCounter.increment();
+                return CompletableFuture.failedFuture(busy("您的请求过于频繁，请等待上一个回答完成"));
+            }
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                callers.put(key, queue);
+            }
+            waiter = new Waiter(key, tier);
+            queue.addLast(waiter);
+            queued++;
+            queuedByTier.merge(tier, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(() -> {
+            if (waiter.future.completeExceptionally(busy("排队超时，请稍后重试"))) {
+                timeoutCounter.increment();
+            }
+        }, maxWaitMillis, TimeUnit.MILLISECONDS);
+        // 完成后取消超时定时任务；超时或取消时移出队列
+        waiter.future.whenComplete((permit, error) -> {
+            timeout.cancel(false);
+            if (error != null) {
+                dequeue(waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    /**
+     * 同步申请调用许可，排队期间阻塞当前线程
+     *
+     * @param caller 调用方，可为 null
+     * @return com.rich.richsynapsehub.utils.ai.admission.ChatAdmissionController.Permit
+     * @author DuRuiChi
+     * @create 2025/8/26
+     **/
+    public Permit acquireBlocking(ChatCaller caller) {
+        try {
+            return acquire(caller).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 响应式申请调用许可，取消订阅即放弃排队
+     * <p>
+     * 取消与许可转交并发时，future 可能已经拿到许可但尚未交给订阅方，此时由取消回调归还许可，避免许可泄漏。
+     */
+    public Mono<Permit> acquireAsync(ChatCaller caller) {
+        return Mono.create(sink -> {
+            CompletableFuture<Permit> future = acquire(caller);
+            sink.onCancel(() -> {
+                future.cancel(false);
+                future.thenAccept(Permit::close);
+            });
+            future.whenComplete((permit, error) -> {
+                if (error == null) {
+                    sink.success(permit);
+                } else if (!(error instanceof CancellationException)) {
+                    sink.error(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+            });
+        });
+    }
+
+    private static ScheduledThreadPoolExecutor createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "chat-admission-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    public int active() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定优先级的排队数
+     */
+    public int queued(ChatPriorityTier tier) {
+        lock.lock();
+        try {
+            return queuedByTier.get(tier);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 归还许可：有人排队时按优先级与调用方轮转直接转交，否则并发数减一
+     */
+    private void release() {
+        while (true) {
+            Waiter next;
+            lock.lock();
+            try {
+                next = pollNext();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // 在锁外完成 future，避免在锁内执行调用方的后续逻辑；已超时或取消的请求跳过
+            if (next.future.complete(new Permit(next.tier, next.enqueuedAt))) {
+                waitTimers.get(next.tier).record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 选出下一个放行的请求：排队过久的普通请求 > 按权重轮到的优先级 > 另一优先级
+     */
+    private Waiter pollNext() {
+        Map<String, ArrayDeque<Waiter>> vip = waiting.get(ChatPriorityTier.VIP);
+        Map<String, ArrayDeque<Waiter>> free = waiting.get(ChatPriorityTier.FREE);
+        if (vip.isEmpty() && free.isEmpty()) {
+            return null;
+        }
+        if (!free.isEmpty() && (vip.isEmpty() || vipStreak >= vipWeight || oldestWaitNanos(free) >= agingNanos)) {
+            vipStreak = 0;
+            return pollRoundRobin(ChatPriorityTier.FREE);
+        }
+        // 没有普通请求在等待时不累计，避免普通请求刚到达就被当作已轮空
+        vipStreak = free.isEmpty() ? 0 : vipStreak + 1;
+        return pollRoundRobin(ChatPriorityTier.VIP);
+    }
+
+    /**
+     * 取出该优先级中轮转顺序下一个调用方的队首请求，并把该调用方移到末尾
+     */
+    private Waiter pollRoundRobin(ChatPriorityTier tier) {
+        Map<String, ArrayDeque<Waiter>> callers = waiting.get(tier);
+        Iterator<Map.Entry<String, ArrayDeque<Waiter>>> iterator = callers.entrySet().iterator();
+        Map.Entry<String, ArrayDeque<Waiter>> first = iterator.next();
+        iterator.remove();
+        ArrayDeque<Waiter> queue = first.getValue();
+        Waiter next = queue.pollFirst();
+        if (!queue.isEmpty()) {
+            callers.put(first.getKey(), queue);
+        }
+        queued--;
+        queuedByTier.merge(tier, -1, Integer::sum);
+        return next;
+    }
+
+    /**
+     * 各调用方队首请求中最长的排队时长
+     */
+    private static long oldestWaitNanos(Map<String, ArrayDeque<Waiter>> callers) {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (ArrayDeque<Waiter> queue : callers.values()) {
+            oldest = Math.max(oldest, now - queue.peekFirst().enqueuedAt);
+        }
+        return oldest;
+    }
+
+    private void dequeue(Waiter waiter) {
+        lock.lock();
+        try {
+            Map<String, ArrayDeque<Waiter>> callers = waiting.get(waiter.tier);
+            ArrayDeque<Waiter> queue = callers.get(waiter.caller);
+            if (queue != null && queue.remove(waiter)) {
+                queued--;
+                queuedByTier.merge(waiter.tier, -1, Integer::sum);
+                if (queue.isEmpty()) {
+                    callers.remove(waiter.caller);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static BusinessException busy(String message) {
+        return new BusinessException(ErrorCode.SERVICE_BUSY, message);
+    }
+
+    private static Counter rejectedCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("chat.admission.rejected").tag("reason", reason)
+                .description("准入控制拒绝的模型调用数").register(meterRegistry);
+    }
+
+    /**
+     * 排队中的请求
+     */
+    private static final class Waiter {
+
+        private final String caller;
+
+        private final ChatPriorityTier tier;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        private Waiter(String caller, ChatPriorityTier tier) {
+            this.caller = caller;
+            this.tier = tier;
+        }
+    }
+
+    /**
+     * 调用许可，调用结束后关闭（重复关闭无副作用）
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private final ChatPriorityTier tier;
+
+        private final long requestedAt;
+
+        private Permit(ChatPriorityTier tier, long requestedAt) {
+            this.tier = tier;
+            this.requestedAt = requestedAt;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                latencyTimers.get(tier).record(System.nanoTime() - requestedAt, TimeUnit.NANOSECONDS);
+                release();
+            }
+        }
+    }
+}
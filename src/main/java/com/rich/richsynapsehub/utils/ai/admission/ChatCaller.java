@@ -0,0 +1,25 @@
+package com.rich.richsynapsehub.utils.ai.admission;
+
+import com.rich.richsynapsehub.enumeration.ChatPriorityTier;
+
+/**
+ * 模型调用方
+ *
+ * @param id   调用方标识（登录用户 ID 或客户端 IP），为 null 时每个请求单独排队
+ * @param tier 排队优先级
+ * @author DuRuiChi
+ * @create 2025/8/27
+ **/
+public record ChatCaller(String id, ChatPriorityTier tier) {
+
+    /**
+     * 未知调用方：普通优先级、每个请求单独排队
+     */
+    public static final ChatCaller ANONYMOUS = new ChatCaller(null, ChatPriorityTier.FREE);
+
+    public ChatCaller {
+        if (tier == null) {
+            tier = ChatPriorityTier.FREE;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.rich.richsynapsehub.utils.ai.admission;
+
+import reactor.util.context.Context;
+
+import java.util.function.Supplier;
+
+/**
+ * 模型调用方的传递：准入控制按调用方（登录用户或客户端 IP）公平排队，并按会员等级区分优先级
+ * <p>
+ * 同步调用在请求线程内经 ThreadLocal 传递（{@link #callAs(ChatCaller, Supplier)}）；
+ * 流式调用的模型请求可能在 advisor 切换后的线程上发起，经 Reactor Context 传递（{@link #of(ChatCaller)}）。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/26
+ **/
+public final class ChatCallerContext {
+
+    /**
+     * Reactor Context 中调用方的键
+     */
+    public static final String CONTEXT_KEY = ChatCallerContext.class.getName();
+
+    private static final ThreadLocal<ChatCaller> CURRENT = new ThreadLocal<>();
+
+    private ChatCallerContext() {
+    }
+
+    /**
+     * 当前线程的调用方，未设置时返回 null
+     */
+    public static ChatCaller current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以指定调用方身份执行
+     *
+     * @param caller 调用方
+     * @param action 操作
+     * @return T
+     * @author DuRuiChi
+     * @create 2025/8/26
+     **/
+    public static <T> T callAs(ChatCaller caller, Supplier<T> action) {
+        ChatCaller previous = CURRENT.get();
+        CURRENT.set(caller);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 包装异步任务，在执行线程上沿用提交时的调用方
+     *
+     * @param task 任务
+     * @return java.lang.Runnable
+     * @author DuRuiChi
+     * @create 2025/8/26
+     **/
+    public static Runnable wrap(Runnable task) {
+        ChatCaller caller = CURRENT.get();
+        return () -> callAs(caller, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 流式调用使用的 Reactor Context，配合 contextWrite 使用
+     */
+    public static Context of(ChatCaller caller) {
+        return caller == null ? Context.empty() : Context.of(CONTEXT_KEY, caller);
+    }
+
+    private static void restore(ChatCaller previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
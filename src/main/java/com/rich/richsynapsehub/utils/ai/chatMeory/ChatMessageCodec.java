@@ -0,0 +1,532 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import com.esotericsoftware.kryo.io.Input;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.ai.chat.messages.AbstractMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对话消息的紧凑二进制编解码器，供 {@link FileChatMemory} 与 {@link RedisChatMemory} 共用
+ * <p>
+ * 相比 Kryo 反射序列化，只编码消息的业务字段（不携带类名、不依赖 Spring AI 内部字段），
+ * Spring AI 升级后已存储的数据依然可读。格式：
+ * [2 字节魔数][1 字节版本][消息...]
+ * 单条消息：[1 字节类型 ID][token 数][文本][元数据][类型专属字段]
+ * 整数使用 varint，字符串使用 UTF-8，同一载荷内重复出现的字符串只写一次，之后以池下标引用。
+ * 多媒体（Media）内容不会被编码。token 数在写入时计算一次（版本 2 起），解码时放回元数据
+ * {@link TokenCountUtils#TOKEN_COUNT_KEY}，版本 1 的数据在读取时重新估算。
+ * <p>
+ * 非本格式的载荷（历史 Kryo 数据）会回退为 Kryo 反序列化。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/6
+ **/
+public final class ChatMessageCodec {
+
+    private static final byte MAGIC_0 = (byte) 0xC7;
+
+    private static final byte MAGIC_1 = (byte) 0x5E;
+
+    /**
+     * 当前编码版本
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * 开始记录 token 数的版本
+     */
+    private static final int VERSION_TOKEN_COUNT = 2;
+
+    /**
+     * 消息类型注册 ID（只能新增，不可修改已有取值）
+     */
+    private static final int TYPE_USER = 1;
+    private static final int TYPE_ASSISTANT = 2;
+    private static final int TYPE_SYSTEM = 3;
+    private static final int TYPE_TOOL = 4;
+
+    /**
+     * 字符串标记：0 表示 null，1 表示紧跟一个新字符串，n >= 2 表示引用字符串池中下标为 n - 2 的字符串
+     */
+    private static final int STRING_NULL = 0;
+    private static final int STRING_LITERAL = 1;
+    private static final int STRING_REF_BASE = 2;
+
+    /**
+     * 元数据取值类型
+     */
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_LONG = 2;
+    private static final int VALUE_DOUBLE = 3;
+    private static final int VALUE_BOOLEAN = 4;
+    private static final int VALUE_INT = 5;
+
+    /**
+     * 历史数据兼容：旧版本使用 Kryo 反射序列化
+     */
+    private static final ThreadLocal<Kryo> legacyKryo = ThreadLocal.withInitial(() -> {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+        return kryo;
+    });
+
+    private ChatMessageCodec() {
+    }
+
+    /**
+     * 编码单条消息
+     *
+     * @param message
+     * @return byte[]
+     * @author DuRuiChi
+     * @create 2025/8/6
+     **/
+    public static byte[] encode(Message message) {
+        Writer writer = new Writer(64);
+        writer.writeHeader();
+        writer.writeMessage(message);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 编码消息列表（整个列表共用一个字符串池）
+     *
+     * @param messages
+     * @return byte[]
+     * @author DuRuiChi
+     * @create 2025/8/6
+     **/
+    public static byte[] encodeAll(List<Message> messages) {
+        Writer writer = new Writer(64 * Math.max(1, messages.size()));
+        writer.writeHeader();
+        writer.writeVarInt(messages.size());
+        for (Message message : messages) {
+            writer.writeMessage(message);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码单条消息，兼容历史 Kryo 格式
+     *
+     * @param payload
+     * @return org.springframework.ai.chat.messages.Message
+     * @author DuRuiChi
+     * @create 2025/8/6
+     **/
+    public static Message decode(byte[] payload) {
+        if (!isCodecPayload(payload)) {
+            try (Input input = new Input(payload)) {
+                return (Message) legacyKryo.get().readClassAndObject(input);
+            }
+        }
+        Reader reader = new Reader(payload);
+        reader.readHeader();
+        return reader.readMessage();
+    }
+
+    /**
+     * 解码消息列表，兼容历史 Kryo 格式
+     *
+     * @param payload
+     * @return java.util.List<org.springframework.ai.chat.messages.Message>
+     * @author DuRuiChi
+     * @create 2025/8/6
+     **/
+    @SuppressWarnings("unchecked")
+    public static List<Message> decodeAll(byte[] payload) {
+        if (!isCodecPayload(payload)) {
+            try (Input input = new Input(payload)) {
+                return legacyKryo.get().readObject(input, ArrayList.class);
+            }
+        }
+        Reader reader = new Reader(payload);
+        reader.readHeader();
+        int size = reader.readVarInt();
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(reader.readMessage());
+        }
+        return messages;
+    }
+
+    /**
+     * 是否为本编解码器生成的载荷
+     *
+     * @param payload
+     * @return boolean
+     * @author DuRuiChi
+     * @create 2025/8/6
+     **/
+    public static boolean isCodecPayload(byte[] payload) {
+        return payload != null && payload.length >= 3 && payload[0] == MAGIC_0 && payload[1] == MAGIC_1;
+    }
+
+    /**
+     * 不解码消息内容，直接读取单条消息载荷中写入时记录的 token 数
+     *
+     * @param payload 由 {@link #encode(Message)} 生成的载荷
+     * @return int token 数，旧版本或历史 Kryo 载荷返回 -1
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    public static int peekTokenCount(byte[] payload) {
+        if (!isCodecPayload(payload) || (payload[2] & 0xFF) < VERSION_TOKEN_COUNT) {
+            return -1;
+        }
+        Reader reader = new Reader(payload);
+        reader.readHeader();
+        reader.readByte();
+        return reader.readVarInt();
+    }
+
+    /**
+     * 从载荷列表尾部按写入时记录的 token 数挑选预算内的最近消息（保持原有顺序），只解码被选中的消息
+     *
+     * @param payloads    按写入顺序排列的消息载荷
+     * @param tokenBudget
+     * @return java.util.List<org.springframework.ai.chat.messages.Message>
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    public static List<Message> tailWithinBudget(List<byte[]> payloads, int tokenBudget) {
+        List<Message> selected = new ArrayList<>();
+        int used = 0;
+        for (int i = payloads.size() - 1; i >= 0; i--) {
+            byte[] payload = payloads.get(i);
+            int tokens = peekTokenCount(payload);
+            Message decoded = null;
+            if (tokens < 0) {
+                // 旧版本载荷没有记录 token 数，只能解码后估算
+                decoded = decode(payload);
+                tokens = TokenCountUtils.tokensOf(decoded);
+            }
+            if (used + tokens > tokenBudget) {
+                break;
+            }
+            used += tokens;
+            selected.add(decoded != null ? decoded : decode(payload));
+        }
+        Collections.reverse(selected);
+        return selected;
+    }
+
+    /**
+     * 编码器：可增长的字节缓冲 + 字符串池
+     */
+    private static final class Writer {
+
+        private byte[] buffer;
+
+        private int position;
+
+        private final Map<String, Integer> stringPool = new HashMap<>();
+
+        Writer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+
+        void writeHeader() {
+            writeByte(MAGIC_0);
+            writeByte(MAGIC_1);
+            writeByte(VERSION);
+        }
+
+        void writeMessage(Message message) {
+            int tokenCount = TokenCountUtils.tokensOf(message);
+            switch (message.getMessageType()) {
+                case USER -> {
+                    writeByte(TYPE_USER);
+                    writeVarInt(tokenCount);
+                    writeString(message.getText());
+                    writeMetadata(message.getMetadata());
+                }
+                case SYSTEM -> {
+                    writeByte(TYPE_SYSTEM);
+                    writeVarInt(tokenCount);
+                    writeString(message.getText());
+                    writeMetadata(message.getMetadata());
+                }
+                case ASSISTANT -> {
+                    AssistantMessage assistantMessage = (AssistantMessage) message;
+                    writeByte(TYPE_ASSISTANT);
+                    writeVarInt(tokenCount);
+                    writeString(assistantMessage.getText());
+                    writeMetadata(assistantMessage.getMetadata());
+                    List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+                    writeVarInt(toolCalls.size());
+                    for (AssistantMessage.ToolCall toolCall : toolCalls) {
+                        writeString(toolCall.id());
+                        writeString(toolCall.type());
+                        writeString(toolCall.name());
+                        writeString(toolCall.arguments());
+                    }
+                }
+                case TOOL -> {
+                    ToolResponseMessage toolResponseMessage = (ToolResponseMessage) message;
+                    writeByte(TYPE_TOOL);
+                    writeVarInt(tokenCount);
+                    writeMetadata(toolResponseMessage.getMetadata());
+                    List<ToolResponseMessage.ToolResponse> responses = toolResponseMessage.getResponses();
+                    writeVarInt(responses.size());
+                    for (ToolResponseMessage.ToolResponse response : responses) {
+                        writeString(response.id());
+                        writeString(response.name());
+                        writeString(response.responseData());
+                    }
+                }
+                default -> throw new IllegalArgumentException("不支持的消息类型：" + message.getMessageType());
+            }
+        }
+
+        void writeMetadata(Map<String, Object> metadata) {
+            int size = 0;
+            for (String key : metadata.keySet()) {
+                if (!isReservedKey(key)) {
+                    size++;
+                }
+            }
+            writeVarInt(size);
+            for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+                // 消息类型由类型 ID 表示，构造消息时会自动写回；token 数单独编码
+                if (isReservedKey(entry.getKey())) {
+                    continue;
+                }
+                writeString(entry.getKey());
+                Object value = entry.getValue();
+                if (value == null) {
+                    writeByte(VALUE_NULL);
+                } else if (value instanceof Integer intValue) {
+                    writeByte(VALUE_INT);
+                    writeVarLong(zigZag(intValue));
+                } else if (value instanceof Long longValue) {
+                    writeByte(VALUE_LONG);
+                    writeVarLong(zigZag(longValue));
+                } else if (value instanceof Double || value instanceof Float) {
+                    writeByte(VALUE_DOUBLE);
+                    writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+                } else if (value instanceof Boolean booleanValue) {
+                    writeByte(VALUE_BOOLEAN);
+                    writeByte(booleanValue ? 1 : 0);
+                } else {
+                    writeByte(VALUE_STRING);
+                    writeString(value.toString());
+                }
+            }
+        }
+
+        private static boolean isReservedKey(String key) {
+            return AbstractMessage.MESSAGE_TYPE.equals(key) || TokenCountUtils.TOKEN_COUNT_KEY.equals(key);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(STRING_NULL);
+                return;
+            }
+            Integer index = stringPool.get(value);
+            if (index != null) {
+                writeVarInt(STRING_REF_BASE + index);
+                return;
+            }
+            stringPool.put(value, stringPool.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(STRING_LITERAL);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * 解码器
+     */
+    private static final class Reader {
+
+        private final byte[] buffer;
+
+        private int position;
+
+        private int version;
+
+        private final List<String> stringPool = new ArrayList<>();
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        void readHeader() {
+            position = 2;
+            version = readByte();
+            if (version > VERSION) {
+                throw new IllegalStateException("不支持的对话记忆编码版本：" + version);
+            }
+        }
+
+        Message readMessage() {
+            int type = readByte();
+            int tokenCount = version >= VERSION_TOKEN_COUNT ? readVarInt() : -1;
+            Message message = switch (type) {
+                case TYPE_USER -> {
+                    String text = readString();
+                    Map<String, Object> metadata = readMetadata();
+                    yield new UserMessage(text, List.of(), metadata);
+                }
+                case TYPE_SYSTEM -> {
+                    String text = readString();
+                    Map<String, Object> metadata = readMetadata();
+                    SystemMessage systemMessage = new SystemMessage(text);
+                    systemMessage.getMetadata().putAll(metadata);
+                    yield systemMessage;
+                }
+                case TYPE_ASSISTANT -> {
+                    String text = readString();
+                    Map<String, Object> metadata = readMetadata();
+                    int toolCallCount = readVarInt();
+                    List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>(toolCallCount);
+                    for (int i = 0; i < toolCallCount; i++) {
+                        toolCalls.add(new AssistantMessage.ToolCall(readString(), readString(), readString(), readString()));
+                    }
+                    yield new AssistantMessage(text, metadata, toolCalls);
+                }
+                case TYPE_TOOL -> {
+                    Map<String, Object> metadata = readMetadata();
+                    int responseCount = readVarInt();
+                    List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(responseCount);
+                    for (int i = 0; i < responseCount; i++) {
+                        responses.add(new ToolResponseMessage.ToolResponse(readString(), readString(), readString()));
+                    }
+                    yield new ToolResponseMessage(responses, metadata);
+                }
+                default -> throw new IllegalStateException("未知的消息类型 ID：" + type);
+            };
+            // 旧版本数据没有记录 token 数，读取时估算一次
+            message.getMetadata().put(TokenCountUtils.TOKEN_COUNT_KEY,
+                    tokenCount >= 0 ? tokenCount : TokenCountUtils.tokensOf(message));
+            return message;
+        }
+
+        Map<String, Object> readMetadata() {
+            int size = readVarInt();
+            Map<String, Object> metadata = new LinkedHashMap<>(Math.max(4, size * 2));
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                int valueType = readByte();
+                Object value = switch (valueType) {
+                    case VALUE_NULL -> null;
+                    case VALUE_INT -> (int) unZigZag(readVarLong());
+                    case VALUE_LONG -> unZigZag(readVarLong());
+                    case VALUE_DOUBLE -> Double.longBitsToDouble(readLong());
+                    case VALUE_BOOLEAN -> readByte() != 0;
+                    default -> readString();
+                };
+                metadata.put(key, value);
+            }
+            return metadata;
+        }
+
+        String readString() {
+            int tag = readVarInt();
+            if (tag == STRING_NULL) {
+                return null;
+            }
+            if (tag >= STRING_REF_BASE) {
+                return stringPool.get(tag - STRING_REF_BASE);
+            }
+            int length = readVarInt();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            stringPool.add(value);
+            return value;
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalStateException("varint 格式错误");
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
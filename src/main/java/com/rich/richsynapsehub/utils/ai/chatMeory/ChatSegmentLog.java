@@ -0,0 +1,559 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.enumeration.FileSyncPolicy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 单个会话的追加写分段日志，供 {@link FileChatMemory} 使用
+ * <p>
+ * 目录结构：
+ * segment-00000000.log  消息记录，每条记录为 [int 长度][int CRC32][消息字节]
+ * index.idx             偏移索引，每条消息一个定长条目 [int 段号][long 段内偏移]
+ * <p>
+ * 索引是唯一可信来源：追加时先写段再写索引，打开时校验索引尾部条目对应记录的 CRC，
+ * 丢弃指向残缺记录的条目，并把活动段截断到最后一条已索引记录的末尾（即丢弃写了一半的记录），
+ * 未被索引引用的段（滚动后未落索引、或压缩中途宕机产生的段）会被清理。
+ * INTERVAL 刷盘策略下，追加时距上次刷盘超过间隔才刷盘，其余未刷盘的写入由 {@link #syncIfDirty()} 在后台定时刷盘。
+ * 日志被 {@link #close()} 后所有读写操作抛出 {@link ClosedChannelException}，调用方需重新打开。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/5
+ **/
+@Slf4j
+class ChatSegmentLog {
+
+    /**
+     * 记录头长度：int 长度 + int CRC32
+     */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /**
+     * 索引条目长度：int 段号 + long 偏移
+     */
+    private static final int INDEX_ENTRY_BYTES = 12;
+
+    private static final String INDEX_FILE = "index.idx";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final Path dir;
+
+    private final FileSyncPolicy syncPolicy;
+
+    private final long syncIntervalMillis;
+
+    private final long maxSegmentBytes;
+
+    private final int compactSegmentThreshold;
+
+    private final int retainMessages;
+
+    /**
+     * 最早的段号
+     */
+    private int firstSegment;
+
+    /**
+     * 当前追加的段号
+     */
+    private int activeSegment;
+
+    /**
+     * 当前段已写入的字节数
+     */
+    private long activeSize;
+
+    /**
+     * 已索引的消息条数
+     */
+    private long count;
+
+    private long lastSyncTime = System.currentTimeMillis();
+
+    /**
+     * 最早一个存在未刷盘写入的段号，-1 表示全部已刷盘
+     */
+    private int unsyncedFrom = -1;
+
+    private boolean closed;
+
+    /**
+     * 打开会话日志，并执行崩溃恢复
+     *
+     * @param dir                     会话目录
+     * @param syncPolicy              刷盘策略
+     * @param syncIntervalMillis      INTERVAL 策略下的刷盘间隔
+     * @param maxSegmentBytes         单个段的最大字节数，超过后滚动新段
+     * @param compactSegmentThreshold 段数超过该值时触发压缩
+     * @param retainMessages          压缩时保留的最近消息条数，小于等于 0 表示全部保留（仅合并段）
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    ChatSegmentLog(Path dir, FileSyncPolicy syncPolicy, long syncIntervalMillis, long maxSegmentBytes,
+                   int compactSegmentThreshold, int retainMessages) throws IOException {
+        this.dir = dir;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compactSegmentThreshold = compactSegmentThreshold;
+        this.retainMessages = retainMessages;
+        recover();
+    }
+
+    /**
+     * 已存储的消息条数
+     *
+     * @return long
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized long size() {
+        return count;
+    }
+
+    /**
+     * 追加一批消息记录，只写入新增字节；段数超过阈值时触发压缩
+     *
+     * @param payloads
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized void append(List<byte[]> payloads) throws IOException {
+        ensureOpen();
+        if (payloads.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(dir);
+        if (activeSize >= maxSegmentBytes) {
+            activeSegment++;
+            activeSize = 0;
+        }
+        int recordBytes = 0;
+        for (byte[] payload : payloads) {
+            recordBytes += RECORD_HEADER_BYTES + payload.length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(recordBytes);
+        ByteBuffer entries = ByteBuffer.allocate(payloads.size() * INDEX_ENTRY_BYTES);
+        long offset = activeSize;
+        for (byte[] payload : payloads) {
+            entries.putInt(activeSegment).putLong(offset);
+            records.putInt(payload.length).putInt(crc(payload)).put(payload);
+            offset += RECORD_HEADER_BYTES + payload.length;
+        }
+        records.flip();
+        entries.flip();
+
+        boolean sync = shouldSync();
+        if (unsyncedFrom < 0) {
+            unsyncedFrom = activeSegment;
+        }
+        // 先写段，再写索引：索引落盘即代表记录已完整
+        try (FileChannel segment = FileChannel.open(segmentPath(activeSegment), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            writeFully(segment, records, activeSize);
+            if (sync) {
+                segment.force(false);
+            }
+        }
+        if (sync) {
+            // 滚动前的段可能还有未刷盘的写入
+            forceSegments(unsyncedFrom, activeSegment - 1);
+        }
+        try (FileChannel index = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            writeFully(index, entries, count * INDEX_ENTRY_BYTES);
+            if (sync) {
+                index.force(false);
+                unsyncedFrom = -1;
+                lastSyncTime = System.currentTimeMillis();
+            }
+        }
+        activeSize = offset;
+        count += payloads.size();
+
+        if (activeSegment - firstSegment + 1 > compactSegmentThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * 读取 [from, to) 区间的消息记录，通过索引直接定位，不扫描段文件
+     *
+     * @param from
+     * @param to
+     * @return java.util.List<byte[]>
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized List<byte[]> readRange(long from, long to) throws IOException {
+        ensureOpen();
+        from = Math.max(0, from);
+        to = Math.min(count, to);
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+        int n = (int) (to - from);
+        ByteBuffer entries = ByteBuffer.allocate(n * INDEX_ENTRY_BYTES);
+        try (FileChannel index = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.READ)) {
+            readFully(index, entries, from * INDEX_ENTRY_BYTES);
+        }
+        entries.flip();
+        List<byte[]> payloads = new ArrayList<>(n);
+        Map<Integer, FileChannel> segments = new HashMap<>();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            for (int i = 0; i < n; i++) {
+                int segmentNo = entries.getInt();
+                long offset = entries.getLong();
+                FileChannel segment = segments.get(segmentNo);
+                if (segment == null) {
+                    segment = FileChannel.open(segmentPath(segmentNo), StandardOpenOption.READ);
+                    segments.put(segmentNo, segment);
+                }
+                header.clear();
+                readFully(segment, header, offset);
+                header.flip();
+                int length = header.getInt();
+                int expectedCrc = header.getInt();
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(segment, payload, offset + RECORD_HEADER_BYTES);
+                byte[] bytes = payload.array();
+                if (crc(bytes) != expectedCrc) {
+                    throw new IOException("对话记录校验失败：" + dir + " 段 " + segmentNo + " 偏移 " + offset);
+                }
+                payloads.add(bytes);
+            }
+        } finally {
+            for (FileChannel segment : segments.values()) {
+                segment.close();
+            }
+        }
+        return payloads;
+    }
+
+    /**
+     * 读取最后 N 条消息记录
+     *
+     * @param lastN
+     * @return java.util.List<byte[]>
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized List<byte[]> readTail(int lastN) throws IOException {
+        return readRange(count - lastN, count);
+    }
+
+    /**
+     * 压缩：把保留的消息重写到一个新段，原子替换索引后删除旧段
+     * 新段在索引提交前不被引用，中途宕机时会在恢复阶段被当作孤儿段清理
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized void compact() throws IOException {
+        ensureOpen();
+        if (count == 0) {
+            return;
+        }
+        long from = retainMessages > 0 ? Math.max(0, count - retainMessages) : 0;
+        List<byte[]> payloads = readRange(from, count);
+        int newSegment = activeSegment + 1;
+
+        int recordBytes = 0;
+        for (byte[] payload : payloads) {
+            recordBytes += RECORD_HEADER_BYTES + payload.length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(recordBytes);
+        ByteBuffer entries = ByteBuffer.allocate(payloads.size() * INDEX_ENTRY_BYTES);
+        long offset = 0;
+        for (byte[] payload : payloads) {
+            entries.putInt(newSegment).putLong(offset);
+            records.putInt(payload.length).putInt(crc(payload)).put(payload);
+            offset += RECORD_HEADER_BYTES + payload.length;
+        }
+        records.flip();
+        entries.flip();
+
+        Path segmentTmp = dir.resolve(segmentPath(newSegment).getFileName() + TMP_SUFFIX);
+        Path indexTmp = dir.resolve(INDEX_FILE + TMP_SUFFIX);
+        try (FileChannel segment = FileChannel.open(segmentTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(segment, records, 0);
+            segment.force(false);
+        }
+        try (FileChannel index = FileChannel.open(indexTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(index, entries, 0);
+            index.force(false);
+        }
+        Files.move(segmentTmp, segmentPath(newSegment), StandardCopyOption.ATOMIC_MOVE);
+        // 提交点：替换索引
+        Files.move(indexTmp, dir.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (int segmentNo = firstSegment; segmentNo <= activeSegment; segmentNo++) {
+            Files.deleteIfExists(segmentPath(segmentNo));
+        }
+        log.info("对话日志压缩完成：{}，{} 条消息 -> {} 条", dir.getFileName(), count, payloads.size());
+        firstSegment = newSegment;
+        activeSegment = newSegment;
+        activeSize = offset;
+        count = payloads.size();
+        unsyncedFrom = -1;
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 删除整个会话日志
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized void delete() throws IOException {
+        ensureOpen();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        firstSegment = 0;
+        activeSegment = 0;
+        activeSize = 0;
+        count = 0;
+        unsyncedFrom = -1;
+    }
+
+    /**
+     * 把尚未刷盘的段与索引刷盘（先段后索引），供 INTERVAL 策略的后台定时任务调用
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized void syncIfDirty() throws IOException {
+        if (closed || unsyncedFrom < 0) {
+            return;
+        }
+        forceSegments(unsyncedFrom, activeSegment);
+        Path indexPath = dir.resolve(INDEX_FILE);
+        if (Files.exists(indexPath)) {
+            try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+                index.force(false);
+            }
+        }
+        unsyncedFrom = -1;
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 关闭日志：先刷盘未刷盘的写入，之后的读写操作均抛出 {@link ClosedChannelException}
+     * 同一目录同时只允许一个打开的实例，关闭会等待进行中的读写完成
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    synchronized void close() throws IOException {
+        try {
+            syncIfDirty();
+        } finally {
+            closed = true;
+        }
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 崩溃恢复：清理临时文件，丢弃尾部无效索引条目，截断残缺记录，删除孤儿段
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    private void recover() throws IOException {
+        firstSegment = 0;
+        activeSegment = 0;
+        activeSize = 0;
+        count = 0;
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Integer> segmentNos = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                Matcher matcher = SEGMENT_PATTERN.matcher(name);
+                if (matcher.matches()) {
+                    segmentNos.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+
+        Path indexPath = dir.resolve(INDEX_FILE);
+        long entryCount = Files.exists(indexPath) ? Files.size(indexPath) / INDEX_ENTRY_BYTES : 0;
+        long lastEnd = -1;
+        int lastSegment = 0;
+        if (entryCount > 0) {
+            try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+                while (entryCount > 0) {
+                    entry.clear();
+                    readFully(index, entry, (entryCount - 1) * INDEX_ENTRY_BYTES);
+                    entry.flip();
+                    lastSegment = entry.getInt();
+                    lastEnd = validRecordEnd(lastSegment, entry.getLong());
+                    if (lastEnd >= 0) {
+                        break;
+                    }
+                    entryCount--;
+                }
+                if (index.size() != entryCount * INDEX_ENTRY_BYTES) {
+                    log.warn("对话日志 {} 存在残缺索引，截断至 {} 条", dir.getFileName(), entryCount);
+                    index.truncate(entryCount * INDEX_ENTRY_BYTES);
+                }
+                if (entryCount > 0) {
+                    entry.clear();
+                    readFully(index, entry, 0);
+                    entry.flip();
+                    firstSegment = entry.getInt();
+                }
+            }
+        }
+
+        if (entryCount == 0) {
+            for (int segmentNo : segmentNos) {
+                Files.deleteIfExists(segmentPath(segmentNo));
+            }
+            Files.deleteIfExists(indexPath);
+            return;
+        }
+        activeSegment = lastSegment;
+        activeSize = lastEnd;
+        count = entryCount;
+        try (FileChannel segment = FileChannel.open(segmentPath(activeSegment), StandardOpenOption.WRITE)) {
+            if (segment.size() > activeSize) {
+                log.warn("对话日志 {} 段 {} 存在未索引的残缺记录，截断 {} 字节",
+                        dir.getFileName(), activeSegment, segment.size() - activeSize);
+                segment.truncate(activeSize);
+            }
+        }
+        for (int segmentNo : segmentNos) {
+            if (segmentNo < firstSegment || segmentNo > activeSegment) {
+                Files.deleteIfExists(segmentPath(segmentNo));
+            }
+        }
+    }
+
+    /**
+     * 校验指定位置的记录是否完整，完整时返回记录末尾偏移，否则返回 -1
+     *
+     * @param segmentNo
+     * @param offset
+     * @return long
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    private long validRecordEnd(int segmentNo, long offset) throws IOException {
+        Path path = segmentPath(segmentNo);
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (FileChannel segment = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = segment.size();
+            if (offset + RECORD_HEADER_BYTES > size) {
+                return -1;
+            }
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            readFully(segment, header, offset);
+            header.flip();
+            int length = header.getInt();
+            int expectedCrc = header.getInt();
+            if (length < 0 || offset + RECORD_HEADER_BYTES + length > size) {
+                return -1;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(segment, payload, offset + RECORD_HEADER_BYTES);
+            if (crc(payload.array()) != expectedCrc) {
+                return -1;
+            }
+            return offset + RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /** 刷盘 [from, to] 区间内仍存在的段 */
+    private void forceSegments(int from, int to) throws IOException {
+        for (int segmentNo = Math.max(from, firstSegment); segmentNo <= to; segmentNo++) {
+            Path path = segmentPath(segmentNo);
+            if (Files.exists(path)) {
+                try (FileChannel segment = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    segment.force(false);
+                }
+            }
+        }
+    }
+
+    private boolean shouldSync() {
+        return switch (syncPolicy) {
+            case ALWAYS -> true;
+            case INTERVAL -> System.currentTimeMillis() - lastSyncTime >= syncIntervalMillis;
+            default -> false;
+        };
+    }
+
+    private Path segmentPath(int segmentNo) {
+        return dir.resolve(String.format("segment-%08d.log", segmentNo));
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return (int) crc32.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("对话日志读取越界：" + position);
+            }
+            position += read;
+        }
+    }
+}
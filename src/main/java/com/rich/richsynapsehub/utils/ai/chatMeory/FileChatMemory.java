@@ -1,42 +1,80 @@
 package com.rich.richsynapsehub.utils.ai.chatMeory;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import org.objenesis.strategy.StdInstantiatorStrategy;
-import org.springframework.ai.chat.memory.ChatMemory;
+import com.rich.richsynapsehub.enumeration.FileSyncPolicy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.messages.Message;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 自定义对话持久化存储到文件，实现 ChatMemory 接口
  * 用法：ChatMemory https://docs.spring.io/spring-ai/reference/api/chat-memory.html#_quick_start
- * Kryo 序列化 https://juejin.cn/post/6993647089431347237
+ * <p>
+ * 每个会话对应一个目录，以追加写分段日志 + 偏移索引的方式存储（见 {@link ChatSegmentLog}）：
+ * add 只追加新消息，get(lastN) 通过索引直接定位到尾部记录，不再整体读写会话文件。
+ * 消息编解码使用 {@link ChatMessageCodec}，旧版本的 &lt;chatId&gt;.kryo 整体文件会在首次访问时自动导入。
+ * 会话 ID 直接作为目录名，包含路径分隔符或 ".." 的 ID 会被拒绝，防止读写存储目录之外的文件。
+ * 已打开的会话日志按 LRU 最多保留 {@link #DEFAULT_MAX_OPEN_LOGS} 个，读取不存在的会话不会打开日志；
+ * INTERVAL 刷盘策略下由一个后台线程按间隔刷盘所有存在未刷盘写入的会话日志。
  *
  * @author DuRuiChi
- * @return
  * @create 2025/7/4
  **/
-public class FileChatMemory implements ChatMemory {
+@Slf4j
+public class FileChatMemory implements TokenBudgetChatMemory {
+
+    /**
+     * 默认单个段最大字节数：4MB
+     */
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * 默认段数超过 8 个时触发压缩
+     */
+    private static final int DEFAULT_COMPACT_SEGMENT_THRESHOLD = 8;
+
+    /**
+     * 最多同时打开的会话日志数，超过后按 LRU 关闭（状态可随时从磁盘恢复）
+     */
+    static final int DEFAULT_MAX_OPEN_LOGS = 1024;
 
     private final String BASE_DIR_URL;
-    private static final Kryo kryo = new Kryo();
+
+    private final FileSyncPolicy syncPolicy;
+
+    private final long syncIntervalMillis;
+
+    private final long maxSegmentBytes;
+
+    private final int compactSegmentThreshold;
+
+    private final int retainMessages;
 
     /**
-     * 初始化 Kryo 序列化器
-     * 使用 Kryo 高性能序列化（比 JDK 序列化快 10 倍+，体积小 3-5 倍）
-     **/
-    static {
-        kryo.setRegistrationRequired(false);
-        // 设置实例化策略
-        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
-    }
+     * 已打开的会话日志（仅保存少量状态，不持有文件句柄），访问顺序 LRU，读写均需持有该对象的锁
+     * 被淘汰的日志会先关闭，保证同一会话目录同时只有一个打开的实例
+     */
+    private final LinkedHashMap<String, ChatSegmentLog> chatLogs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChatSegmentLog> eldest) {
+            if (size() <= DEFAULT_MAX_OPEN_LOGS) {
+                return false;
+            }
+            closeQuietly(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
 
     /**
      * 初始化持久化存储到的文件
@@ -47,18 +85,49 @@ public class FileChatMemory implements ChatMemory {
      * @create 2025/7/4
      **/
     public FileChatMemory(String dir) {
+        this(dir, FileSyncPolicy.NONE, 1000, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_COMPACT_SEGMENT_THRESHOLD, 0);
+    }
+
+    /**
+     * 初始化持久化存储到的文件，并指定分段日志参数
+     *
+     * @param dir                     存储目录
+     * @param syncPolicy              刷盘策略
+     * @param syncIntervalMillis      INTERVAL 策略下的刷盘间隔（毫秒）
+     * @param maxSegmentBytes         单个段最大字节数
+     * @param compactSegmentThreshold 段数超过该值时触发压缩
+     * @param retainMessages          压缩时保留的最近消息条数，小于等于 0 表示全部保留
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    public FileChatMemory(String dir, FileSyncPolicy syncPolicy, long syncIntervalMillis, long maxSegmentBytes,
+                          int compactSegmentThreshold, int retainMessages) {
         // 初始化路径
         BASE_DIR_URL = dir;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compactSegmentThreshold = compactSegmentThreshold;
+        this.retainMessages = retainMessages;
         // 初始化文件夹
         File baseDir = new File(BASE_DIR_URL);
         // 如果文件夹不存在，创建文件夹
         if (!baseDir.exists()) {
             baseDir.mkdirs();
         }
+        // INTERVAL 策略：追加时只在超过间隔时刷盘，间隔内其余写入由后台线程定时刷盘（守护线程，不阻止进程退出）
+        if (syncPolicy == FileSyncPolicy.INTERVAL && syncIntervalMillis > 0) {
+            ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncExecutor.scheduleWithFixedDelay(this::syncDirtyLogs, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
-     * 实现接口方法，添加消息到指定的聊天会话中
+     * 实现接口方法，添加消息到指定的聊天会话中（仅追加新消息）
      *
      * @param chatId
      * @param newMessages
@@ -68,12 +137,58 @@ public class FileChatMemory implements ChatMemory {
      **/
     @Override
     public void add(String chatId, List<Message> newMessages) {
-        // 获取已有历史消息
-        List<Message> chatMessages = getOrCreateChat(chatId);
-        // 录入新消息
-        chatMessages.addAll(newMessages);
-        // 保存消息
-        saveChat(chatId, chatMessages);
+        if (newMessages == null || newMessages.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(newMessages.size());
+        for (Message message : newMessages) {
+            payloads.add(ChatMessageCodec.encode(message));
+        }
+        appendPayloads(chatId, payloads);
+    }
+
+    /**
+     * 追加已编码的消息（{@link ChatMessageCodec#encode(Message)} 的结果），供溢写到文件的内存存储使用
+     *
+     * @param chatId
+     * @param payloads
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    void appendPayloads(String chatId, List<byte[]> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        try {
+            withChatLog(chatId, true, chatLog -> {
+                chatLog.append(payloads);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("对话记忆写入文件失败", e);
+        }
+    }
+
+    /**
+     * 读取最后 N 条已编码的消息
+     *
+     * @param chatId
+     * @param lastN
+     * @return java.util.List<byte[]>
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    List<byte[]> readPayloads(String chatId, int lastN) {
+        if (lastN <= 0) {
+            return new ArrayList<>();
+        }
+        try {
+            List<byte[]> payloads = withChatLog(chatId, false, chatLog -> chatLog.readTail(lastN));
+            return payloads == null ? new ArrayList<>() : payloads;
+        } catch (IOException e) {
+            throw new RuntimeException("对话记忆读取文件失败", e);
+        }
     }
 
     /**
@@ -87,10 +202,34 @@ public class FileChatMemory implements ChatMemory {
      **/
     @Override
     public List<Message> get(String chatId, int lastN) {
-        List<Message> messages = getOrCreateChat(chatId);
-        return messages.stream()
-                .skip(Math.max(0, messages.size() - lastN))
-                .toList();
+        if (lastN <= 0) {
+            return List.of();
+        }
+        List<byte[]> payloads = readPayloads(chatId, lastN);
+        List<Message> messages = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            messages.add(ChatMessageCodec.decode(payload));
+        }
+        return messages;
+    }
+
+    /**
+     * 获取指定聊天会话中总 token 数不超过预算的最近消息
+     * 借助写入时记录的 token 数从尾部挑选，只解码预算内的消息
+     *
+     * @param chatId
+     * @param tokenBudget
+     * @param maxMessages
+     * @return java.util.List<org.springframework.ai.chat.messages.Message>
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    @Override
+    public List<Message> getWithinTokenBudget(String chatId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return List.of();
+        }
+        return ChatMessageCodec.tailWithinBudget(readPayloads(chatId, maxMessages), tokenBudget);
     }
 
     /**
@@ -103,64 +242,165 @@ public class FileChatMemory implements ChatMemory {
      **/
     @Override
     public void clear(String chatId) {
-        File file = getChatFile(chatId);
-        if (file.exists()) {
-            file.delete();
+        try {
+            withChatLog(chatId, false, chatLog -> {
+                chatLog.delete();
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("对话记忆删除失败", e);
+        } finally {
+            ChatSegmentLog removed;
+            synchronized (chatLogs) {
+                removed = chatLogs.remove(chatId);
+            }
+            if (removed != null) {
+                closeQuietly(chatId, removed);
+            }
+        }
+        File legacyFile = getLegacyChatFile(chatId);
+        if (legacyFile.exists()) {
+            legacyFile.delete();
         }
     }
 
     /**
-     * 序列化，保存指定聊天会话的所有消息
+     * 在指定会话的分段日志上执行操作；日志在操作前被 LRU 淘汰关闭时重新打开并重试
      *
      * @param chatId
-     * @param messages
-     * @return void
+     * @param create 会话不存在时是否创建，为 false 时会话不存在直接返回 null
+     * @param action
+     * @return T
      * @author DuRuiChi
-     * @create 2025/7/4
+     * @create 2025/8/5
      **/
-    private void saveChat(String chatId, List<Message> messages) {
-        File file = getChatFile(chatId);
-        // 转为输出流后，序列化写入文件，并自动关闭流
-        try (Output output = new Output(new FileOutputStream(file))) {
-            kryo.writeObject(output, messages);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private <T> T withChatLog(String chatId, boolean create, ChatLogAction<T> action) throws IOException {
+        while (true) {
+            ChatSegmentLog chatLog = getChatLog(chatId, create);
+            if (chatLog == null) {
+                return null;
+            }
+            try {
+                return action.apply(chatLog);
+            } catch (ClosedChannelException e) {
+                if (!chatLog.isClosed()) {
+                    throw e;
+                }
+            }
         }
     }
 
     /**
-     * 反序列化，获取指定聊天会话的所有消息
+     * 获取（必要时打开并恢复）指定会话的分段日志
      *
      * @param chatId
-     * @return java.util.List<org.springframework.ai.chat.messages.Message>
+     * @param create 会话目录与旧版文件都不存在时是否仍打开（创建）日志
+     * @return com.rich.richsynapsehub.utils.ai.chatMeory.ChatSegmentLog
      * @author DuRuiChi
-     * @create 2025/7/4
+     * @create 2025/8/5
      **/
-    private List<Message> getOrCreateChat(String chatId) {
-        File file = getChatFile(chatId);
-        List<Message> messages = new ArrayList<>();
-        // 如果文件不存在，直接返回空列表
-        if (file.exists()) {
-            // 转为输入流后，反序列化读取文件，并自动关闭流
-            try (Input input = new Input(new FileInputStream(file))) {
-                messages = kryo.readObject(input, ArrayList.class);
+    private ChatSegmentLog getChatLog(String chatId, boolean create) throws IOException {
+        Path dir = resolveChatDir(chatId);
+        synchronized (chatLogs) {
+            ChatSegmentLog chatLog = chatLogs.get(chatId);
+            if (chatLog != null) {
+                return chatLog;
+            }
+            if (!create && !Files.isDirectory(dir) && !getLegacyChatFile(chatId).exists()) {
+                return null;
+            }
+            chatLog = new ChatSegmentLog(dir, syncPolicy, syncIntervalMillis, maxSegmentBytes,
+                    compactSegmentThreshold, retainMessages);
+            importLegacyChat(chatId, chatLog);
+            chatLogs.put(chatId, chatLog);
+            return chatLog;
+        }
+    }
+
+    /**
+     * 解析会话目录，拒绝可能逃出存储目录的会话 ID
+     *
+     * @param chatId
+     * @return java.nio.file.Path
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    private Path resolveChatDir(String chatId) {
+        if (chatId == null || chatId.isBlank() || chatId.contains("/") || chatId.contains("\\")
+                || chatId.contains("..") || chatId.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("非法的会话 ID：" + chatId);
+        }
+        Path baseDir = Path.of(BASE_DIR_URL).toAbsolutePath().normalize();
+        Path dir = baseDir.resolve(chatId).normalize();
+        if (!baseDir.equals(dir.getParent())) {
+            throw new IllegalArgumentException("非法的会话 ID：" + chatId);
+        }
+        return dir;
+    }
+
+    /** 后台刷盘所有存在未刷盘写入的会话日志 */
+    private void syncDirtyLogs() {
+        List<Map.Entry<String, ChatSegmentLog>> openLogs;
+        synchronized (chatLogs) {
+            openLogs = new ArrayList<>(chatLogs.entrySet());
+        }
+        for (Map.Entry<String, ChatSegmentLog> entry : openLogs) {
+            try {
+                entry.getValue().syncIfDirty();
             } catch (IOException e) {
-                e.printStackTrace();
+                log.error("对话日志刷盘失败，会话 ID：{}", entry.getKey(), e);
             }
         }
-        return messages;
+    }
+
+    private void closeQuietly(String chatId, ChatSegmentLog chatLog) {
+        try {
+            chatLog.close();
+        } catch (IOException e) {
+            log.error("对话日志关闭失败，会话 ID：{}", chatId, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChatLogAction<T> {
+        T apply(ChatSegmentLog chatLog) throws IOException;
+    }
+
+    /**
+     * 将旧版整体存储的 &lt;chatId&gt;.kryo 文件导入分段日志，导入完成后删除旧文件
+     *
+     * @param chatId
+     * @param chatLog
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/5
+     **/
+    private void importLegacyChat(String chatId, ChatSegmentLog chatLog) throws IOException {
+        File legacyFile = getLegacyChatFile(chatId);
+        if (!legacyFile.exists()) {
+            return;
+        }
+        if (chatLog.size() == 0) {
+            List<Message> messages = ChatMessageCodec.decodeAll(Files.readAllBytes(legacyFile.toPath()));
+            List<byte[]> payloads = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                payloads.add(ChatMessageCodec.encode(message));
+            }
+            chatLog.append(payloads);
+            log.info("导入旧格式对话记忆文件：{}，共 {} 条消息", legacyFile.getName(), messages.size());
+        }
+        legacyFile.delete();
     }
 
     /**
-     * 获取指定聊天会话的文件路径
+     * 获取指定聊天会话的旧版整体存储文件路径
      *
      * @param chatId
      * @return java.io.File
      * @author DuRuiChi
      * @create 2025/7/4
      **/
-    private File getChatFile(String chatId) {
-        // 若果目录不存在，创建目录；否则，直接返回文件
+    private File getLegacyChatFile(String chatId) {
         return new File(BASE_DIR_URL, chatId + ".kryo");
     }
 }
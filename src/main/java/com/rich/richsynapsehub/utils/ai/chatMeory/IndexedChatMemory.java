@@ -0,0 +1,69 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.service.ChatConversationService;
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+
+/**
+ * 维护会话索引的装饰层：每次写入消息后更新所属用户的会话列表（见 {@link ChatConversationService}）
+ * 索引更新失败不影响对话记忆本身的写入；应用关闭时转发给需要释放资源的下游存储
+ *
+ * @author DuRuiChi
+ * @create 2025/8/12
+ **/
+@Slf4j
+public class IndexedChatMemory implements TokenBudgetChatMemory, DisposableBean {
+
+    private final ChatMemory delegate;
+
+    private final ChatConversationService chatConversationService;
+
+    public IndexedChatMemory(ChatMemory delegate, ChatConversationService chatConversationService) {
+        this.delegate = delegate;
+        this.chatConversationService = chatConversationService;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        delegate.add(conversationId, messages);
+        try {
+            chatConversationService.touch(conversationId, messages);
+        } catch (Exception e) {
+            log.warn("会话索引更新失败，会话 ID：{}，{}", conversationId, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        return delegate.get(conversationId, lastN);
+    }
+
+    @Override
+    public List<Message> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (delegate instanceof TokenBudgetChatMemory tokenBudgetChatMemory) {
+            return tokenBudgetChatMemory.getWithinTokenBudget(conversationId, tokenBudget, maxMessages);
+        }
+        return TokenCountUtils.tailWithinBudget(delegate.get(conversationId, maxMessages), tokenBudget);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        delegate.clear(conversationId);
+        chatConversationService.remove(conversationId);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (delegate instanceof DisposableBean disposableBean) {
+            disposableBean.destroy();
+        }
+    }
+}
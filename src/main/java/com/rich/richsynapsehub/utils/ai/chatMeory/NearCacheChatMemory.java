@@ -0,0 +1,238 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 对话记忆的进程内近端缓存（L1），装饰 {@link RedisChatMemory} 等远端存储
+ * <p>
+ * 按会话 ID 缓存已解码的最近消息窗口，按条目数（LRU）和 TTL 双重限制大小；
+ * 写入时先写下游，再删除本节点缓存并通过 Redis Pub/Sub 广播失效消息，其他节点收到后删除对应会话的缓存；
+ * 写入不合并进缓存，下次读取从下游重新加载，缓存内容始终是下游某一时刻的真实窗口（顺序与条数上限均以下游为准）。命中、未命中、淘汰次数以 Micrometer 指标暴露。
+ * 按 token 预算读取时，缓存窗口足以确定结果（预算或条数在窗口内用完，或窗口已包含全部消息）则直接返回，否则交给下游按预算读取。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/7
+ **/
+@Slf4j
+public class NearCacheChatMemory implements TokenBudgetChatMemory {
+
+    /**
+     * 失效广播频道
+     */
+    public static final String INVALIDATION_CHANNEL = "chat:memory:invalidate";
+
+    /**
+     * 失效消息中节点 ID 与会话 ID 的分隔符
+     */
+    static final char SEPARATOR = '\n';
+
+    private final ChatMemory delegate;
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+
+    /**
+     * 本节点 ID，用于忽略自己发出的失效消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final long ttlMillis;
+
+    /**
+     * 单个会话最多缓存的消息条数
+     */
+    private final int maxWindow;
+
+    /**
+     * LRU 缓存，访问顺序排列，超过上限时淘汰最久未访问的会话
+     */
+    private final LinkedHashMap<String, CacheEntry> cache;
+
+    /**
+     * 失效计数，用于防止加载过程中发生写入/失效时把旧数据放入缓存
+     */
+    private long invalidations;
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter evictionCounter;
+
+    /**
+     * 缓存条目
+     *
+     * @param messages 最近消息窗口（不可变）
+     * @param complete 是否包含该会话的全部消息
+     * @param expireAt 过期时间戳
+     */
+    private record CacheEntry(List<Message> messages, boolean complete, long expireAt) {
+    }
+
+    public NearCacheChatMemory(ChatMemory delegate, RedisTemplate<String, byte[]> redisTemplate,
+                               int maxEntries, long ttlMillis, int maxWindow, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.redisTemplate = redisTemplate;
+        this.ttlMillis = ttlMillis;
+        this.maxWindow = maxWindow;
+        this.hitCounter = Counter.builder("chat.memory.near.cache.hits").description("对话记忆近端缓存命中次数").register(meterRegistry);
+        this.missCounter = Counter.builder("chat.memory.near.cache.misses").description("对话记忆近端缓存未命中次数").register(meterRegistry);
+        this.evictionCounter = Counter.builder("chat.memory.near.cache.evictions").description("对话记忆近端缓存淘汰次数").register(meterRegistry);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxEntries) {
+                    evictionCounter.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("chat.memory.near.cache.size", this, NearCacheChatMemory::size)
+                .description("对话记忆近端缓存会话数").register(meterRegistry);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        delegate.add(conversationId, messages);
+        // 并发写入在下游的先后顺序、以及下游按条数上限的裁剪都无法在本地准确复现，直接失效而不是合并
+        invalidateLocal(conversationId);
+        publishInvalidation(conversationId);
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return List.of();
+        }
+        long loadEpoch;
+        synchronized (this) {
+            CacheEntry entry = cache.get(conversationId);
+            if (entry != null) {
+                if (isExpired(entry)) {
+                    cache.remove(conversationId);
+                    evictionCounter.increment();
+                } else if (entry.complete() || entry.messages().size() >= lastN) {
+                    hitCounter.increment();
+                    List<Message> messages = entry.messages();
+                    return messages.subList(Math.max(0, messages.size() - lastN), messages.size());
+                }
+            }
+            loadEpoch = invalidations;
+        }
+        missCounter.increment();
+        List<Message> loaded = delegate.get(conversationId, lastN);
+        if (lastN <= maxWindow) {
+            synchronized (this) {
+                // 加载期间发生过写入或失效，放弃缓存本次结果
+                if (loadEpoch == invalidations) {
+                    cache.put(conversationId, new CacheEntry(List.copyOf(loaded), loaded.size() < lastN,
+                            System.currentTimeMillis() + ttlMillis));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<Message> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return List.of();
+        }
+        synchronized (this) {
+            CacheEntry entry = cache.get(conversationId);
+            if (entry != null && !isExpired(entry)) {
+                List<Message> window = entry.messages();
+                int from = Math.max(0, window.size() - maxMessages);
+                List<Message> candidates = window.subList(from, window.size());
+                List<Message> selected = TokenCountUtils.tailWithinBudget(candidates, tokenBudget);
+                if (selected.size() < candidates.size() || from > 0 || entry.complete()) {
+                    hitCounter.increment();
+                    return selected;
+                }
+            }
+        }
+        missCounter.increment();
+        if (delegate instanceof TokenBudgetChatMemory tokenBudgetChatMemory) {
+            return tokenBudgetChatMemory.getWithinTokenBudget(conversationId, tokenBudget, maxMessages);
+        }
+        return TokenCountUtils.tailWithinBudget(delegate.get(conversationId, maxMessages), tokenBudget);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        delegate.clear(conversationId);
+        invalidateLocal(conversationId);
+        publishInvalidation(conversationId);
+    }
+
+    /**
+     * 处理 Pub/Sub 收到的失效消息，忽略本节点发出的消息
+     *
+     * @param body
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/7
+     **/
+    public void onInvalidationMessage(byte[] body) {
+        String message = new String(body, StandardCharsets.UTF_8);
+        int separatorIndex = message.indexOf(SEPARATOR);
+        if (separatorIndex < 0 || nodeId.equals(message.substring(0, separatorIndex))) {
+            return;
+        }
+        invalidateLocal(message.substring(separatorIndex + 1));
+    }
+
+    /**
+     * 删除本节点中指定会话的缓存
+     *
+     * @param conversationId
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/7
+     **/
+    public synchronized void invalidateLocal(String conversationId) {
+        invalidations++;
+        cache.remove(conversationId);
+    }
+
+    /**
+     * 当前缓存的会话数
+     *
+     * @return int
+     * @author DuRuiChi
+     * @create 2025/8/7
+     **/
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private boolean isExpired(CacheEntry entry) {
+        return entry.expireAt() < System.currentTimeMillis();
+    }
+
+    private void publishInvalidation(String conversationId) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL,
+                    (nodeId + SEPARATOR + conversationId).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖 TTL 兜底
+            log.warn("对话记忆缓存失效广播失败：{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外内存对话记忆，适用于没有 Redis 的单节点高并发部署
+ * <p>
+ * 启动时分配一块直接内存（arena），划分为定长槽位，每个活跃会话占用一个槽位作为环形缓冲区，
+ * 以 [int 长度][消息字节] 的形式保存 {@link ChatMessageCodec} 编码后的最近消息，
+ * 堆上每个会话只保留几个游标字段，不持有 Message 对象图，会话数增长时堆占用基本不变。
+ * <p>
+ * 槽位写满时最旧的消息溢写到 {@link FileChatMemory}；槽位用尽时按 LRU 把最久未访问的会话整体溢写到文件并回收槽位。
+ * 任意时刻一个会话的完整历史 = 文件中的消息 + 槽位中的消息（两者不重叠），读取时优先从槽位满足。
+ * 槽位中的消息仅在内存中，应用正常关闭时会全部溢写到文件，进程崩溃时丢失。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/13
+ **/
+@Slf4j
+public class OffHeapChatMemory implements TokenBudgetChatMemory, DisposableBean {
+
+    /**
+     * 记录头长度：int 长度
+     */
+    private static final int RECORD_HEADER_BYTES = 4;
+
+    /**
+     * 会话锁分段数
+     */
+    private static final int LOCK_STRIPES = 256;
+
+    private final FileChatMemory spillStore;
+
+    /**
+     * 全部槽位共用的直接内存，只使用绝对位置读写，不同槽位互不重叠
+     */
+    private final ByteBuffer arena;
+
+    private final int slotBytes;
+
+    /**
+     * 空闲槽位编号（受 this 监视器保护）
+     */
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    /**
+     * 会话 ID -> 槽位，访问顺序排列用于 LRU（受 this 监视器保护）
+     */
+    private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 会话分段锁，同一会话的读写、溢写串行执行
+     */
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    private final Counter spilledCounter;
+
+    private final Counter evictionCounter;
+
+    /**
+     * 单个会话的环形缓冲区游标（偏移均相对槽位起点）
+     */
+    private static final class Slot {
+
+        private final String conversationId;
+
+        private final int base;
+
+        /**
+         * 最旧记录的偏移
+         */
+        private int head;
+
+        /**
+         * 已使用字节数
+         */
+        private int used;
+
+        /**
+         * 记录条数
+         */
+        private int count;
+
+        private Slot(String conversationId, int base) {
+            this.conversationId = conversationId;
+            this.base = base;
+        }
+    }
+
+    /**
+     * 初始化堆外内存对话记忆
+     *
+     * @param spillStore    溢写目标文件存储
+     * @param slotCount     槽位数，即同时驻留在堆外内存中的会话数
+     * @param slotBytes     单个槽位字节数
+     * @param meterRegistry
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    public OffHeapChatMemory(FileChatMemory spillStore, int slotCount, int slotBytes, MeterRegistry meterRegistry) {
+        if (slotCount <= 0 || slotBytes < 64 || (long) slotCount * slotBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("堆外对话记忆容量配置错误：slotCount=" + slotCount + "，slotBytes=" + slotBytes);
+        }
+        this.spillStore = spillStore;
+        this.slotBytes = slotBytes;
+        this.arena = ByteBuffer.allocateDirect(slotCount * slotBytes);
+        for (int i = 0; i < slotCount; i++) {
+            freeSlots.add(i);
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.spilledCounter = Counter.builder("chat.memory.off.heap.spilled").description("堆外对话记忆溢写到文件的消息数").register(meterRegistry);
+        this.evictionCounter = Counter.builder("chat.memory.off.heap.evictions").description("堆外对话记忆按 LRU 回收的会话数").register(meterRegistry);
+        Gauge.builder("chat.memory.off.heap.resident", this, OffHeapChatMemory::residentCount)
+                .description("驻留在堆外内存中的会话数").register(meterRegistry);
+        log.info("堆外对话记忆已分配：{} 个槽位 x {} 字节", slotCount, slotBytes);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            payloads.add(ChatMessageCodec.encode(message));
+        }
+        ReentrantLock lock = stripeFor(conversationId);
+        lock.lock();
+        try {
+            Slot slot = residentSlot(conversationId, lock);
+            if (slot == null) {
+                // 没有可回收的槽位，直接写文件
+                spillStore.appendPayloads(conversationId, payloads);
+                return;
+            }
+            List<byte[]> spilled = new ArrayList<>();
+            for (byte[] payload : payloads) {
+                int recordBytes = RECORD_HEADER_BYTES + payload.length;
+                if (recordBytes > slotBytes) {
+                    // 单条消息超过槽位大小：连同槽位中已有消息一起按顺序溢写
+                    spilled.addAll(drain(slot));
+                    spilled.add(payload);
+                    continue;
+                }
+                while (slotBytes - slot.used < recordBytes) {
+                    spilled.add(pollOldest(slot));
+                }
+                write(slot, payload);
+            }
+            if (!spilled.isEmpty()) {
+                spillStore.appendPayloads(conversationId, spilled);
+                spilledCounter.increment(spilled.size());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return List.of();
+        }
+        List<byte[]> payloads;
+        ReentrantLock lock = stripeFor(conversationId);
+        lock.lock();
+        try {
+            Slot slot = lookup(conversationId);
+            if (slot == null) {
+                payloads = spillStore.readPayloads(conversationId, lastN);
+            } else {
+                List<byte[]> recent = readTail(slot, Math.min(lastN, slot.count));
+                if (recent.size() < lastN) {
+                    payloads = spillStore.readPayloads(conversationId, lastN - recent.size());
+                    payloads.addAll(recent);
+                } else {
+                    payloads = recent;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        List<Message> messages = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            messages.add(ChatMessageCodec.decode(payload));
+        }
+        return messages;
+    }
+
+    @Override
+    public List<Message> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return List.of();
+        }
+        ReentrantLock lock = stripeFor(conversationId);
+        lock.lock();
+        try {
+            Slot slot = lookup(conversationId);
+            if (slot == null) {
+                return spillStore.getWithinTokenBudget(conversationId, tokenBudget, maxMessages);
+            }
+            List<byte[]> recent = readTail(slot, Math.min(maxMessages, slot.count));
+            List<Message> selected = ChatMessageCodec.tailWithinBudget(recent, tokenBudget);
+            if (selected.size() < recent.size()) {
+                return selected;
+            }
+            // 槽位中的消息全部在预算内，剩余预算从文件中继续往前取
+            int used = 0;
+            for (Message message : selected) {
+                used += TokenCountUtils.tokensOf(message);
+            }
+            if (selected.size() < maxMessages && used < tokenBudget) {
+                List<Message> older = spillStore.getWithinTokenBudget(conversationId, tokenBudget - used, maxMessages - selected.size());
+                if (!older.isEmpty()) {
+                    List<Message> merged = new ArrayList<>(older.size() + selected.size());
+                    merged.addAll(older);
+                    merged.addAll(selected);
+                    return merged;
+                }
+            }
+            return selected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        ReentrantLock lock = stripeFor(conversationId);
+        lock.lock();
+        try {
+            synchronized (this) {
+                Slot slot = slots.remove(conversationId);
+                if (slot != null) {
+                    freeSlots.push(slot.base / slotBytes);
+                }
+            }
+            spillStore.clear(conversationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 应用关闭时把所有驻留会话溢写到文件
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    @Override
+    public void destroy() {
+        List<String> conversationIds;
+        synchronized (this) {
+            conversationIds = new ArrayList<>(slots.keySet());
+        }
+        for (String conversationId : conversationIds) {
+            ReentrantLock lock = stripeFor(conversationId);
+            lock.lock();
+            try {
+                Slot slot;
+                synchronized (this) {
+                    slot = slots.remove(conversationId);
+                }
+                if (slot != null) {
+                    spillStore.appendPayloads(conversationId, drain(slot));
+                    synchronized (this) {
+                        freeSlots.push(slot.base / slotBytes);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.info("堆外对话记忆已全部溢写到文件，共 {} 个会话", conversationIds.size());
+    }
+
+    /**
+     * 当前驻留在堆外内存中的会话数
+     *
+     * @return int
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    public synchronized int residentCount() {
+        return slots.size();
+    }
+
+    private ReentrantLock stripeFor(String conversationId) {
+        return stripes[(conversationId.hashCode() & 0x7FFFFFFF) % LOCK_STRIPES];
+    }
+
+    private synchronized Slot lookup(String conversationId) {
+        return slots.get(conversationId);
+    }
+
+    /**
+     * 获取会话的槽位，没有时分配空闲槽位，槽位用尽时按 LRU 回收其他会话的槽位
+     * 调用方需持有该会话的分段锁；回收时只尝试获取其他会话的分段锁（tryLock），避免死锁
+     *
+     * @param conversationId
+     * @param ownLock        调用方持有的分段锁
+     * @return com.rich.richsynapsehub.utils.ai.chatMeory.OffHeapChatMemory.Slot 无法分配时返回 null
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    private Slot residentSlot(String conversationId, ReentrantLock ownLock) {
+        while (true) {
+            Slot victim = null;
+            ReentrantLock victimLock = null;
+            synchronized (this) {
+                Slot slot = slots.get(conversationId);
+                if (slot != null) {
+                    return slot;
+                }
+                Integer free = freeSlots.poll();
+                if (free != null) {
+                    slot = new Slot(conversationId, free * slotBytes);
+                    slots.put(conversationId, slot);
+                    return slot;
+                }
+                // 按访问顺序从最久未访问的会话开始尝试
+                for (Slot candidate : slots.values()) {
+                    ReentrantLock lock = stripeFor(candidate.conversationId);
+                    if (lock != ownLock && lock.tryLock()) {
+                        victim = candidate;
+                        victimLock = lock;
+                        break;
+                    }
+                }
+                if (victim == null) {
+                    return null;
+                }
+                slots.remove(victim.conversationId);
+            }
+            try {
+                List<byte[]> payloads = readTail(victim, victim.count);
+                spillStore.appendPayloads(victim.conversationId, payloads);
+                spilledCounter.increment(payloads.size());
+                evictionCounter.increment();
+            } catch (RuntimeException e) {
+                // 溢写失败时放回原会话，不丢失数据
+                synchronized (this) {
+                    slots.put(victim.conversationId, victim);
+                }
+                throw e;
+            } finally {
+                victimLock.unlock();
+            }
+            synchronized (this) {
+                freeSlots.push(victim.base / slotBytes);
+            }
+        }
+    }
+
+    /**
+     * 在环形缓冲区尾部写入一条记录，调用方需保证剩余空间足够
+     *
+     * @param slot
+     * @param payload
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    private void write(Slot slot, byte[] payload) {
+        int offset = (slot.head + slot.used) % slotBytes;
+        writeInt(slot, offset, payload.length);
+        writeBytes(slot, (offset + RECORD_HEADER_BYTES) % slotBytes, payload);
+        slot.used += RECORD_HEADER_BYTES + payload.length;
+        slot.count++;
+    }
+
+    /**
+     * 移出最旧的一条记录
+     *
+     * @param slot
+     * @return byte[]
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    private byte[] pollOldest(Slot slot) {
+        byte[] payload = new byte[readInt(slot, slot.head)];
+        readBytes(slot, (slot.head + RECORD_HEADER_BYTES) % slotBytes, payload);
+        slot.head = (slot.head + RECORD_HEADER_BYTES + payload.length) % slotBytes;
+        slot.used -= RECORD_HEADER_BYTES + payload.length;
+        slot.count--;
+        if (slot.count == 0) {
+            slot.head = 0;
+            slot.used = 0;
+        }
+        return payload;
+    }
+
+    /**
+     * 移出全部记录
+     *
+     * @param slot
+     * @return java.util.List<byte[]>
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    private List<byte[]> drain(Slot slot) {
+        List<byte[]> payloads = readTail(slot, slot.count);
+        slot.head = 0;
+        slot.used = 0;
+        slot.count = 0;
+        return payloads;
+    }
+
+    /**
+     * 读取最新的 n 条记录（按写入顺序），只读取记录头跳过更早的记录
+     *
+     * @param slot
+     * @param n
+     * @return java.util.List<byte[]>
+     * @author DuRuiChi
+     * @create 2025/8/13
+     **/
+    private List<byte[]> readTail(Slot slot, int n) {
+        List<byte[]> payloads = new ArrayList<>(n);
+        int offset = slot.head;
+        for (int i = 0; i < slot.count; i++) {
+            int length = readInt(slot, offset);
+            if (i >= slot.count - n) {
+                byte[] payload = new byte[length];
+                readBytes(slot, (offset + RECORD_HEADER_BYTES) % slotBytes, payload);
+                payloads.add(payload);
+            }
+            offset = (offset + RECORD_HEADER_BYTES + length) % slotBytes;
+        }
+        return payloads;
+    }
+
+    private void writeBytes(Slot slot, int offset, byte[] src) {
+        int first = Math.min(src.length, slotBytes - offset);
+        arena.put(slot.base + offset, src, 0, first);
+        if (first < src.length) {
+            arena.put(slot.base, src, first, src.length - first);
+        }
+    }
+
+    private void readBytes(Slot slot, int offset, byte[] dst) {
+        int first = Math.min(dst.length, slotBytes - offset);
+        arena.get(slot.base + offset, dst, 0, first);
+        if (first < dst.length) {
+            arena.get(slot.base, dst, first, dst.length - first);
+        }
+    }
+
+    private void writeInt(Slot slot, int offset, int value) {
+        for (int i = 0; i < RECORD_HEADER_BYTES; i++) {
+            arena.put(slot.base + (offset + i) % slotBytes, (byte) (value >>> (24 - 8 * i)));
+        }
+    }
+
+    private int readInt(Slot slot, int offset) {
+        int value = 0;
+        for (int i = 0; i < RECORD_HEADER_BYTES; i++) {
+            value = (value << 8) | (arena.get(slot.base + (offset + i) % slotBytes) & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,60 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * 把阻塞的 ChatMemory 适配为 {@link ReactiveChatMemory}：每次读写切换到 boundedElastic 执行
+ * 用于没有原生非阻塞客户端的存储（file / off-heap，或 Redis 整体存储模式），保证响应式线程不被阻塞
+ *
+ * @author DuRuiChi
+ * @create 2025/8/27
+ **/
+public class OffloadingReactiveChatMemory implements ReactiveChatMemory {
+
+    private final ChatMemory delegate;
+
+    private final Scheduler scheduler;
+
+    public OffloadingReactiveChatMemory(ChatMemory delegate) {
+        this(delegate, Schedulers.boundedElastic());
+    }
+
+    public OffloadingReactiveChatMemory(ChatMemory delegate, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Mono<List<Message>> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return Mono.just(List.of());
+        }
+        return Mono.fromCallable(() -> delegate.get(conversationId, lastN)).subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<List<Message>> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return Mono.just(List.of());
+        }
+        return Mono.fromCallable(() -> delegate instanceof TokenBudgetChatMemory tokenBudgetChatMemory
+                        ? tokenBudgetChatMemory.getWithinTokenBudget(conversationId, tokenBudget, maxMessages)
+                        : TokenCountUtils.tailWithinBudget(delegate.get(conversationId, maxMessages), tokenBudget))
+                .subscribeOn(scheduler);
+    }
+
+    @Override
+    public Mono<Void> add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> delegate.add(conversationId, messages)).subscribeOn(scheduler).then();
+    }
+}
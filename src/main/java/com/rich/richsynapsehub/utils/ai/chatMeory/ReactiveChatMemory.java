@@ -0,0 +1,50 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 非阻塞的对话记忆，供全响应式的流式对话链路使用（见 {@link com.rich.richsynapsehub.advisor.ReactiveChatMemoryAdvisor}）
+ * 与 {@link TokenBudgetChatMemory} 语义一致，读写都以 Mono 返回，调用方不得在响应式线程上阻塞等待
+ *
+ * @author DuRuiChi
+ * @create 2025/8/27
+ **/
+public interface ReactiveChatMemory {
+
+    /**
+     * 获取指定会话最近 lastN 条消息
+     *
+     * @param conversationId 会话 ID
+     * @param lastN          条数
+     * @return reactor.core.publisher.Mono<java.util.List<org.springframework.ai.chat.messages.Message>>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    Mono<List<Message>> get(String conversationId, int lastN);
+
+    /**
+     * 获取指定会话中总 token 数不超过预算的最近消息
+     *
+     * @param conversationId 会话 ID
+     * @param tokenBudget    token 预算
+     * @param maxMessages    最多返回的消息条数
+     * @return reactor.core.publisher.Mono<java.util.List<org.springframework.ai.chat.messages.Message>>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    Mono<List<Message>> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages);
+
+    /**
+     * 追加消息
+     *
+     * @param conversationId 会话 ID
+     * @param messages       消息
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    Mono<Void> add(String conversationId, List<Message> messages);
+}
@@ -0,0 +1,193 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.service.ChatConversationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于响应式 Redis 客户端（Lettuce）的对话记忆，只支持 LIST 存储模式，数据格式与 {@link RedisChatMemory} 完全一致
+ * <p>
+ * 读取使用 LRANGE，追加复用同一个 RPUSH + LTRIM + EXPIRE Lua 脚本，全程不占用线程等待 Redis 响应。
+ * 追加时发现未迁移的旧数据会先迁移再重试，与阻塞实现一致。
+ * 列表不存在但存在旧格式整体存储时，交给 {@link RedisChatMemory} 在 boundedElastic 上完成迁移后读取（只发生在迁移前的首次访问）。
+ * 写入后向 {@link NearCacheChatMemory#INVALIDATION_CHANNEL} 广播失效消息，本节点与其他节点的近端缓存都会丢弃该会话；
+ * 会话索引更新（{@link ChatConversationService#touch}）是阻塞调用，切换到 boundedElastic 执行，失败只记录日志。
+ * 阻塞链路启用了 {@link WriteBehindChatMemory} 时，读写前先在 boundedElastic 上写回本节点该会话的待写消息，
+ * 同一会话交替使用两条链路时仍能读己之写，且消息顺序与写入顺序一致。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/27
+ **/
+@Slf4j
+public class ReactiveRedisChatMemory implements ReactiveChatMemory {
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+
+    private final RedisChatMemory legacyChatMemory;
+
+    private final ChatConversationService chatConversationService;
+
+    /**
+     * 阻塞链路的异步写回层，未启用时为 null
+     */
+    private final WriteBehindChatMemory writeBehindChatMemory;
+
+    /**
+     * 单个会话最多保留的消息条数，小于等于 0 表示不限制
+     */
+    private final int maxMessages;
+
+    /**
+     * 失效消息中的节点 ID，与所有 NearCacheChatMemory 的节点 ID 都不同，保证本节点的近端缓存同样失效
+     */
+    private final String nodeId = "reactive-" + UUID.randomUUID();
+
+    /**
+     * @param legacyChatMemory      阻塞的 Redis 对话记忆，用于旧格式数据迁移
+     * @param writeBehindChatMemory 阻塞链路的异步写回层，未启用时传 null
+     */
+    public ReactiveRedisChatMemory(ReactiveRedisTemplate<String, byte[]> redisTemplate, RedisChatMemory legacyChatMemory,
+                                   int maxMessages, ChatConversationService chatConversationService,
+                                   WriteBehindChatMemory writeBehindChatMemory) {
+        this.redisTemplate = redisTemplate;
+        this.legacyChatMemory = legacyChatMemory;
+        this.maxMessages = maxMessages;
+        this.chatConversationService = chatConversationService;
+        this.writeBehindChatMemory = writeBehindChatMemory;
+    }
+
+    @Override
+    public Mono<List<Message>> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return Mono.just(List.of());
+        }
+        // 待写消息写回失败时仍读取已持久化的消息（待写消息由写回层延迟重试）
+        return flushPending(conversationId)
+                .onErrorResume(e -> Mono.empty())
+                .then(Mono.defer(() -> range(conversationId, lastN)))
+                .flatMap(entries -> entries.isEmpty()
+                        ? migrateThen(conversationId, () -> legacyChatMemory.get(conversationId, lastN))
+                        : Mono.just(decodeAll(entries)));
+    }
+
+    @Override
+    public Mono<List<Message>> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return Mono.just(List.of());
+        }
+        return flushPending(conversationId)
+                .onErrorResume(e -> Mono.empty())
+                .then(Mono.defer(() -> range(conversationId, maxMessages)))
+                .flatMap(entries -> entries.isEmpty()
+                        ? migrateThen(conversationId,
+                        () -> legacyChatMemory.getWithinTokenBudget(conversationId, tokenBudget, maxMessages))
+                        : Mono.just(ChatMessageCodec.tailWithinBudget(entries, tokenBudget)));
+    }
+
+    @Override
+    public Mono<Void> add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return Mono.empty();
+        }
+        List<byte[]> args = new ArrayList<>(messages.size() + 2);
+        args.add(String.valueOf(Math.max(0, maxMessages)).getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(TimeUnit.DAYS.toSeconds(RedisChatMemory.EXPIRE_DAYS)).getBytes(StandardCharsets.UTF_8));
+        for (Message message : messages) {
+            args.add(ChatMessageCodec.encode(message));
+        }
+        // 待写消息写回失败时不追加，避免本轮消息排到更早的消息之前
+        return flushPending(conversationId)
+                .then(Mono.defer(() -> append(conversationId, args, 1)))
+                .then(publishInvalidation(conversationId))
+                .then(touch(conversationId, messages));
+    }
+
+    /**
+     * 执行追加脚本；会话仍有未迁移的旧数据时，在 boundedElastic 上由阻塞实现迁移后重试
+     */
+    private Mono<Void> append(String conversationId, List<byte[]> args, int attempt) {
+        List<String> keys = List.of(RedisChatMemory.LIST_KEY_PREFIX + conversationId, RedisChatMemory.KEY_PREFIX + conversationId);
+        return redisTemplate.execute(RedisChatMemory.APPEND_AND_TRIM_SCRIPT, keys, args)
+                .next()
+                .flatMap(size -> {
+                    if (size != RedisChatMemory.LEGACY_PENDING) {
+                        return Mono.<Void>empty();
+                    }
+                    if (attempt >= RedisChatMemory.MAX_APPEND_ATTEMPTS) {
+                        return Mono.<Void>error(new IllegalStateException("旧格式对话记忆迁移失败，会话 ID：" + conversationId));
+                    }
+                    return Mono.fromCallable(() -> legacyChatMemory.migrateLegacy(conversationId))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(append(conversationId, args, attempt + 1));
+                });
+    }
+
+    /**
+     * 本节点该会话有待写消息时，在 boundedElastic 上写回；没有时不切换线程
+     */
+    private Mono<Void> flushPending(String conversationId) {
+        return Mono.defer(() -> {
+            if (writeBehindChatMemory == null || !writeBehindChatMemory.hasPending(conversationId)) {
+                return Mono.<Void>empty();
+            }
+            return Mono.fromCallable(() -> writeBehindChatMemory.flush(conversationId))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(flushed -> flushed
+                            ? Mono.<Void>empty()
+                            : Mono.<Void>error(new IllegalStateException("对话记忆待写消息写回失败，会话 ID：" + conversationId)));
+        });
+    }
+
+    private Mono<List<byte[]>> range(String conversationId, int lastN) {
+        return redisTemplate.opsForList().range(RedisChatMemory.LIST_KEY_PREFIX + conversationId, -lastN, -1).collectList();
+    }
+
+    /**
+     * 列表为空时检查旧格式数据：不存在直接返回空列表，存在则在 boundedElastic 上由阻塞实现完成迁移并读取
+     */
+    private Mono<List<Message>> migrateThen(String conversationId, Callable<List<Message>> legacyRead) {
+        return redisTemplate.hasKey(RedisChatMemory.KEY_PREFIX + conversationId)
+                .flatMap(exists -> Boolean.TRUE.equals(exists)
+                        ? Mono.fromCallable(legacyRead).subscribeOn(Schedulers.boundedElastic())
+                        : Mono.just(List.<Message>of()));
+    }
+
+    private static List<Message> decodeAll(List<byte[]> entries) {
+        List<Message> messages = new ArrayList<>(entries.size());
+        for (byte[] entry : entries) {
+            messages.add(ChatMessageCodec.decode(entry));
+        }
+        return messages;
+    }
+
+    private Mono<Void> publishInvalidation(String conversationId) {
+        byte[] message = (nodeId + NearCacheChatMemory.SEPARATOR + conversationId).getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.convertAndSend(NearCacheChatMemory.INVALIDATION_CHANNEL, message)
+                .onErrorResume(e -> {
+                    // 广播失败时其他节点依赖 TTL 兜底
+                    log.warn("对话记忆缓存失效广播失败：{}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> touch(String conversationId, List<Message> messages) {
+        return Mono.fromRunnable(() -> chatConversationService.touch(conversationId, messages))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("会话索引更新失败，会话 ID：{}，{}", conversationId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
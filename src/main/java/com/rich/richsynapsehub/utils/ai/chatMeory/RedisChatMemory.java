@@ -1,17 +1,19 @@
 package com.rich.richsynapsehub.utils.ai.chatMeory;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import org.objenesis.strategy.StdInstantiatorStrategy;
-import org.springframework.ai.chat.memory.ChatMemory;
+import com.rich.richsynapsehub.enumeration.ChatMemoryStorageMode;
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -19,24 +21,111 @@ import java.util.concurrent.TimeUnit;
 /**
  * 自定义对话持久化存储到 Redis，实现 ChatMemory 接口
  * 用法：ChatMemory https://docs.spring.io/spring-ai/reference/api/chat-memory.html#_quick_start
- * Kryo 序列化 https://juejin.cn/post/6993647089431347237
+ * <p>
+ * 支持两种存储模式（见 {@link ChatMemoryStorageMode}）：
+ * BLOB 模式下整个会话是一个 String 值；LIST 模式下每条消息是 Redis List 中的一个元素，
+ * 追加通过 Lua 脚本在服务端原子执行 RPUSH + LTRIM + EXPIRE（一次往返，多个写入方并发追加同一会话也不会丢消息），
+ * 读取使用 LRANGE -lastN -1。
+ * LIST 模式会在首次访问时自动把旧的 chat:memory:* 整体存储迁移为列表存储：迁移在追加之前完成，
+ * 写入列表与删除旧数据在同一个 Lua 脚本中原子执行，任一步失败旧数据都保持原样，下次访问重新迁移。
+ * 按 token 预算读取时，LIST 模式借助每条消息写入时记录的 token 数从尾部挑选，只解码预算内的消息。
+ * 消息编解码使用 {@link ChatMessageCodec}，并兼容读取历史 Kryo 数据。
  *
  * @author DuRuiChi
  * @create 2025/7/25
  **/
-public class RedisChatMemory implements ChatMemory {
+@Slf4j
+public class RedisChatMemory implements TokenBudgetChatMemory {
+
+    /**
+     * BLOB 模式的 key 前缀（历史格式）
+     */
+    static final String KEY_PREFIX = "chat:memory:";
+
+    /**
+     * LIST 模式的 key 前缀
+     */
+    static final String LIST_KEY_PREFIX = "chat:memory:list:";
+
+    /**
+     * 早期版本迁移过程中使用的临时 key 前缀，批量迁移扫描时跳过
+     */
+    private static final String MIGRATING_KEY_PREFIX = "chat:memory:migrating:";
+
+    /**
+     * 追加脚本发现会话仍有未迁移的旧数据时的返回值
+     */
+    static final long LEGACY_PENDING = -1;
+
+    /**
+     * 追加时最多尝试的次数（每次发现未迁移的旧数据先迁移再重试）
+     */
+    static final int MAX_APPEND_ATTEMPTS = 3;
+
+    /**
+     * 会话过期时间（天）
+     */
+    static final long EXPIRE_DAYS = 7;
+
+    /**
+     * 原子追加脚本：追加消息、按上限裁剪、刷新过期时间，返回追加后的列表长度；
+     * 会话仍有未迁移的旧数据时不写入，返回 {@link #LEGACY_PENDING}，由调用方迁移后重试，保证旧历史排在新消息之前
+     * KEYS[1] 列表 key；KEYS[2] 旧格式 key；ARGV[1] 最大条数（0 表示不限制）；ARGV[2] 过期秒数；ARGV[3..] 编码后的消息
+     */
+    static final RedisScript<Long> APPEND_AND_TRIM_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 1 then
+                return -1
+            end
+            local len = redis.call('RPUSH', KEYS[1], unpack(ARGV, 3))
+            local max = tonumber(ARGV[1])
+            if max > 0 and len > max then
+                redis.call('LTRIM', KEYS[1], -max, -1)
+            end
+            redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2]))
+            return len
+            """, Long.class);
+
+    /**
+     * 原子迁移脚本：旧数据仍是迁移方读到的值时，把解码后的消息插入列表头部（保持原顺序）、按上限裁剪、刷新过期时间并删除旧数据，返回 1；
+     * 旧数据已不存在或已变化（被其他节点迁移）时不做任何修改，返回 0
+     * KEYS[1] 列表 key；KEYS[2] 旧格式 key；ARGV[1] 读到的旧数据；ARGV[2] 最大条数（0 表示不限制）；ARGV[3] 过期秒数；ARGV[4..] 编码后的消息
+     */
+    private static final RedisScript<Long> MIGRATE_LEGACY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[2]) ~= ARGV[1] then
+                return 0
+            end
+            for i = #ARGV, 4, -1 do
+                redis.call('LPUSH', KEYS[1], ARGV[i])
+            end
+            local max = tonumber(ARGV[2])
+            if max > 0 and redis.call('LLEN', KEYS[1]) > max then
+                redis.call('LTRIM', KEYS[1], -max, -1)
+            end
+            redis.call('EXPIRE', KEYS[1], tonumber(ARGV[3]))
+            redis.call('DEL', KEYS[2])
+            return 1
+            """, Long.class);
 
     private final RedisTemplate<String, byte[]> redisTemplate;
 
-    private static final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-        Kryo kryo = new Kryo();
-        kryo.setRegistrationRequired(false);
-        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
-        return kryo;
-    });
+    /**
+     * 存储模式
+     */
+    private final ChatMemoryStorageMode storageMode;
+
+    /**
+     * LIST 模式下单个会话最多保留的消息条数，小于等于 0 表示不限制
+     */
+    private final int maxMessages;
 
     public RedisChatMemory(RedisTemplate<String, byte[]> redisTemplate) {
+        this(redisTemplate, ChatMemoryStorageMode.BLOB, 0);
+    }
+
+    public RedisChatMemory(RedisTemplate<String, byte[]> redisTemplate, ChatMemoryStorageMode storageMode, int maxMessages) {
         this.redisTemplate = redisTemplate;
+        this.storageMode = storageMode == null ? ChatMemoryStorageMode.BLOB : storageMode;
+        this.maxMessages = maxMessages;
     }
 
     @Override
@@ -46,6 +135,13 @@ public class RedisChatMemory implements ChatMemory {
 
     @Override
     public void add(String conversationId, List<Message> newMessages) {
+        if (newMessages == null || newMessages.isEmpty()) {
+            return;
+        }
+        if (storageMode == ChatMemoryStorageMode.LIST) {
+            appendToList(conversationId, newMessages);
+            return;
+        }
         List<Message> existingMessages = getOrCreateChat(conversationId);
         existingMessages.addAll(newMessages);
         saveChat(conversationId, existingMessages);
@@ -53,41 +149,196 @@ public class RedisChatMemory implements ChatMemory {
 
     @Override
     public List<Message> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return List.of();
+        }
+        if (storageMode == ChatMemoryStorageMode.LIST) {
+            return rangeFromList(conversationId, lastN);
+        }
         List<Message> messages = getOrCreateChat(conversationId);
         return messages.stream().skip(Math.max(0, messages.size() - lastN)).toList();
     }
 
+    @Override
+    public List<Message> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return List.of();
+        }
+        if (storageMode != ChatMemoryStorageMode.LIST) {
+            return TokenCountUtils.tailWithinBudget(get(conversationId, maxMessages), tokenBudget);
+        }
+        List<byte[]> entries = redisTemplate.opsForList().range(buildListKey(conversationId), -maxMessages, -1);
+        if (entries == null || entries.isEmpty()) {
+            // 列表不存在时走普通读取，顺带完成旧数据迁移
+            return TokenCountUtils.tailWithinBudget(rangeFromList(conversationId, maxMessages), tokenBudget);
+        }
+        return ChatMessageCodec.tailWithinBudget(entries, tokenBudget);
+    }
+
     @Override
     public void clear(String conversationId) {
-        redisTemplate.delete(buildKey(conversationId));
+        redisTemplate.delete(List.of(buildKey(conversationId), buildListKey(conversationId)));
+    }
+
+    /**
+     * 将所有旧的整体存储会话迁移为列表存储（仅 LIST 模式生效）
+     * 通过 SCAN 遍历，不会阻塞 Redis；未迁移的会话也会在首次访问时被惰性迁移
+     *
+     * @return int 迁移的会话数
+     * @author DuRuiChi
+     * @create 2025/8/4
+     **/
+    public int migrateAllLegacy() {
+        if (storageMode != ChatMemoryStorageMode.LIST) {
+            return 0;
+        }
+        List<String> legacyKeys = redisTemplate.execute((RedisCallback<List<String>>) connection -> scanLegacyKeys(connection));
+        int migrated = 0;
+        if (legacyKeys == null) {
+            return 0;
+        }
+        for (String legacyKey : legacyKeys) {
+            if (migrateLegacy(legacyKey.substring(KEY_PREFIX.length()))) {
+                migrated++;
+            }
+        }
+        log.info("Redis 对话记忆迁移完成，共迁移 {} 个会话", migrated);
+        return migrated;
+    }
+
+    private List<String> scanLegacyKeys(RedisConnection connection) {
+        List<String> keys = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(500).build();
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            while (cursor.hasNext()) {
+                String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                if (!key.startsWith(LIST_KEY_PREFIX) && !key.startsWith(MIGRATING_KEY_PREFIX)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
     }
 
     private String buildKey(String conversationId) {
-        String KEY_PREFIX = "chat:memory:";
         return KEY_PREFIX + conversationId;
     }
 
-    private void saveChat(String conversationId, List<Message> messages) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream(); Output output = new Output(bos)) {
-            kryoThreadLocal.get().writeObject(output, messages);
-            output.flush();
-            byte[] serialized = bos.toByteArray();
-            ValueOperations<String, byte[]> ops = redisTemplate.opsForValue();
-            ops.set(buildKey(conversationId), serialized, 7, TimeUnit.DAYS); // 设置7天过期
-        } catch (IOException e) {
-            throw new RuntimeException("Redis序列化失败", e);
+    private String buildListKey(String conversationId) {
+        return LIST_KEY_PREFIX + conversationId;
+    }
+
+    /**
+     * LIST 模式追加消息：通过 Lua 脚本一次往返原子完成 RPUSH + LTRIM + EXPIRE
+     * 脚本发现会话仍有旧格式数据时不写入，先迁移再重试，保证旧历史始终排在新消息之前
+     *
+     * @param conversationId
+     * @param newMessages
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/4
+     **/
+    private void appendToList(String conversationId, List<Message> newMessages) {
+        byte[][] serialized = serializeEach(newMessages);
+        Object[] args = new Object[serialized.length + 2];
+        args[0] = String.valueOf(Math.max(0, maxMessages)).getBytes(StandardCharsets.UTF_8);
+        args[1] = String.valueOf(TimeUnit.DAYS.toSeconds(EXPIRE_DAYS)).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(serialized, 0, args, 2, serialized.length);
+        List<String> keys = List.of(buildListKey(conversationId), buildKey(conversationId));
+        for (int attempt = 0; attempt < MAX_APPEND_ATTEMPTS; attempt++) {
+            Long size = redisTemplate.execute(APPEND_AND_TRIM_SCRIPT, keys, args);
+            if (size == null || size != LEGACY_PENDING) {
+                return;
+            }
+            migrateLegacy(conversationId);
+        }
+        throw new IllegalStateException("旧格式对话记忆迁移失败，会话 ID：" + conversationId);
+    }
+
+    /**
+     * LIST 模式读取尾部 N 条消息：LRANGE -lastN -1
+     * 若列表不存在，检查并迁移旧格式数据后再读取
+     *
+     * @param conversationId
+     * @param lastN
+     * @return java.util.List<org.springframework.ai.chat.messages.Message>
+     * @author DuRuiChi
+     * @create 2025/8/4
+     **/
+    private List<Message> rangeFromList(String conversationId, int lastN) {
+        String key = buildListKey(conversationId);
+        List<byte[]> entries = redisTemplate.opsForList().range(key, -lastN, -1);
+        if (entries == null || entries.isEmpty()) {
+            if (!migrateLegacy(conversationId)) {
+                return List.of();
+            }
+            entries = redisTemplate.opsForList().range(key, -lastN, -1);
+            if (entries == null) {
+                return List.of();
+            }
+        }
+        List<Message> messages = new ArrayList<>(entries.size());
+        for (byte[] entry : entries) {
+            messages.add(ChatMessageCodec.decode(entry));
         }
+        return messages;
+    }
+
+    /**
+     * 将旧格式整体存储的会话迁移为列表存储
+     * 读取旧数据并在本地解码后，由 Lua 脚本原子地插入列表头部并删除旧数据（旧数据已被其他节点迁移或修改时不做任何事），
+     * 进程崩溃或 Redis 出错时旧数据保持原样，不会丢失
+     *
+     * @param conversationId
+     * @return boolean 本次是否完成迁移
+     * @author DuRuiChi
+     * @create 2025/8/4
+     **/
+    public boolean migrateLegacy(String conversationId) {
+        String legacyKey = buildKey(conversationId);
+        byte[] serialized = redisTemplate.opsForValue().get(legacyKey);
+        if (serialized == null) {
+            return false;
+        }
+        byte[][] entries = serializeEach(deserializeList(serialized));
+        Object[] args = new Object[entries.length + 3];
+        args[0] = serialized;
+        args[1] = String.valueOf(Math.max(0, maxMessages)).getBytes(StandardCharsets.UTF_8);
+        args[2] = String.valueOf(TimeUnit.DAYS.toSeconds(EXPIRE_DAYS)).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(entries, 0, args, 3, entries.length);
+        Long migrated = redisTemplate.execute(MIGRATE_LEGACY_SCRIPT, List.of(buildListKey(conversationId), legacyKey), args);
+        if (migrated != null && migrated == 1) {
+            log.info("迁移旧格式对话记忆，会话 ID：{}，消息数：{}", conversationId, entries.length);
+            return true;
+        }
+        return false;
+    }
+
+    private byte[][] serializeEach(List<Message> messages) {
+        byte[][] serialized = new byte[messages.size()][];
+        for (int i = 0; i < messages.size(); i++) {
+            serialized[i] = ChatMessageCodec.encode(messages.get(i));
+        }
+        return serialized;
+    }
+
+    private void saveChat(String conversationId, List<Message> messages) {
+        ValueOperations<String, byte[]> ops = redisTemplate.opsForValue();
+        ops.set(buildKey(conversationId), ChatMessageCodec.encodeAll(messages), EXPIRE_DAYS, TimeUnit.DAYS); // 设置7天过期
     }
 
     private List<Message> getOrCreateChat(String conversationId) {
         ValueOperations<String, byte[]> ops = redisTemplate.opsForValue();
         byte[] serialized = ops.get(buildKey(conversationId));
         if (serialized == null) return new ArrayList<>();
+        return deserializeList(serialized);
+    }
 
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(serialized); Input input = new Input(bis)) {
-            return kryoThreadLocal.get().readObject(input, ArrayList.class);
-        } catch (IOException e) {
+    private List<Message> deserializeList(byte[] serialized) {
+        try {
+            return new ArrayList<>(ChatMessageCodec.decodeAll(serialized));
+        } catch (RuntimeException e) {
             throw new RuntimeException("Redis反序列化失败", e);
         }
     }
-}
\ No newline at end of file
+}
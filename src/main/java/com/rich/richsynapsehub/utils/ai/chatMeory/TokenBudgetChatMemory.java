@@ -0,0 +1,34 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 支持按 token 预算读取历史消息的 ChatMemory
+ *
+ * @author DuRuiChi
+ * @create 2025/8/11
+ **/
+public interface TokenBudgetChatMemory extends ChatMemory {
+
+    /**
+     * 获取指定会话中总 token 数不超过预算的最近消息
+     * 默认实现先读取最近 maxMessages 条再按预算截取，存储实现可借助写入时记录的 token 数只解码需要的消息
+     *
+     * @param conversationId 会话 ID
+     * @param tokenBudget    token 预算
+     * @param maxMessages    最多返回的消息条数
+     * @return java.util.List<org.springframework.ai.chat.messages.Message>
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    default List<Message> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return List.of();
+        }
+        return TokenCountUtils.tailWithinBudget(get(conversationId, maxMessages), tokenBudget);
+    }
+}
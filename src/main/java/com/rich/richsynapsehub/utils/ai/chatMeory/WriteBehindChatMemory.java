@@ -0,0 +1,324 @@
+package com.rich.richsynapsehub.utils.ai.chatMeory;
+
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话记忆的异步写回（write-behind）装饰层
+ * <p>
+ * add 只把消息放入会话的待写缓冲区后立即返回，由后台线程合并写入下游存储：
+ * 缓冲区收到助手消息（一轮对话结束）或积压条数达到上限时立即写回，否则最多延迟指定毫秒后写回，
+ * 因此一轮对话的用户消息和助手消息通常合并为一次下游写入。
+ * get 会合并下游结果与本节点尚未写回的消息，保证本节点读己之写；应用关闭时写回全部缓冲区。
+ * 按 token 预算读取时先从待写消息尾部挑选，剩余预算再交给下游（下游可借助写入时记录的 token 数只解码预算内的消息）。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/8
+ **/
+@Slf4j
+public class WriteBehindChatMemory implements TokenBudgetChatMemory, DisposableBean {
+
+    private final ChatMemory delegate;
+
+    /**
+     * 消息在缓冲区中的最长停留时间
+     */
+    private final long maxDelayMillis;
+
+    /**
+     * 单个会话积压条数达到该值时立即写回
+     */
+    private final int maxBatch;
+
+    private final ScheduledExecutorService flusher;
+
+    private final Map<String, PendingBuffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * 单个会话的待写缓冲区
+     */
+    private static class PendingBuffer {
+
+        /**
+         * 尚未写回的消息（受 this 监视器保护）
+         */
+        private List<Message> pending = new ArrayList<>();
+
+        /**
+         * 已调度的延迟写回任务
+         */
+        private ScheduledFuture<?> scheduled;
+
+        /**
+         * 写回期间持有，读取时同样持有，避免读到“已写入下游但尚未移出缓冲区”的重复消息
+         */
+        private final ReentrantLock flushLock = new ReentrantLock();
+    }
+
+    public WriteBehindChatMemory(ChatMemory delegate, long maxDelayMillis, int maxBatch, int flushThreads) {
+        this.delegate = delegate;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxBatch = maxBatch;
+        AtomicInteger threadIndex = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(flushThreads, runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-flusher-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        // 关闭时丢弃尚未到期的延迟任务，由 destroy 直接写回，避免关闭过程等待 maxDelayMillis
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.flusher = executor;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        boolean turnComplete = messages.stream().anyMatch(message -> message.getMessageType() == MessageType.ASSISTANT);
+        AtomicBoolean flushNow = new AtomicBoolean(flusher.isShutdown());
+        buffers.compute(conversationId, (id, buffer) -> {
+            if (buffer == null) {
+                buffer = new PendingBuffer();
+            }
+            synchronized (buffer) {
+                // 关闭过程中同样先进入缓冲区，排在该会话尚未写回的消息之后
+                buffer.pending.addAll(messages);
+                if (flushNow.get()) {
+                    return buffer;
+                }
+                if (turnComplete || buffer.pending.size() >= maxBatch) {
+                    if (buffer.scheduled != null) {
+                        buffer.scheduled.cancel(false);
+                    }
+                    flushNow.set(!scheduleFlush(buffer, id, 0));
+                } else if (buffer.scheduled == null) {
+                    flushNow.set(!scheduleFlush(buffer, id, maxDelayMillis));
+                }
+            }
+            return buffer;
+        });
+        if (flushNow.get()) {
+            // 应用关闭过程中不再调度，同步写回该会话的全部待写消息
+            flush(conversationId);
+        }
+    }
+
+    /**
+     * 调度写回任务，写回线程已关闭（调度被拒绝）时返回 false，调用方需同步写回
+     *
+     * @param buffer
+     * @param conversationId
+     * @param delayMillis
+     * @return boolean
+     * @author DuRuiChi
+     * @create 2025/8/8
+     **/
+    private boolean scheduleFlush(PendingBuffer buffer, String conversationId, long delayMillis) {
+        try {
+            buffer.scheduled = flusher.schedule(() -> flush(conversationId), delayMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            buffer.scheduled = null;
+            return false;
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        PendingBuffer buffer = buffers.get(conversationId);
+        if (buffer == null) {
+            return delegate.get(conversationId, lastN);
+        }
+        buffer.flushLock.lock();
+        try {
+            List<Message> persisted = delegate.get(conversationId, lastN);
+            List<Message> pending;
+            synchronized (buffer) {
+                if (buffer.pending.isEmpty()) {
+                    return persisted;
+                }
+                pending = new ArrayList<>(buffer.pending);
+            }
+            List<Message> merged = new ArrayList<>(persisted.size() + pending.size());
+            merged.addAll(persisted);
+            merged.addAll(pending);
+            return merged.subList(Math.max(0, merged.size() - lastN), merged.size());
+        } finally {
+            buffer.flushLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return List.of();
+        }
+        PendingBuffer buffer = buffers.get(conversationId);
+        if (buffer == null) {
+            return delegateWithinBudget(conversationId, tokenBudget, maxMessages);
+        }
+        buffer.flushLock.lock();
+        try {
+            List<Message> pending;
+            synchronized (buffer) {
+                pending = new ArrayList<>(buffer.pending);
+            }
+            List<Message> tail = TokenCountUtils.tailWithinBudget(
+                    pending.subList(Math.max(0, pending.size() - maxMessages), pending.size()), tokenBudget);
+            if (tail.size() < pending.size()) {
+                // 预算或条数在待写消息内已用完
+                return tail;
+            }
+            int used = tail.stream().mapToInt(TokenCountUtils::tokensOf).sum();
+            List<Message> persisted = delegateWithinBudget(conversationId, tokenBudget - used, maxMessages - tail.size());
+            List<Message> merged = new ArrayList<>(persisted.size() + tail.size());
+            merged.addAll(persisted);
+            merged.addAll(tail);
+            return merged;
+        } finally {
+            buffer.flushLock.unlock();
+        }
+    }
+
+    private List<Message> delegateWithinBudget(String conversationId, int tokenBudget, int maxMessages) {
+        if (tokenBudget <= 0 || maxMessages <= 0) {
+            return List.of();
+        }
+        if (delegate instanceof TokenBudgetChatMemory tokenBudgetChatMemory) {
+            return tokenBudgetChatMemory.getWithinTokenBudget(conversationId, tokenBudget, maxMessages);
+        }
+        return TokenCountUtils.tailWithinBudget(delegate.get(conversationId, maxMessages), tokenBudget);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        PendingBuffer buffer = buffers.remove(conversationId);
+        if (buffer == null) {
+            delegate.clear(conversationId);
+            return;
+        }
+        buffer.flushLock.lock();
+        try {
+            synchronized (buffer) {
+                if (buffer.scheduled != null) {
+                    buffer.scheduled.cancel(false);
+                }
+                buffer.pending.clear();
+            }
+            delegate.clear(conversationId);
+        } finally {
+            buffer.flushLock.unlock();
+        }
+    }
+
+    /**
+     * 指定会话在本节点是否有尚未写回的消息（只检查内存，不访问下游）
+     *
+     * @param conversationId
+     * @return boolean
+     * @author DuRuiChi
+     * @create 2025/8/28
+     **/
+    public boolean hasPending(String conversationId) {
+        return buffers.containsKey(conversationId);
+    }
+
+    /**
+     * 写回指定会话的全部待写消息（一次下游写入），失败时放回缓冲区并延迟重试
+     * 绕过本装饰层直接写入同一存储的调用方（如非阻塞流式链路）需先调用，保证消息顺序
+     *
+     * @param conversationId
+     * @return boolean 待写消息已全部写入下游（或没有待写消息）时返回 true
+     * @author DuRuiChi
+     * @create 2025/8/8
+     **/
+    public boolean flush(String conversationId) {
+        PendingBuffer buffer = buffers.get(conversationId);
+        if (buffer == null) {
+            return true;
+        }
+        buffer.flushLock.lock();
+        try {
+            List<Message> batch;
+            synchronized (buffer) {
+                buffer.scheduled = null;
+                if (buffer.pending.isEmpty()) {
+                    return true;
+                }
+                batch = buffer.pending;
+                buffer.pending = new ArrayList<>();
+            }
+            try {
+                delegate.add(conversationId, batch);
+            } catch (Exception e) {
+                log.error("对话记忆写回失败，会话 ID：{}，{} 条消息将延迟重试", conversationId, batch.size(), e);
+                synchronized (buffer) {
+                    batch.addAll(buffer.pending);
+                    buffer.pending = batch;
+                    if (buffer.scheduled == null) {
+                        // 已关闭时调度被拒绝，由 destroy 或下一次 add 再次写回
+                        scheduleFlush(buffer, conversationId, maxDelayMillis);
+                    }
+                }
+                return false;
+            }
+        } finally {
+            buffer.flushLock.unlock();
+        }
+        // 缓冲区已空时移除，避免会话数增长导致缓冲区常驻
+        buffers.computeIfPresent(conversationId, (id, current) -> {
+            synchronized (current) {
+                return current.pending.isEmpty() && current.scheduled == null ? null : current;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 立即写回所有会话的待写消息
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/8
+     **/
+    public void flushAll() {
+        for (String conversationId : new ArrayList<>(buffers.keySet())) {
+            flush(conversationId);
+        }
+    }
+
+    /**
+     * 应用关闭时停止调度（未到期的延迟任务直接丢弃），等待进行中的写回结束后写回全部缓冲区
+     * 关闭过程中到达的 add 会追加到缓冲区后同步写回，不会排到更早的待写消息之前
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/8
+     **/
+    @Override
+    public void destroy() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flushAll();
+        log.info("对话记忆缓冲区已全部写回");
+    }
+}
@@ -0,0 +1,168 @@
+package com.rich.richsynapsehub.utils.ai.doChat;
+
+import com.rich.richsynapsehub.utils.ai.rag.RetrievalCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 相同对话请求的合并（single-flight）：并发到达的相同请求只调用一次模型，其余请求共享同一次调用的结果
+ * <p>
+ * 合并键为 系统提示词 + 知识库 + 归一化后的问题（见 {@link RetrievalCache#normalizeQuery(String)}），
+ * 只有无历史消息的会话才参与合并（由调用方判断后传入键，传 null 表示不合并），否则提示词会因历史不同而不同。
+ * 同步调用共享同一个 CompletableFuture；流式调用把上游 Flux 以 replay().refCount() 广播给所有订阅者，
+ * 中途加入的订阅者也能收到完整回答，全部订阅者取消后上游随之取消。流式请求在订阅时才判定领导者/跟随者并登记，
+ * 返回后从未被订阅（如客户端提前断开）的请求不会留下条目。调用结束即移除，不缓存已完成的结果
+ * （跨时间的复用见 {@link SemanticAnswerCache}）。跟随者未经过对话记忆 advisor，需由调用方手动写入记忆。
+ * 被合并的请求数以 chat.coalesced.requests 指标按 mode（call / stream）计数。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/25
+ **/
+public class ChatRequestCoalescer {
+
+    private final boolean enabled;
+
+    private final Map<Key, CompletableFuture<String>> calls = new ConcurrentHashMap<>();
+
+    private final Map<Key, Flux<String>> streams = new ConcurrentHashMap<>();
+
+    private final Counter coalescedCallCounter;
+
+    private final Counter coalescedStreamCounter;
+
+    /**
+     * 合并键
+     *
+     * @param systemPrompt   系统提示词
+     * @param knowledgeIndex 知识库
+     * @param message        归一化后的问题
+     */
+    public record Key(String systemPrompt, String knowledgeIndex, String message) {
+    }
+
+    /**
+     * 同步调用的合并结果
+     *
+     * @param value  结果
+     * @param leader 是否为实际发起模型调用的请求
+     */
+    public record Shared<T>(T value, boolean leader) {
+    }
+
+    public ChatRequestCoalescer(boolean enabled, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.coalescedCallCounter = Counter.builder("chat.coalesced.requests").tag("mode", "call")
+                .description("与进行中的相同请求合并的对话请求数").register(meterRegistry);
+        this.coalescedStreamCounter = Counter.builder("chat.coalesced.requests").tag("mode", "stream")
+                .description("与进行中的相同请求合并的对话请求数").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 构建合并键
+     *
+     * @param systemPrompt   系统提示词，可为 null
+     * @param knowledgeIndex 知识库，可为 null
+     * @param message        问题
+     * @return com.rich.richsynapsehub.utils.ai.doChat.ChatRequestCoalescer.Key
+     * @author DuRuiChi
+     * @create 2025/8/25
+     **/
+    public static Key key(String systemPrompt, String knowledgeIndex, String message) {
+        return new Key(systemPrompt == null ? "" : systemPrompt, knowledgeIndex == null ? "" : knowledgeIndex,
+                RetrievalCache.normalizeQuery(message));
+    }
+
+    /**
+     * 同步调用：已有相同请求进行中时等待其结果，否则由当前请求调用 loader
+     *
+     * @param key    合并键，为 null 或未启用时直接调用 loader
+     * @param loader 模型调用
+     * @return com.rich.richsynapsehub.utils.ai.doChat.ChatRequestCoalescer.Shared<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/25
+     **/
+    public Shared<String> call(Key key, Supplier<String> loader) {
+        if (!enabled || key == null) {
+            return new Shared<>(loader.get(), true);
+        }
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = calls.putIfAbsent(key, created);
+        if (existing != null) {
+            coalescedCallCounter.increment();
+            return new Shared<>(await(existing), false);
+        }
+        try {
+            String value = loader.get();
+            created.complete(value);
+            return new Shared<>(value, true);
+        } catch (RuntimeException e) {
+            // 等待中的请求收到同一个异常
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, created);
+        }
+    }
+
+    /**
+     * 流式调用：订阅时已有相同请求进行中则订阅同一个上游（经 asFollower 处理），否则由当前请求调用 loader 并登记为进行中
+     *
+     * @param key        合并键，为 null 或未启用时直接返回 loader 的结果
+     * @param loader     模型流式调用
+     * @param asFollower 作为跟随者时对共享上游的处理（如完整输出后手动写入对话记忆）
+     * @return reactor.core.publisher.Flux<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/25
+     **/
+    public Flux<String> stream(Key key, Supplier<Flux<String>> loader, UnaryOperator<Flux<String>> asFollower) {
+        if (!enabled || key == null) {
+            return Flux.defer(loader);
+        }
+        return Flux.defer(() -> {
+            AtomicReference<Flux<String>> self = new AtomicReference<>();
+            // 上游结束（完成、出错或全部订阅者取消）时移除，之后到达的相同请求重新调用模型
+            Flux<String> shared = Flux.defer(loader)
+                    .doFinally(signal -> streams.remove(key, self.get()))
+                    .replay()
+                    .refCount();
+            self.set(shared);
+            Flux<String> existing = streams.putIfAbsent(key, shared);
+            if (existing != null) {
+                coalescedStreamCounter.increment();
+                return asFollower.apply(existing);
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * 进行中的调用数（同步 + 流式）
+     */
+    public int inFlight() {
+        return calls.size() + streams.size();
+    }
+
+    private static String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.rich.richsynapsehub.utils.ai.doChat;
+
+import com.rich.richsynapsehub.utils.ai.rag.HnswIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 语义答案缓存：按问题向量的余弦相似度复用已生成的回答，使措辞不同的同一问题（如“Redis 持久化有哪些方式”与“讲讲 Redis 的持久化”）
+ * 无需再次调用模型
+ * <p>
+ * 缓存按作用域隔离（知识库 + 系统提示词，见 {@link #scope(String, String)}），不同角色设定下的回答互不复用。
+ * 每个作用域保留最近 maxEntriesPerScope 条问答（先进先出）并按 TTL 过期，查询时线性扫描——条目数有上限，
+ * 且需要支持删除，因此不使用 HNSW。未启用时 {@link #lookup(String, String)} 返回 null，不调用向量模型。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/17
+ **/
+public class SemanticAnswerCache {
+
+    /**
+     * 流式回放时每个分片的字符数
+     */
+    private static final int REPLAY_CHUNK_CHARS = 16;
+
+    private final boolean enabled;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final double similarityThreshold;
+
+    private final int maxEntriesPerScope;
+
+    private final long ttlMillis;
+
+    private final Map<String, Deque<CacheEntry>> scopes = new ConcurrentHashMap<>();
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    /**
+     * 缓存条目
+     *
+     * @param vector   问题向量（已归一化）
+     * @param answer   回答
+     * @param expireAt 过期时间戳
+     */
+    private record CacheEntry(float[] vector, String answer, long expireAt) {
+    }
+
+    /**
+     * 查询结果，未命中时 answer 为 null，模型生成回答后通过 {@link #put(Lookup, String)} 写回
+     *
+     * @param scope  作用域
+     * @param vector 问题向量
+     * @param answer 命中的回答
+     */
+    public record Lookup(String scope, float[] vector, String answer) {
+
+        public boolean hit() {
+            return answer != null;
+        }
+    }
+
+    public SemanticAnswerCache(boolean enabled, EmbeddingModel embeddingModel, double similarityThreshold,
+                               int maxEntriesPerScope, long ttlMillis, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.embeddingModel = embeddingModel;
+        this.similarityThreshold = similarityThreshold;
+        this.maxEntriesPerScope = maxEntriesPerScope;
+        this.ttlMillis = ttlMillis;
+        this.hitCounter = Counter.builder("chat.semantic.cache.hits").description("语义答案缓存命中次数").register(meterRegistry);
+        this.missCounter = Counter.builder("chat.semantic.cache.misses").description("语义答案缓存未命中次数").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查找相似问题的回答
+     *
+     * @param scope    作用域
+     * @param question 问题
+     * @return com.rich.richsynapsehub.utils.ai.doChat.SemanticAnswerCache.Lookup 未启用或问题为空时返回 null
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    public Lookup lookup(String scope, String question) {
+        if (!enabled || question == null || question.isBlank()) {
+            return null;
+        }
+        float[] vector = HnswIndex.normalize(embeddingModel.embed(question.strip()));
+        Deque<CacheEntry> entries = scopes.get(scope);
+        String answer = null;
+        if (entries != null) {
+            long now = System.currentTimeMillis();
+            float best = (float) similarityThreshold;
+            synchronized (entries) {
+                Iterator<CacheEntry> iterator = entries.iterator();
+                while (iterator.hasNext()) {
+                    CacheEntry entry = iterator.next();
+                    if (entry.expireAt() <= now) {
+                        iterator.remove();
+                        continue;
+                    }
+                    float score = HnswIndex.similarity(vector, entry.vector());
+                    if (score >= best) {
+                        best = score;
+                        answer = entry.answer();
+                    }
+                }
+            }
+        }
+        (answer == null ? missCounter : hitCounter).increment();
+        return new Lookup(scope, vector, answer);
+    }
+
+    /**
+     * 写入模型生成的回答
+     *
+     * @param lookup 未命中的查询结果
+     * @param answer 回答
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    public void put(Lookup lookup, String answer) {
+        if (lookup == null || lookup.hit() || answer == null || answer.isBlank()) {
+            return;
+        }
+        Deque<CacheEntry> entries = scopes.computeIfAbsent(lookup.scope(), k -> new ArrayDeque<>());
+        synchronized (entries) {
+            entries.addLast(new CacheEntry(lookup.vector(), answer, System.currentTimeMillis() + ttlMillis));
+            while (entries.size() > maxEntriesPerScope) {
+                entries.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * 作用域：知识库 + 系统提示词
+     *
+     * @param knowledgeIndex
+     * @param systemPrompt
+     * @return java.lang.String
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    public static String scope(String knowledgeIndex, String systemPrompt) {
+        return knowledgeIndex + ":" + (systemPrompt == null ? 0 : systemPrompt.hashCode());
+    }
+
+    /**
+     * 将缓存的回答切分为流式分片，按与模型输出相近的粒度回放
+     *
+     * @param answer
+     * @return java.util.List<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    public static List<String> replayChunks(String answer) {
+        List<String> chunks = new ArrayList<>(answer.length() / REPLAY_CHUNK_CHARS + 1);
+        int start = 0;
+        while (start < answer.length()) {
+            int end = Math.min(start + REPLAY_CHUNK_CHARS, answer.length());
+            // 不拆开代理对
+            if (end < answer.length() && Character.isHighSurrogate(answer.charAt(end - 1))) {
+                end++;
+            }
+            chunks.add(answer.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+}
@@ -1,24 +1,34 @@
 package com.rich.richsynapsehub.utils.ai.doChat;
 
 import com.rich.richsynapsehub.advisor.ChatLogAdvisor;
+import com.rich.richsynapsehub.advisor.ReactiveChatMemoryAdvisor;
+import com.rich.richsynapsehub.advisor.TokenBudgetChatMemoryAdvisor;
 import com.rich.richsynapsehub.advisor.rag.CloudRagAdvisorConfig;
+import com.rich.richsynapsehub.constant.RagConstant;
 import com.rich.richsynapsehub.constant.SystemPromptConstant;
 import com.rich.richsynapsehub.utils.ai.chatMeory.FileChatMemory;
-import com.rich.richsynapsehub.utils.ai.chatMeory.RedisChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.ReactiveChatMemory;
+import com.rich.richsynapsehub.utils.ai.rag.RagGate;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static com.rich.richsynapsehub.advisor.TokenBudgetChatMemoryAdvisor.CHAT_MEMORY_TOKEN_BUDGET_KEY;
 import static com.rich.richsynapsehub.constant.FilePathConstant.CHAT_FILE_SAVE_DIR;
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY;
@@ -39,16 +49,56 @@ public class SpringAiChat {
      */
     private final ChatClient chatClient;
 
+    /**
+     * 非阻塞流式对话使用的 ChatClient（对话记忆通过 ReactiveChatMemory 读写）
+     */
+    private final ChatClient reactiveChatClient;
+
     /**
      * 用于指定知识库索引的 advisor 缓存
      **/
     private final Map<String, Advisor> ragAdvisors = new ConcurrentHashMap<>();
 
-    private final RedisChatMemory redisChatMemory;
+    /**
+     * 对话记忆（Redis 存储 + 近端缓存，见 ChatMemoryConfig）
+     **/
+    private final ChatMemory chatMemory;
+
+    /**
+     * 历史消息的 token 预算，小于等于 0 时固定取最近 DEFAULT_RETRIEVE_SIZE 条
+     **/
+    @Value("${rich.chat-memory.token-budget.max-tokens:0}")
+    private int historyTokenBudget;
+
+    /**
+     * 启用 token 预算时最多注入的历史消息条数
+     **/
+    @Value("${rich.chat-memory.token-budget.max-messages:50}")
+    private int historyMaxMessages;
+
+    /**
+     * 未启用 token 预算时注入的历史消息条数
+     **/
+    private static final int DEFAULT_RETRIEVE_SIZE = 10;
+
+    /**
+     * 已有历史消息的会话是否跳过语义答案缓存（回答依赖上下文时不应复用）
+     **/
+    @Value("${rich.chat.semantic-cache.skip-with-history:true}")
+    private boolean semanticCacheSkipWithHistory;
 
     @Autowired
     private CloudRagAdvisorConfig advisorFactory;
 
+    @Resource
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @Resource
+    private RagGate ragGate;
+
+    @Resource
+    private ChatRequestCoalescer chatRequestCoalescer;
+
     /**
      * 初始化知识库映射
      */
@@ -60,6 +110,7 @@ public class SpringAiChat {
 
     /**
      * 通过指定 RAG 知识库索引来获取对应的 RAG Advisor 实例
+     * 多个知识库以逗号分隔（如 interview,shop）时并发检索并融合结果
      *
      * @param knowledgeIndex
      * @return org.springframework.ai.chat.client.advisor.api.Advisor
@@ -67,7 +118,36 @@ public class SpringAiChat {
      * @create 2025/7/24
      **/
     private Advisor getRagAdvisor(String knowledgeIndex) {
-        return ragAdvisors.computeIfAbsent(knowledgeIndex, k -> advisorFactory.createRagAdvisor(knowledgeIndex));
+        return ragAdvisors.computeIfAbsent(knowledgeIndex, k -> {
+            if (!k.contains(RagConstant.KNOWLEDGE_INDEX_SEPARATOR)) {
+                return advisorFactory.createRagAdvisor(k);
+            }
+            List<String> indexNames = Arrays.stream(k.split(RagConstant.KNOWLEDGE_INDEX_SEPARATOR))
+                    .map(String::strip)
+                    .filter(name -> !name.isEmpty())
+                    .distinct()
+                    .map(name -> RagConstant.KNOWLEDGE_INDEX_NAMES.getOrDefault(name, name))
+                    .toList();
+            return advisorFactory.createFusionRagAdvisor(indexNames);
+        });
+    }
+
+    /**
+     * 检索前分类通过时返回知识库检索增强器，否则返回 null（本轮不检索知识库、不注入上下文）
+     *
+     * @param message
+     * @param knowledgeIndex
+     * @return org.springframework.ai.chat.client.advisor.api.Advisor
+     * @author DuRuiChi
+     * @create 2025/8/24
+     **/
+    private Advisor getGatedRagAdvisor(String message, String knowledgeIndex) {
+        RagGate.Decision decision = ragGate.evaluate(message);
+        if (!decision.retrieve()) {
+            log.info("跳过知识库 {} 检索，原因：{}，得分：{}", knowledgeIndex, decision.reason(), decision.score());
+            return null;
+        }
+        return getRagAdvisor(knowledgeIndex);
     }
 
     /**
@@ -79,22 +159,62 @@ public class SpringAiChat {
      * 初始化 ChatClient
      *
      * @param dashscopeChatModel
+     * @param chatMemory
+     * @param reactiveChatMemory
      * @return
      * @author DuRuiChi
      * @create 2025/7/3
      **/
-    public SpringAiChat(ChatModel dashscopeChatModel, RedisChatMemory redisChatMemory) {
+    public SpringAiChat(ChatModel dashscopeChatModel, ChatMemory chatMemory, ReactiveChatMemory reactiveChatMemory) {
         // 内存存储 ChatMemory，重启后丢失
 //        ChatMemory chatMemory = new InMemoryChatMemory();
         // 自定义文件持久化 ChatMemory
 //        FileChatMemory chatMemory = new FileChatMemory(CHAT_FILE_SAVE_DIR);
         // 注册 ChatClient
-        this.redisChatMemory = redisChatMemory;
+        this.chatMemory = chatMemory;
         this.chatClient = ChatClient.builder(dashscopeChatModel)
-                .defaultAdvisors(new MessageChatMemoryAdvisor(this.redisChatMemory),
+                .defaultAdvisors(new TokenBudgetChatMemoryAdvisor(this.chatMemory),
+                new ChatLogAdvisor()).build();
+        this.reactiveChatClient = ChatClient.builder(dashscopeChatModel)
+                .defaultAdvisors(new ReactiveChatMemoryAdvisor(reactiveChatMemory),
                 new ChatLogAdvisor()).build();
     }
 
+    /**
+     * 设置对话记忆参数：启用 token 预算时按预算注入历史消息，否则固定取最近 N 条
+     *
+     * @param spec
+     * @param chatId
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/11
+     **/
+    private void applyMemoryParams(ChatClient.AdvisorSpec spec, String chatId) {
+        spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId);
+        if (historyTokenBudget > 0) {
+            spec.param(CHAT_MEMORY_TOKEN_BUDGET_KEY, historyTokenBudget).param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, historyMaxMessages);
+        } else {
+            spec.param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, DEFAULT_RETRIEVE_SIZE);
+        }
+    }
+
+    /**
+     * 挂载对话记忆参数与（可选的）知识库检索增强器
+     *
+     * @param spec
+     * @param chatId
+     * @param ragAdvisor 为 null 时不检索知识库
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/24
+     **/
+    private void applyChatAdvisors(ChatClient.AdvisorSpec spec, String chatId, Advisor ragAdvisor) {
+        applyMemoryParams(spec, chatId);
+        if (ragAdvisor != null) {
+            spec.advisors(ragAdvisor);
+        }
+    }
+
     /**
      * 参考上下文执行对话，传入消息 和 会话 ID 即可实现多轮对话 （响应式输出）
      *
@@ -105,9 +225,89 @@ public class SpringAiChat {
      * @create 2025/7/3
      **/
     public String chat(String message, String userId, String knowledgeIndex) {
-        Advisor ragAdvisor = getRagAdvisor(knowledgeIndex);
+        Advisor ragAdvisor = getGatedRagAdvisor(message, knowledgeIndex);
+        String userText = "问题：" + message;
 
-        return chatClient.prompt().user("问题：" + message).advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, userId).param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10)).advisors(ragAdvisor).call().content();
+        boolean hasHistory = hasHistory(userId);
+        SemanticAnswerCache.Lookup lookup = lookupAnswer(SemanticAnswerCache.scope(knowledgeIndex, null), message, hasHistory);
+        if (lookup != null && lookup.hit()) {
+            rememberCachedAnswer(userId, userText, lookup.answer());
+            return lookup.answer();
+        }
+        ChatRequestCoalescer.Shared<String> shared = chatRequestCoalescer.call(coalescingKey(null, knowledgeIndex, message, hasHistory),
+                () -> chatClient.prompt().user(userText).advisors(spec -> applyChatAdvisors(spec, userId, ragAdvisor)).call().content());
+        if (!shared.leader()) {
+            // 与进行中的相同请求共享回答，未经过对话记忆 advisor
+            rememberCachedAnswer(userId, userText, shared.value());
+            return shared.value();
+        }
+        semanticAnswerCache.put(lookup, shared.value());
+        return shared.value();
+    }
+
+    /**
+     * 会话是否已有历史消息，语义答案缓存（配置为有历史时跳过）与相同请求合并共用一次查询，两者都用不到时不查询
+     *
+     * @param chatId
+     * @return boolean
+     * @author DuRuiChi
+     * @create 2025/8/25
+     **/
+    private boolean hasHistory(String chatId) {
+        boolean needed = chatRequestCoalescer.isEnabled() || semanticAnswerCache.isEnabled() && semanticCacheSkipWithHistory;
+        return needed && !chatMemory.get(chatId, 1).isEmpty();
+    }
+
+    /**
+     * 构建相同请求的合并键，未启用合并或会话已有历史消息（提示词因历史而不同）时返回 null
+     *
+     * @param systemPrompt
+     * @param knowledgeIndex
+     * @param message
+     * @param hasHistory     会话是否已有历史消息
+     * @return com.rich.richsynapsehub.utils.ai.doChat.ChatRequestCoalescer.Key
+     * @author DuRuiChi
+     * @create 2025/8/25
+     **/
+    private ChatRequestCoalescer.Key coalescingKey(String systemPrompt, String knowledgeIndex, String message, boolean hasHistory) {
+        if (!chatRequestCoalescer.isEnabled() || hasHistory) {
+            return null;
+        }
+        return ChatRequestCoalescer.key(systemPrompt, knowledgeIndex, message);
+    }
+
+    /**
+     * 查询语义答案缓存，未启用或会话已有历史消息（且配置为跳过）时返回 null
+     *
+     * @param scope
+     * @param question
+     * @param hasHistory 会话是否已有历史消息
+     * @return com.rich.richsynapsehub.utils.ai.doChat.SemanticAnswerCache.Lookup
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    private SemanticAnswerCache.Lookup lookupAnswer(String scope, String question, boolean hasHistory) {
+        if (!semanticAnswerCache.isEnabled()) {
+            return null;
+        }
+        if (semanticCacheSkipWithHistory && hasHistory) {
+            return null;
+        }
+        return semanticAnswerCache.lookup(scope, question);
+    }
+
+    /**
+     * 命中语义答案缓存时未经过对话记忆 advisor，手动写入本轮问答，保证后续多轮对话的上下文完整
+     *
+     * @param chatId
+     * @param userText
+     * @param answer
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/17
+     **/
+    private void rememberCachedAnswer(String chatId, String userText, String answer) {
+        chatMemory.add(chatId, List.of(new UserMessage(userText), new AssistantMessage(answer)));
     }
 
     /**
@@ -129,7 +329,7 @@ public class SpringAiChat {
      * @create 2025/7/3
      **/
     public StructuredOutput structuredOutputChat(String message, String userId) {
-        StructuredOutput entity = chatClient.prompt().user("现在我要问你一个面试题，请你以面试者的身份简明扼要地、总结性地、在短时间内快速地回答我的问题 " + message).advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, userId).param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10)).call()
+        StructuredOutput entity = chatClient.prompt().user("现在我要问你一个面试题，请你以面试者的身份简明扼要地、总结性地、在短时间内快速地回答我的问题 " + message).advisors(spec -> applyMemoryParams(spec, userId)).call()
                 // 指定返回的结果格式
                 .entity(StructuredOutput.class);
         log.info("结构化后的结果：{}", entity);
@@ -148,10 +348,52 @@ public class SpringAiChat {
      * @create 2025/7/24
      **/
     public Flux<String> doChatByStream(String message, String chatId, String knowledgeIndex) {
-        Advisor ragAdvisor = getRagAdvisor(knowledgeIndex);
+        Advisor ragAdvisor = getGatedRagAdvisor(message, knowledgeIndex);
+
+        String systemPrompt = systemPromptOf(knowledgeIndex);
+
+        boolean hasHistory = hasHistory(chatId);
+        SemanticAnswerCache.Lookup lookup = lookupAnswer(SemanticAnswerCache.scope(knowledgeIndex, systemPrompt), message, hasHistory);
+        if (lookup != null && lookup.hit()) {
+            // 命中缓存：按流式分片回放
+            rememberCachedAnswer(chatId, message, lookup.answer());
+            return Flux.fromIterable(SemanticAnswerCache.replayChunks(lookup.answer()));
+        }
+
+        Flux<String> content = chatRequestCoalescer.stream(
+                coalescingKey(systemPrompt, knowledgeIndex, message, hasHistory),
+                () -> chatClient.prompt()
+                        // 上下文设定
+                        .system(systemPrompt).user(message)
+                        // advisors（检索前分类未通过时不挂载知识库检索）
+                        .advisors(spec -> applyChatAdvisors(spec, chatId, ragAdvisor))
+                        // 流式输出
+                        .stream().content(),
+                // 订阅进行中的相同请求，完整输出后手动写入本会话的记忆
+                existing -> {
+                    StringBuilder answer = new StringBuilder();
+                    return existing.doOnNext(answer::append)
+                            .doOnComplete(() -> rememberCachedAnswer(chatId, message, answer.toString()));
+                });
+        if (lookup == null) {
+            return content;
+        }
+        // 完整输出后写入缓存，中途取消或出错的回答不缓存
+        StringBuilder answer = new StringBuilder();
+        return content.doOnNext(answer::append)
+                .doOnComplete(() -> semanticAnswerCache.put(lookup, answer.toString()));
+    }
 
-        // 根据知识库类型设置不同的系统上下文
-        String systemPrompt = switch (knowledgeIndex) {
+    /**
+     * 根据知识库类型设置不同的系统上下文
+     *
+     * @param knowledgeIndex
+     * @return java.lang.String
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    private static String systemPromptOf(String knowledgeIndex) {
+        return switch (knowledgeIndex) {
             // 面试专家
             case "interview" -> SystemPromptConstant.INTERVIEW;
             // 资深购物策略专家
@@ -169,13 +411,24 @@ public class SpringAiChat {
             // 默认上下文
             default -> DEFAULT_SYSTEM_PROMPT;
         };
+    }
 
-        return chatClient.prompt()
-                // 上下文设定
-                .system(systemPrompt).user(message)
-                // advisors
-                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId).param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10)).advisors(ragAdvisor)
-                // 流式输出
+    /**
+     * 非阻塞的流式对话：对话记忆通过响应式客户端读写，知识库检索在虚拟线程上执行，请求处理过程中不阻塞任何平台线程
+     * 语义答案缓存与相同请求合并依赖阻塞的历史消息查询，此链路不启用
+     *
+     * @param message        消息
+     * @param chatId         会话 ID
+     * @param knowledgeIndex RAG 知识库类型
+     * @return reactor.core.publisher.Flux<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/27
+     **/
+    public Flux<String> doChatByReactiveStream(String message, String chatId, String knowledgeIndex) {
+        Advisor ragAdvisor = getGatedRagAdvisor(message, knowledgeIndex);
+        return reactiveChatClient.prompt()
+                .system(systemPromptOf(knowledgeIndex)).user(message)
+                .advisors(spec -> applyChatAdvisors(spec, chatId, ragAdvisor))
                 .stream().content();
     }
-}
\ No newline at end of file
+}
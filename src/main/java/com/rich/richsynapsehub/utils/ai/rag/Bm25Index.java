@@ -0,0 +1,232 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import org.springframework.ai.document.Document;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 进程内 BM25 倒排索引（只读，知识库变化时整体重建）
+ * <p>
+ * 分词见 {@link RagTokenizer}（拉丁词 + 中日韩二元组），能精确命中 Sa-Token、MVCC 这类向量检索容易漏掉的术语。
+ * 倒排表按词项存放为变长整数（varint）字节数组：[文档序号差值][词频]...，文档序号递增，差值通常只占 1 字节；
+ * 查询时只遍历查询词项的倒排表，累加到按文档序号索引的得分数组，再用小顶堆取前 k 个。
+ * 得分：Σ idf · tf · (k1 + 1) / (tf + k1 · (1 - b + b · dl / avgdl))，idf = ln(1 + (N - df + 0.5) / (df + 0.5))。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/21
+ **/
+public class Bm25Index {
+
+    /**
+     * 词频饱和参数
+     */
+    public static final float DEFAULT_K1 = 1.2f;
+
+    /**
+     * 文档长度归一化参数
+     */
+    public static final float DEFAULT_B = 0.75f;
+
+    private final List<Document> documents;
+
+    /**
+     * 词项 -> 倒排表
+     */
+    private final Map<String, Postings> postings;
+
+    /**
+     * 每个文档的长度归一化项 k1 · (1 - b + b · dl / avgdl)，查询时免去重复计算
+     */
+    private final float[] lengthNorms;
+
+    private final float k1;
+
+    private final long postingBytes;
+
+    /**
+     * 单个词项的倒排表
+     *
+     * @param data          varint 编码的 [文档序号差值][词频] 序列
+     * @param documentCount 包含该词项的文档数（df）
+     */
+    private record Postings(byte[] data, int documentCount) {
+    }
+
+    public Bm25Index(List<Document> documents) {
+        this(documents, DEFAULT_K1, DEFAULT_B);
+    }
+
+    /**
+     * @param documents 待索引的片段，检索结果按原样返回（score 为 BM25 得分）
+     * @param k1        词频饱和参数
+     * @param b         文档长度归一化参数
+     */
+    public Bm25Index(List<Document> documents, float k1, float b) {
+        this.documents = List.copyOf(documents);
+        this.k1 = k1;
+        int count = this.documents.size();
+        int[] lengths = new int[count];
+        long totalLength = 0;
+        // 文档按序号递增处理，同一词项的倒排表天然有序，可直接追加差值
+        Map<String, PostingsWriter> writers = new HashMap<>();
+        for (int doc = 0; doc < count; doc++) {
+            List<String> tokens = RagTokenizer.tokenize(this.documents.get(doc).getText());
+            lengths[doc] = tokens.size();
+            totalLength += tokens.size();
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                writers.computeIfAbsent(entry.getKey(), key -> new PostingsWriter()).add(doc, entry.getValue());
+            }
+        }
+        this.postings = new HashMap<>(writers.size() * 2);
+        long bytes = 0;
+        for (Map.Entry<String, PostingsWriter> entry : writers.entrySet()) {
+            Postings list = entry.getValue().build();
+            postings.put(entry.getKey(), list);
+            bytes += list.data().length;
+        }
+        this.postingBytes = bytes;
+        float averageLength = count == 0 ? 0 : (float) totalLength / count;
+        this.lengthNorms = new float[count];
+        for (int doc = 0; doc < count; doc++) {
+            lengthNorms[doc] = averageLength == 0 ? k1 : k1 * (1 - b + b * lengths[doc] / averageLength);
+        }
+    }
+
+    /**
+     * 检索
+     *
+     * @param query 查询文本
+     * @param topK  返回数量
+     * @return java.util.List<org.springframework.ai.document.Document> 按 BM25 得分降序，只含至少命中一个词项的片段
+     * @author DuRuiChi
+     * @create 2025/8/21
+     **/
+    public List<Document> search(String query, int topK) {
+        if (topK <= 0 || documents.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Integer> queryTerms = new HashMap<>();
+        for (String token : RagTokenizer.tokenize(query)) {
+            queryTerms.merge(token, 1, Integer::sum);
+        }
+        float[] scores = new float[documents.size()];
+        int count = documents.size();
+        for (Map.Entry<String, Integer> term : queryTerms.entrySet()) {
+            Postings list = postings.get(term.getKey());
+            if (list == null) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (count - list.documentCount() + 0.5) / (list.documentCount() + 0.5));
+            float weight = idf * term.getValue() * (k1 + 1);
+            byte[] data = list.data();
+            int[] position = {0};
+            int doc = 0;
+            while (position[0] < data.length) {
+                doc += readVarint(data, position);
+                int tf = readVarint(data, position);
+                scores[doc] += weight * tf / (tf + lengthNorms[doc]);
+            }
+        }
+
+        // 小顶堆保留得分最高的 topK 个文档
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Comparator.comparingDouble(doc -> scores[doc]));
+        for (int doc = 0; doc < count; doc++) {
+            if (scores[doc] <= 0) {
+                continue;
+            }
+            if (heap.size() < topK) {
+                heap.add(doc);
+            } else if (scores[doc] > scores[heap.peek()]) {
+                heap.poll();
+                heap.add(doc);
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(heap);
+        ranked.sort(Comparator.comparingDouble((Integer doc) -> scores[doc]).reversed());
+        List<Document> results = new ArrayList<>(ranked.size());
+        for (int doc : ranked) {
+            Document document = documents.get(doc);
+            results.add(Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(document.getMetadata())
+                    .score((double) scores[doc])
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * 已索引的片段数
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * 词项数
+     */
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * 倒排表占用的字节数（压缩后）
+     */
+    public long postingBytes() {
+        return postingBytes;
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * 构建期的倒排表：追加 [文档序号差值][词频]
+     */
+    private static final class PostingsWriter {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(8);
+
+        private int lastDocument;
+
+        private int documentCount;
+
+        void add(int document, int frequency) {
+            writeVarint(document - lastDocument);
+            writeVarint(frequency);
+            lastDocument = document;
+            documentCount++;
+        }
+
+        Postings build() {
+            return new Postings(out.toByteArray(), documentCount);
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.List;
+
+/**
+ * 带结果缓存的文档检索器，装饰 DashScopeDocumentRetriever / {@link LocalDocumentRetriever}
+ * 同一知识库下归一化后相同的查询直接返回缓存结果（见 {@link RetrievalCache}）
+ *
+ * @author DuRuiChi
+ * @create 2025/8/16
+ **/
+public class CachingDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever delegate;
+
+    private final String knowledgeIndex;
+
+    private final RetrievalCache retrievalCache;
+
+    public CachingDocumentRetriever(DocumentRetriever delegate, String knowledgeIndex, RetrievalCache retrievalCache) {
+        this.delegate = delegate;
+        this.knowledgeIndex = knowledgeIndex;
+        this.retrievalCache = retrievalCache;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        return retrievalCache.get(knowledgeIndex, query.text(), () -> delegate.retrieve(query));
+    }
+}
@@ -0,0 +1,232 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.join.DocumentJoiner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 检索结果压缩：在 RetrievalAugmentationAdvisor 把片段拼进提示词之前，去掉冗余内容以减少输入 token
+ * <p>
+ * 依次执行：按 id 合并各查询的结果并按得分排序 -> 相对得分截断（低于最高分一定比例的片段丢弃，不依赖各检索器得分的量纲；
+ * 倒数排名融合的得分只反映排名，只命中一个检索器的片段得分天然只有多路命中片段的一半左右，因此不参与截断）
+ * -> 近似重复去重（分词集合的 Jaccard 相似度超过阈值时只保留排名靠前的片段）-> 句子裁剪（每个片段只保留与查询词重合最多的几句，
+ * 按原文顺序拼接；与查询无任何重合的片段保持原样，避免误删语义相关但措辞不同的内容）-> token 预算（按排名累加，超出预算的片段丢弃）。
+ * 相似度全部基于 {@link RagTokenizer} 分词，不调用向量模型，不增加检索延迟。
+ * 每次请求的原始与保留 token 数写入日志，并以 Micrometer 指标暴露。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/23
+ **/
+@Slf4j
+public class ContextCompressingDocumentJoiner implements DocumentJoiner {
+
+    private final double relativeScoreCutoff;
+
+    private final double duplicateSimilarity;
+
+    private final int maxSentences;
+
+    private final int tokenBudget;
+
+    private final DistributionSummary originalTokensSummary;
+
+    private final DistributionSummary keptTokensSummary;
+
+    private final Counter savedTokensCounter;
+
+    /**
+     * 压缩结果
+     *
+     * @param documents      压缩后的片段
+     * @param originalTokens 压缩前的估算 token 数
+     * @param keptTokens     压缩后的估算 token 数
+     */
+    public record Compression(List<Document> documents, int originalTokens, int keptTokens) {
+
+        public int savedTokens() {
+            return originalTokens - keptTokens;
+        }
+    }
+
+    /**
+     * @param relativeScoreCutoff 相对得分下限（0~1），得分低于 最高分 × 该值 的片段丢弃，0 表示不截断
+     * @param duplicateSimilarity 近似重复判定阈值（分词集合的 Jaccard 相似度）
+     * @param maxSentences        每个片段最多保留的句子数
+     * @param tokenBudget         上下文的 token 预算
+     */
+    public ContextCompressingDocumentJoiner(double relativeScoreCutoff, double duplicateSimilarity, int maxSentences,
+                                            int tokenBudget, MeterRegistry meterRegistry) {
+        this.relativeScoreCutoff = relativeScoreCutoff;
+        this.duplicateSimilarity = duplicateSimilarity;
+        this.maxSentences = maxSentences;
+        this.tokenBudget = tokenBudget;
+        this.originalTokensSummary = DistributionSummary.builder("rag.context.tokens.original")
+                .description("检索上下文压缩前的 token 数").register(meterRegistry);
+        this.keptTokensSummary = DistributionSummary.builder("rag.context.tokens.kept")
+                .description("检索上下文压缩后的 token 数").register(meterRegistry);
+        this.savedTokensCounter = Counter.builder("rag.context.tokens.saved")
+                .description("检索上下文压缩累计节省的 token 数").register(meterRegistry);
+    }
+
+    @Override
+    public List<Document> join(Map<Query, List<List<Document>>> documentsForQuery) {
+        String queryText = documentsForQuery.keySet().stream().map(Query::text).collect(Collectors.joining("\n"));
+        Map<String, Document> merged = new LinkedHashMap<>();
+        documentsForQuery.values().stream()
+                .flatMap(List::stream)
+                .flatMap(List::stream)
+                .forEach(document -> merged.putIfAbsent(document.getId(), document));
+        Compression compression = compress(queryText, new ArrayList<>(merged.values()));
+        originalTokensSummary.record(compression.originalTokens());
+        keptTokensSummary.record(compression.keptTokens());
+        savedTokensCounter.increment(compression.savedTokens());
+        log.info("检索上下文压缩：片段 {} -> {}，token {} -> {}，节省 {}", merged.size(), compression.documents().size(),
+                compression.originalTokens(), compression.keptTokens(), compression.savedTokens());
+        return compression.documents();
+    }
+
+    /**
+     * 压缩检索结果
+     *
+     * @param query     查询文本
+     * @param documents 检索结果
+     * @return com.rich.richsynapsehub.utils.ai.rag.ContextCompressingDocumentJoiner.Compression
+     * @author DuRuiChi
+     * @create 2025/8/23
+     **/
+    public Compression compress(String query, List<Document> documents) {
+        int originalTokens = documents.stream().mapToInt(document -> TokenCountUtils.estimate(document.getText())).sum();
+        List<Document> ranked = new ArrayList<>(documents);
+        // 稳定排序：无得分的片段保持原有顺序排在最后
+        ranked.sort(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())));
+
+        double topScore = ranked.stream().filter(document -> !FusionDocumentRetriever.isFused(document))
+                .map(Document::getScore).filter(Objects::nonNull).findFirst().orElse(0.0);
+        Set<String> queryTokens = new HashSet<>(RagTokenizer.tokenize(query));
+        List<Set<String>> keptTokenSets = new ArrayList<>();
+        List<Document> compressed = new ArrayList<>();
+        int keptTokens = 0;
+        for (Document document : ranked) {
+            if (document.getText() == null || document.getText().isBlank()) {
+                continue;
+            }
+            if (topScore > 0 && !FusionDocumentRetriever.isFused(document) && document.getScore() != null
+                    && document.getScore() < topScore * relativeScoreCutoff) {
+                continue;
+            }
+            Set<String> tokens = new HashSet<>(RagTokenizer.tokenize(document.getText()));
+            if (keptTokenSets.stream().anyMatch(kept -> jaccard(kept, tokens) >= duplicateSimilarity)) {
+                continue;
+            }
+            String text = trimSentences(document.getText(), queryTokens);
+            int tokenCount = TokenCountUtils.estimate(text);
+            if (keptTokens + tokenCount > tokenBudget) {
+                if (!compressed.isEmpty()) {
+                    continue;
+                }
+                // 排名第一的片段单独超出预算时截取开头若干句，保证上下文不为空
+                text = headWithinBudget(text, tokenBudget);
+                tokenCount = TokenCountUtils.estimate(text);
+                if (text.isEmpty()) {
+                    continue;
+                }
+            }
+            keptTokenSets.add(tokens);
+            keptTokens += tokenCount;
+            compressed.add(Document.builder()
+                    .id(document.getId())
+                    .text(text)
+                    .metadata(document.getMetadata())
+                    .score(document.getScore())
+                    .build());
+        }
+        return new Compression(compressed, originalTokens, keptTokens);
+    }
+
+    /**
+     * 保留与查询词重合最多的 maxSentences 句（按原文顺序），没有任何句子与查询重合时原样返回
+     */
+    private String trimSentences(String text, Set<String> queryTokens) {
+        List<String> sentences = splitSentences(text);
+        if (sentences.size() <= maxSentences || queryTokens.isEmpty()) {
+            return text;
+        }
+        int[] overlaps = new int[sentences.size()];
+        boolean anyOverlap = false;
+        for (int i = 0; i < sentences.size(); i++) {
+            Set<String> tokens = new HashSet<>(RagTokenizer.tokenize(sentences.get(i)));
+            tokens.retainAll(queryTokens);
+            overlaps[i] = tokens.size();
+            anyOverlap |= overlaps[i] > 0;
+        }
+        if (!anyOverlap) {
+            return text;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            if (overlaps[i] > 0) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingInt((Integer i) -> overlaps[i]).reversed());
+        List<Integer> selected = new ArrayList<>(order.subList(0, Math.min(maxSentences, order.size())));
+        selected.sort(Comparator.naturalOrder());
+        StringBuilder builder = new StringBuilder();
+        for (int i : selected) {
+            builder.append(sentences.get(i));
+        }
+        return builder.toString().strip();
+    }
+
+    /**
+     * 截取不超过 token 预算的开头若干句
+     */
+    private static String headWithinBudget(String text, int budget) {
+        StringBuilder builder = new StringBuilder();
+        int tokens = 0;
+        for (String sentence : splitSentences(text)) {
+            int sentenceTokens = TokenCountUtils.estimate(sentence);
+            if (tokens + sentenceTokens > budget) {
+                break;
+            }
+            builder.append(sentence);
+            tokens += sentenceTokens;
+        }
+        return builder.toString().strip();
+    }
+
+    /**
+     * 切分句子并丢弃空白片段
+     */
+    private static List<String> splitSentences(String text) {
+        return RagTokenizer.splitSentences(text).stream().filter(sentence -> !sentence.isBlank()).toList();
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1;
+        }
+        int intersection = 0;
+        for (String token : a) {
+            if (b.contains(token)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+}
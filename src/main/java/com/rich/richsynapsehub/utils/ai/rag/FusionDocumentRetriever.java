@@ -0,0 +1,149 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import com.rich.richsynapsehub.constant.RagConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 多知识库融合检索器：并发检索多个知识库，用倒数排名融合（Reciprocal Rank Fusion）合并结果
+ * <p>
+ * 每个知识库的检索单独计时，超时或失败的知识库视为无结果，不影响其他知识库；总等待时间不超过单个检索的超时时间，
+ * 因此增加知识库不会线性增加延迟。RRF 得分为 Σ 1 / (k + 排名)，同一文档（按 id）出现在多个知识库时得分累加，
+ * 只依赖排名，不要求各检索器的相似度分数可比。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/18
+ **/
+@Slf4j
+public class FusionDocumentRetriever implements DocumentRetriever {
+
+    /**
+     * RRF 常数的常用取值
+     */
+    public static final int DEFAULT_RRF_K = 60;
+
+    private final Map<String, DocumentRetriever> retrievers;
+
+    private final Executor executor;
+
+    private final long timeoutMillis;
+
+    private final int topK;
+
+    private final int rrfK;
+
+    /**
+     * @param retrievers 知识库名称 -> 检索器
+     * @param executor   执行检索的线程池
+     * @param timeout    单个知识库的检索超时
+     * @param topK       融合后返回的文档数
+     * @param rrfK       RRF 常数
+     */
+    public FusionDocumentRetriever(Map<String, DocumentRetriever> retrievers, Executor executor, Duration timeout,
+                                   int topK, int rrfK) {
+        this.retrievers = new LinkedHashMap<>(retrievers);
+        this.executor = executor;
+        this.timeoutMillis = timeout.toMillis();
+        this.topK = topK;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        Map<String, CompletableFuture<List<Document>>> futures = new LinkedHashMap<>();
+        retrievers.forEach((knowledgeIndex, retriever) -> futures.put(knowledgeIndex,
+                CompletableFuture.supplyAsync(() -> retriever.retrieve(query), executor)));
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 到达截止时间，只使用已返回的结果
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 单个检索失败在下方逐个处理
+        }
+
+        Map<String, List<Document>> results = new LinkedHashMap<>();
+        futures.forEach((knowledgeIndex, future) -> {
+            if (!future.isDone()) {
+                future.cancel(true);
+                log.warn("知识库 {} 检索超时（{} ms），已跳过", knowledgeIndex, timeoutMillis);
+                return;
+            }
+            if (future.isCompletedExceptionally()) {
+                log.warn("知识库 {} 检索失败，已跳过：{}", knowledgeIndex,
+                        future.exceptionNow() == null ? "" : future.exceptionNow().getMessage());
+                return;
+            }
+            results.put(knowledgeIndex, future.join());
+        });
+        return fuse(results, topK, rrfK);
+    }
+
+    /**
+     * 倒数排名融合
+     *
+     * @param results 知识库名称 -> 按相关性降序的检索结果
+     * @param topK    返回数量
+     * @param rrfK    RRF 常数
+     * @return java.util.List<org.springframework.ai.document.Document> 按融合得分降序，score 为融合得分（元数据标记 fusedScore）
+     * @author DuRuiChi
+     * @create 2025/8/18
+     **/
+    public static List<Document> fuse(Map<String, List<Document>> results, int topK, int rrfK) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, String> sources = new HashMap<>();
+        results.forEach((knowledgeIndex, ranked) -> {
+            for (int rank = 0; rank < ranked.size(); rank++) {
+                Document document = ranked.get(rank);
+                String key = document.getId();
+                scores.merge(key, 1.0 / (rrfK + rank + 1), Double::sum);
+                documents.putIfAbsent(key, document);
+                sources.putIfAbsent(key, knowledgeIndex);
+            }
+        });
+        List<String> keys = new ArrayList<>(documents.keySet());
+        keys.sort(Comparator.comparingDouble((String key) -> scores.get(key)).reversed());
+        List<Document> fused = new ArrayList<>(Math.min(topK, keys.size()));
+        for (String key : keys.subList(0, Math.min(topK, keys.size()))) {
+            Document document = documents.get(key);
+            Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+            metadata.putIfAbsent(RagConstant.METADATA_KNOWLEDGE_INDEX, sources.get(key));
+            metadata.put(RagConstant.METADATA_FUSED_SCORE, true);
+            fused.add(Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(metadata)
+                    .score(scores.get(key))
+                    .build());
+        }
+        return fused;
+    }
+
+    /**
+     * 片段得分是否为 {@link #fuse} 产生的倒数排名融合得分（只反映排名，不能与相似度阈值比较）
+     *
+     * @param document
+     * @return boolean
+     * @author DuRuiChi
+     * @create 2025/8/18
+     **/
+    static boolean isFused(Document document) {
+        return Boolean.TRUE.equals(document.getMetadata().get(RagConstant.METADATA_FUSED_SCORE));
+    }
+}
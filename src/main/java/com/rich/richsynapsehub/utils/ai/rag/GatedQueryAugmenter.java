@@ -0,0 +1,50 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
+import org.springframework.ai.rag.generation.augmentation.QueryAugmenter;
+
+import java.util.List;
+
+/**
+ * 检索后的上下文闸门：丢弃得分低于阈值的片段，没有可用片段时原样返回问题，不注入上下文
+ * <p>
+ * 默认的 ContextualQueryAugmenter 在上下文为空时会把问题改写为“超出知识库范围、无法回答”的提示，
+ * 寒暄或知识库未覆盖的问题因此被拒答；这里在有片段时才交给 ContextualQueryAugmenter（allowEmptyContext）拼接上下文。
+ * 融合检索（RRF）的得分只反映排名、量纲与相似度不同，不参与阈值比较（相似度过滤已在各检索器内完成）。
+ * 未注入上下文的次数以 rag.gate.context.dropped 指标按原因（empty / low-score）计数。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/24
+ **/
+public class GatedQueryAugmenter implements QueryAugmenter {
+
+    private final QueryAugmenter delegate = ContextualQueryAugmenter.builder().allowEmptyContext(true).build();
+
+    private final double minScore;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param minScore 片段相似度得分下限，无得分或融合得分的片段保留，小于等于 0 时只处理空上下文
+     */
+    public GatedQueryAugmenter(double minScore, MeterRegistry meterRegistry) {
+        this.minScore = minScore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Query augment(Query query, List<Document> documents) {
+        List<Document> relevant = documents.stream()
+                .filter(document -> document.getScore() == null || FusionDocumentRetriever.isFused(document)
+                        || document.getScore() >= minScore)
+                .toList();
+        if (relevant.isEmpty()) {
+            meterRegistry.counter("rag.gate.context.dropped", "reason", documents.isEmpty() ? "empty" : "low-score").increment();
+            return query;
+        }
+        return delegate.augment(query, relevant);
+    }
+}
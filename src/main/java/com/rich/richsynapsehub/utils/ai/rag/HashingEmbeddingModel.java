@@ -0,0 +1,90 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 确定性的本地向量化模型（特征哈希），不调用任何远程服务
+ * <p>
+ * 对 {@link RagTokenizer} 的分词结果做带符号的特征哈希，词频取 1 + ln(tf)，最后做 L2 归一化。
+ * 相同文本永远得到相同向量，适合离线测试与无外网部署；语义能力弱于真实的向量模型，只能匹配字面相近的文本。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+
+    public HashingEmbeddingModel(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(embed(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public float[] embed(String text) {
+        List<String> tokens = RagTokenizer.tokenize(text);
+        // 先统计词频，再按 1 + ln(tf) 加权，避免高频词主导向量
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String token : tokens) {
+            termFrequencies.merge(token, 1, Integer::sum);
+        }
+        float[] vector = new float[dimensions];
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            int hash = mix(entry.getKey().hashCode());
+            int index = Math.floorMod(hash, dimensions);
+            float sign = (hash & 0x80000000) == 0 ? 1f : -1f;
+            vector[index] += sign * (float) (1 + Math.log(entry.getValue()));
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 打散 String.hashCode 的低位分布（murmur3 fmix32）
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
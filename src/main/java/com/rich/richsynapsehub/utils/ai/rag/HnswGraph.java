@@ -0,0 +1,214 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * HNSW 图的只读视图与查询算法，由堆内可写的 {@link HnswIndex} 与内存映射的只读 {@link MappedHnswIndex} 共用
+ * <p>
+ * 子类只需按节点提供层数、邻居与向量相似度，查询（逐层贪心下降 + 第 0 层束搜索）在此实现。
+ * 访问方法不加锁，由子类在 {@link #search(float[], int, int)} 外层自行保证一致性。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/20
+ **/
+public abstract class HnswGraph {
+
+    /**
+     * 向量维度
+     */
+    public abstract int dimensions();
+
+    /**
+     * 每层邻居数（第 0 层为 2M）
+     */
+    public abstract int m();
+
+    /**
+     * 节点总数（含已删除节点）
+     */
+    public abstract int size();
+
+    /**
+     * 入口节点，空图为 -1
+     */
+    protected abstract int entryPoint();
+
+    protected abstract int maxLevel();
+
+    /**
+     * 节点所在的层数（最高层 + 1）
+     */
+    protected abstract int levelCount(int node);
+
+    protected abstract int neighborCount(int node, int level);
+
+    protected abstract int neighborAt(int node, int level, int index);
+
+    protected abstract boolean deletedAt(int node);
+
+    /**
+     * 查询向量与节点向量的相似度
+     */
+    protected abstract float similarityTo(float[] query, int node);
+
+    /**
+     * 节点向量（副本或内部数组，调用方不得修改）
+     */
+    protected abstract float[] vectorAt(int node);
+
+    /**
+     * 查询最相似的 k 个节点
+     *
+     * @param query    已归一化的查询向量
+     * @param k        返回数量
+     * @param efSearch 查询时的候选集大小，越大召回越高、耗时越长（小于 k 时按 k 处理）
+     * @return java.util.List<com.rich.richsynapsehub.utils.ai.rag.HnswGraph.Neighbor> 按相似度降序，不含已删除节点
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public List<Neighbor> search(float[] query, int k, int efSearch) {
+        if (query.length != dimensions()) {
+            throw new IllegalArgumentException("向量维度不匹配：期望 " + dimensions() + "，实际 " + query.length);
+        }
+        int current = entryPoint();
+        if (current < 0 || k <= 0) {
+            return List.of();
+        }
+        for (int l = maxLevel(); l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        List<Neighbor> candidates = rerank(query, searchLayer(query,
+                List.of(new Neighbor(current, similarityTo(query, current))), Math.max(efSearch, k), 0, true));
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+
+    /**
+     * 对第 0 层束搜索得到的候选集重新打分排序，默认原样返回；近似相似度（如量化向量）的子类在此用精确向量重排
+     *
+     * @param candidates 按近似相似度降序
+     * @return 按相似度降序
+     */
+    protected List<Neighbor> rerank(float[] query, List<Neighbor> candidates) {
+        return candidates;
+    }
+
+    /**
+     * 内积相似度（向量已归一化时等于余弦相似度）
+     */
+    public static float similarity(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * L2 归一化（远程向量模型的输出不保证归一化），已是单位向量时原样返回
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0 || Math.abs(norm - 1) < 1e-6) {
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * 在指定层从 start 出发贪心移动到与 query 最相似的节点
+     */
+    protected int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = similarityTo(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int count = neighborCount(current, level);
+            int from = current;
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighborAt(from, level, i);
+                float score = similarityTo(query, neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层束搜索
+     *
+     * @param liveOnly 结果中是否排除已删除节点（已删除节点仍会被展开）
+     * @return 按相似度降序的至多 ef 个节点
+     */
+    protected List<Neighbor> searchLayer(float[] query, List<Neighbor> entryPoints, int ef, int level, boolean liveOnly) {
+        BitSet visited = new BitSet();
+        // 候选集：相似度高的先展开；结果集：堆顶为当前最差结果
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::score).reversed());
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::score));
+        for (Neighbor entry : entryPoints) {
+            if (!visited.get(entry.id())) {
+                visited.set(entry.id());
+                candidates.add(entry);
+                if (!liveOnly || !deletedAt(entry.id())) {
+                    results.add(entry);
+                }
+            }
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+        while (!candidates.isEmpty()) {
+            Neighbor candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            if (level >= levelCount(candidate.id())) {
+                continue;
+            }
+            int count = neighborCount(candidate.id(), level);
+            for (int i = 0; i < count; i++) {
+                int neighborId = neighborAt(candidate.id(), level, i);
+                if (visited.get(neighborId)) {
+                    continue;
+                }
+                visited.set(neighborId);
+                float score = similarityTo(query, neighborId);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Neighbor neighbor = new Neighbor(neighborId, score);
+                    candidates.add(neighbor);
+                    if (!liveOnly || !deletedAt(neighborId)) {
+                        results.add(neighbor);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        return sorted;
+    }
+
+    /**
+     * 查询结果：节点 id 与相似度
+     */
+    public record Neighbor(int id, float score) {
+    }
+}
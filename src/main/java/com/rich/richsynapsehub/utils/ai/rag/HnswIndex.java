@@ -0,0 +1,357 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存 HNSW（Hierarchical Navigable Small World）近似最近邻索引
+ * <p>
+ * 向量需预先做 L2 归一化，相似度取内积（即余弦相似度）。每个节点按几何分布随机分配层数，
+ * 上层稀疏图用于快速定位入口，第 0 层每个节点最多保留 2M 个邻居，其余层 M 个；邻居选择使用论文中的启发式裁剪，
+ * 保留方向上相互“不遮挡”的邻居以提升召回。写入持有写锁，查询持有读锁，适合写少读多的知识库场景。
+ * 删除采用墓碑标记：被删除的节点仍参与图遍历（保持连通性），但不再出现在查询结果中；墓碑过多时由调用方重建索引。
+ * 查询算法见 {@link HnswGraph}。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+public class HnswIndex extends HnswGraph {
+
+    private final int dimensions;
+
+    private final int m;
+
+    private final int maxNeighborsLevel0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final SplittableRandom random;
+
+    private final List<float[]> vectors = new ArrayList<>();
+
+    /**
+     * 节点各层邻居：links.get(node)[level] 为邻居 id 数组，第 0 位存放邻居数量
+     */
+    private final List<int[][]> links = new ArrayList<>();
+
+    /**
+     * 已删除（墓碑）节点
+     */
+    private final BitSet deleted = new BitSet();
+
+    private int deletedCount;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    /**
+     * @param dimensions     向量维度
+     * @param m              每层邻居数（第 0 层为 2M）
+     * @param efConstruction 构建时的候选集大小
+     * @param seed           层数随机种子，固定种子可使索引结构可复现
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, long seed) {
+        if (dimensions <= 0 || m < 2 || efConstruction < m) {
+            throw new IllegalArgumentException("HNSW 参数非法：dimensions=" + dimensions + ", m=" + m + ", efConstruction=" + efConstruction);
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxNeighborsLevel0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * 复制一张图（向量、邻居、墓碑）为可写索引，用于在内存映射的只读索引上继续增量写入
+     *
+     * @param source         源图
+     * @param efConstruction 后续写入使用的构建候选集大小
+     * @param seed           后续写入使用的层数随机种子
+     * @return com.rich.richsynapsehub.utils.ai.rag.HnswIndex
+     * @author DuRuiChi
+     * @create 2025/8/20
+     **/
+    public static HnswIndex copyOf(HnswGraph source, int efConstruction, long seed) {
+        HnswIndex index = new HnswIndex(source.dimensions(), source.m(), Math.max(efConstruction, source.m()), seed);
+        for (int node = 0; node < source.size(); node++) {
+            int levels = source.levelCount(node);
+            int[][] nodeLinks = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int count = source.neighborCount(node, l);
+                nodeLinks[l] = new int[Math.max(index.maxNeighbors(l), count) + 1];
+                nodeLinks[l][0] = count;
+                for (int i = 0; i < count; i++) {
+                    nodeLinks[l][i + 1] = source.neighborAt(node, l, i);
+                }
+            }
+            index.vectors.add(source.vectorAt(node).clone());
+            index.links.add(nodeLinks);
+            if (source.deletedAt(node)) {
+                index.deleted.set(node);
+                index.deletedCount++;
+            }
+        }
+        index.entryPoint = source.entryPoint();
+        index.maxLevel = source.maxLevel();
+        return index;
+    }
+
+    /**
+     * 插入向量
+     *
+     * @param vector 已归一化的向量
+     * @return int 节点 id（从 0 递增）
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public int insert(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量维度不匹配：期望 " + dimensions + "，实际 " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            int id = vectors.size();
+            int level = randomLevel();
+            int[][] nodeLinks = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                nodeLinks[l] = new int[maxNeighbors(l) + 1];
+            }
+            vectors.add(vector);
+            links.add(nodeLinks);
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+
+            int current = entryPoint;
+            // 高于新节点层数的各层只做贪心下降
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vector, current, l);
+            }
+            List<Neighbor> entryPoints = List.of(new Neighbor(current, similarity(vector, vectors.get(current))));
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Neighbor> candidates = searchLayer(vector, entryPoints, efConstruction, l, false);
+                List<Neighbor> selected = selectNeighbors(candidates, m);
+                for (Neighbor neighbor : selected) {
+                    addLink(id, neighbor.id(), l);
+                    addLink(neighbor.id(), id, l);
+                }
+                entryPoints = candidates;
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Neighbor> search(float[] query, int k, int efSearch) {
+        lock.readLock().lock();
+        try {
+            return super.search(query, k, efSearch);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 删除节点（墓碑标记），节点 id 不会被复用
+     *
+     * @param id
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/19
+     **/
+    public void delete(int id) {
+        lock.writeLock().lock();
+        try {
+            if (id >= 0 && id < vectors.size() && !deleted.get(id)) {
+                deleted.set(id);
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isDeleted(int id) {
+        lock.readLock().lock();
+        try {
+            return deleted.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已删除节点数
+     */
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取节点向量
+     *
+     * @param id
+     * @return float[]
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public float[] vector(int id) {
+        lock.readLock().lock();
+        try {
+            return vectors.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return vectors.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int m() {
+        return m;
+    }
+
+    @Override
+    protected int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    protected int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    protected int levelCount(int node) {
+        return links.get(node).length;
+    }
+
+    @Override
+    protected int neighborCount(int node, int level) {
+        return links.get(node)[level][0];
+    }
+
+    @Override
+    protected int neighborAt(int node, int level, int index) {
+        return links.get(node)[level][index + 1];
+    }
+
+    @Override
+    protected boolean deletedAt(int node) {
+        return deleted.get(node);
+    }
+
+    @Override
+    protected float similarityTo(float[] query, int node) {
+        return similarity(query, vectors.get(node));
+    }
+
+    @Override
+    protected float[] vectorAt(int node) {
+        return vectors.get(node);
+    }
+
+    private int randomLevel() {
+        double r = 1 - random.nextDouble();
+        return (int) (-Math.log(r) * levelMultiplier);
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? maxNeighborsLevel0 : m;
+    }
+
+    /**
+     * 启发式邻居选择：候选按相似度降序，若候选与已选邻居的相似度高于与基准点的相似度则视为被遮挡而跳过；
+     * 数量不足时用被跳过的候选补齐
+     *
+     * @param candidates 按与基准点相似度降序排列
+     */
+    private List<Neighbor> selectNeighbors(List<Neighbor> candidates, int limit) {
+        List<Neighbor> selected = new ArrayList<>(limit);
+        List<Neighbor> pruned = new ArrayList<>();
+        for (Neighbor candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            float[] candidateVector = vectors.get(candidate.id());
+            boolean occluded = false;
+            for (Neighbor chosen : selected) {
+                if (similarity(candidateVector, vectors.get(chosen.id())) > candidate.score()) {
+                    occluded = true;
+                    break;
+                }
+            }
+            if (occluded) {
+                pruned.add(candidate);
+            } else {
+                selected.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < limit; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * 为 from 在指定层添加指向 to 的边，超过上限时重新做启发式裁剪
+     */
+    private void addLink(int from, int to, int level) {
+        int[] neighbors = links.get(from)[level];
+        int count = neighbors[0];
+        int limit = maxNeighbors(level);
+        if (count < limit) {
+            neighbors[count + 1] = to;
+            neighbors[0] = count + 1;
+            return;
+        }
+        float[] base = vectors.get(from);
+        List<Neighbor> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Neighbor(neighbors[i], similarity(base, vectors.get(neighbors[i]))));
+        }
+        candidates.add(new Neighbor(to, similarity(base, vectors.get(to))));
+        candidates.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        List<Neighbor> selected = selectNeighbors(candidates, limit);
+        for (int i = 0; i < selected.size(); i++) {
+            neighbors[i + 1] = selected.get(i).id();
+        }
+        neighbors[0] = selected.size();
+    }
+}
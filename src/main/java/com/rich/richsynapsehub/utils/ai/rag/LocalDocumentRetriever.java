@@ -0,0 +1,69 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import com.rich.richsynapsehub.enumeration.LocalRetrievalMode;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 {@link LocalKnowledgeBase} 的文档检索器，可直接替换 DashScopeDocumentRetriever 接入 RetrievalAugmentationAdvisor
+ * <p>
+ * 混合检索时向量检索与 BM25 各取 2 倍 topK 个候选，再用 {@link FusionDocumentRetriever#fuse} 做倒数排名融合，
+ * 两路都命中的片段排在前面，只被关键词命中的术语片段也能进入结果。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+public class LocalDocumentRetriever implements DocumentRetriever {
+
+    private final LocalKnowledgeBase knowledgeBase;
+
+    private final String knowledgeIndex;
+
+    private final int topK;
+
+    private final double similarityThreshold;
+
+    private final LocalRetrievalMode mode;
+
+    private final int rrfK;
+
+    public LocalDocumentRetriever(LocalKnowledgeBase knowledgeBase, String knowledgeIndex, int topK, double similarityThreshold) {
+        this(knowledgeBase, knowledgeIndex, topK, similarityThreshold, LocalRetrievalMode.VECTOR, FusionDocumentRetriever.DEFAULT_RRF_K);
+    }
+
+    /**
+     * @param similarityThreshold 向量检索的相似度下限（BM25 只要求至少命中一个词项）
+     * @param mode                检索方式
+     * @param rrfK                混合检索的 RRF 常数
+     */
+    public LocalDocumentRetriever(LocalKnowledgeBase knowledgeBase, String knowledgeIndex, int topK, double similarityThreshold,
+                                  LocalRetrievalMode mode, int rrfK) {
+        this.knowledgeBase = knowledgeBase;
+        this.knowledgeIndex = knowledgeIndex;
+        this.topK = topK;
+        this.similarityThreshold = similarityThreshold;
+        this.mode = mode;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        return switch (mode) {
+            case VECTOR -> knowledgeBase.search(knowledgeIndex, query.text(), topK, similarityThreshold);
+            case BM25 -> knowledgeBase.lexicalSearch(knowledgeIndex, query.text(), topK);
+            case HYBRID -> {
+                Map<String, List<Document>> results = new LinkedHashMap<>();
+                results.put(LocalRetrievalMode.VECTOR.getValue(),
+                        knowledgeBase.search(knowledgeIndex, query.text(), topK * 2, similarityThreshold));
+                results.put(LocalRetrievalMode.BM25.getValue(),
+                        knowledgeBase.lexicalSearch(knowledgeIndex, query.text(), topK * 2));
+                yield FusionDocumentRetriever.fuse(results, topK, rrfK);
+            }
+        };
+    }
+}
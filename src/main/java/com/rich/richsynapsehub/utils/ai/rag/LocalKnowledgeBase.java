@@ -0,0 +1,856 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import com.rich.richsynapsehub.constant.RagConstant;
+import com.rich.richsynapsehub.enumeration.VectorEncoding;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
+import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 进程内知识库：读取 RagDocs 下的 Markdown 文档，切分、向量化后写入每个知识库独立的 HNSW 索引
+ * <p>
+ * 知识库在首次检索时构建（或启动后由 {@link #preload()} 在后台提前构建），之后 {@link #reload(String)}（或目录监听）做增量导入：每个片段以“来源文件 + 文本”的 SHA-256 为 id，
+ * 未变化的片段保留原有向量，文本相同仅来源变化的片段复用已有向量，只有新增或修改的片段才调用向量模型（分批、有限并发）；
+ * 消失的片段从索引中删除（墓碑），墓碑超过一定比例时用已有向量重建索引。文档解析按文件并行。
+ * 知识库名称通过 {@link RagConstant#KNOWLEDGE_INDEX_DIRS} 映射到 RagDocs 下的子目录。
+ * <p>
+ * 配置了索引目录时，每次导入后把索引写为 {@link MappedHnswIndex} 文件（原子替换）并切换为映射视图查询；
+ * 重启后直接映射已有文件，源文档指纹（文件路径、大小、修改时间）未变化时无需解析与向量化，变化时在映射索引的基础上增量导入。
+ * 向量模型或索引文件版本变化时旧文件失效，全量重建。
+ * <p>
+ * 每个知识库另有一份 {@link Bm25Index} 关键词索引，随每次导入从存活片段重建（只需分词，不调用向量模型）。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+@Slf4j
+public class LocalKnowledgeBase implements DisposableBean {
+
+    /**
+     * 单次向量化请求的文本条数（DashScope 文本向量接口单批上限为 25）
+     */
+    private static final int EMBED_BATCH_SIZE = 20;
+
+    /**
+     * 墓碑数超过存活节点数的该比例时重建索引
+     */
+    private static final double COMPACT_DELETED_RATIO = 0.3;
+
+    /**
+     * 片段元数据：所属标题
+     */
+    private static final String METADATA_TITLE = "title";
+
+    /**
+     * 索引文件扩展名
+     */
+    private static final String INDEX_FILE_SUFFIX = ".hnsw";
+
+    private final Path docsRoot;
+
+    /**
+     * 索引文件目录，为 null 时不持久化
+     */
+    private final Path indexDir;
+
+    private final VectorEncoding vectorEncoding;
+
+    private final EmbeddingModel embeddingModel;
+
+    /**
+     * 向量模型标识（模型名称与参数），变化后已持久化的索引不可复用
+     */
+    private final String modelId;
+
+    private final int chunkChars;
+
+    private final int hnswM;
+
+    private final int hnswEfConstruction;
+
+    private final int hnswEfSearch;
+
+    /**
+     * 向量化线程池，线程数即向量化请求的最大并发数
+     */
+    private final ExecutorService embedExecutor;
+
+    private final Map<String, KnowledgeIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * 知识库重新构建后的回调（如清除检索缓存）
+     */
+    private final List<Consumer<String>> reloadListeners = new CopyOnWriteArrayList<>();
+
+    private volatile WatchService watchService;
+
+    /**
+     * 增量导入结果
+     *
+     * @param added     新增片段数
+     * @param removed   删除片段数
+     * @param unchanged 未变化片段数
+     * @param embedded  实际调用向量模型的片段数（其余新增片段复用了已有向量）
+     */
+    public record IngestResult(int added, int removed, int unchanged, int embedded) {
+
+        public boolean changed() {
+            return added > 0 || removed > 0;
+        }
+    }
+
+    /**
+     * 索引快照：堆内 HNSW 与节点 id -> 片段的映射（增删在快照内进行），或只读的映射索引文件；重建索引或切换文件时整体替换
+     */
+    private record Snapshot(HnswIndex hnsw, Map<Integer, Document> documents, MappedHnswIndex mapped) {
+
+        static Snapshot heap(HnswIndex hnsw, Map<Integer, Document> documents) {
+            return new Snapshot(hnsw, documents, null);
+        }
+
+        static Snapshot mapped(MappedHnswIndex mapped) {
+            return new Snapshot(null, null, mapped);
+        }
+
+        HnswGraph graph() {
+            return mapped != null ? mapped : hnsw;
+        }
+
+        Document document(int node) {
+            return mapped != null ? mapped.document(node) : documents.get(node);
+        }
+
+        boolean isEmpty() {
+            return mapped != null ? mapped.liveCount() == 0 : documents.isEmpty();
+        }
+    }
+
+    /**
+     * 单个知识库：当前快照、关键词索引与片段 id -> 节点 id 的映射（导入时持有该对象的锁）
+     */
+    private static final class KnowledgeIndex {
+
+        private volatile Snapshot snapshot;
+
+        private volatile Bm25Index lexical = new Bm25Index(List.of());
+
+        private volatile boolean initialized;
+
+        private final Map<String, Integer> nodes = new LinkedHashMap<>();
+
+        private KnowledgeIndex(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    public LocalKnowledgeBase(String docsRoot, String indexDir, VectorEncoding vectorEncoding, EmbeddingModel embeddingModel,
+                              int chunkChars, int hnswM, int hnswEfConstruction, int hnswEfSearch, int embedParallelism) {
+        this(docsRoot, indexDir, vectorEncoding, embeddingModel, embeddingModel.getClass().getName(), chunkChars, hnswM,
+                hnswEfConstruction, hnswEfSearch, embedParallelism);
+    }
+
+    /**
+     * @param docsRoot       文档根目录
+     * @param indexDir       索引文件目录，为空时不持久化索引
+     * @param vectorEncoding 索引文件中检索用向量的编码
+     * @param modelId        向量模型标识（如模型名称与参数），与索引文件中记录的不一致时重新构建
+     */
+    public LocalKnowledgeBase(String docsRoot, String indexDir, VectorEncoding vectorEncoding, EmbeddingModel embeddingModel,
+                              String modelId, int chunkChars, int hnswM, int hnswEfConstruction, int hnswEfSearch,
+                              int embedParallelism) {
+        this.docsRoot = Paths.get(docsRoot).toAbsolutePath().normalize();
+        this.indexDir = indexDir == null || indexDir.isBlank() ? null : Paths.get(indexDir).toAbsolutePath().normalize();
+        this.vectorEncoding = vectorEncoding;
+        this.embeddingModel = embeddingModel;
+        this.modelId = modelId;
+        this.chunkChars = chunkChars;
+        this.hnswM = hnswM;
+        this.hnswEfConstruction = hnswEfConstruction;
+        this.hnswEfSearch = hnswEfSearch;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.embedExecutor = Executors.newFixedThreadPool(Math.max(1, embedParallelism), runnable -> {
+            Thread thread = new Thread(runnable, "rag-embed-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 检索知识库
+     *
+     * @param knowledgeIndex      知识库名称
+     * @param query               查询文本
+     * @param topK                返回数量
+     * @param similarityThreshold 相似度下限（余弦相似度），低于该值的片段不返回
+     * @return java.util.List<org.springframework.ai.document.Document> 按相似度降序，score 为相似度
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public List<Document> search(String knowledgeIndex, String query, int topK, double similarityThreshold) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        KnowledgeIndex index = loadedIndex(knowledgeIndex);
+        Snapshot snapshot = index.snapshot;
+        if (snapshot.isEmpty()) {
+            return List.of();
+        }
+        float[] queryVector = HnswGraph.normalize(embeddingModel.embed(query));
+        List<HnswGraph.Neighbor> neighbors = snapshot.graph().search(queryVector, topK, hnswEfSearch);
+        List<Document> documents = new ArrayList<>(neighbors.size());
+        for (HnswGraph.Neighbor neighbor : neighbors) {
+            if (neighbor.score() < similarityThreshold) {
+                break;
+            }
+            Document chunk = snapshot.document(neighbor.id());
+            if (chunk == null) {
+                // 并发导入中刚写入图、尚未登记片段的节点
+                continue;
+            }
+            documents.add(Document.builder()
+                    .id(chunk.getId())
+                    .text(chunk.getText())
+                    .metadata(chunk.getMetadata())
+                    .score((double) neighbor.score())
+                    .build());
+        }
+        return documents;
+    }
+
+    /**
+     * BM25 关键词检索
+     *
+     * @param knowledgeIndex 知识库名称
+     * @param query          查询文本
+     * @param topK           返回数量
+     * @return java.util.List<org.springframework.ai.document.Document> 按 BM25 得分降序，score 为 BM25 得分
+     * @author DuRuiChi
+     * @create 2025/8/21
+     **/
+    public List<Document> lexicalSearch(String knowledgeIndex, String query, int topK) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        return loadedIndex(knowledgeIndex).lexical.search(query, topK);
+    }
+
+    /**
+     * 增量导入知识库，有变化时通知回调
+     *
+     * @param knowledgeIndex
+     * @return com.rich.richsynapsehub.utils.ai.rag.LocalKnowledgeBase.IngestResult
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public IngestResult reload(String knowledgeIndex) {
+        resolveDir(knowledgeIndex);
+        KnowledgeIndex index = indexes.computeIfAbsent(knowledgeIndex, k -> new KnowledgeIndex(emptySnapshot(k)));
+        IngestResult result;
+        synchronized (index) {
+            if (!index.initialized) {
+                openPersisted(knowledgeIndex, index);
+            }
+            result = ingest(knowledgeIndex, index);
+        }
+        if (result.changed()) {
+            for (Consumer<String> listener : reloadListeners) {
+                listener.accept(knowledgeIndex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 加载 RagDocs 下的全部知识库（有可用索引文件时直接映射，否则构建），单个知识库失败只记录日志
+     * 启动后在后台调用，避免首个检索请求承担构建耗时；与并发的检索请求按知识库互斥，不会重复构建
+     *
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/28
+     **/
+    public void preload() {
+        if (!Files.isDirectory(docsRoot)) {
+            log.warn("知识库根目录不存在，跳过预加载：{}", docsRoot);
+            return;
+        }
+        List<Path> dirs;
+        try (Stream<Path> children = Files.list(docsRoot)) {
+            dirs = children.filter(Files::isDirectory).sorted().toList();
+        } catch (IOException e) {
+            log.warn("读取知识库根目录失败，跳过预加载：{}", e.getMessage());
+            return;
+        }
+        for (Path dir : dirs) {
+            String dirName = dir.getFileName().toString();
+            String knowledgeIndex = RagConstant.KNOWLEDGE_INDEX_NAMES.getOrDefault(dirName, dirName);
+            long start = System.currentTimeMillis();
+            try {
+                loadedIndex(knowledgeIndex);
+                log.info("知识库 {} 预加载完成，耗时 {} ms", knowledgeIndex, System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                log.error("知识库 {} 预加载失败，将在首次检索时重试", knowledgeIndex, e);
+            }
+        }
+    }
+
+    /**
+     * 注册知识库重新构建后的回调，参数为知识库名称
+     *
+     * @param listener
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/16
+     **/
+    public void addReloadListener(Consumer<String> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * 监听 RagDocs 目录，文档变化后（合并 debounceMillis 内的连续变化）增量导入已加载的知识库
+     *
+     * @param debounceMillis
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/19
+     **/
+    public synchronized void startWatching(long debounceMillis) throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        if (!Files.isDirectory(docsRoot)) {
+            log.warn("知识库根目录不存在，不监听文档变化：{}", docsRoot);
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        try (Stream<Path> dirs = Files.walk(docsRoot)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                register(dir);
+            }
+        }
+        Thread watcher = new Thread(() -> watchLoop(watchService, debounceMillis), "rag-docs-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("开始监听知识库目录：{}", docsRoot);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        WatchService service = watchService;
+        if (service != null) {
+            service.close();
+        }
+        embedExecutor.shutdownNow();
+    }
+
+    private KnowledgeIndex loadedIndex(String knowledgeIndex) {
+        resolveDir(knowledgeIndex);
+        KnowledgeIndex index = indexes.computeIfAbsent(knowledgeIndex, k -> new KnowledgeIndex(emptySnapshot(k)));
+        if (!index.initialized) {
+            synchronized (index) {
+                if (!index.initialized && !openPersisted(knowledgeIndex, index)) {
+                    ingest(knowledgeIndex, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    private Snapshot emptySnapshot(String knowledgeIndex) {
+        return Snapshot.heap(new HnswIndex(embeddingModel.dimensions(), hnswM, hnswEfConstruction, knowledgeIndex.hashCode()),
+                new ConcurrentHashMap<>());
+    }
+
+    /**
+     * 映射已有的索引文件（调用方持有 index 的锁）：向量模型一致时切换为映射快照并登记片段
+     *
+     * @param knowledgeIndex
+     * @param index
+     * @return boolean 源文档指纹一致（无需再导入）时返回 true
+     * @author DuRuiChi
+     * @create 2025/8/20
+     **/
+    private boolean openPersisted(String knowledgeIndex, KnowledgeIndex index) {
+        Path file = indexFile(knowledgeIndex);
+        if (file == null || !Files.isRegularFile(file)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        MappedHnswIndex mapped;
+        try {
+            mapped = MappedHnswIndex.open(file);
+        } catch (IOException e) {
+            log.warn("知识库 {} 索引文件不可用，将重新构建：{}", knowledgeIndex, e.getMessage());
+            return false;
+        }
+        if (mapped.modelKey() != modelKey() || mapped.dimensions() != embeddingModel.dimensions()) {
+            log.info("知识库 {} 索引文件的向量模型已变化，将重新构建", knowledgeIndex);
+            return false;
+        }
+        index.nodes.clear();
+        for (int node = 0; node < mapped.size(); node++) {
+            Document document = mapped.document(node);
+            if (document != null) {
+                index.nodes.put(document.getId(), node);
+            }
+        }
+        index.snapshot = Snapshot.mapped(mapped);
+        rebuildLexical(knowledgeIndex, index);
+        // 向量编码配置变化时无需重新向量化，走一次导入重写文件即可
+        boolean upToDate = mapped.sourceFingerprint() == sourceFingerprint(knowledgeIndex) && mapped.encoding() == vectorEncoding;
+        if (upToDate) {
+            index.initialized = true;
+        }
+        log.info("知识库 {} 已映射索引文件，片段 {}，文档{}，耗时 {} ms", knowledgeIndex, mapped.liveCount(),
+                upToDate ? "未变化" : "有变化，增量导入", System.currentTimeMillis() - start);
+        return upToDate;
+    }
+
+    /**
+     * 增量导入（调用方持有 index 的锁）：解析文档 -> 比对片段 id -> 只向量化新片段 -> 删除消失的片段
+     *
+     * @param knowledgeIndex
+     * @param index
+     * @return com.rich.richsynapsehub.utils.ai.rag.LocalKnowledgeBase.IngestResult
+     * @author DuRuiChi
+     * @create 2025/8/19
+     **/
+    private IngestResult ingest(String knowledgeIndex, KnowledgeIndex index) {
+        long start = System.currentTimeMillis();
+        Map<String, Document> wanted = new LinkedHashMap<>();
+        for (Document chunk : readAllChunks(knowledgeIndex)) {
+            wanted.putIfAbsent(chunk.getId(), chunk);
+        }
+        boolean changed = index.nodes.size() != wanted.size() || !wanted.keySet().containsAll(index.nodes.keySet());
+        if (!changed) {
+            index.initialized = true;
+            persist(knowledgeIndex, index, false);
+            log.info("知识库 {} 无变化，片段 {}，耗时 {} ms", knowledgeIndex, wanted.size(), System.currentTimeMillis() - start);
+            return new IngestResult(0, 0, wanted.size(), 0);
+        }
+        // 映射快照只读，先复制为堆内索引再增删，完成后整体替换
+        Snapshot snapshot = index.snapshot.mapped() != null ? thaw(index.snapshot.mapped()) : index.snapshot;
+
+        // 已有节点按文本哈希登记，文本相同的新片段直接复用向量
+        Map<String, Integer> nodesByText = new HashMap<>();
+        for (int node : index.nodes.values()) {
+            Document document = snapshot.documents().get(node);
+            if (document != null) {
+                nodesByText.putIfAbsent(sha256(document.getText()), node);
+            }
+        }
+        List<Document> added = new ArrayList<>();
+        List<float[]> addedVectors = new ArrayList<>();
+        List<Document> toEmbed = new ArrayList<>();
+        List<Integer> toEmbedPositions = new ArrayList<>();
+        for (Document chunk : wanted.values()) {
+            if (index.nodes.containsKey(chunk.getId())) {
+                continue;
+            }
+            Integer reusable = nodesByText.get(sha256(chunk.getText()));
+            addedVectors.add(reusable == null ? null : snapshot.hnsw().vector(reusable));
+            if (reusable == null) {
+                toEmbed.add(chunk);
+                toEmbedPositions.add(added.size());
+            }
+            added.add(chunk);
+        }
+        List<float[]> embedded = embedAll(toEmbed.stream().map(Document::getText).toList());
+        for (int i = 0; i < embedded.size(); i++) {
+            addedVectors.set(toEmbedPositions.get(i), HnswGraph.normalize(embedded.get(i)));
+        }
+
+        int removed = 0;
+        Iterator<Map.Entry<String, Integer>> iterator = index.nodes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Integer> entry = iterator.next();
+            if (!wanted.containsKey(entry.getKey())) {
+                snapshot.hnsw().delete(entry.getValue());
+                snapshot.documents().remove(entry.getValue());
+                iterator.remove();
+                removed++;
+            }
+        }
+        for (int i = 0; i < added.size(); i++) {
+            int node = snapshot.hnsw().insert(addedVectors.get(i));
+            snapshot.documents().put(node, added.get(i));
+            index.nodes.put(added.get(i).getId(), node);
+        }
+        if (snapshot.hnsw().deletedCount() > index.nodes.size() * COMPACT_DELETED_RATIO) {
+            snapshot = compact(knowledgeIndex, index, snapshot);
+        }
+        index.snapshot = snapshot;
+        rebuildLexical(knowledgeIndex, index);
+        index.initialized = true;
+        persist(knowledgeIndex, index, true);
+
+        IngestResult result = new IngestResult(added.size(), removed, wanted.size() - added.size(), toEmbed.size());
+        log.info("知识库 {} 导入完成，新增 {}（向量化 {}），删除 {}，未变化 {}，耗时 {} ms", knowledgeIndex, result.added(),
+                result.embedded(), result.removed(), result.unchanged(), System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 用存活节点的已有向量重建索引，清除墓碑
+     */
+    private Snapshot compact(String knowledgeIndex, KnowledgeIndex index, Snapshot old) {
+        Snapshot compacted = emptySnapshot(knowledgeIndex);
+        for (Map.Entry<String, Integer> entry : index.nodes.entrySet()) {
+            int node = compacted.hnsw().insert(old.hnsw().vector(entry.getValue()));
+            compacted.documents().put(node, old.documents().get(entry.getValue()));
+            entry.setValue(node);
+        }
+        return compacted;
+    }
+
+    /**
+     * 从当前快照的存活片段重建关键词索引（调用方持有 index 的锁）
+     */
+    private void rebuildLexical(String knowledgeIndex, KnowledgeIndex index) {
+        long start = System.currentTimeMillis();
+        Snapshot snapshot = index.snapshot;
+        List<Document> documents = new ArrayList<>(index.nodes.size());
+        for (int node : index.nodes.values()) {
+            Document document = snapshot.document(node);
+            if (document != null) {
+                documents.add(document);
+            }
+        }
+        Bm25Index lexical = new Bm25Index(documents);
+        index.lexical = lexical;
+        log.info("知识库 {} 关键词索引已重建，片段 {}，词项 {}，倒排表 {} KB，耗时 {} ms", knowledgeIndex, lexical.size(),
+                lexical.termCount(), lexical.postingBytes() / 1024, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 映射索引 -> 可写的堆内快照（节点 id 不变）
+     */
+    private Snapshot thaw(MappedHnswIndex mapped) {
+        Map<Integer, Document> documents = new ConcurrentHashMap<>();
+        for (int node = 0; node < mapped.size(); node++) {
+            Document document = mapped.document(node);
+            if (document != null) {
+                documents.put(node, document);
+            }
+        }
+        return Snapshot.heap(HnswIndex.copyOf(mapped, hnswEfConstruction, mapped.size()), documents);
+    }
+
+    /**
+     * 写入索引文件并切换为映射快照（调用方持有 index 的锁）；写入失败时保留堆内快照，下次导入重试
+     *
+     * @param knowledgeIndex
+     * @param index
+     * @param changed        索引内容是否有变化，无变化且文件指纹、向量编码一致时不重写
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/20
+     **/
+    private void persist(String knowledgeIndex, KnowledgeIndex index, boolean changed) {
+        Path file = indexFile(knowledgeIndex);
+        if (file == null) {
+            return;
+        }
+        long fingerprint = sourceFingerprint(knowledgeIndex);
+        Snapshot snapshot = index.snapshot;
+        if (!changed && snapshot.mapped() != null && snapshot.mapped().sourceFingerprint() == fingerprint
+                && snapshot.mapped().encoding() == vectorEncoding) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            MappedHnswIndex.write(file, snapshot.graph(), snapshot::document, modelKey(), fingerprint, vectorEncoding);
+            MappedHnswIndex mapped = MappedHnswIndex.open(file);
+            index.snapshot = Snapshot.mapped(mapped);
+            log.info("知识库 {} 索引文件已写入，片段 {}，向量编码 {}，检索向量 {} KB（float32 需 {} KB），文件 {} KB", knowledgeIndex,
+                    mapped.liveCount(), vectorEncoding.getValue(), mapped.vectorBytes() / 1024,
+                    (long) mapped.size() * mapped.dimensions() * Float.BYTES / 1024, Files.size(file) / 1024);
+        } catch (IOException e) {
+            log.warn("知识库 {} 索引文件写入失败，继续使用内存索引：{}", knowledgeIndex, e.getMessage());
+        }
+    }
+
+    /**
+     * 知识库索引文件路径，未配置索引目录时返回 null
+     */
+    private Path indexFile(String knowledgeIndex) {
+        if (indexDir == null) {
+            return null;
+        }
+        String dirName = docsRoot.relativize(resolveDir(knowledgeIndex)).toString();
+        return indexDir.resolve(dirName.replaceAll("[^A-Za-z0-9_-]", "_") + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * 向量模型标识：模型标识与维度的摘要，任一变化则已有向量不可复用
+     */
+    private long modelKey() {
+        return Long.parseUnsignedLong(sha256(modelId + "|" + embeddingModel.dimensions()).substring(0, 16), 16);
+    }
+
+    /**
+     * 源文档指纹：知识库目录下各 Markdown 文件的相对路径、大小、修改时间及切分长度
+     *
+     * @param knowledgeIndex
+     * @return long
+     * @author DuRuiChi
+     * @create 2025/8/20
+     **/
+    private long sourceFingerprint(String knowledgeIndex) {
+        Path dir = resolveDir(knowledgeIndex);
+        StringBuilder builder = new StringBuilder().append(chunkChars);
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path file : paths.filter(path -> path.toString().endsWith(".md") && Files.isRegularFile(path)).sorted().toList()) {
+                    builder.append('\n').append(dir.relativize(file).toString().replace('\\', '/'))
+                            .append('|').append(Files.size(file))
+                            .append('|').append(Files.getLastModifiedTime(file).toMillis());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("读取知识库目录失败：" + dir, e);
+            }
+        }
+        return Long.parseUnsignedLong(sha256(builder.toString()).substring(0, 16), 16);
+    }
+
+    /**
+     * 分批向量化，各批次在向量化线程池中并发执行
+     *
+     * @param texts
+     * @return java.util.List<float[]> 与 texts 顺序一致
+     * @author DuRuiChi
+     * @create 2025/8/19
+     **/
+    private List<float[]> embedAll(List<String> texts) {
+        List<CompletableFuture<List<float[]>>> futures = new ArrayList<>();
+        for (int from = 0; from < texts.size(); from += EMBED_BATCH_SIZE) {
+            List<String> batch = List.copyOf(texts.subList(from, Math.min(from + EMBED_BATCH_SIZE, texts.size())));
+            futures.add(CompletableFuture.supplyAsync(() -> embeddingModel.embed(batch), embedExecutor));
+        }
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (CompletableFuture<List<float[]>> future : futures) {
+            vectors.addAll(future.join());
+        }
+        return vectors;
+    }
+
+    /**
+     * 读取知识库目录下全部 Markdown 文档并切分，文件之间并行解析
+     *
+     * @param knowledgeIndex
+     * @return java.util.List<org.springframework.ai.document.Document>
+     * @author DuRuiChi
+     * @create 2025/8/19
+     **/
+    private List<Document> readAllChunks(String knowledgeIndex) {
+        Path dir = resolveDir(knowledgeIndex);
+        if (!Files.isDirectory(dir)) {
+            log.warn("知识库目录不存在，知识库 {} 为空：{}", knowledgeIndex, dir);
+            return List.of();
+        }
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            files = paths.filter(path -> path.toString().endsWith(".md") && Files.isRegularFile(path)).sorted().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("读取知识库目录失败：" + dir, e);
+        }
+        return files.parallelStream()
+                .flatMap(file -> readChunks(knowledgeIndex, dir.relativize(file).toString()
+                        .replace('\\', '/'), file).stream())
+                .toList();
+    }
+
+    /**
+     * 解析知识库目录，拒绝跳出 RagDocs 根目录的名称
+     */
+    private Path resolveDir(String knowledgeIndex) {
+        String dirName = RagConstant.KNOWLEDGE_INDEX_DIRS.getOrDefault(knowledgeIndex, knowledgeIndex);
+        Path dir = docsRoot.resolve(dirName).normalize();
+        if (!dir.startsWith(docsRoot)) {
+            throw new IllegalArgumentException("非法的知识库名称：" + knowledgeIndex);
+        }
+        return dir;
+    }
+
+    /**
+     * 读取单个 Markdown 文档并按标题切分为片段：MarkdownDocumentReader 在标题与分隔线处分节，
+     * 片段不跨节，每个片段前附上所属标题，使脱离上下文的片段仍可被正确召回
+     *
+     * @param knowledgeIndex
+     * @param source         相对知识库目录的文件路径
+     * @param file
+     * @return java.util.List<org.springframework.ai.document.Document>
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    private List<Document> readChunks(String knowledgeIndex, String source, Path file) {
+        MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
+                .withHorizontalRuleCreateDocument(true)
+                .withIncludeCodeBlock(true)
+                .withIncludeBlockquote(true)
+                .withAdditionalMetadata(RagConstant.METADATA_SOURCE, source)
+                .withAdditionalMetadata(RagConstant.METADATA_KNOWLEDGE_INDEX, knowledgeIndex)
+                .build();
+        List<Document> sections = new MarkdownDocumentReader(new FileSystemResource(file), config).get();
+        List<Document> chunks = new ArrayList<>();
+        for (Document section : sections) {
+            Object title = section.getMetadata().get(METADATA_TITLE);
+            String prefix = title == null || title.toString().isBlank() ? "" : title.toString().strip() + "\n";
+            for (String text : split(section.getText())) {
+                String chunkText = prefix + text;
+                chunks.add(Document.builder()
+                        .id(sha256(source + "\n" + chunkText))
+                        .text(chunkText)
+                        .metadata(new HashMap<>(section.getMetadata()))
+                        .build());
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 按句子边界把文本打包为不超过 chunkChars 的片段，单句超长时硬切
+     *
+     * @param text
+     * @return java.util.List<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return chunks;
+        }
+        StringBuilder chunk = new StringBuilder();
+        for (String sentence : RagTokenizer.splitSentences(text)) {
+            appendSentence(sentence, chunk, chunks);
+        }
+        if (!chunk.toString().isBlank()) {
+            chunks.add(chunk.toString().strip());
+        }
+        return chunks;
+    }
+
+    private void appendSentence(String sentence, StringBuilder chunk, List<String> chunks) {
+        if (chunk.length() + sentence.length() > chunkChars && !chunk.toString().isBlank()) {
+            chunks.add(chunk.toString().strip());
+            chunk.setLength(0);
+        }
+        while (sentence.length() > chunkChars) {
+            chunks.add(sentence.substring(0, chunkChars).strip());
+            sentence = sentence.substring(chunkChars);
+        }
+        chunk.append(sentence);
+    }
+
+    private void register(Path dir) throws IOException {
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * 监听循环：记录发生变化的知识库目录，静默 debounceMillis 后增量导入
+     */
+    private void watchLoop(WatchService service, long debounceMillis) {
+        Map<String, Long> pending = new HashMap<>();
+        try {
+            while (true) {
+                WatchKey key = service.poll(Math.max(50, debounceMillis / 4), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            indexes.keySet().forEach(name -> pending.put(name, 0L));
+                            continue;
+                        }
+                        Path changed = dir.resolve((Path) event.context());
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                            register(changed);
+                        }
+                        Path relative = docsRoot.relativize(changed);
+                        if (relative.getNameCount() > 0) {
+                            pending.put(indexNameOf(relative.getName(0).toString()),
+                                    System.currentTimeMillis() + debounceMillis);
+                        }
+                    }
+                    key.reset();
+                }
+                long now = System.currentTimeMillis();
+                Iterator<Map.Entry<String, Long>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Long> entry = iterator.next();
+                    if (entry.getValue() > now) {
+                        continue;
+                    }
+                    iterator.remove();
+                    // 未加载过的知识库会在首次检索时导入
+                    if (indexes.containsKey(entry.getKey())) {
+                        try {
+                            reload(entry.getKey());
+                        } catch (Exception e) {
+                            log.error("知识库 {} 增量导入失败", entry.getKey(), e);
+                        }
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.info("停止监听知识库目录：{}", docsRoot);
+        } catch (IOException e) {
+            log.error("监听知识库目录失败：{}", docsRoot, e);
+        }
+    }
+
+    /**
+     * RagDocs 子目录名 -> 知识库名称
+     */
+    private static String indexNameOf(String dirName) {
+        for (Map.Entry<String, String> entry : RagConstant.KNOWLEDGE_INDEX_DIRS.entrySet()) {
+            if (entry.getValue().equals(dirName)) {
+                return entry.getKey();
+            }
+        }
+        return dirName;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
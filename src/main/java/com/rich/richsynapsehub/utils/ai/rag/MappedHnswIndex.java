@@ -0,0 +1,518 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import com.rich.richsynapsehub.enumeration.VectorEncoding;
+import org.springframework.ai.document.Document;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 内存映射的只读 HNSW 索引文件，启动时映射即可查询，同一主机上的多个 JVM 共享页缓存
+ * <p>
+ * 文件格式（大端序）：
+ * <pre>
+ * 头部（128 字节）：magic "RSHV" | version | dimensions | vectorEncoding | count | m | entryPoint | maxLevel
+ *                  | modelKey(long) | sourceFingerprint(long) | vectorsOffset | deletedOffset | adjacencyOffset
+ *                  | documentsOffset | fileLength | quantizedOffset（均为 long，quantizedOffset 自版本 2 起）
+ * 向量区：count x dimensions 个 float32，按节点 id 连续存放
+ * 量化区（仅 int8 编码）：count 个 float32 缩放系数，随后 count x dimensions 个 int8
+ * 墓碑区：(count + 63) / 64 个 long 位图
+ * 邻接区：count 个 long 绝对偏移，随后每个节点 [levelCount][第 0 层: n, id x n][第 1 层 ...]
+ * 片段区：count 个 long 绝对偏移（已删除节点为 -1），随后每个片段 [id][text][元数据条数][key, value]...，字符串为 [字节数][UTF-8]
+ * </pre>
+ * 写入先写同目录临时文件并刷盘，再原子重命名覆盖旧文件；已映射旧文件的查询不受影响（旧映射在无引用后释放）。
+ * 单个文件不超过 2GB（MappedByteBuffer 限制）。
+ * <p>
+ * int8 编码时图遍历只读取量化区（约为 float32 的 1/4），float32 向量区只在对最终候选集重排和复制为可写索引时访问，
+ * 常驻页缓存的主要是量化区。量化为逐向量对称量化：scale = max|v| / 127，code = round(v / scale)。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/20
+ **/
+public class MappedHnswIndex extends HnswGraph {
+
+    private static final int MAGIC = 0x52534856;
+
+    /**
+     * 当前文件格式版本，格式变化时递增，旧版本文件会被忽略并重建
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * 仍可读取的最低版本（版本 1 只有 float32 编码）
+     */
+    private static final int MIN_READABLE_VERSION = 1;
+
+    /**
+     * 文件中的向量编码值
+     */
+    private static final int ENCODING_FLOAT32 = 0;
+
+    private static final int ENCODING_INT8 = 1;
+
+    private static final int HEADER_BYTES = 128;
+
+    private final ByteBuffer buffer;
+
+    private final FloatBuffer vectors;
+
+    private final int dimensions;
+
+    private final int count;
+
+    private final int m;
+
+    private final int entryPoint;
+
+    private final int maxLevel;
+
+    private final long modelKey;
+
+    private final long sourceFingerprint;
+
+    private final long deletedOffset;
+
+    private final long adjacencyOffset;
+
+    private final long documentsOffset;
+
+    private final int liveCount;
+
+    private final VectorEncoding encoding;
+
+    /**
+     * int8 编码时的逐向量缩放系数
+     */
+    private final FloatBuffer scales;
+
+    /**
+     * int8 编码时量化向量的起始位置
+     */
+    private final int codesOffset;
+
+    private MappedHnswIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是有效的向量索引文件");
+        }
+        int version = buffer.getInt(4);
+        if (version < MIN_READABLE_VERSION || version > VERSION) {
+            throw new IOException("向量索引文件版本不兼容：" + version);
+        }
+        this.dimensions = buffer.getInt(8);
+        int encodingValue = buffer.getInt(12);
+        if (encodingValue == ENCODING_FLOAT32) {
+            this.encoding = VectorEncoding.FLOAT32;
+        } else if (encodingValue == ENCODING_INT8 && version >= 2) {
+            this.encoding = VectorEncoding.INT8;
+        } else {
+            throw new IOException("不支持的向量编码：" + encodingValue);
+        }
+        this.count = buffer.getInt(16);
+        this.m = buffer.getInt(20);
+        this.entryPoint = buffer.getInt(24);
+        this.maxLevel = buffer.getInt(28);
+        this.modelKey = buffer.getLong(32);
+        this.sourceFingerprint = buffer.getLong(40);
+        long vectorsOffset = buffer.getLong(48);
+        this.deletedOffset = buffer.getLong(56);
+        this.adjacencyOffset = buffer.getLong(64);
+        this.documentsOffset = buffer.getLong(72);
+        if (buffer.getLong(80) != buffer.capacity()) {
+            throw new IOException("向量索引文件不完整");
+        }
+        this.vectors = buffer.slice((int) vectorsOffset, count * dimensions * Float.BYTES).asFloatBuffer();
+        if (encoding == VectorEncoding.INT8) {
+            int quantizedOffset = (int) buffer.getLong(88);
+            this.scales = buffer.slice(quantizedOffset, count * Float.BYTES).asFloatBuffer();
+            this.codesOffset = quantizedOffset + count * Float.BYTES;
+        } else {
+            this.scales = null;
+            this.codesOffset = -1;
+        }
+        int deleted = 0;
+        for (int i = 0; i < (count + 63) / 64; i++) {
+            deleted += Long.bitCount(buffer.getLong((int) deletedOffset + i * Long.BYTES));
+        }
+        this.liveCount = count - deleted;
+    }
+
+    /**
+     * 映射索引文件
+     *
+     * @param path
+     * @return com.rich.richsynapsehub.utils.ai.rag.MappedHnswIndex
+     * @throws IOException 文件不存在、格式或版本不兼容
+     * @author DuRuiChi
+     * @create 2025/8/20
+     **/
+    public static MappedHnswIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("向量索引文件超过 2GB：" + path);
+            }
+            return new MappedHnswIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * 以 float32 编码写入索引文件
+     *
+     * @see #write(Path, HnswGraph, IntFunction, long, long, VectorEncoding)
+     */
+    public static void write(Path target, HnswGraph graph, IntFunction<Document> documents, long modelKey,
+                             long sourceFingerprint) throws IOException {
+        write(target, graph, documents, modelKey, sourceFingerprint, VectorEncoding.FLOAT32);
+    }
+
+    /**
+     * 写入索引文件（临时文件 + 原子重命名）
+     *
+     * @param target            目标文件
+     * @param graph             图（写入期间不得被修改）
+     * @param documents         节点 id -> 片段，已删除节点可返回 null
+     * @param modelKey          向量模型标识，模型变化后旧文件失效
+     * @param sourceFingerprint 源文档指纹，用于启动时判断是否需要增量导入
+     * @param encoding          检索用向量的编码
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/20
+     **/
+    public static void write(Path target, HnswGraph graph, IntFunction<Document> documents, long modelKey,
+                             long sourceFingerprint, VectorEncoding encoding) throws IOException {
+        boolean quantized = encoding == VectorEncoding.INT8;
+        int count = graph.size();
+        int dimensions = graph.dimensions();
+        byte[][] encodedDocuments = new byte[count][];
+        long documentBytes = 0;
+        long adjacencyBytes = 0;
+        for (int node = 0; node < count; node++) {
+            Document document = graph.deletedAt(node) ? null : documents.apply(node);
+            encodedDocuments[node] = document == null ? null : encode(document);
+            documentBytes += Long.BYTES + (document == null ? 0 : encodedDocuments[node].length);
+            adjacencyBytes += Long.BYTES + Integer.BYTES;
+            for (int l = 0; l < graph.levelCount(node); l++) {
+                adjacencyBytes += Integer.BYTES + (long) graph.neighborCount(node, l) * Integer.BYTES;
+            }
+        }
+        long vectorsOffset = HEADER_BYTES;
+        long quantizedOffset = vectorsOffset + (long) count * dimensions * Float.BYTES;
+        long deletedOffset = quantized ? quantizedOffset + (long) count * (Float.BYTES + dimensions) : quantizedOffset;
+        long adjacencyOffset = deletedOffset + (long) ((count + 63) / 64) * Long.BYTES;
+        long documentsOffset = adjacencyOffset + adjacencyBytes;
+        long fileLength = documentsOffset + documentBytes;
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("向量索引文件超过 2GB，无法映射");
+        }
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dimensions);
+                out.writeInt(quantized ? ENCODING_INT8 : ENCODING_FLOAT32);
+                out.writeInt(count);
+                out.writeInt(graph.m());
+                out.writeInt(graph.entryPoint());
+                out.writeInt(graph.maxLevel());
+                out.writeLong(modelKey);
+                out.writeLong(sourceFingerprint);
+                out.writeLong(vectorsOffset);
+                out.writeLong(deletedOffset);
+                out.writeLong(adjacencyOffset);
+                out.writeLong(documentsOffset);
+                out.writeLong(fileLength);
+                out.writeLong(quantized ? quantizedOffset : 0);
+                out.write(new byte[HEADER_BYTES - 96]);
+
+                for (int node = 0; node < count; node++) {
+                    for (float value : graph.vectorAt(node)) {
+                        out.writeFloat(value);
+                    }
+                }
+                if (quantized) {
+                    byte[][] codes = new byte[count][dimensions];
+                    for (int node = 0; node < count; node++) {
+                        out.writeFloat(quantize(graph.vectorAt(node), codes[node]));
+                    }
+                    for (byte[] code : codes) {
+                        out.write(code);
+                    }
+                }
+                for (int word = 0; word < (count + 63) / 64; word++) {
+                    long bits = 0;
+                    for (int bit = 0; bit < 64 && word * 64 + bit < count; bit++) {
+                        if (graph.deletedAt(word * 64 + bit)) {
+                            bits |= 1L << bit;
+                        }
+                    }
+                    out.writeLong(bits);
+                }
+                long position = adjacencyOffset + (long) count * Long.BYTES;
+                for (int node = 0; node < count; node++) {
+                    out.writeLong(position);
+                    position += Integer.BYTES;
+                    for (int l = 0; l < graph.levelCount(node); l++) {
+                        position += Integer.BYTES + (long) graph.neighborCount(node, l) * Integer.BYTES;
+                    }
+                }
+                for (int node = 0; node < count; node++) {
+                    out.writeInt(graph.levelCount(node));
+                    for (int l = 0; l < graph.levelCount(node); l++) {
+                        int neighbors = graph.neighborCount(node, l);
+                        out.writeInt(neighbors);
+                        for (int i = 0; i < neighbors; i++) {
+                            out.writeInt(graph.neighborAt(node, l, i));
+                        }
+                    }
+                }
+                position = documentsOffset + (long) count * Long.BYTES;
+                for (int node = 0; node < count; node++) {
+                    out.writeLong(encodedDocuments[node] == null ? -1 : position);
+                    position += encodedDocuments[node] == null ? 0 : encodedDocuments[node].length;
+                }
+                for (byte[] encoded : encodedDocuments) {
+                    if (encoded != null) {
+                        out.write(encoded);
+                    }
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 读取片段
+     *
+     * @param node
+     * @return org.springframework.ai.document.Document 已删除节点返回 null
+     * @author DuRuiChi
+     * @create 2025/8/20
+     **/
+    public Document document(int node) {
+        long offset = buffer.getLong((int) documentsOffset + node * Long.BYTES);
+        if (offset < 0) {
+            return null;
+        }
+        int[] position = {(int) offset};
+        String id = readString(position);
+        String text = readString(position);
+        int metadataCount = buffer.getInt(position[0]);
+        position[0] += Integer.BYTES;
+        Map<String, Object> metadata = new HashMap<>(metadataCount * 2);
+        for (int i = 0; i < metadataCount; i++) {
+            metadata.put(readString(position), readString(position));
+        }
+        return Document.builder().id(id).text(text).metadata(metadata).build();
+    }
+
+    public long modelKey() {
+        return modelKey;
+    }
+
+    public long sourceFingerprint() {
+        return sourceFingerprint;
+    }
+
+    public VectorEncoding encoding() {
+        return encoding;
+    }
+
+    /**
+     * 图遍历读取的向量字节数：float32 为向量区，int8 为量化区（缩放系数 + 量化向量）
+     */
+    public long vectorBytes() {
+        return encoding == VectorEncoding.INT8 ? (long) count * (Float.BYTES + dimensions) : (long) count * dimensions * Float.BYTES;
+    }
+
+    /**
+     * 对称标量量化
+     *
+     * @param vector 原始向量
+     * @param codes  输出的量化向量，长度与 vector 相同
+     * @return float 缩放系数，vector[i] ≈ codes[i] * scale
+     * @author DuRuiChi
+     * @create 2025/8/22
+     **/
+    public static float quantize(float[] vector, byte[] codes) {
+        float maxAbs = 0;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0) {
+            Arrays.fill(codes, (byte) 0);
+            return 0;
+        }
+        float scale = maxAbs / 127;
+        for (int i = 0; i < vector.length; i++) {
+            codes[i] = (byte) Math.round(vector[i] / scale);
+        }
+        return scale;
+    }
+
+    /**
+     * 未删除的节点数
+     */
+    public int liveCount() {
+        return liveCount;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int m() {
+        return m;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    protected int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    protected int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    protected int levelCount(int node) {
+        return buffer.getInt(nodeOffset(node));
+    }
+
+    @Override
+    protected int neighborCount(int node, int level) {
+        return buffer.getInt(levelOffset(node, level));
+    }
+
+    @Override
+    protected int neighborAt(int node, int level, int index) {
+        return buffer.getInt(levelOffset(node, level) + Integer.BYTES + index * Integer.BYTES);
+    }
+
+    @Override
+    protected boolean deletedAt(int node) {
+        long word = buffer.getLong((int) deletedOffset + (node >>> 6) * Long.BYTES);
+        return (word & (1L << (node & 63))) != 0;
+    }
+
+    @Override
+    protected float similarityTo(float[] query, int node) {
+        if (encoding == VectorEncoding.INT8) {
+            int base = codesOffset + node * dimensions;
+            float sum = 0;
+            for (int i = 0; i < dimensions; i++) {
+                sum += query[i] * buffer.get(base + i);
+            }
+            return sum * scales.get(node);
+        }
+        return exactSimilarity(query, node);
+    }
+
+    /**
+     * int8 编码时用 float32 向量重排候选集
+     */
+    @Override
+    protected List<Neighbor> rerank(float[] query, List<Neighbor> candidates) {
+        if (encoding != VectorEncoding.INT8) {
+            return candidates;
+        }
+        List<Neighbor> reranked = new ArrayList<>(candidates.size());
+        for (Neighbor candidate : candidates) {
+            reranked.add(new Neighbor(candidate.id(), exactSimilarity(query, candidate.id())));
+        }
+        reranked.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        return reranked;
+    }
+
+    private float exactSimilarity(float[] query, int node) {
+        int base = node * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * vectors.get(base + i);
+        }
+        return sum;
+    }
+
+    @Override
+    protected float[] vectorAt(int node) {
+        float[] vector = new float[dimensions];
+        vectors.get(node * dimensions, vector);
+        return vector;
+    }
+
+    private int nodeOffset(int node) {
+        return (int) buffer.getLong((int) adjacencyOffset + node * Long.BYTES);
+    }
+
+    /**
+     * 节点指定层邻居列表的位置（第 0 层紧跟层数之后，上层需跳过下层）
+     */
+    private int levelOffset(int node, int level) {
+        int position = nodeOffset(node) + Integer.BYTES;
+        for (int l = 0; l < level; l++) {
+            position += Integer.BYTES + buffer.getInt(position) * Integer.BYTES;
+        }
+        return position;
+    }
+
+    private String readString(int[] position) {
+        int length = buffer.getInt(position[0]);
+        byte[] bytes = new byte[length];
+        buffer.get(position[0] + Integer.BYTES, bytes);
+        position[0] += Integer.BYTES + length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(Document document) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, document.getId());
+            writeString(out, document.getText() == null ? "" : document.getText());
+            out.writeInt(document.getMetadata().size());
+            for (Map.Entry<String, Object> entry : document.getMetadata().entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, String.valueOf(entry.getValue()));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,113 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import com.rich.richsynapsehub.constant.RagConstant;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 检索前的轻量分类器：判断一条消息是否值得检索知识库，不调用大模型
+ * <p>
+ * 规则优先：寒暄、致谢、确认、“继续”之类的续写指令（见 {@link RagConstant#RAG_SKIP_PHRASES}）直接跳过；
+ * 其余消息按得分判断：得分 = 去重后的词项数（{@link RagTokenizer}）+ 含提问特征词时 2 分 + 含英文/数字术语时 2 分，
+ * 低于阈值（如“早上好呀”“嗯”）跳过。判定结果以 rag.gate.decisions 指标按结果与原因计数。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/24
+ **/
+public class RagGate {
+
+    /**
+     * 判定原因：检索
+     */
+    public static final String REASON_RETRIEVE = "retrieve";
+
+    /**
+     * 判定原因：未启用分类，始终检索
+     */
+    public static final String REASON_DISABLED = "disabled";
+
+    /**
+     * 判定原因：命中寒暄 / 续写规则
+     */
+    public static final String REASON_SMALL_TALK = "small-talk";
+
+    /**
+     * 判定原因：得分低于阈值
+     */
+    public static final String REASON_LOW_SCORE = "low-score";
+
+    /**
+     * 提问特征词加分
+     */
+    private static final int QUESTION_CUE_BONUS = 2;
+
+    /**
+     * 英文 / 数字术语加分
+     */
+    private static final int TERM_BONUS = 2;
+
+    private final boolean enabled;
+
+    private final int minScore;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 判定结果
+     *
+     * @param retrieve 是否检索知识库
+     * @param reason   判定原因
+     * @param score    得分（命中规则时为 0）
+     */
+    public record Decision(boolean retrieve, String reason, int score) {
+    }
+
+    /**
+     * @param enabled  是否启用，关闭时始终检索
+     * @param minScore 检索所需的最低得分
+     */
+    public RagGate(boolean enabled, int minScore, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minScore = minScore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 判断消息是否需要检索知识库
+     *
+     * @param message 用户消息
+     * @return com.rich.richsynapsehub.utils.ai.rag.RagGate.Decision
+     * @author DuRuiChi
+     * @create 2025/8/24
+     **/
+    public Decision evaluate(String message) {
+        Decision decision = classify(message);
+        meterRegistry.counter("rag.gate.decisions", "result", decision.retrieve() ? "retrieve" : "skip",
+                "reason", decision.reason()).increment();
+        return decision;
+    }
+
+    private Decision classify(String message) {
+        if (!enabled) {
+            return new Decision(true, REASON_DISABLED, 0);
+        }
+        String normalized = RetrievalCache.normalizeQuery(message);
+        if (normalized.isEmpty() || RagConstant.RAG_SKIP_PHRASES.contains(normalized)) {
+            return new Decision(false, REASON_SMALL_TALK, 0);
+        }
+        Set<String> tokens = new HashSet<>(RagTokenizer.tokenize(normalized));
+        int score = tokens.size();
+        String lower = message.toLowerCase();
+        if (RagConstant.RAG_QUESTION_CUES.stream().anyMatch(lower::contains)) {
+            score += QUESTION_CUE_BONUS;
+        }
+        if (tokens.stream().anyMatch(token -> token.length() >= 2 && token.charAt(0) < 128)) {
+            score += TERM_BONUS;
+        }
+        return score >= minScore
+                ? new Decision(true, REASON_RETRIEVE, score)
+                : new Decision(false, REASON_LOW_SCORE, score);
+    }
+}
@@ -0,0 +1,99 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地检索使用的轻量分词器：拉丁字母/数字按词切分（转小写），中日韩文字按相邻二元组（bigram）切分
+ * 单个孤立的汉字作为一元词保留。不依赖词典，适合中文技术文本中的中英混排术语（如 Sa-Token、MVCC）。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/15
+ **/
+public class RagTokenizer {
+
+    /**
+     * 分词
+     *
+     * @param text
+     * @return java.util.List<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        int cjkRunStart = -1;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            boolean latin = c < 128 && Character.isLetterOrDigit(c);
+            boolean cjk = !latin && isCjk(c);
+            if (latin) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                tokens.add(word.toString());
+                word.setLength(0);
+            }
+            if (cjk) {
+                if (cjkRunStart < 0) {
+                    cjkRunStart = i;
+                }
+            } else if (cjkRunStart >= 0) {
+                addCjkRun(text, cjkRunStart, i, tokens);
+                cjkRunStart = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 按中英文句末标点与换行切分句子，标点保留在句尾；切分结果首尾相接即为原文（空白片段同样保留）
+     *
+     * @param text
+     * @return java.util.List<java.lang.String>
+     * @author DuRuiChi
+     * @create 2025/8/15
+     **/
+    public static List<String> splitSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return sentences;
+        }
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean boundary = c == '\n' || c == '。' || c == '！' || c == '？' || c == '；'
+                    || ((c == '.' || c == '!' || c == '?') && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1))));
+            if (boundary) {
+                sentences.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            sentences.add(text.substring(start));
+        }
+        return sentences;
+    }
+
+    private static void addCjkRun(String text, int start, int end, List<String> tokens) {
+        if (end - start == 1) {
+            tokens.add(text.substring(start, end));
+            return;
+        }
+        for (int i = start; i + 1 < end; i++) {
+            tokens.add(text.substring(i, i + 2));
+        }
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
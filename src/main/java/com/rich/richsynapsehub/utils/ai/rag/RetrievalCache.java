@@ -0,0 +1,174 @@
+package com.rich.richsynapsehub.utils.ai.rag;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.document.Document;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 知识库检索结果缓存，供 {@link CachingDocumentRetriever} 共用
+ * <p>
+ * 以（知识库名称, 归一化查询文本）为键，按条目数（LRU）和 TTL 双重限制大小。知识库重新导入时调用 {@link #invalidate(String)}
+ * 清除该知识库的全部条目，并递增其代数，防止失效前发起、失效后返回的检索把旧结果写回缓存。
+ * 命中、未命中、淘汰次数，命中率，以及命中时省下的检索耗时（即该结果首次检索的耗时）以 Micrometer 指标暴露。
+ *
+ * @author DuRuiChi
+ * @create 2025/8/16
+ **/
+public class RetrievalCache {
+
+    /**
+     * 归一化时去掉的句末标点
+     */
+    private static final String TRAILING_PUNCTUATION = "?？。.!！~～";
+
+    private final long ttlMillis;
+
+    /**
+     * LRU 缓存，访问顺序排列，超过上限时淘汰最久未访问的条目
+     */
+    private final LinkedHashMap<CacheKey, CacheEntry> cache;
+
+    /**
+     * 各知识库的失效代数
+     */
+    private final Map<String, Long> generations = new HashMap<>();
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter evictionCounter;
+
+    private final Timer savedLatencyTimer;
+
+    private record CacheKey(String knowledgeIndex, String query) {
+    }
+
+    /**
+     * 缓存条目
+     *
+     * @param documents 检索结果（不可变）
+     * @param expireAt  过期时间戳
+     * @param loadNanos 首次检索耗时（纳秒）
+     */
+    private record CacheEntry(List<Document> documents, long expireAt, long loadNanos) {
+    }
+
+    public RetrievalCache(int maxEntries, long ttlMillis, MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlMillis;
+        this.hitCounter = Counter.builder("rag.retrieval.cache.hits").description("知识库检索缓存命中次数").register(meterRegistry);
+        this.missCounter = Counter.builder("rag.retrieval.cache.misses").description("知识库检索缓存未命中次数").register(meterRegistry);
+        this.evictionCounter = Counter.builder("rag.retrieval.cache.evictions").description("知识库检索缓存淘汰次数").register(meterRegistry);
+        this.savedLatencyTimer = Timer.builder("rag.retrieval.cache.saved.latency")
+                .description("知识库检索缓存命中时省下的检索耗时").register(meterRegistry);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() > maxEntries) {
+                    evictionCounter.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("rag.retrieval.cache.size", this, RetrievalCache::size)
+                .description("知识库检索缓存条目数").register(meterRegistry);
+        Gauge.builder("rag.retrieval.cache.hit.ratio", this, RetrievalCache::hitRatio)
+                .description("知识库检索缓存命中率").register(meterRegistry);
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 检索并写入缓存
+     *
+     * @param knowledgeIndex 知识库名称
+     * @param query          查询文本
+     * @param loader         实际检索
+     * @return java.util.List<org.springframework.ai.document.Document>
+     * @author DuRuiChi
+     * @create 2025/8/16
+     **/
+    public List<Document> get(String knowledgeIndex, String query, Supplier<List<Document>> loader) {
+        CacheKey key = new CacheKey(knowledgeIndex, normalizeQuery(query));
+        long generation;
+        synchronized (this) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && entry.expireAt() > System.currentTimeMillis()) {
+                hitCounter.increment();
+                savedLatencyTimer.record(entry.loadNanos(), TimeUnit.NANOSECONDS);
+                return entry.documents();
+            }
+            if (entry != null) {
+                cache.remove(key);
+            }
+            generation = generations.getOrDefault(knowledgeIndex, 0L);
+        }
+        missCounter.increment();
+        long start = System.nanoTime();
+        List<Document> documents = List.copyOf(loader.get());
+        long loadNanos = System.nanoTime() - start;
+        synchronized (this) {
+            if (generations.getOrDefault(knowledgeIndex, 0L) == generation) {
+                cache.put(key, new CacheEntry(documents, System.currentTimeMillis() + ttlMillis, loadNanos));
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * 清除指定知识库的全部缓存（知识库重新导入后调用）
+     *
+     * @param knowledgeIndex
+     * @return void
+     * @author DuRuiChi
+     * @create 2025/8/16
+     **/
+    public synchronized void invalidate(String knowledgeIndex) {
+        generations.merge(knowledgeIndex, 1L, Long::sum);
+        cache.keySet().removeIf(key -> key.knowledgeIndex().equals(knowledgeIndex));
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    /**
+     * 查询文本归一化：全角转半角（NFKC）、转小写、合并空白、去掉句末标点，使仅有格式差异的提问命中同一条缓存
+     *
+     * @param query
+     * @return java.lang.String
+     * @author DuRuiChi
+     * @create 2025/8/16
+     **/
+    public static String normalizeQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .strip();
+        int end = normalized.length();
+        while (end > 0 && (TRAILING_PUNCTUATION.indexOf(normalized.charAt(end - 1)) >= 0
+                || Character.isWhitespace(normalized.charAt(end - 1)))) {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+}
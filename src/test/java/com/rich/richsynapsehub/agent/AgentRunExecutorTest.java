@@ -0,0 +1,101 @@
+package com.rich.richsynapsehub.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class AgentRunExecutorTest {
+
+    @Test
+    void boundsConcurrentRunsAndQueuesTheRest() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AgentRunExecutor executor = new AgentRunExecutor(true, 2, 1, 5_000, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        List<String> threadNames = new CopyOnWriteArrayList<>();
+        List<Boolean> virtual = new CopyOnWriteArrayList<>();
+        Runnable task = () -> {
+            threadNames.add(Thread.currentThread().getName());
+            virtual.add(Thread.currentThread().isVirtual());
+            await(release);
+            finished.countDown();
+        };
+        executor.execute(task);
+        executor.execute(task);
+        executor.execute(task);
+        Assertions.assertEquals(2, executor.activeCount());
+        Assertions.assertEquals(1, executor.queuedCount());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(task));
+        Assertions.assertEquals(1, meterRegistry.counter("agent.executor.rejected").count());
+
+        release.countDown();
+        Assertions.assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(3, threadNames.size());
+        Assertions.assertTrue(threadNames.stream().allMatch(name -> name.startsWith("agent-run-")));
+        Assertions.assertTrue(virtual.stream().allMatch(Boolean::booleanValue));
+        executor.destroy();
+        Assertions.assertEquals(0, executor.queuedCount());
+        Assertions.assertEquals(3, meterRegistry.timer("agent.executor.queue.wait").count());
+    }
+
+    @Test
+    void platformFallbackAndGracefulShutdown() throws Exception {
+        AgentRunExecutor executor = new AgentRunExecutor(false, 1, 4, 5_000, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> completed = new CopyOnWriteArrayList<>();
+        executor.execute(() -> {
+            Assertions.assertFalse(Thread.currentThread().isVirtual());
+            started.countDown();
+            sleep(100);
+            completed.add("first");
+        });
+        executor.execute(() -> completed.add("second"));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 关闭时等待运行中与排队中的任务完成，之后拒绝新任务
+        executor.destroy();
+        Assertions.assertEquals(List.of("first", "second"), completed);
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> completed.add("third")));
+    }
+
+    @Test
+    void queuedRunsDroppedOnShutdownAreNotified() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AgentRunExecutor executor = new AgentRunExecutor(true, 1, 4, 100, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> completed = new CopyOnWriteArrayList<>();
+        List<RejectedExecutionException> dropped = new CopyOnWriteArrayList<>();
+        executor.execute(() -> await(release));
+        executor.execute(() -> completed.add("queued"), dropped::add);
+
+        // 运行中的任务超过关闭时限，排队任务不再启动，通过回调得到通知
+        executor.destroy();
+        release.countDown();
+        Assertions.assertTrue(completed.isEmpty());
+        Assertions.assertEquals(1, dropped.size());
+        Assertions.assertEquals(0, executor.queuedCount());
+        Assertions.assertEquals(1, meterRegistry.counter("agent.executor.rejected").count());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.rich.richsynapsehub.controller;
+
+import com.rich.richsynapsehub.common.ErrorCode;
+import com.rich.richsynapsehub.exception.BusinessException;
+import com.rich.richsynapsehub.model.entity.User;
+import com.rich.richsynapsehub.service.ChatConversationService;
+import com.rich.richsynapsehub.service.UserService;
+import com.rich.richsynapsehub.utils.ai.doChat.SpringAiChat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+class AiChatControllerTest {
+
+    private final SpringAiChat springAiChat = Mockito.mock(SpringAiChat.class);
+
+    private final UserService userService = Mockito.mock(UserService.class);
+
+    private final ChatConversationService chatConversationService = Mockito.mock(ChatConversationService.class);
+
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    private AiChatController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new AiChatController();
+        ReflectionTestUtils.setField(controller, "springAiChat", springAiChat);
+        ReflectionTestUtils.setField(controller, "userService", userService);
+        ReflectionTestUtils.setField(controller, "chatConversationService", chatConversationService);
+        Mockito.when(springAiChat.doChatByStream(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(Flux.just("ok"));
+        Mockito.when(springAiChat.doChatByReactiveStream(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(Flux.just("ok"));
+    }
+
+    @Test
+    void anonymousCallerRejectedForOwnedConversation() {
+        Mockito.when(chatConversationService.ownerOf("chat")).thenReturn(1L);
+
+        assertNoAuth(() -> controller.doChatByStream("你好", "default", "chat", request).collectList().block());
+        assertNoAuth(() -> controller.doChatByReactiveStream("你好", "default", "chat", request).collectList().block());
+        assertNoAuth(() -> controller.doChatBySync("你好", "chat", "default", request));
+        Mockito.verifyNoInteractions(springAiChat);
+        Mockito.verify(chatConversationService, Mockito.never()).bindOwner(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    void anonymousCallerAllowedForUnownedConversation() {
+        Mockito.when(chatConversationService.ownerOf("chat")).thenReturn(null);
+
+        Assertions.assertEquals(List.of("ok"), controller.doChatByStream("你好", "default", "chat", request).collectList().block());
+        Assertions.assertEquals(List.of("ok"), controller.doChatByReactiveStream("你好", "default", "chat", request).collectList().block());
+    }
+
+    @Test
+    void reactiveStreamChecksOwnerOnSubscribe() {
+        Flux<String> response = controller.doChatByReactiveStream("你好", "default", "chat", request);
+        // 组装响应流时不访问会话索引
+        Mockito.verifyNoInteractions(chatConversationService, springAiChat);
+
+        Assertions.assertEquals(List.of("ok"), response.collectList().block());
+        Mockito.verify(chatConversationService).ownerOf("chat");
+    }
+
+    @Test
+    void loginUserAllowedOnlyForOwnConversation() {
+        User loginUser = new User();
+        loginUser.setId(1L);
+        Mockito.when(userService.getLoginUserPermitNull(request)).thenReturn(loginUser);
+        Mockito.when(chatConversationService.bindOwner("mine", 1L)).thenReturn(true);
+        Mockito.when(chatConversationService.bindOwner("others", 1L)).thenReturn(false);
+
+        Assertions.assertEquals(List.of("ok"), controller.doChatByStream("你好", "default", "mine", request).collectList().block());
+        assertNoAuth(() -> controller.doChatByStream("你好", "default", "others", request).collectList().block());
+        Mockito.verify(springAiChat, Mockito.never()).doChatByStream(Mockito.anyString(), Mockito.eq("others"), Mockito.anyString());
+    }
+
+    private static void assertNoAuth(Runnable call) {
+        BusinessException e = Assertions.assertThrows(BusinessException.class, call::run);
+        Assertions.assertEquals(ErrorCode.NO_AUTH_ERROR.getCode(), e.getCode());
+    }
+}
@@ -0,0 +1,142 @@
+package com.rich.richsynapsehub.service;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.rich.richsynapsehub.model.vo.ChatConversationVO;
+import com.rich.richsynapsehub.service.impl.ChatConversationServiceImpl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话索引 Lua 脚本在真实 Redis（进程内 embedded-redis）上的行为
+ */
+class ChatConversationServiceImplTest {
+
+    private static final int REDIS_PORT = 16380;
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static StringRedisTemplate stringRedisTemplate;
+
+    private ChatConversationServiceImpl chatConversationService;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", REDIS_PORT));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.serverCommands().flushAll();
+        }
+        chatConversationService = new ChatConversationServiceImpl();
+        ReflectionTestUtils.setField(chatConversationService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(chatConversationService, "enabled", true);
+    }
+
+    @Test
+    void touchCountsMessagesAndKeepsFirstTitle() {
+        chatConversationService.touch("chat", List.of(new UserMessage("第一个问题"), new AssistantMessage("第一个回答")));
+        chatConversationService.touch("chat", List.of(new UserMessage("第二个问题"), new AssistantMessage("第二个回答")));
+
+        Map<Object, Object> meta = stringRedisTemplate.opsForHash().entries("chat:conv:meta:chat");
+        Assertions.assertEquals("4", meta.get("count"));
+        Assertions.assertEquals("第一个问题", meta.get("title"));
+        Assertions.assertEquals("第二个回答", meta.get("preview"));
+        // 未绑定用户的会话不进入任何用户索引
+        Assertions.assertTrue(stringRedisTemplate.keys("chat:conv:user:*").isEmpty());
+    }
+
+    @Test
+    void bindOwnerRejectsOtherUsers() {
+        Assertions.assertTrue(chatConversationService.bindOwner("chat", 1L));
+        Assertions.assertTrue(chatConversationService.bindOwner("chat", 1L));
+        Assertions.assertFalse(chatConversationService.bindOwner("chat", 2L));
+        Assertions.assertEquals(1L, chatConversationService.ownerOf("chat"));
+    }
+
+    @Test
+    void bindAfterTouchIndexesExistingConversation() {
+        chatConversationService.touch("chat", List.of(new UserMessage("问题")));
+        chatConversationService.bindOwner("chat", 1L);
+
+        Double score = stringRedisTemplate.opsForZSet().score("chat:conv:user:1", "chat");
+        Assertions.assertNotNull(score);
+        Assertions.assertEquals(stringRedisTemplate.opsForHash().get("chat:conv:meta:chat", "updatedAt"),
+                String.valueOf(score.longValue()));
+    }
+
+    @Test
+    void listPagesByRecentActivity() throws InterruptedException {
+        for (String chatId : List.of("a", "b", "c")) {
+            chatConversationService.bindOwner(chatId, 1L);
+        }
+        for (String chatId : List.of("a", "b", "c", "a")) {
+            chatConversationService.touch(chatId, List.of(new UserMessage("问题" + chatId)));
+            // 保证时间戳严格递增
+            Thread.sleep(2);
+        }
+
+        Page<ChatConversationVO> first = chatConversationService.listConversationVOByPage(1L, 1, 2);
+        Assertions.assertEquals(3, first.getTotal());
+        Assertions.assertEquals(List.of("a", "c"), first.getRecords().stream().map(ChatConversationVO::getChatId).toList());
+        Assertions.assertEquals("问题a", first.getRecords().get(0).getTitle());
+        Assertions.assertEquals(2L, first.getRecords().get(0).getMessageCount());
+        Page<ChatConversationVO> second = chatConversationService.listConversationVOByPage(1L, 2, 2);
+        Assertions.assertEquals(List.of("b"), second.getRecords().stream().map(ChatConversationVO::getChatId).toList());
+        Assertions.assertTrue(chatConversationService.listConversationVOByPage(2L, 1, 2).getRecords().isEmpty());
+    }
+
+    @Test
+    void touchTrimsExpiredConversationsFromUserIndex() {
+        long expired = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(8);
+        stringRedisTemplate.opsForZSet().add("chat:conv:user:1", "old", expired);
+        chatConversationService.bindOwner("new", 1L);
+        chatConversationService.touch("new", List.of(new UserMessage("问题")));
+
+        Assertions.assertNull(stringRedisTemplate.opsForZSet().score("chat:conv:user:1", "old"));
+        Assertions.assertNotNull(stringRedisTemplate.opsForZSet().score("chat:conv:user:1", "new"));
+        Long ttl = stringRedisTemplate.getExpire("chat:conv:user:1");
+        Assertions.assertTrue(ttl != null && ttl > 0);
+    }
+
+    @Test
+    void removeDeletesMetaAndUserIndexEntry() {
+        chatConversationService.bindOwner("chat", 1L);
+        chatConversationService.touch("chat", List.of(new UserMessage("问题")));
+        chatConversationService.remove("chat");
+
+        Assertions.assertFalse(Boolean.TRUE.equals(stringRedisTemplate.hasKey("chat:conv:meta:chat")));
+        Assertions.assertNull(stringRedisTemplate.opsForZSet().score("chat:conv:user:1", "chat"));
+        Assertions.assertNull(chatConversationService.ownerOf("chat"));
+    }
+}
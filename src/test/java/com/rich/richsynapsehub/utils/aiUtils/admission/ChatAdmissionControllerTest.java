@@ -0,0 +1,177 @@
+package com.rich.richsynapsehub.utils.aiUtils.admission;
+
+import com.rich.richsynapsehub.common.ErrorCode;
+import com.rich.richsynapsehub.enumeration.ChatPriorityTier;
+import com.rich.richsynapsehub.exception.BusinessException;
+import com.rich.richsynapsehub.utils.ai.admission.ChatAdmissionController;
+import com.rich.richsynapsehub.utils.ai.admission.ChatCaller;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+class ChatAdmissionControllerTest {
+
+    @Test
+    void queuedCallersAreServedRoundRobin() {
+        ChatAdmissionController controller = new ChatAdmissionController(1, 10, 5, 5_000, new SimpleMeterRegistry());
+        ChatAdmissionController.Permit running = controller.acquireBlocking(free("a"));
+        List<String> order = new CopyOnWriteArrayList<>();
+        // 用户 a 突发 3 个请求后，b、c 各 1 个请求
+        List<CompletableFuture<ChatAdmissionController.Permit>> queued = List.of(
+                track(controller, free("a"), "a1", order),
+                track(controller, free("a"), "a2", order),
+                track(controller, free("a"), "a3", order),
+                track(controller, free("b"), "b1", order),
+                track(controller, free("c"), "c1", order));
+        Assertions.assertEquals(1, controller.active());
+        Assertions.assertEquals(5, controller.queued());
+
+        // 每个请求拿到许可后立即归还，许可依次转交给下一个调用方
+        running.close();
+        // 重复关闭不会多归还许可
+        running.close();
+        for (CompletableFuture<ChatAdmissionController.Permit> future : queued) {
+            Assertions.assertTrue(future.isDone());
+        }
+        Assertions.assertEquals(List.of("a1", "b1", "c1", "a2", "a3"), order);
+        Assertions.assertEquals(0, controller.active());
+        Assertions.assertEquals(0, controller.queued());
+    }
+
+    @Test
+    void rejectsWhenQueuesAreFull() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ChatAdmissionController controller = new ChatAdmissionController(1, 3, 2, 5_000, meterRegistry);
+        ChatAdmissionController.Permit running = controller.acquireBlocking(free("a"));
+        controller.acquire(free("a"));
+        controller.acquire(free("a"));
+
+        BusinessException callerLimit = Assertions.assertThrows(BusinessException.class, () -> controller.acquireBlocking(free("a")));
+        Assertions.assertEquals(ErrorCode.SERVICE_BUSY.getCode(), callerLimit.getCode());
+        controller.acquire(free("b"));
+        Assertions.assertThrows(BusinessException.class, () -> controller.acquireBlocking(free("c")));
+        Assertions.assertEquals(1, meterRegistry.counter("chat.admission.rejected", "reason", "caller-limit").count());
+        Assertions.assertEquals(1, meterRegistry.counter("chat.admission.rejected", "reason", "queue-full").count());
+        Assertions.assertEquals(3, controller.queued());
+        running.close();
+    }
+
+    @Test
+    void timedOutAndCancelledWaitersLeaveTheQueue() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ChatAdmissionController controller = new ChatAdmissionController(1, 10, 5, 100, meterRegistry);
+        ChatAdmissionController.Permit running = controller.acquireBlocking(null);
+
+        long start = System.nanoTime();
+        BusinessException timeout = Assertions.assertThrows(BusinessException.class, () -> controller.acquireBlocking(null));
+        Assertions.assertEquals(ErrorCode.SERVICE_BUSY.getCode(), timeout.getCode());
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assertions.assertEquals(1, meterRegistry.counter("chat.admission.rejected", "reason", "timeout").count());
+
+        CompletableFuture<ChatAdmissionController.Permit> cancelled = controller.acquire(free("b"));
+        Assertions.assertEquals(1, controller.queued());
+        cancelled.cancel(true);
+        Assertions.assertEquals(0, controller.queued());
+
+        running.close();
+        Assertions.assertEquals(0, controller.active());
+        controller.acquireBlocking(free("c")).close();
+    }
+
+    @Test
+    void vipsGetWeightedShareWithoutStarvingFreeUsers() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ChatAdmissionController controller = new ChatAdmissionController(1, 10, 5, 5_000, 2, 60_000, meterRegistry);
+        ChatAdmissionController.Permit running = controller.acquireBlocking(free("x"));
+        List<String> order = new CopyOnWriteArrayList<>();
+        track(controller, free("f1"), "f1", order);
+        track(controller, free("f2"), "f2", order);
+        track(controller, vip("v1"), "v1", order);
+        track(controller, vip("v2"), "v2", order);
+        track(controller, vip("v3"), "v3", order);
+        Assertions.assertEquals(3, controller.queued(ChatPriorityTier.VIP));
+        Assertions.assertEquals(2, controller.queued(ChatPriorityTier.FREE));
+
+        running.close();
+        // 每连续放行 2 个会员请求放行 1 个普通请求
+        Assertions.assertEquals(List.of("v1", "v2", "f1", "v3", "f2"), order);
+        Assertions.assertEquals(3, meterRegistry.timer("chat.admission.wait", "tier", "vip").count());
+        Assertions.assertEquals(3, meterRegistry.timer("chat.admission.latency", "tier", "free").count());
+
+        // 普通请求排队超过 aging 时长后优先于会员请求
+        ChatAdmissionController aging = new ChatAdmissionController(1, 10, 5, 5_000, 100, 50, new SimpleMeterRegistry());
+        ChatAdmissionController.Permit holder = aging.acquireBlocking(vip("v"));
+        List<String> agedOrder = new CopyOnWriteArrayList<>();
+        track(aging, free("f"), "f", agedOrder);
+        Thread.sleep(80);
+        track(aging, vip("v1"), "v1", agedOrder);
+        holder.close();
+        Assertions.assertEquals(List.of("f", "v1"), agedOrder);
+    }
+
+    @Test
+    void cancellingWhileReleaseHandsOverPermitDoesNotLeak() throws Exception {
+        ChatAdmissionController controller = new ChatAdmissionController(1, 10, 5, 5_000, new SimpleMeterRegistry());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                ChatAdmissionController.Permit running = controller.acquireBlocking(free("a"));
+                AtomicReference<ChatAdmissionController.Permit> received = new AtomicReference<>();
+                Disposable subscription = controller.acquireAsync(free("b")).subscribe(received::set);
+                Assertions.assertEquals(1, controller.queued());
+
+                // 归还许可（转交给排队的订阅）与取消订阅同时发生
+                CountDownLatch start = new CountDownLatch(1);
+                Future<?> release = executor.submit(() -> {
+                    start.await();
+                    running.close();
+                    return null;
+                });
+                Future<?> cancel = executor.submit(() -> {
+                    start.await();
+                    subscription.dispose();
+                    return null;
+                });
+                start.countDown();
+                release.get(5, TimeUnit.SECONDS);
+                cancel.get(5, TimeUnit.SECONDS);
+                if (received.get() != null) {
+                    received.get().close();
+                }
+                Assertions.assertEquals(0, controller.active(), "第 " + i + " 次取消后许可未归还");
+                Assertions.assertEquals(0, controller.queued());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ChatCaller free(String id) {
+        return new ChatCaller(id, ChatPriorityTier.FREE);
+    }
+
+    private static ChatCaller vip(String id) {
+        return new ChatCaller(id, ChatPriorityTier.VIP);
+    }
+
+    private static CompletableFuture<ChatAdmissionController.Permit> track(ChatAdmissionController controller, ChatCaller caller,
+                                                                          String name, List<String> order) {
+        CompletableFuture<ChatAdmissionController.Permit> future = controller.acquire(caller);
+        future.thenAccept(permit -> {
+            order.add(name);
+            permit.close();
+        });
+        return future;
+    }
+}
@@ -0,0 +1,87 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.rich.richsynapsehub.utils.ai.chatMeory.ChatMessageCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class ChatMessageCodecTest {
+
+    @Test
+    void roundTripAllMessageTypes() {
+        AssistantMessage.ToolCall toolCall = new AssistantMessage.ToolCall("call-1", "function", "searchWeb", "{\"query\":\"MVCC\"}");
+        List<Message> messages = List.of(
+                new SystemMessage("你是一位面试专家"),
+                new UserMessage("讲讲 MVCC"),
+                new AssistantMessage("", Map.of("finishReason", "TOOL_CALLS", "index", 0), List.of(toolCall)),
+                new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call-1", "searchWeb", "MVCC 是多版本并发控制")), Map.of()),
+                new AssistantMessage("MVCC 是多版本并发控制……"));
+
+        List<Message> decoded = ChatMessageCodec.decodeAll(ChatMessageCodec.encodeAll(messages));
+        Assertions.assertEquals(messages.size(), decoded.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Assertions.assertEquals(messages.get(i).getMessageType(), decoded.get(i).getMessageType());
+            Assertions.assertEquals(messages.get(i).getText(), decoded.get(i).getText());
+        }
+        AssistantMessage toolCallMessage = (AssistantMessage) decoded.get(2);
+        Assertions.assertEquals(toolCall, toolCallMessage.getToolCalls().get(0));
+        Assertions.assertEquals("TOOL_CALLS", toolCallMessage.getMetadata().get("finishReason"));
+        Assertions.assertEquals(0, toolCallMessage.getMetadata().get("index"));
+        ToolResponseMessage toolResponseMessage = (ToolResponseMessage) decoded.get(3);
+        Assertions.assertEquals("MVCC 是多版本并发控制", toolResponseMessage.getResponses().get(0).responseData());
+
+        Message single = ChatMessageCodec.decode(ChatMessageCodec.encode(messages.get(1)));
+        Assertions.assertEquals(MessageType.USER, single.getMessageType());
+        Assertions.assertEquals("讲讲 MVCC", single.getText());
+    }
+
+    @Test
+    void smallerThanKryoAndReadsLegacyKryo() {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            messages.add(new UserMessage("问题" + i));
+            messages.add(new AssistantMessage("回答" + i));
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (Output output = new Output(bos)) {
+            kryo.writeObject(output, messages);
+        }
+        byte[] legacy = bos.toByteArray();
+        byte[] encoded = ChatMessageCodec.encodeAll(messages);
+        System.out.println("Kryo: " + legacy.length + " bytes, codec: " + encoded.length + " bytes");
+        Assertions.assertTrue(encoded.length < legacy.length);
+
+        List<Message> decoded = ChatMessageCodec.decodeAll(legacy);
+        Assertions.assertEquals(40, decoded.size());
+        Assertions.assertEquals("回答19", decoded.get(39).getText());
+    }
+
+    @Test
+    void tailWithinBudgetPicksRecentPayloads() {
+        // 每条消息 6 个汉字 + 4 个固定开销 = 10 个 token
+        List<byte[]> payloads = List.of(ChatMessageCodec.encode(new UserMessage("旧问题一二三")),
+                ChatMessageCodec.encode(new AssistantMessage("旧回答一二三")),
+                ChatMessageCodec.encode(new UserMessage("新问题一二三")));
+
+        Assertions.assertEquals(List.of("旧回答一二三", "新问题一二三"),
+                ChatMessageCodec.tailWithinBudget(payloads, 25).stream().map(Message::getText).toList());
+        Assertions.assertEquals(3, ChatMessageCodec.tailWithinBudget(payloads, 30).size());
+        Assertions.assertTrue(ChatMessageCodec.tailWithinBudget(payloads, 9).isEmpty());
+    }
+}
@@ -0,0 +1,114 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.enumeration.FileSyncPolicy;
+import com.rich.richsynapsehub.utils.ai.TokenCountUtils;
+import com.rich.richsynapsehub.utils.ai.chatMeory.FileChatMemory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+class FileChatMemoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void addAndGetLastN() {
+        FileChatMemory chatMemory = new FileChatMemory(tempDir.toString(), FileSyncPolicy.ALWAYS, 0, 256, 4, 0);
+        for (int i = 0; i < 50; i++) {
+            chatMemory.add("chat", List.of(new UserMessage("问题" + i), new AssistantMessage("回答" + i)));
+        }
+        List<Message> messages = chatMemory.get("chat", 3);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("回答48", messages.get(0).getText());
+        Assertions.assertEquals("问题49", messages.get(1).getText());
+        Assertions.assertEquals("回答49", messages.get(2).getText());
+        // 合并压缩后仍保留全部消息
+        Assertions.assertEquals(100, chatMemory.get("chat", 1000).size());
+    }
+
+    @Test
+    void getWithinTokenBudget() {
+        FileChatMemory chatMemory = new FileChatMemory(tempDir.toString());
+        for (int i = 0; i < 10; i++) {
+            chatMemory.add("chat", List.of(new UserMessage("问题" + i), new AssistantMessage("回答" + i)));
+        }
+        // 每条消息 4 个固定开销 + 3 个 token
+        int perMessage = TokenCountUtils.tokensOf(new UserMessage("问题0"));
+        List<Message> messages = chatMemory.getWithinTokenBudget("chat", perMessage * 3 + 1, 50);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("回答8", messages.get(0).getText());
+        Assertions.assertEquals("回答9", messages.get(2).getText());
+        Assertions.assertEquals(perMessage, messages.get(0).getMetadata().get(TokenCountUtils.TOKEN_COUNT_KEY));
+        // 条数上限优先
+        Assertions.assertEquals(2, chatMemory.getWithinTokenBudget("chat", 10000, 2).size());
+    }
+
+    @Test
+    void recoverTornLastRecord() throws IOException {
+        FileChatMemory chatMemory = new FileChatMemory(tempDir.toString());
+        chatMemory.add("chat", List.of(new UserMessage("你好"), new AssistantMessage("你好，有什么可以帮你？")));
+        // 模拟宕机：段末尾残留半条记录
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir.resolve("chat"))) {
+            segment = files.filter(path -> path.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 1, 0, 7, 7}, StandardOpenOption.APPEND);
+
+        FileChatMemory reopened = new FileChatMemory(tempDir.toString());
+        Assertions.assertEquals(2, reopened.get("chat", 10).size());
+        reopened.add("chat", List.of(new UserMessage("继续")));
+        List<Message> messages = reopened.get("chat", 10);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("继续", messages.get(2).getText());
+    }
+
+    @Test
+    void rejectsChatIdsEscapingBaseDir() {
+        FileChatMemory chatMemory = new FileChatMemory(tempDir.resolve("memory").toString());
+        for (String chatId : List.of("../chat", "a/b", "a\\b", "..", "")) {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> chatMemory.add(chatId, List.of(new UserMessage("问题"))), chatId);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> chatMemory.get(chatId, 10), chatId);
+        }
+        Assertions.assertFalse(Files.exists(tempDir.resolve("chat")));
+    }
+
+    @Test
+    void readingUnknownChatCreatesNothing() throws IOException {
+        FileChatMemory chatMemory = new FileChatMemory(tempDir.toString());
+
+        Assertions.assertTrue(chatMemory.get("unknown", 10).isEmpty());
+        Assertions.assertTrue(chatMemory.getWithinTokenBudget("unknown", 100, 10).isEmpty());
+        chatMemory.clear("unknown");
+        try (Stream<Path> files = Files.list(tempDir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void evictedLogsReopenFromDisk() {
+        FileChatMemory chatMemory = new FileChatMemory(tempDir.toString(), FileSyncPolicy.INTERVAL, 10, 4096, 8, 0);
+        // 超过打开上限，最早的会话日志被淘汰
+        for (int i = 0; i < 1100; i++) {
+            chatMemory.add("chat" + i, List.of(new UserMessage("问题" + i)));
+        }
+        chatMemory.add("chat0", List.of(new AssistantMessage("回答0")));
+
+        List<Message> messages = chatMemory.get("chat0", 10);
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("问题0", messages.get(0).getText());
+        Assertions.assertEquals("回答0", messages.get(1).getText());
+        Assertions.assertEquals("问题1099", chatMemory.get("chat1099", 1).get(0).getText());
+    }
+}
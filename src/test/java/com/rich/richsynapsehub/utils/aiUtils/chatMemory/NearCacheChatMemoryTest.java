@@ -0,0 +1,164 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.utils.ai.chatMeory.NearCacheChatMemory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class NearCacheChatMemoryTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tokenBudgetServedFromCachedWindowWhenItDecides() {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        List<Message> history = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            // 每条消息 5 个汉字 + 1 个数字 + 4 个固定开销 = 10 个 token
+            history.add(new UserMessage("问题一二三" + i));
+            history.add(new AssistantMessage("回答一二三" + i));
+        }
+        delegate.add("chat", history);
+        delegate.add("short", List.of(new UserMessage("问题一二三四"), new AssistantMessage("回答一二三四")));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NearCacheChatMemory chatMemory = new NearCacheChatMemory(delegate, Mockito.mock(RedisTemplate.class),
+                100, 60_000, 4, meterRegistry);
+
+        // 缓存最近 4 条（不完整窗口）
+        Assertions.assertEquals(4, chatMemory.get("chat", 4).size());
+        // 预算在窗口内用完
+        Assertions.assertEquals(List.of("问题一二三2", "回答一二三2"), texts(chatMemory.getWithinTokenBudget("chat", 25, 10)));
+        // 条数在窗口内用完
+        Assertions.assertEquals(3, chatMemory.getWithinTokenBudget("chat", 100, 3).size());
+        Assertions.assertTrue(delegate.budgetReads.isEmpty());
+
+        // 窗口不完整且预算未用完，交给下游按预算读取
+        Assertions.assertEquals(6, chatMemory.getWithinTokenBudget("chat", 100, 10).size());
+        Assertions.assertEquals(List.of(List.of(100, 10)), delegate.budgetReads);
+
+        // 窗口已包含全部消息时直接返回
+        Assertions.assertEquals(2, chatMemory.get("short", 4).size());
+        Assertions.assertEquals(2, chatMemory.getWithinTokenBudget("short", 100, 10).size());
+        Assertions.assertEquals(1, delegate.budgetReads.size());
+
+        // 未缓存的会话交给下游
+        Assertions.assertTrue(chatMemory.getWithinTokenBudget("missing", 100, 10).isEmpty());
+        Assertions.assertEquals(2, delegate.budgetReads.size());
+        Assertions.assertEquals(3, meterRegistry.counter("chat.memory.near.cache.hits").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addInvalidatesInsteadOfMerging() {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        delegate.add("chat", List.of(new UserMessage("问题0"), new AssistantMessage("回答0")));
+        RedisTemplate<String, byte[]> redisTemplate = Mockito.mock(RedisTemplate.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NearCacheChatMemory chatMemory = new NearCacheChatMemory(delegate, redisTemplate, 100, 60_000, 4, meterRegistry);
+
+        Assertions.assertEquals(2, chatMemory.get("chat", 4).size());
+        Assertions.assertEquals(1, chatMemory.size());
+        chatMemory.add("chat", List.of(new UserMessage("问题1")));
+        // 写入后本地缓存被删除并广播失效，下次读取以下游为准
+        Assertions.assertEquals(0, chatMemory.size());
+        Mockito.verify(redisTemplate).convertAndSend(Mockito.eq(NearCacheChatMemory.INVALIDATION_CHANNEL), Mockito.any());
+        Assertions.assertEquals(List.of("问题0", "回答0", "问题1"), texts(chatMemory.get("chat", 4)));
+        Assertions.assertEquals(2, meterRegistry.counter("chat.memory.near.cache.misses").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invalidationFromOtherNodesOnly() {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        delegate.add("chat", List.of(new UserMessage("问题")));
+        RedisTemplate<String, byte[]> redisTemplate = Mockito.mock(RedisTemplate.class);
+        NearCacheChatMemory chatMemory = new NearCacheChatMemory(delegate, redisTemplate, 100, 60_000, 4, new SimpleMeterRegistry());
+        chatMemory.clear("other");
+        ArgumentCaptor<Object> ownMessage = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(redisTemplate).convertAndSend(Mockito.eq(NearCacheChatMemory.INVALIDATION_CHANNEL), ownMessage.capture());
+
+        chatMemory.get("chat", 4);
+        // 本节点自己发出的失效消息被忽略
+        chatMemory.onInvalidationMessage((byte[]) ownMessage.getValue());
+        Assertions.assertEquals(1, chatMemory.size());
+        // 其他节点对别的会话的失效不影响本会话
+        chatMemory.onInvalidationMessage("node-b\nother".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(1, chatMemory.size());
+        chatMemory.onInvalidationMessage("node-b\nchat".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(0, chatMemory.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void expiredEntriesReloadFromDelegate() throws InterruptedException {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        delegate.add("chat", List.of(new UserMessage("问题")));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NearCacheChatMemory chatMemory = new NearCacheChatMemory(delegate, Mockito.mock(RedisTemplate.class), 100, 20, 4, meterRegistry);
+
+        chatMemory.get("chat", 4);
+        chatMemory.get("chat", 4);
+        Assertions.assertEquals(1, meterRegistry.counter("chat.memory.near.cache.hits").count());
+        Thread.sleep(50);
+        chatMemory.get("chat", 4);
+        Assertions.assertEquals(2, meterRegistry.counter("chat.memory.near.cache.misses").count());
+        Assertions.assertEquals(1, meterRegistry.counter("chat.memory.near.cache.evictions").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void leastRecentlyUsedConversationEvicted() {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        for (String chatId : List.of("a", "b", "c")) {
+            delegate.add(chatId, List.of(new UserMessage("问题" + chatId)));
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NearCacheChatMemory chatMemory = new NearCacheChatMemory(delegate, Mockito.mock(RedisTemplate.class), 2, 60_000, 4, meterRegistry);
+
+        chatMemory.get("a", 4);
+        chatMemory.get("b", 4);
+        // 访问 a 后，b 成为最久未访问的会话
+        chatMemory.get("a", 4);
+        chatMemory.get("c", 4);
+        Assertions.assertEquals(2, chatMemory.size());
+        Assertions.assertEquals(1, meterRegistry.counter("chat.memory.near.cache.evictions").count());
+        double misses = meterRegistry.counter("chat.memory.near.cache.misses").count();
+        chatMemory.get("a", 4);
+        Assertions.assertEquals(misses, meterRegistry.counter("chat.memory.near.cache.misses").count());
+        chatMemory.get("b", 4);
+        Assertions.assertEquals(misses + 1, meterRegistry.counter("chat.memory.near.cache.misses").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadRacingWithInvalidationIsNotCached() {
+        NearCacheChatMemory[] holder = new NearCacheChatMemory[1];
+        RecordingChatMemory delegate = new RecordingChatMemory() {
+            @Override
+            public List<Message> get(String conversationId, int lastN) {
+                List<Message> messages = super.get(conversationId, lastN);
+                // 模拟加载期间其他线程写入或收到失效消息
+                holder[0].invalidateLocal(conversationId);
+                return messages;
+            }
+        };
+        delegate.add("chat", List.of(new UserMessage("问题")));
+        holder[0] = new NearCacheChatMemory(delegate, Mockito.mock(RedisTemplate.class), 100, 60_000, 4, new SimpleMeterRegistry());
+
+        Assertions.assertEquals(1, holder[0].get("chat", 4).size());
+        Assertions.assertEquals(0, holder[0].size());
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
@@ -0,0 +1,62 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.utils.ai.chatMeory.FileChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.OffHeapChatMemory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.util.List;
+
+class OffHeapChatMemoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void ringOverflowAndLruEvictionSpillToFile() {
+        FileChatMemory fileChatMemory = new FileChatMemory(tempDir.toString());
+        // 2 个槽位，每个槽位只能容纳少量消息
+        OffHeapChatMemory chatMemory = new OffHeapChatMemory(fileChatMemory, 2, 256, new SimpleMeterRegistry());
+        for (int i = 0; i < 30; i++) {
+            for (String chatId : List.of("a", "b", "c")) {
+                chatMemory.add(chatId, List.of(new UserMessage(chatId + "问题" + i), new AssistantMessage(chatId + "回答" + i)));
+            }
+        }
+        Assertions.assertEquals(2, chatMemory.residentCount());
+        for (String chatId : List.of("a", "b", "c")) {
+            List<Message> messages = chatMemory.get(chatId, 1000);
+            Assertions.assertEquals(60, messages.size());
+            for (int i = 0; i < 30; i++) {
+                Assertions.assertEquals(chatId + "问题" + i, messages.get(2 * i).getText());
+                Assertions.assertEquals(chatId + "回答" + i, messages.get(2 * i + 1).getText());
+            }
+            List<Message> lastThree = chatMemory.get(chatId, 3);
+            Assertions.assertEquals(chatId + "回答28", lastThree.get(0).getText());
+            Assertions.assertEquals(chatId + "回答29", lastThree.get(2).getText());
+        }
+
+        // 关闭时驻留消息全部溢写，文件中保留完整历史
+        chatMemory.destroy();
+        Assertions.assertEquals(60, fileChatMemory.get("a", 1000).size());
+    }
+
+    @Test
+    void oversizedMessageKeepsOrder() {
+        FileChatMemory fileChatMemory = new FileChatMemory(tempDir.toString());
+        OffHeapChatMemory chatMemory = new OffHeapChatMemory(fileChatMemory, 1, 128, new SimpleMeterRegistry());
+        chatMemory.add("chat", List.of(new UserMessage("短消息")));
+        chatMemory.add("chat", List.of(new AssistantMessage("长".repeat(200)), new UserMessage("追问")));
+        List<Message> messages = chatMemory.get("chat", 10);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("短消息", messages.get(0).getText());
+        Assertions.assertEquals(200, messages.get(1).getText().length());
+        Assertions.assertEquals("追问", messages.get(2).getText());
+        Assertions.assertEquals(1, chatMemory.getWithinTokenBudget("chat", 10, 10).size());
+    }
+}
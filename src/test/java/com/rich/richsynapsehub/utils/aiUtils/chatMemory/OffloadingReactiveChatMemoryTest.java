@@ -0,0 +1,53 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.utils.ai.chatMeory.FileChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.OffloadingReactiveChatMemory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+class OffloadingReactiveChatMemoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsAndWritesThroughDelegateOffCallerThread() {
+        AtomicReference<String> writerThread = new AtomicReference<>();
+        FileChatMemory fileChatMemory = new FileChatMemory(tempDir.toString()) {
+            @Override
+            public void add(String conversationId, List<Message> messages) {
+                writerThread.set(Thread.currentThread().getName());
+                super.add(conversationId, messages);
+            }
+        };
+        OffloadingReactiveChatMemory chatMemory = new OffloadingReactiveChatMemory(fileChatMemory);
+
+        chatMemory.add("chat", List.of(new UserMessage("短消息"), new AssistantMessage("长".repeat(200)))).block();
+        chatMemory.add("chat", List.of(new UserMessage("追问"))).block();
+        // 阻塞写入在 boundedElastic 上执行，不占用调用方线程
+        Assertions.assertTrue(writerThread.get().startsWith("boundedElastic"), writerThread.get());
+
+        List<Message> messages = chatMemory.get("chat", 10).block();
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("短消息", messages.get(0).getText());
+        Assertions.assertEquals("追问", messages.get(2).getText());
+        Assertions.assertEquals(2, chatMemory.get("chat", 2).block().size());
+
+        List<Message> withinBudget = chatMemory.getWithinTokenBudget("chat", 10, 10).block();
+        Assertions.assertEquals(1, withinBudget.size());
+        Assertions.assertEquals("追问", withinBudget.get(0).getText());
+
+        Assertions.assertTrue(chatMemory.get("chat", 0).block().isEmpty());
+        Assertions.assertTrue(chatMemory.getWithinTokenBudget("chat", 0, 10).block().isEmpty());
+        Assertions.assertNull(chatMemory.add("chat", List.of()).block());
+        Assertions.assertEquals(3, fileChatMemory.get("chat", 10).size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.service.ChatConversationService;
+import com.rich.richsynapsehub.utils.ai.chatMeory.ChatMessageCodec;
+import com.rich.richsynapsehub.utils.ai.chatMeory.ReactiveRedisChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.RedisChatMemory;
+import com.rich.richsynapsehub.utils.ai.chatMeory.WriteBehindChatMemory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.data.redis.core.ReactiveListOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SuppressWarnings("unchecked")
+class ReactiveRedisChatMemoryTest {
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate = Mockito.mock(ReactiveRedisTemplate.class);
+
+    private final ReactiveListOperations<String, byte[]> listOperations = Mockito.mock(ReactiveListOperations.class);
+
+    private final RedisChatMemory legacyChatMemory = Mockito.mock(RedisChatMemory.class);
+
+    private final ChatConversationService chatConversationService = Mockito.mock(ChatConversationService.class);
+
+    ReactiveRedisChatMemoryTest() {
+        Mockito.when(redisTemplate.opsForList()).thenReturn(listOperations);
+        Mockito.when(redisTemplate.convertAndSend(Mockito.anyString(), Mockito.any())).thenReturn(Mono.just(1L));
+        Mockito.when(redisTemplate.hasKey(Mockito.anyString())).thenReturn(Mono.just(false));
+    }
+
+    @Test
+    void addFlushesWriteBehindPendingMessagesFirst() throws Exception {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        WriteBehindChatMemory writeBehindChatMemory = new WriteBehindChatMemory(delegate, 60_000, 32, 1);
+        writeBehindChatMemory.add("chat", List.of(new UserMessage("阻塞链路的问题")));
+        List<Integer> flushedBeforeAppend = new ArrayList<>();
+        Mockito.when(redisTemplate.execute(Mockito.any(RedisScript.class), Mockito.anyList(), Mockito.anyList()))
+                .thenAnswer(invocation -> {
+                    flushedBeforeAppend.add(delegate.batches.size());
+                    return Flux.just(2L);
+                });
+        ReactiveRedisChatMemory chatMemory = new ReactiveRedisChatMemory(redisTemplate, legacyChatMemory, 200,
+                chatConversationService, writeBehindChatMemory);
+
+        chatMemory.add("chat", List.of(new UserMessage("响应式链路的问题"))).block();
+        // 追加脚本执行前，阻塞链路的待写消息已写回下游
+        Assertions.assertEquals(List.of(1), flushedBeforeAppend);
+        Assertions.assertEquals("阻塞链路的问题", delegate.batches.get(0).get(0).getText());
+        Assertions.assertFalse(writeBehindChatMemory.hasPending("chat"));
+        Mockito.verify(chatConversationService).touch(Mockito.eq("chat"), Mockito.anyList());
+        writeBehindChatMemory.destroy();
+    }
+
+    @Test
+    void readFlushesWriteBehindPendingMessagesFirst() throws Exception {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        WriteBehindChatMemory writeBehindChatMemory = new WriteBehindChatMemory(delegate, 60_000, 32, 1);
+        writeBehindChatMemory.add("chat", List.of(new UserMessage("问题")));
+        // 模拟写回后 Redis 列表中的数据
+        Mockito.when(listOperations.range(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenAnswer(invocation -> Flux.fromIterable(delegate.get("chat", 10)).map(ChatMessageCodec::encode));
+        ReactiveRedisChatMemory chatMemory = new ReactiveRedisChatMemory(redisTemplate, legacyChatMemory, 200,
+                chatConversationService, writeBehindChatMemory);
+
+        Assertions.assertEquals(List.of("问题"), texts(chatMemory.get("chat", 10).block()));
+        Assertions.assertEquals(List.of("问题"), texts(chatMemory.getWithinTokenBudget("chat", 100, 10).block()));
+        writeBehindChatMemory.destroy();
+    }
+
+    @Test
+    void addMigratesLegacyDataThenRetries() {
+        Mockito.when(redisTemplate.execute(Mockito.any(RedisScript.class), Mockito.anyList(), Mockito.anyList()))
+                .thenReturn(Flux.just(-1L), Flux.just(2L));
+        ReactiveRedisChatMemory chatMemory = new ReactiveRedisChatMemory(redisTemplate, legacyChatMemory, 200,
+                chatConversationService, null);
+
+        chatMemory.add("chat", List.of(new UserMessage("问题"), new AssistantMessage("回答"))).block();
+        Mockito.verify(legacyChatMemory).migrateLegacy("chat");
+        Mockito.verify(redisTemplate, Mockito.times(2))
+                .execute(Mockito.any(RedisScript.class), Mockito.eq(List.of("chat:memory:list:chat", "chat:memory:chat")), Mockito.anyList());
+    }
+
+    @Test
+    void tokenBudgetReadsTailOfList() {
+        // 每条消息 6 个汉字 + 4 个固定开销 = 10 个 token
+        List<byte[]> entries = List.of(ChatMessageCodec.encode(new UserMessage("旧问题一二三")),
+                ChatMessageCodec.encode(new AssistantMessage("旧回答一二三")),
+                ChatMessageCodec.encode(new UserMessage("新问题一二三")));
+        Mockito.when(listOperations.range(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenReturn(Flux.fromIterable(entries));
+        ReactiveRedisChatMemory chatMemory = new ReactiveRedisChatMemory(redisTemplate, legacyChatMemory, 200,
+                chatConversationService, null);
+
+        Assertions.assertEquals(List.of("旧回答一二三", "新问题一二三"),
+                texts(chatMemory.getWithinTokenBudget("chat", 25, 10).block()));
+        Assertions.assertEquals(3, chatMemory.get("chat", 10).block().size());
+        Assertions.assertTrue(chatMemory.getWithinTokenBudget("chat", 0, 10).block().isEmpty());
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
@@ -0,0 +1,51 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.utils.ai.chatMeory.TokenBudgetChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 内存中的下游存储，记录每次写入的批次与按预算读取的参数，供装饰层测试使用
+ */
+class RecordingChatMemory implements TokenBudgetChatMemory {
+
+    /**
+     * 每次 add 写入的消息
+     */
+    final List<List<Message>> batches = new CopyOnWriteArrayList<>();
+
+    /**
+     * 每次 getWithinTokenBudget 的 [tokenBudget, maxMessages]
+     */
+    final List<List<Integer>> budgetReads = new CopyOnWriteArrayList<>();
+
+    private final Map<String, List<Message>> store = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        batches.add(List.copyOf(messages));
+        store.computeIfAbsent(conversationId, id -> new CopyOnWriteArrayList<>()).addAll(messages);
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        List<Message> messages = new ArrayList<>(store.getOrDefault(conversationId, List.of()));
+        return messages.subList(Math.max(0, messages.size() - lastN), messages.size());
+    }
+
+    @Override
+    public List<Message> getWithinTokenBudget(String conversationId, int tokenBudget, int maxMessages) {
+        budgetReads.add(List.of(tokenBudget, maxMessages));
+        return TokenBudgetChatMemory.super.getWithinTokenBudget(conversationId, tokenBudget, maxMessages);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        store.remove(conversationId);
+    }
+}
@@ -0,0 +1,265 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.config.RedisConfig;
+import com.rich.richsynapsehub.enumeration.ChatMemoryStorageMode;
+import com.rich.richsynapsehub.utils.ai.chatMeory.RedisChatMemory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RedisChatMemory 的 Lua 脚本在真实 Redis（进程内 embedded-redis）上的行为
+ */
+class RedisChatMemoryTest {
+
+    private static final int REDIS_PORT = 16381;
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static RedisTemplate<String, byte[]> redisTemplate;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", REDIS_PORT));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void flushRedis() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.serverCommands().flushAll();
+        }
+    }
+
+    @Test
+    void migrateLegacyMovesBlobOnce() {
+        writeLegacy("chat", "旧问题", "旧回答");
+        RedisChatMemory chatMemory = new RedisChatMemory(redisTemplate, ChatMemoryStorageMode.LIST, 0);
+
+        Assertions.assertTrue(chatMemory.migrateLegacy("chat"));
+        Assertions.assertFalse(chatMemory.migrateLegacy("chat"));
+        Assertions.assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("chat:memory:chat")));
+        Assertions.assertEquals(2L, redisTemplate.opsForList().size("chat:memory:list:chat"));
+        Assertions.assertEquals(List.of("旧问题", "旧回答"), texts(chatMemory.get("chat", 10)));
+    }
+
+    @Test
+    void concurrentAppendsDuringMigrationKeepLegacyHistoryFirst() throws Exception {
+        writeLegacy("chat", "旧问题", "旧回答");
+        RedisChatMemory chatMemory = new RedisChatMemory(redisTemplate, ChatMemoryStorageMode.LIST, 0);
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            String text = "新消息" + i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                chatMemory.add("chat", List.of(new UserMessage(text)));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // 旧历史只迁移一次且排在所有新消息之前，新消息一条不丢
+        List<String> texts = texts(chatMemory.get("chat", 100));
+        Assertions.assertEquals(writers + 2, texts.size());
+        Assertions.assertEquals(List.of("旧问题", "旧回答"), texts.subList(0, 2));
+        for (int i = 0; i < writers; i++) {
+            Assertions.assertTrue(texts.contains("新消息" + i));
+        }
+        Assertions.assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("chat:memory:chat")));
+    }
+
+    @Test
+    void migrateLegacySkipsBlobChangedAfterRead() {
+        writeLegacy("chat", "旧问题");
+        AtomicInteger scripts = new AtomicInteger();
+        // 迁移方 GET 之后、脚本执行之前，旧格式写入方又追加了一条
+        RedisTemplate<String, byte[]> hookedTemplate = hookedTemplate(() -> {
+            if (scripts.getAndIncrement() == 0) {
+                writeLegacy("chat", "旧问题", "旧回答");
+            }
+        });
+        RedisChatMemory chatMemory = new RedisChatMemory(hookedTemplate, ChatMemoryStorageMode.LIST, 0);
+
+        Assertions.assertFalse(chatMemory.migrateLegacy("chat"));
+        Assertions.assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("chat:memory:list:chat")));
+        Assertions.assertTrue(Boolean.TRUE.equals(redisTemplate.hasKey("chat:memory:chat")));
+        // 下次迁移读到最新的旧数据
+        Assertions.assertTrue(chatMemory.migrateLegacy("chat"));
+        Assertions.assertEquals(List.of("旧问题", "旧回答"), texts(chatMemory.get("chat", 10)));
+    }
+
+    @Test
+    void migrateAllLegacySkipsListAndMigratingKeys() {
+        writeLegacy("a", "问题a");
+        writeLegacy("b", "问题b");
+        RedisChatMemory chatMemory = new RedisChatMemory(redisTemplate, ChatMemoryStorageMode.LIST, 0);
+        chatMemory.add("c", List.of(new UserMessage("问题c")));
+        // 早期版本遗留的临时 key，内容不可解码，被扫描到就会迁移失败
+        byte[] migrating = "不是对话记忆".getBytes(StandardCharsets.UTF_8);
+        redisTemplate.opsForValue().set("chat:memory:migrating:d", migrating);
+
+        Assertions.assertEquals(2, chatMemory.migrateAllLegacy());
+        Assertions.assertEquals(List.of("问题a"), texts(chatMemory.get("a", 10)));
+        Assertions.assertEquals(List.of("问题b"), texts(chatMemory.get("b", 10)));
+        Assertions.assertEquals(List.of("问题c"), texts(chatMemory.get("c", 10)));
+        Assertions.assertArrayEquals(migrating, redisTemplate.opsForValue().get("chat:memory:migrating:d"));
+        Assertions.assertEquals(0, chatMemory.migrateAllLegacy());
+    }
+
+    @Test
+    void concurrentAppendsLoseNoMessages() throws Exception {
+        RedisChatMemory chatMemory = new RedisChatMemory(redisTemplate, ChatMemoryStorageMode.LIST, 0);
+        int writers = 8;
+        int rounds = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int r = 0; r < rounds; r++) {
+                    chatMemory.add("chat", List.of(new UserMessage(writer + "-" + r)));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<String> texts = texts(chatMemory.get("chat", writers * rounds));
+        Assertions.assertEquals(writers * rounds, texts.size());
+        // 每个写入方自己的消息保持追加顺序
+        for (int w = 0; w < writers; w++) {
+            String prefix = w + "-";
+            List<String> own = texts.stream().filter(text -> text.startsWith(prefix)).toList();
+            Assertions.assertEquals(rounds, own.size());
+            for (int r = 0; r < rounds; r++) {
+                Assertions.assertEquals(prefix + r, own.get(r));
+            }
+        }
+    }
+
+    @Test
+    void appendTrimsToMaxMessages() {
+        RedisChatMemory chatMemory = new RedisChatMemory(redisTemplate, ChatMemoryStorageMode.LIST, 5);
+        for (int i = 0; i < 6; i++) {
+            chatMemory.add("chat", List.of(new UserMessage("问题" + i), new AssistantMessage("回答" + i)));
+        }
+
+        Assertions.assertEquals(5L, redisTemplate.opsForList().size("chat:memory:list:chat"));
+        Assertions.assertEquals(List.of("回答3", "问题4", "回答4", "问题5", "回答5"), texts(chatMemory.get("chat", 100)));
+    }
+
+    @Test
+    void appendRefreshesExpiry() {
+        RedisChatMemory chatMemory = new RedisChatMemory(redisTemplate, ChatMemoryStorageMode.LIST, 0);
+        chatMemory.add("chat", List.of(new UserMessage("问题")));
+        redisTemplate.expire("chat:memory:list:chat", Duration.ofSeconds(10));
+
+        chatMemory.add("chat", List.of(new AssistantMessage("回答")));
+        Long ttl = redisTemplate.getExpire("chat:memory:list:chat", TimeUnit.SECONDS);
+        Assertions.assertNotNull(ttl);
+        Assertions.assertTrue(ttl > TimeUnit.DAYS.toSeconds(6), "追加后过期时间应刷新为 7 天，实际：" + ttl);
+    }
+
+    @Test
+    void appendMigratesPendingLegacyDataThenRetries() {
+        writeLegacy("chat", "旧问题", "旧回答");
+        RedisChatMemory chatMemory = new RedisChatMemory(redisTemplate, ChatMemoryStorageMode.LIST, 0);
+
+        chatMemory.add("chat", List.of(new UserMessage("新问题")));
+        Assertions.assertEquals(List.of("旧问题", "旧回答", "新问题"), texts(chatMemory.get("chat", 10)));
+        Assertions.assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("chat:memory:chat")));
+    }
+
+    @Test
+    void appendGivesUpWhenLegacyDataKeepsReappearing() {
+        // 旧格式写入方在每次脚本执行前都重新写入旧数据，追加脚本始终返回 LEGACY_PENDING
+        RedisTemplate<String, byte[]> hookedTemplate = hookedTemplate(() -> writeLegacy("chat", "旧问题"));
+        RedisChatMemory chatMemory = new RedisChatMemory(hookedTemplate, ChatMemoryStorageMode.LIST, 0);
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> chatMemory.add("chat", List.of(new UserMessage("新问题"))));
+        // 新消息从未写在旧历史之前
+        Assertions.assertTrue(texts(chatMemory.get("chat", 10)).stream().noneMatch("新问题"::equals));
+    }
+
+    /** 以旧的整体存储格式写入会话（覆盖已有数据） */
+    private static void writeLegacy(String conversationId, String... texts) {
+        RedisChatMemory blobChatMemory = new RedisChatMemory(redisTemplate);
+        blobChatMemory.clear(conversationId);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            messages.add(i % 2 == 0 ? new UserMessage(texts[i]) : new AssistantMessage(texts[i]));
+        }
+        blobChatMemory.add(conversationId, messages);
+    }
+
+    /** 与 RedisConfig 配置相同、但每次执行 Lua 脚本前先运行 beforeScript 的模板 */
+    private static RedisTemplate<String, byte[]> hookedTemplate(Runnable beforeScript) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>() {
+            @Override
+            public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+                beforeScript.run();
+                return super.execute(script, keys, args);
+            }
+        };
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
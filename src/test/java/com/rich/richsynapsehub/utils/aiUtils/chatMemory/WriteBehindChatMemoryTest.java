@@ -0,0 +1,138 @@
+package com.rich.richsynapsehub.utils.aiUtils.chatMemory;
+
+import com.rich.richsynapsehub.utils.ai.chatMeory.WriteBehindChatMemory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+class WriteBehindChatMemoryTest {
+
+    @Test
+    void getSeesPendingMessagesBeforeFlush() throws Exception {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        delegate.add("chat", List.of(new UserMessage("旧问题"), new AssistantMessage("旧回答")));
+        delegate.batches.clear();
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(delegate, 60_000, 32, 1);
+
+        chatMemory.add("chat", List.of(new UserMessage("新问题")));
+        Assertions.assertTrue(delegate.batches.isEmpty());
+        // 本节点读己之写：下游结果在前，待写消息在后
+        Assertions.assertEquals(List.of("旧问题", "旧回答", "新问题"), texts(chatMemory.get("chat", 10)));
+        Assertions.assertEquals(List.of("旧回答", "新问题"), texts(chatMemory.get("chat", 2)));
+        chatMemory.destroy();
+    }
+
+    @Test
+    void assistantMessageFlushesTurnAsOneBatch() throws Exception {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(delegate, 60_000, 32, 1);
+
+        chatMemory.add("chat", List.of(new UserMessage("问题")));
+        chatMemory.add("chat", List.of(new AssistantMessage("回答")));
+        awaitTrue(() -> delegate.batches.size() == 1);
+        Assertions.assertEquals(List.of("问题", "回答"), texts(delegate.batches.get(0)));
+        Assertions.assertEquals(List.of("问题", "回答"), texts(chatMemory.get("chat", 10)));
+        chatMemory.destroy();
+    }
+
+    @Test
+    void maxBatchFlushesWithoutAssistantMessage() throws Exception {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(delegate, 60_000, 3, 1);
+
+        chatMemory.add("chat", List.of(new UserMessage("1")));
+        chatMemory.add("chat", List.of(new UserMessage("2")));
+        Assertions.assertTrue(delegate.batches.isEmpty());
+        chatMemory.add("chat", List.of(new UserMessage("3")));
+        awaitTrue(() -> delegate.batches.size() == 1);
+        Assertions.assertEquals(List.of("1", "2", "3"), texts(delegate.batches.get(0)));
+        chatMemory.destroy();
+    }
+
+    @Test
+    void destroyFlushesPendingMessages() throws Exception {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(delegate, 60_000, 32, 1);
+
+        chatMemory.add("a", List.of(new UserMessage("a1")));
+        chatMemory.add("b", List.of(new UserMessage("b1")));
+        Assertions.assertTrue(delegate.batches.isEmpty());
+        chatMemory.destroy();
+        Assertions.assertEquals(List.of("a1"), texts(delegate.get("a", 10)));
+        Assertions.assertEquals(List.of("b1"), texts(delegate.get("b", 10)));
+
+        // 关闭后直接同步写入下游
+        chatMemory.add("a", List.of(new UserMessage("a2")));
+        Assertions.assertEquals(List.of("a1", "a2"), texts(delegate.get("a", 10)));
+    }
+
+    @Test
+    void destroyDoesNotWaitForDelayedFlushAndKeepsOrderDuringShutdown() throws Exception {
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        RecordingChatMemory delegate = new RecordingChatMemory() {
+            @Override
+            public void add(String conversationId, List<Message> messages) {
+                if (failNext.getAndSet(false)) {
+                    throw new IllegalStateException("下游暂不可用");
+                }
+                super.add(conversationId, messages);
+            }
+        };
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(delegate, 60_000, 32, 1);
+        chatMemory.add("chat", List.of(new UserMessage("q1")));
+
+        long start = System.nanoTime();
+        // 写回失败，q1 留在缓冲区
+        chatMemory.destroy();
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "关闭时不应等待延迟写回任务");
+        Assertions.assertTrue(delegate.get("chat", 10).isEmpty());
+
+        // 关闭后到达的消息排在缓冲区中更早的消息之后，一起同步写回
+        chatMemory.add("chat", List.of(new AssistantMessage("a1")));
+        Assertions.assertEquals(List.of(List.of("q1", "a1")), delegate.batches.stream().map(WriteBehindChatMemoryTest::texts).toList());
+        Assertions.assertFalse(chatMemory.hasPending("chat"));
+    }
+
+    @Test
+    void tokenBudgetTakesPendingTailThenAsksDelegateForTheRest() throws Exception {
+        RecordingChatMemory delegate = new RecordingChatMemory();
+        // 每条消息 6 个汉字 + 4 个固定开销 = 10 个 token
+        delegate.add("chat", List.of(new UserMessage("旧问题一二三"), new AssistantMessage("旧回答一二三")));
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(delegate, 60_000, 32, 1);
+        chatMemory.add("chat", List.of(new UserMessage("新问题一二三")));
+
+        Assertions.assertEquals(List.of("旧回答一二三", "新问题一二三"), texts(chatMemory.getWithinTokenBudget("chat", 25, 10)));
+        // 剩余预算与条数交给下游按预算读取
+        Assertions.assertEquals(List.of(List.of(15, 9)), delegate.budgetReads);
+
+        // 预算或条数在待写消息内用完时不访问下游
+        Assertions.assertEquals(List.of("新问题一二三"), texts(chatMemory.getWithinTokenBudget("chat", 10, 10)));
+        Assertions.assertEquals(List.of("新问题一二三"), texts(chatMemory.getWithinTokenBudget("chat", 100, 1)));
+        Assertions.assertTrue(chatMemory.getWithinTokenBudget("chat", 5, 10).isEmpty());
+        Assertions.assertEquals(1, delegate.budgetReads.size());
+
+        // 写回后没有待写消息，直接交给下游
+        chatMemory.destroy();
+        Assertions.assertEquals(3, chatMemory.getWithinTokenBudget("chat", 100, 10).size());
+        Assertions.assertEquals(List.of(100, 10), delegate.budgetReads.get(delegate.budgetReads.size() - 1));
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待写回超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.rich.richsynapsehub.utils.aiUtils.doChat;
+
+import com.rich.richsynapsehub.utils.ai.doChat.ChatRequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ChatRequestCoalescerTest {
+
+    @Test
+    void concurrentIdenticalCallsShareOneModelCall() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ChatRequestCoalescer coalescer = new ChatRequestCoalescer(true, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<ChatRequestCoalescer.Shared<String>> leader = executor.submit(() ->
+                    coalescer.call(ChatRequestCoalescer.key(null, "interview", "什么是 MVCC？"), () -> {
+                        calls.incrementAndGet();
+                        started.countDown();
+                        await(release);
+                        return "多版本并发控制";
+                    }));
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            List<Future<ChatRequestCoalescer.Shared<String>>> followers = List.of(
+                    executor.submit(() -> coalescer.call(ChatRequestCoalescer.key(null, "interview", " 什么是 mvcc"),
+                            () -> "不应调用")),
+                    executor.submit(() -> coalescer.call(ChatRequestCoalescer.key(null, "interview", "什么是 MVCC?"),
+                            () -> "不应调用")));
+            while (meterRegistry.counter("chat.coalesced.requests", "mode", "call").count() < 2) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            Assertions.assertTrue(leader.get(5, TimeUnit.SECONDS).leader());
+            for (Future<ChatRequestCoalescer.Shared<String>> follower : followers) {
+                ChatRequestCoalescer.Shared<String> shared = follower.get(5, TimeUnit.SECONDS);
+                Assertions.assertFalse(shared.leader());
+                Assertions.assertEquals("多版本并发控制", shared.value());
+            }
+            Assertions.assertEquals(1, calls.get());
+            Assertions.assertEquals(0, coalescer.inFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 调用结束后不复用结果；不同知识库或未传键的请求不合并
+        Assertions.assertTrue(coalescer.call(ChatRequestCoalescer.key(null, "interview", "什么是 MVCC"), () -> "新回答").leader());
+        Assertions.assertTrue(coalescer.call(null, () -> "a").leader());
+    }
+
+    @Test
+    void followersReceiveLeaderFailure() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ChatRequestCoalescer coalescer = new ChatRequestCoalescer(true, meterRegistry);
+        ChatRequestCoalescer.Key key = ChatRequestCoalescer.key("system", "shop", "推荐耳机");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> leader = executor.submit(() -> coalescer.call(key, () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("模型调用失败");
+            }));
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<?> follower = executor.submit(() -> coalescer.call(key, () -> "不应调用"));
+            while (meterRegistry.counter("chat.coalesced.requests", "mode", "call").count() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            Exception leaderError = Assertions.assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception followerError = Assertions.assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+            Assertions.assertInstanceOf(IllegalStateException.class, followerError.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void streamIsFannedOutToLateSubscribers() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ChatRequestCoalescer coalescer = new ChatRequestCoalescer(true, meterRegistry);
+        ChatRequestCoalescer.Key key = ChatRequestCoalescer.key("你是面试专家", "interview", "什么是 MVCC");
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger followers = new AtomicInteger();
+
+        Flux<String> leader = coalescer.stream(key, () -> {
+            calls.incrementAndGet();
+            return upstream.asFlux();
+        }, existing -> {
+            followers.incrementAndGet();
+            return existing;
+        });
+        List<String> leaderChunks = new CopyOnWriteArrayList<>();
+        leader.subscribe(leaderChunks::add);
+        upstream.tryEmitNext("多版本");
+        Assertions.assertEquals(0, followers.get());
+
+        Flux<String> follower = coalescer.stream(key, () -> Flux.just("不应调用"), existing -> {
+            followers.incrementAndGet();
+            return existing;
+        });
+        List<String> followerChunks = new CopyOnWriteArrayList<>();
+        follower.subscribe(followerChunks::add);
+        Assertions.assertEquals(1, followers.get());
+        upstream.tryEmitNext("并发控制");
+        upstream.tryEmitComplete();
+
+        // 中途加入的订阅者也收到完整回答
+        Assertions.assertEquals(List.of("多版本", "并发控制"), leaderChunks);
+        Assertions.assertEquals(List.of("多版本", "并发控制"), followerChunks);
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, meterRegistry.counter("chat.coalesced.requests", "mode", "stream").count());
+        Assertions.assertEquals(0, coalescer.inFlight());
+        Assertions.assertEquals(List.of("新回答"), coalescer.stream(key, () -> Flux.just("新回答"), existing -> Flux.empty())
+                .collectList().block());
+    }
+
+    @Test
+    void unsubscribedStreamIsNotRegistered() {
+        ChatRequestCoalescer coalescer = new ChatRequestCoalescer(true, new SimpleMeterRegistry());
+        ChatRequestCoalescer.Key key = ChatRequestCoalescer.key(null, "interview", "问题");
+
+        // 客户端在订阅前断开：不登记，也不影响之后的相同请求
+        coalescer.stream(key, () -> Flux.just("不应调用"), existing -> existing);
+        Assertions.assertEquals(0, coalescer.inFlight());
+        Assertions.assertEquals(List.of("回答"), coalescer.stream(key, () -> Flux.just("回答"), existing -> Flux.empty())
+                .collectList().block());
+        Assertions.assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void disabledCoalescerNeverShares() {
+        ChatRequestCoalescer coalescer = new ChatRequestCoalescer(false, new SimpleMeterRegistry());
+        ChatRequestCoalescer.Key key = ChatRequestCoalescer.key(null, "interview", "问题");
+        Assertions.assertEquals(List.of("a"), coalescer.stream(key, () -> Flux.just("a"), existing -> Flux.empty())
+                .collectList().block());
+        Assertions.assertEquals(List.of("b"), coalescer.stream(key, () -> Flux.just("b"), existing -> Flux.empty())
+                .collectList().block());
+        Assertions.assertEquals(0, coalescer.inFlight());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.rich.richsynapsehub.utils.aiUtils.doChat;
+
+import com.rich.richsynapsehub.utils.ai.doChat.SemanticAnswerCache;
+import com.rich.richsynapsehub.utils.ai.rag.HashingEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SemanticAnswerCacheTest {
+
+    @Test
+    void similarQuestionHitsWithinScopeOnly() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(true, new HashingEmbeddingModel(512), 0.8, 10, 60_000,
+                new SimpleMeterRegistry());
+        String scope = SemanticAnswerCache.scope("interview", "你是面试专家");
+
+        SemanticAnswerCache.Lookup miss = cache.lookup(scope, "Redis 的持久化有哪些方式？");
+        Assertions.assertFalse(miss.hit());
+        cache.put(miss, "RDB 与 AOF");
+
+        Assertions.assertEquals("RDB 与 AOF", cache.lookup(scope, "Redis 的持久化有哪些方式").answer());
+        Assertions.assertFalse(cache.lookup(scope, "MySQL 的索引为什么用 B+ 树").hit());
+        Assertions.assertFalse(cache.lookup(SemanticAnswerCache.scope("interview", "你是购物专家"), "Redis 的持久化有哪些方式？").hit());
+    }
+
+    @Test
+    void disabledCacheNeverLooksUp() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(false, null, 0.8, 10, 60_000, new SimpleMeterRegistry());
+        Assertions.assertNull(cache.lookup("scope", "问题"));
+    }
+
+    @Test
+    void replayChunksReassembleAnswer() {
+        String answer = "Redis 持久化分为 RDB 快照与 AOF 日志两种方式，😀 可以混合使用。";
+        Assertions.assertEquals(answer, String.join("", SemanticAnswerCache.replayChunks(answer)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.utils.ai.rag.Bm25Index;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class Bm25IndexTest {
+
+    @Test
+    void exactTermsRankFirst() {
+        Bm25Index index = new Bm25Index(List.of(
+                document("mvcc", "InnoDB 通过 MVCC 多版本并发控制实现可重复读，读操作不加锁。"),
+                document("lock", "InnoDB 的行锁与间隙锁用于防止幻读，写操作需要加锁。"),
+                document("satoken", "Sa-Token 是轻量级权限认证框架，支持登录认证与角色校验。"),
+                document("spring", "Spring Security 基于过滤器链实现认证与授权。")));
+
+        List<Document> mvcc = index.search("MVCC 是怎么实现的", 2);
+        Assertions.assertEquals("mvcc", mvcc.get(0).getId());
+        Assertions.assertTrue(mvcc.get(0).getScore() > 0);
+
+        // 只命中“实现”的文档排在后面，未命中任何词项的文档不返回
+        Assertions.assertEquals(List.of("mvcc", "spring"), index.search("MVCC 是怎么实现的", 4).stream().map(Document::getId).toList());
+
+        List<Document> satoken = index.search("sa-token 角色校验", 4);
+        Assertions.assertEquals(List.of("satoken"), satoken.stream().map(Document::getId).toList());
+
+        Assertions.assertTrue(index.search("量子色动力学", 3).isEmpty());
+        Assertions.assertTrue(new Bm25Index(List.of()).search("MVCC", 3).isEmpty());
+    }
+
+    @Test
+    void postingsAreDeltaEncoded() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            documents.add(document("doc-" + i, "缓存 redis 片段" + (i % 10 == 0 ? " 雪崩" : "")));
+        }
+        Bm25Index index = new Bm25Index(documents);
+        // 词项：缓存、redis、片段（各 2000 篇）与雪崩（200 篇）；文档序号差值与词频各占 1 字节
+        Assertions.assertEquals(4, index.termCount());
+        Assertions.assertEquals(2L * (3 * 2000 + 200), index.postingBytes());
+
+        List<Document> results = index.search("缓存雪崩", 300);
+        Assertions.assertEquals(300, results.size());
+        Assertions.assertTrue(results.get(0).getText().contains("雪崩"));
+        Assertions.assertTrue(results.get(199).getText().contains("雪崩"));
+        Assertions.assertFalse(results.get(200).getText().contains("雪崩"));
+    }
+
+    private static Document document(String id, String text) {
+        return Document.builder().id(id).text(text).build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.utils.ai.rag.CachingDocumentRetriever;
+import com.rich.richsynapsehub.utils.ai.rag.RetrievalCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachingDocumentRetrieverTest {
+
+    @Test
+    void normalizedQueriesHitAndInvalidationReloads() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetrievalCache retrievalCache = new RetrievalCache(2, 60_000, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+        DocumentRetriever delegate = query -> List.of(new Document("结果" + calls.incrementAndGet()));
+        CachingDocumentRetriever retriever = new CachingDocumentRetriever(delegate, "面试专家知识库", retrievalCache);
+
+        Assertions.assertEquals("结果1", retriever.retrieve(new Query("什么是 MVCC？")).get(0).getText());
+        Assertions.assertEquals("结果1", retriever.retrieve(new Query("  什么是   mvcc?")).get(0).getText());
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, meterRegistry.counter("rag.retrieval.cache.hits").count());
+
+        // 其他知识库的同一查询互不影响
+        new CachingDocumentRetriever(delegate, "购物大师知识库", retrievalCache).retrieve(new Query("什么是 MVCC"));
+        Assertions.assertEquals(2, calls.get());
+
+        retrievalCache.invalidate("面试专家知识库");
+        Assertions.assertEquals(1, retrievalCache.size());
+        Assertions.assertEquals("结果3", retriever.retrieve(new Query("什么是 MVCC")).get(0).getText());
+    }
+
+    @Test
+    void lruBoundEvictsEldest() {
+        RetrievalCache retrievalCache = new RetrievalCache(2, 60_000, new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+        CachingDocumentRetriever retriever = new CachingDocumentRetriever(
+                query -> List.of(new Document(query.text() + calls.incrementAndGet())), "index", retrievalCache);
+        retriever.retrieve(new Query("a"));
+        retriever.retrieve(new Query("b"));
+        retriever.retrieve(new Query("a"));
+        retriever.retrieve(new Query("c"));
+        Assertions.assertEquals(3, calls.get());
+        Assertions.assertEquals(2, retrievalCache.size());
+        // b 最久未访问，已被淘汰
+        retriever.retrieve(new Query("b"));
+        Assertions.assertEquals(4, calls.get());
+    }
+}
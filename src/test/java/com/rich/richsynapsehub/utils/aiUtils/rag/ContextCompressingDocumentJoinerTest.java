@@ -0,0 +1,71 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.utils.ai.rag.ContextCompressingDocumentJoiner;
+import com.rich.richsynapsehub.utils.ai.rag.FusionDocumentRetriever;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.util.List;
+import java.util.Map;
+
+class ContextCompressingDocumentJoinerTest {
+
+    @Test
+    void dedupesCutsAndTrimsSentences() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ContextCompressingDocumentJoiner joiner = new ContextCompressingDocumentJoiner(0.5, 0.8, 2, 1500, meterRegistry);
+        Document mvcc = document("mvcc", 0.9, "InnoDB 通过 MVCC 实现可重复读。每行记录带有隐藏的事务版本号。"
+                + "Buffer Pool 用于缓存数据页。Redo Log 保证崩溃恢复。MVCC 依赖 Undo Log 构建历史版本。");
+        Document duplicate = document("mvcc-copy", 0.85, "InnoDB 通过 MVCC 实现可重复读。每行记录带有隐藏的事务版本号。"
+                + "Buffer Pool 用于缓存数据页。Redo Log 保证崩溃恢复。MVCC 依赖 Undo Log 构建历史版本！");
+        Document weak = document("weak", 0.3, "Redis 使用单线程处理命令。");
+        Document other = document("lock", 0.6, "间隙锁防止幻读。");
+
+        List<Document> joined = joiner.join(Map.of(new Query("MVCC 如何实现可重复读"),
+                List.of(List.of(mvcc, duplicate), List.of(weak, other))));
+
+        Assertions.assertEquals(List.of("mvcc", "lock"), joined.stream().map(Document::getId).toList());
+        // 只保留与查询重合最多的两句，按原文顺序
+        Assertions.assertEquals("InnoDB 通过 MVCC 实现可重复读。MVCC 依赖 Undo Log 构建历史版本。", joined.get(0).getText());
+        Assertions.assertEquals(0.9, joined.get(0).getScore().doubleValue());
+        Assertions.assertTrue(meterRegistry.counter("rag.context.tokens.saved").count() > 0);
+        Assertions.assertEquals(1, meterRegistry.summary("rag.context.tokens.original").count());
+    }
+
+    @Test
+    void enforcesTokenBudget() {
+        ContextCompressingDocumentJoiner joiner = new ContextCompressingDocumentJoiner(0, 0.8, 10, 20, new SimpleMeterRegistry());
+        Document first = document("a", 0.9, "第一句有十个汉字呀。第二句也有十个汉字。第三句同样十个汉字。");
+        Document second = document("b", 0.8, "另一个片段的内容。");
+
+        ContextCompressingDocumentJoiner.Compression compression = joiner.compress("无关问题", List.of(first, second));
+        Assertions.assertEquals(1, compression.documents().size());
+        // 排名第一的片段单独超出预算，截取开头两句（各 10 个 token）
+        Assertions.assertEquals("第一句有十个汉字呀。第二句也有十个汉字。", compression.documents().get(0).getText());
+        Assertions.assertEquals(20, compression.keptTokens());
+        Assertions.assertTrue(compression.savedTokens() > 0);
+
+        Assertions.assertTrue(joiner.compress("x", List.of()).documents().isEmpty());
+    }
+
+    @Test
+    void fusedScoresSkipRelativeCutoff() {
+        ContextCompressingDocumentJoiner joiner = new ContextCompressingDocumentJoiner(0.6, 0.8, 10, 1500, new SimpleMeterRegistry());
+        Document both = document("both", 0.9, "InnoDB 通过 MVCC 实现可重复读。");
+        // 两路都命中的片段融合得分为 2/61，只命中一路的片段为 1/61
+        List<Document> fused = FusionDocumentRetriever.fuse(Map.of(
+                "a", List.of(both, document("only-a", 0.8, "间隙锁防止幻读。")),
+                "b", List.of(both, document("only-b", 0.7, "Redis 使用单线程处理命令。"))), 10, 60);
+
+        List<Document> compressed = joiner.compress("可重复读", fused).documents();
+        Assertions.assertEquals(3, compressed.size());
+        Assertions.assertEquals("both", compressed.get(0).getId());
+    }
+
+    private static Document document(String id, double score, String text) {
+        return Document.builder().id(id).text(text).score(score).build();
+    }
+}
@@ -0,0 +1,57 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.constant.RagConstant;
+import com.rich.richsynapsehub.utils.ai.rag.FusionDocumentRetriever;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class FusionDocumentRetrieverTest {
+
+    @Test
+    void fusesConcurrentResultsAndSkipsSlowIndex() {
+        Map<String, DocumentRetriever> retrievers = new LinkedHashMap<>();
+        retrievers.put("a", query -> List.of(doc("shared"), doc("a1"), doc("a2")));
+        retrievers.put("b", query -> List.of(doc("b1"), doc("shared")));
+        retrievers.put("slow", query -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(doc("slow1"));
+        });
+        retrievers.put("broken", query -> {
+            throw new IllegalStateException("index unavailable");
+        });
+
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory());
+        try {
+            FusionDocumentRetriever retriever = new FusionDocumentRetriever(retrievers, executor,
+                    Duration.ofMillis(300), 3, FusionDocumentRetriever.DEFAULT_RRF_K);
+            long start = System.currentTimeMillis();
+            List<Document> documents = retriever.retrieve(new Query("问题"));
+            Assertions.assertTrue(System.currentTimeMillis() - start < 2_000);
+
+            // shared 同时出现在 a、b 中，融合得分最高；b1 在 b 中排第 1，高于在 a 中排第 2 的 a1
+            Assertions.assertEquals(List.of("shared", "b1", "a1"), documents.stream().map(Document::getId).toList());
+            Assertions.assertEquals("a", documents.get(0).getMetadata().get(RagConstant.METADATA_KNOWLEDGE_INDEX));
+            Assertions.assertEquals(1.0 / 61 + 1.0 / 62, documents.get(0).getScore(), 1e-9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Document doc(String id) {
+        return Document.builder().id(id).text("内容 " + id).build();
+    }
+}
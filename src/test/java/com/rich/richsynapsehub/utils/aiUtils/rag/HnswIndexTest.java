@@ -0,0 +1,107 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.utils.ai.rag.HnswIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 64;
+
+    @Test
+    void recallAgainstBruteForce() {
+        Random random = new Random(1);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, 42);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            float[] vector = randomUnitVector(random);
+            vectors.add(vector);
+            Assertions.assertEquals(i, index.insert(vector));
+        }
+
+        int hits = 0;
+        int total = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = vectors.get(random.nextInt(vectors.size())).clone();
+            for (int j = 0; j < DIMENSIONS; j++) {
+                query[j] += 0.1f * (float) random.nextGaussian();
+            }
+            Set<Integer> truth = new HashSet<>(IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(id -> -HnswIndex.similarity(query, vectors.get(id))))
+                    .limit(10)
+                    .toList());
+            List<HnswIndex.Neighbor> result = index.search(query, 10, 64);
+            Assertions.assertEquals(10, result.size());
+            for (int i = 1; i < result.size(); i++) {
+                Assertions.assertTrue(result.get(i - 1).score() >= result.get(i).score());
+            }
+            for (HnswIndex.Neighbor neighbor : result) {
+                if (truth.contains(neighbor.id())) {
+                    hits++;
+                }
+            }
+            total += 10;
+        }
+        Assertions.assertTrue((double) hits / total >= 0.9, "recall@10 = " + (double) hits / total);
+    }
+
+    @Test
+    void deletedNodesAreSkippedButStillNavigable() {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64, 7);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            vectors.add(randomUnitVector(random));
+            index.insert(vectors.get(i));
+        }
+        for (int i = 0; i < 500; i += 2) {
+            index.delete(i);
+        }
+        Assertions.assertEquals(250, index.deletedCount());
+        for (int q = 0; q < 20; q++) {
+            float[] query = vectors.get(2 * q);
+            List<HnswIndex.Neighbor> result = index.search(query, 10, 64);
+            Assertions.assertEquals(10, result.size());
+            Assertions.assertTrue(result.stream().allMatch(neighbor -> neighbor.id() % 2 == 1));
+        }
+    }
+
+    @Test
+    void emptyIndexReturnsNothing() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, 42);
+        Assertions.assertTrue(index.search(randomUnitVector(new Random(2)), 5, 32).isEmpty());
+    }
+
+    @Test
+    void normalizeScalesToUnitLength() {
+        float[] normalized = HnswIndex.normalize(new float[]{3, 4});
+        Assertions.assertArrayEquals(new float[]{0.6f, 0.8f}, normalized, 1e-6f);
+        Assertions.assertEquals(1f, HnswIndex.similarity(normalized, normalized), 1e-6f);
+        // 零向量与单位向量原样返回
+        float[] zero = new float[DIMENSIONS];
+        Assertions.assertSame(zero, HnswIndex.normalize(zero));
+        float[] unit = randomUnitVector(new Random(3));
+        Assertions.assertSame(unit, HnswIndex.normalize(unit));
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,227 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.constant.RagConstant;
+import com.rich.richsynapsehub.enumeration.LocalRetrievalMode;
+import com.rich.richsynapsehub.enumeration.VectorEncoding;
+import com.rich.richsynapsehub.utils.ai.rag.FusionDocumentRetriever;
+import com.rich.richsynapsehub.utils.ai.rag.HashingEmbeddingModel;
+import com.rich.richsynapsehub.utils.ai.rag.LocalDocumentRetriever;
+import com.rich.richsynapsehub.utils.ai.rag.LocalKnowledgeBase;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class LocalKnowledgeBaseTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void retrievesMatchingChunkWithOfflineEmbedding() throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("interview"));
+        Files.writeString(dir.resolve("redis.md"), """
+                # Redis 持久化
+
+                RDB 是某一时刻的内存快照，AOF 记录每一条写命令，重启时重放日志恢复数据。
+
+                ---
+
+                # MySQL 索引
+
+                InnoDB 使用 B+ 树作为索引结构，联合索引遵循最左前缀匹配原则。
+                """);
+        LocalKnowledgeBase knowledgeBase = new LocalKnowledgeBase(tempDir.toString(), null, VectorEncoding.FLOAT32,
+                new HashingEmbeddingModel(256), 200, 8, 32, 32, 2);
+
+        List<Document> documents = new LocalDocumentRetriever(knowledgeBase, "面试专家知识库", 1, 0.1)
+                .retrieve(new Query("AOF 持久化是怎么恢复数据的"));
+        Assertions.assertEquals(1, documents.size());
+        Assertions.assertTrue(documents.get(0).getText().contains("AOF"));
+        Assertions.assertEquals("redis.md", documents.get(0).getMetadata().get(RagConstant.METADATA_SOURCE));
+        Assertions.assertNotNull(documents.get(0).getScore());
+
+        Assertions.assertTrue(knowledgeBase.search("面试专家知识库", "量子色动力学", 3, 0.5).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> knowledgeBase.search("../etc", "x", 1, 0));
+        knowledgeBase.destroy();
+    }
+
+    @Test
+    void preloadBuildsEveryKnowledgeIndexBeforeFirstSearch() throws Exception {
+        Files.writeString(Files.createDirectories(tempDir.resolve("interview")).resolve("a.md"), "# Redis\n\nAOF 记录每一条写命令。");
+        Files.writeString(Files.createDirectories(tempDir.resolve("shop")).resolve("b.md"), "# 耳机\n\n降噪耳机关注降噪深度。");
+        CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+        LocalKnowledgeBase knowledgeBase = new LocalKnowledgeBase(tempDir.toString(), null, VectorEncoding.FLOAT32,
+                embeddingModel, 200, 8, 32, 32, 2);
+
+        knowledgeBase.preload();
+        int embedded = embeddingModel.documents.get();
+        Assertions.assertTrue(embedded >= 2);
+        // 检索直接使用已构建的索引，不再向量化文档
+        Assertions.assertTrue(knowledgeBase.search("面试专家知识库", "AOF", 1, 0.1).get(0).getText().contains("AOF"));
+        Assertions.assertTrue(knowledgeBase.search("购物大师知识库", "降噪耳机", 1, 0.1).get(0).getText().contains("耳机"));
+        Assertions.assertEquals(embedded, embeddingModel.documents.get());
+        knowledgeBase.destroy();
+    }
+
+    @Test
+    void hybridRetrievalFusesVectorAndKeywordResults() throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("interview"));
+        Files.writeString(dir.resolve("auth.md"), """
+                # 权限认证
+
+                Sa-Token 通过注解完成角色校验，登录态保存在 Redis 中。
+
+                ---
+
+                # 事务隔离
+
+                InnoDB 通过 MVCC 实现可重复读。
+                """);
+        LocalKnowledgeBase knowledgeBase = new LocalKnowledgeBase(tempDir.toString(), null, VectorEncoding.FLOAT32,
+                new HashingEmbeddingModel(256), 200, 8, 32, 32, 2);
+
+        List<Document> lexical = knowledgeBase.lexicalSearch("面试专家知识库", "MVCC", 3);
+        Assertions.assertEquals(1, lexical.size());
+        Assertions.assertTrue(lexical.get(0).getText().contains("MVCC"));
+
+        List<Document> hybrid = new LocalDocumentRetriever(knowledgeBase, "面试专家知识库", 1, 0.1, LocalRetrievalMode.HYBRID,
+                FusionDocumentRetriever.DEFAULT_RRF_K).retrieve(new Query("Sa-Token 角色校验"));
+        Assertions.assertEquals(1, hybrid.size());
+        Assertions.assertTrue(hybrid.get(0).getText().contains("Sa-Token"));
+        // 两路都排第一：RRF 得分为 2 / (k + 1)
+        Assertions.assertEquals(2.0 / (FusionDocumentRetriever.DEFAULT_RRF_K + 1), hybrid.get(0).getScore().doubleValue(), 1e-9);
+        knowledgeBase.destroy();
+    }
+
+    @Test
+    void reloadOnlyEmbedsChangedChunks() throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("shop"));
+        Files.writeString(dir.resolve("a.md"), """
+                # 手机
+
+                旗舰手机优先关注影像与续航。
+
+                # 耳机
+
+                降噪耳机关注主动降噪深度与佩戴舒适度。
+                """);
+        CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+        LocalKnowledgeBase knowledgeBase = new LocalKnowledgeBase(tempDir.toString(), null, VectorEncoding.FLOAT32,
+                embeddingModel, 200, 8, 32, 32, 2);
+        List<String> invalidated = new ArrayList<>();
+        knowledgeBase.addReloadListener(invalidated::add);
+
+        Assertions.assertFalse(knowledgeBase.search("购物大师知识库", "降噪耳机", 1, 0.1).isEmpty());
+        int initialEmbedded = embeddingModel.documents.get();
+        Assertions.assertEquals(2, initialEmbedded);
+
+        // 无变化：不调用向量模型，不触发回调
+        LocalKnowledgeBase.IngestResult unchanged = knowledgeBase.reload("购物大师知识库");
+        Assertions.assertEquals(new LocalKnowledgeBase.IngestResult(0, 0, 2, 0), unchanged);
+        Assertions.assertTrue(invalidated.isEmpty());
+
+        // 修改一节、新增一个内容相同的文件：只向量化修改后的片段，复制的文件复用已有向量
+        Files.writeString(dir.resolve("a.md"), """
+                # 手机
+
+                旗舰手机优先关注影像与续航。
+
+                # 耳机
+
+                开放式耳机适合运动场景。
+                """);
+        Files.writeString(dir.resolve("b.md"), """
+                # 手机
+
+                旗舰手机优先关注影像与续航。
+                """);
+        LocalKnowledgeBase.IngestResult changed = knowledgeBase.reload("购物大师知识库");
+        Assertions.assertEquals(new LocalKnowledgeBase.IngestResult(2, 1, 1, 1), changed);
+        Assertions.assertEquals(initialEmbedded + 1, embeddingModel.documents.get());
+        Assertions.assertEquals(List.of("购物大师知识库"), invalidated);
+
+        List<Document> documents = knowledgeBase.search("购物大师知识库", "开放式耳机 运动", 3, 0.1);
+        Assertions.assertTrue(documents.get(0).getText().contains("开放式耳机"));
+        Assertions.assertTrue(documents.stream().noneMatch(document -> document.getText().contains("降噪")));
+        knowledgeBase.destroy();
+    }
+
+    @Test
+    void restartLoadsPersistedIndexWithoutEmbedding() throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("docs/shop"));
+        Files.writeString(dir.resolve("a.md"), """
+                # 手机
+
+                旗舰手机优先关注影像与续航。
+
+                # 耳机
+
+                降噪耳机关注主动降噪深度与佩戴舒适度。
+                """);
+        String docsRoot = tempDir.resolve("docs").toString();
+        String indexDir = tempDir.resolve("index").toString();
+        LocalKnowledgeBase first = new LocalKnowledgeBase(docsRoot, indexDir, VectorEncoding.INT8,
+                new CountingEmbeddingModel(), 200, 8, 32, 32, 2);
+        List<Document> expected = first.search("购物大师知识库", "降噪耳机", 2, 0.1);
+        first.destroy();
+        Assertions.assertTrue(Files.isRegularFile(tempDir.resolve("index/shop.hnsw")));
+
+        // 重启：文档未变化，直接映射索引文件，不调用向量模型
+        CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+        LocalKnowledgeBase second = new LocalKnowledgeBase(docsRoot, indexDir, VectorEncoding.INT8, embeddingModel, 200, 8, 32, 32, 2);
+        List<Document> actual = second.search("购物大师知识库", "降噪耳机", 2, 0.1);
+        Assertions.assertEquals(0, embeddingModel.documents.get());
+        Assertions.assertEquals(expected.stream().map(Document::getId).toList(), actual.stream().map(Document::getId).toList());
+        Assertions.assertEquals("a.md", actual.get(0).getMetadata().get(RagConstant.METADATA_SOURCE));
+
+        // 映射索引上继续增量导入，并重新写入文件
+        Files.writeString(dir.resolve("b.md"), """
+                # 平板
+
+                平板电脑关注屏幕素质与手写笔支持。
+                """);
+        Assertions.assertEquals(new LocalKnowledgeBase.IngestResult(1, 0, 2, 1), second.reload("购物大师知识库"));
+        Assertions.assertTrue(second.search("购物大师知识库", "平板 手写笔", 1, 0.1).get(0).getText().contains("平板"));
+        second.destroy();
+
+        CountingEmbeddingModel thirdModel = new CountingEmbeddingModel();
+        LocalKnowledgeBase third = new LocalKnowledgeBase(docsRoot, indexDir, VectorEncoding.INT8, thirdModel, 200, 8, 32, 32, 2);
+        Assertions.assertTrue(third.search("购物大师知识库", "平板 手写笔", 1, 0.1).get(0).getText().contains("平板"));
+        Assertions.assertEquals(0, thirdModel.documents.get());
+        third.destroy();
+
+        // 向量模型标识变化（如切换模型名称）时不复用索引文件，重新向量化
+        CountingEmbeddingModel renamedModel = new CountingEmbeddingModel();
+        LocalKnowledgeBase renamed = new LocalKnowledgeBase(docsRoot, indexDir, VectorEncoding.INT8, renamedModel, "counting:v2",
+                200, 8, 32, 32, 2);
+        Assertions.assertTrue(renamed.search("购物大师知识库", "平板 手写笔", 1, 0.1).get(0).getText().contains("平板"));
+        Assertions.assertTrue(renamedModel.documents.get() > 0);
+        renamed.destroy();
+    }
+
+    /**
+     * 统计导入时向量化的文本条数（不含查询）
+     */
+    private static class CountingEmbeddingModel extends HashingEmbeddingModel {
+
+        private final AtomicInteger documents = new AtomicInteger();
+
+        CountingEmbeddingModel() {
+            super(256);
+        }
+
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            documents.addAndGet(texts.size());
+            return texts.stream().map(this::embed).toList();
+        }
+    }
+}
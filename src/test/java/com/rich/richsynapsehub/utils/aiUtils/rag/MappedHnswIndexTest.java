@@ -0,0 +1,174 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.enumeration.VectorEncoding;
+import com.rich.richsynapsehub.utils.ai.rag.HnswGraph;
+import com.rich.richsynapsehub.utils.ai.rag.HnswIndex;
+import com.rich.richsynapsehub.utils.ai.rag.MappedHnswIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+class MappedHnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mappedFileSearchesLikeHeapIndex() throws Exception {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64, 42);
+        for (int i = 0; i < 500; i++) {
+            index.insert(randomUnitVector(random));
+        }
+        index.delete(3);
+        Path file = tempDir.resolve("test.hnsw");
+        MappedHnswIndex.write(file, index, node -> Document.builder()
+                .id("doc-" + node)
+                .text("片段 " + node)
+                .metadata(Map.of("source", node + ".md"))
+                .build(), 11L, 22L);
+
+        MappedHnswIndex mapped = MappedHnswIndex.open(file);
+        Assertions.assertEquals(500, mapped.size());
+        Assertions.assertEquals(499, mapped.liveCount());
+        Assertions.assertEquals(11L, mapped.modelKey());
+        Assertions.assertEquals(22L, mapped.sourceFingerprint());
+        Assertions.assertNull(mapped.document(3));
+        Document document = mapped.document(10);
+        Assertions.assertEquals("doc-10", document.getId());
+        Assertions.assertEquals("片段 10", document.getText());
+        Assertions.assertEquals("10.md", document.getMetadata().get("source"));
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomUnitVector(random);
+            Assertions.assertEquals(index.search(query, 10, 32), mapped.search(query, 10, 32));
+        }
+
+        // 映射索引复制为可写索引后结构不变，可继续写入
+        HnswIndex copy = HnswIndex.copyOf(mapped, 64, 1);
+        float[] query = randomUnitVector(random);
+        Assertions.assertEquals(index.search(query, 10, 32), copy.search(query, 10, 32));
+        Assertions.assertTrue(copy.isDeleted(3));
+        Assertions.assertEquals(500, copy.insert(randomUnitVector(random)));
+    }
+
+    @Test
+    void int8RecallAndMemoryReport() throws Exception {
+        int dimensions = 128;
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(dimensions, 16, 100, 42);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            float[] vector = randomUnitVector(random, dimensions);
+            vectors.add(vector);
+            index.insert(vector);
+        }
+        Path floatFile = tempDir.resolve("float32.hnsw");
+        Path int8File = tempDir.resolve("int8.hnsw");
+        MappedHnswIndex.write(floatFile, index, node -> null, 1L, 1L, VectorEncoding.FLOAT32);
+        MappedHnswIndex.write(int8File, index, node -> null, 1L, 1L, VectorEncoding.INT8);
+        MappedHnswIndex float32 = MappedHnswIndex.open(floatFile);
+        MappedHnswIndex int8 = MappedHnswIndex.open(int8File);
+        Assertions.assertEquals(VectorEncoding.INT8, int8.encoding());
+
+        int k = 10;
+        int floatHits = 0;
+        int int8Hits = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random, dimensions);
+            Set<Integer> truth = new HashSet<>(IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(id -> -HnswGraph.similarity(query, vectors.get(id))))
+                    .limit(k)
+                    .toList());
+            floatHits += float32.search(query, k, 64).stream().filter(n -> truth.contains(n.id())).count();
+            List<HnswGraph.Neighbor> quantized = int8.search(query, k, 64);
+            int8Hits += quantized.stream().filter(n -> truth.contains(n.id())).count();
+            // 重排后返回的是 float32 精确相似度
+            HnswGraph.Neighbor top = quantized.get(0);
+            Assertions.assertEquals(HnswGraph.similarity(query, vectors.get(top.id())), top.score(), 1e-5);
+        }
+        double floatRecall = (double) floatHits / (queries * k);
+        double int8Recall = (double) int8Hits / (queries * k);
+        System.out.printf("向量编码  recall@%d  检索向量字节  文件字节%n", k);
+        System.out.printf("float32   %.3f      %d        %d%n", floatRecall, float32.vectorBytes(), Files.size(floatFile));
+        System.out.printf("int8      %.3f      %d        %d%n", int8Recall, int8.vectorBytes(), Files.size(int8File));
+
+        Assertions.assertTrue(int8Recall >= floatRecall - 0.03, "int8 recall " + int8Recall + " vs float32 " + floatRecall);
+        Assertions.assertTrue(int8.vectorBytes() * 10 < float32.vectorBytes() * 3);
+    }
+
+    @Test
+    void quantizeRoundTrip() {
+        float[] vector = {0.5f, -0.25f, 0.125f, 0f};
+        byte[] codes = new byte[vector.length];
+        float scale = MappedHnswIndex.quantize(vector, codes);
+        Assertions.assertEquals(127, codes[0]);
+        for (int i = 0; i < vector.length; i++) {
+            Assertions.assertEquals(vector[i], codes[i] * scale, scale / 2);
+        }
+        Assertions.assertEquals(0f, MappedHnswIndex.quantize(new float[4], codes));
+    }
+
+    @Test
+    void rejectsInvalidOrIncompatibleFile() throws Exception {
+        Path garbage = tempDir.resolve("garbage.hnsw");
+        Files.write(garbage, new byte[256]);
+        Assertions.assertThrows(IOException.class, () -> MappedHnswIndex.open(garbage));
+
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64, 42);
+        index.insert(randomUnitVector(new Random(1)));
+        Path file = tempDir.resolve("old.hnsw");
+        MappedHnswIndex.write(file, index, node -> Document.builder().id("a").text("a").build(), 1L, 1L);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, MappedHnswIndex.VERSION + 1);
+        Files.write(file, bytes);
+        Assertions.assertThrows(IOException.class, () -> MappedHnswIndex.open(file));
+
+        // 版本 1（只有 float32 编码）仍可读取
+        ByteBuffer.wrap(bytes).putInt(4, 1);
+        Files.write(file, bytes);
+        Assertions.assertEquals(VectorEncoding.FLOAT32, MappedHnswIndex.open(file).encoding());
+
+        Path truncated = tempDir.resolve("truncated.hnsw");
+        MappedHnswIndex.write(truncated, index, node -> Document.builder().id("a").text("a").build(), 1L, 1L);
+        byte[] full = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(full, full.length - 4));
+        Assertions.assertThrows(IOException.class, () -> MappedHnswIndex.open(truncated));
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        return randomUnitVector(random, DIMENSIONS);
+    }
+
+    private static float[] randomUnitVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,81 @@
+package com.rich.richsynapsehub.utils.aiUtils.rag;
+
+import com.rich.richsynapsehub.utils.ai.rag.FusionDocumentRetriever;
+import com.rich.richsynapsehub.utils.ai.rag.GatedQueryAugmenter;
+import com.rich.richsynapsehub.utils.ai.rag.RagGate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.util.List;
+import java.util.Map;
+
+class RagGateTest {
+
+    @Test
+    void skipsSmallTalkAndShortMessages() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RagGate gate = new RagGate(true, 3, meterRegistry);
+
+        Assertions.assertEquals(RagGate.REASON_SMALL_TALK, gate.evaluate("继续").reason());
+        Assertions.assertEquals(RagGate.REASON_SMALL_TALK, gate.evaluate(" 你好！").reason());
+        Assertions.assertEquals(RagGate.REASON_SMALL_TALK, gate.evaluate("嗯嗯。").reason());
+        Assertions.assertEquals(RagGate.REASON_SMALL_TALK, gate.evaluate("").reason());
+        // “嗯好吧” 只有两个二元组，低于阈值
+        RagGate.Decision shortMessage = gate.evaluate("嗯好吧");
+        Assertions.assertFalse(shortMessage.retrieve());
+        Assertions.assertEquals(RagGate.REASON_LOW_SCORE, shortMessage.reason());
+        Assertions.assertEquals(2, shortMessage.score());
+
+        Assertions.assertEquals(4, meterRegistry.counter("rag.gate.decisions", "result", "skip", "reason", "small-talk").count());
+        Assertions.assertEquals(1, meterRegistry.counter("rag.gate.decisions", "result", "skip", "reason", "low-score").count());
+    }
+
+    @Test
+    void retrievesQuestionsAndTerms() {
+        RagGate gate = new RagGate(true, 3, new SimpleMeterRegistry());
+
+        // 单个英文术语：1 个词项 + 术语加分
+        RagGate.Decision term = gate.evaluate("MVCC");
+        Assertions.assertTrue(term.retrieve());
+        Assertions.assertEquals(3, term.score());
+        Assertions.assertTrue(gate.evaluate("推荐一款降噪耳机").retrieve());
+        Assertions.assertTrue(gate.evaluate("Sa-Token 怎么做角色校验？").retrieve());
+
+        RagGate disabled = new RagGate(false, 3, new SimpleMeterRegistry());
+        Assertions.assertEquals(RagGate.REASON_DISABLED, disabled.evaluate("你好").reason());
+        Assertions.assertTrue(disabled.evaluate("你好").retrieve());
+    }
+
+    @Test
+    void augmenterKeepsQueryWithoutUsableContext() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GatedQueryAugmenter augmenter = new GatedQueryAugmenter(0.5, meterRegistry);
+        Query query = new Query("今天心情不错");
+
+        Assertions.assertSame(query, augmenter.augment(query, List.of()));
+        Document weak = Document.builder().id("a").text("无关片段").score(0.2).build();
+        Assertions.assertSame(query, augmenter.augment(query, List.of(weak)));
+        Assertions.assertEquals(1, meterRegistry.counter("rag.gate.context.dropped", "reason", "empty").count());
+        Assertions.assertEquals(1, meterRegistry.counter("rag.gate.context.dropped", "reason", "low-score").count());
+
+        Document strong = Document.builder().id("b").text("相关片段").score(0.8).build();
+        Assertions.assertTrue(augmenter.augment(query, List.of(weak, strong)).text().contains("相关片段"));
+    }
+
+    @Test
+    void augmenterDoesNotCompareFusedScoresWithThreshold() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GatedQueryAugmenter augmenter = new GatedQueryAugmenter(0.5, meterRegistry);
+        Query query = new Query("MVCC 的原理");
+        Document document = Document.builder().id("a").text("MVCC 通过版本链实现").score(0.9).build();
+
+        // RRF 得分约为 1/61，远低于相似度阈值，但不应因此被丢弃
+        List<Document> fused = FusionDocumentRetriever.fuse(Map.of("java", List.of(document)), 5, FusionDocumentRetriever.DEFAULT_RRF_K);
+        Assertions.assertTrue(fused.get(0).getScore() < 0.5);
+        Assertions.assertTrue(augmenter.augment(query, fused).text().contains("MVCC 通过版本链实现"));
+        Assertions.assertEquals(0, meterRegistry.counter("rag.gate.context.dropped", "reason", "low-score").count());
+    }
+}